@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.DataSource;
+import com.pcloud.sdk.RemoteFile;
+import com.pcloud.sdk.RemoteFolder;
+import com.pcloud.sdk.RemoteFolderTree;
+
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * Measures complete API calls against an in-process HTTP server, including request
+ * building, multipart body writing, connection reuse and response parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ApiClientBenchmark {
+
+    private static final int LISTING_ENTRY_COUNT = 10_000;
+    private static final int UPLOAD_SIZE = 4 * 1024 * 1024;
+
+    private MockWebServer server;
+    private RealApiClient apiClient;
+    private byte[] uploadData;
+
+    @Setup
+    public void setUp() throws IOException {
+        Buffer listing = new Buffer().writeUtf8(RemoteEntryDeserializationBenchmark.newListing(LISTING_ENTRY_COUNT));
+        String uploadResponse = "{\"result\":0,\"fileids\":[1],\"metadata\":[{\"id\":\"f1\",\"parentfolderid\":0," +
+                "\"name\":\"file.bin\",\"created\":1500000000,\"modified\":1500000000,\"isfolder\":false," +
+                "\"fileid\":1,\"size\":" + UPLOAD_SIZE + ",\"hash\":1,\"contenttype\":\"application/octet-stream\"}]}";
+
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @NotNull
+            @Override
+            public MockResponse dispatch(@NotNull RecordedRequest request) {
+                switch (request.getRequestUrl().encodedPath()) {
+                    case "/listfolder":
+                        return new MockResponse().setBody(listing.clone());
+                    case "/uploadfile":
+                        return new MockResponse().setBody(uploadResponse);
+                    default:
+                        return new MockResponse().setResponseCode(404);
+                }
+            }
+        });
+        // Uploaded bodies are discarded instead of being kept for inspection.
+        server.setBodyLimit(0);
+        server.start();
+
+        apiClient = new RealApiClient(new RealApiServiceBuilder().apiHost(server.url("/")));
+        uploadData = new byte[UPLOAD_SIZE];
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        apiClient.shutdown();
+        server.shutdown();
+    }
+
+    @Benchmark
+    public RemoteFolder listFolderRecursively() throws Exception {
+        return apiClient.listFolder(0, true).execute();
+    }
+
+    @Benchmark
+    public RemoteFolderTree loadFolderTree() throws Exception {
+        return apiClient.loadFolderTree(0).execute();
+    }
+
+    @Benchmark
+    public RemoteFile createFile() throws Exception {
+        return apiClient.createFile(0, "file.bin", DataSource.create(uploadData), null, (done, total) -> { }).execute();
+    }
+}
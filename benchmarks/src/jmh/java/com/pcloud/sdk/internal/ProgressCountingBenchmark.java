@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+
+/**
+ * Measures the overhead {@link ProgressCountingSink} and {@link ProgressCountingSource} add to
+ * moving data through okio, compared with the same transfer without progress counting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ProgressCountingBenchmark {
+
+    private static final int TRANSFER_SIZE = 16 * 1024 * 1024;
+
+    @Param({"8192", "65536"})
+    public int notificationThresholdBytes;
+
+    private ByteString data;
+    private long notifications;
+
+    @Setup
+    public void setUp() {
+        byte[] bytes = new byte[TRANSFER_SIZE];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        data = ByteString.of(bytes);
+    }
+
+    @Benchmark
+    public long plainSink() throws IOException {
+        BufferedSink sink = Okio.buffer(Okio.blackhole());
+        sink.write(data);
+        sink.emit();
+        return sink.getBuffer().size();
+    }
+
+    @Benchmark
+    public long countingSink() throws IOException {
+        BufferedSink sink = Okio.buffer(new ProgressCountingSink(Okio.blackhole(), TRANSFER_SIZE,
+                (done, total) -> notifications++, notificationThresholdBytes));
+        sink.write(data);
+        sink.emit();
+        return notifications;
+    }
+
+    @Benchmark
+    public long plainSource() throws IOException {
+        return drain(Okio.buffer((okio.Source) new Buffer().write(data)));
+    }
+
+    @Benchmark
+    public long countingSource() throws IOException {
+        return drain(Okio.buffer(new ProgressCountingSource(new Buffer().write(data), TRANSFER_SIZE,
+                (done, total) -> notifications++, notificationThresholdBytes)));
+    }
+
+    private static long drain(BufferedSource source) throws IOException {
+        long total = 0;
+        Buffer buffer = new Buffer();
+        long read;
+        while ((read = source.read(buffer, 8192)) != -1) {
+            total += read;
+            buffer.clear();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.pcloud.sdk.RemoteEntry;
+import com.pcloud.sdk.RemoteFile;
+import com.pcloud.sdk.RemoteFolder;
+import com.pcloud.sdk.internal.networking.GetFolderResponse;
+import com.pcloud.sdk.internal.networking.serialization.DateTypeAdapter;
+import com.pcloud.sdk.internal.networking.serialization.UnmodifiableListTypeFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming {@link RealRemoteEntry.EntryTypeAdapter} with reflective Gson binding
+ * of entries through an intermediate {@link com.google.gson.JsonElement} tree, on recursive
+ * {@code listfolder} responses of different sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RemoteEntryDeserializationBenchmark {
+
+    private static final int FILES_PER_FOLDER = 50;
+
+    @Param({"1000", "100000"})
+    public int entryCount;
+
+    private RealApiClient apiClient;
+    private Gson streamingGson;
+    private Gson reflectiveGson;
+    private String listing;
+
+    @Setup
+    public void setUp() {
+        apiClient = new RealApiClient();
+        streamingGson = new GsonBuilder()
+                .excludeFieldsWithoutExposeAnnotation()
+                .registerTypeAdapterFactory(new RealRemoteEntry.TypeAdapterFactory(apiClient))
+                .registerTypeAdapterFactory(new UnmodifiableListTypeFactory())
+                .registerTypeAdapter(Date.class, new DateTypeAdapter())
+                .create();
+        reflectiveGson = new GsonBuilder()
+                .excludeFieldsWithoutExposeAnnotation()
+                .registerTypeAdapterFactory(new ReflectiveEntryTypeAdapterFactory())
+                .registerTypeAdapterFactory(new UnmodifiableListTypeFactory())
+                .registerTypeAdapter(RemoteEntry.class, (JsonDeserializer<RemoteEntry>) (json, typeOfT, context) ->
+                        context.deserialize(json, json.getAsJsonObject().get("isfolder").getAsBoolean() ?
+                                RealRemoteFolder.class : RealRemoteFile.class))
+                .registerTypeAdapter(Date.class, new DateTypeAdapter())
+                .registerTypeAdapter(RealRemoteFile.class, (com.google.gson.InstanceCreator<RealRemoteFile>) type -> new RealRemoteFile(apiClient))
+                .registerTypeAdapter(RealRemoteFolder.class, (com.google.gson.InstanceCreator<RealRemoteFolder>) type -> new RealRemoteFolder(apiClient))
+                .create();
+        listing = newListing(entryCount);
+    }
+
+    @TearDown
+    public void tearDown() {
+        apiClient.shutdown();
+    }
+
+    @Benchmark
+    public RemoteFolder streaming() {
+        return streamingGson.fromJson(listing, GetFolderResponse.class).getFolder();
+    }
+
+    @Benchmark
+    public RemoteFolder reflective() {
+        return reflectiveGson.fromJson(listing, GetFolderResponse.class).getFolder();
+    }
+
+    /**
+     * Build a response with folders of {@value #FILES_PER_FOLDER} files each, nested one level under the root.
+     */
+    static String newListing(int entryCount) {
+        StringBuilder json = new StringBuilder(entryCount * 320);
+        json.append("{\"result\":0,\"metadata\":");
+        appendCommon(json, "d0", 0, "/", true).append(",\"folderid\":0,\"contents\":[");
+        long nextId = 1;
+        while (nextId < entryCount) {
+            long folderId = nextId++;
+            if (folderId > 1) {
+                json.append(',');
+            }
+            appendCommon(json, "d" + folderId, 0, "Folder " + folderId, true)
+                    .append(",\"folderid\":").append(folderId).append(",\"contents\":[");
+            for (int i = 0; i < FILES_PER_FOLDER && nextId < entryCount; i++) {
+                long fileId = nextId++;
+                if (i > 0) {
+                    json.append(',');
+                }
+                appendCommon(json, "f" + fileId, folderId, "IMG_" + fileId + ".jpg", false)
+                        .append(",\"fileid\":").append(fileId)
+                        .append(",\"size\":").append(fileId * 1024)
+                        .append(",\"hash\":").append(fileId * 7919)
+                        .append(",\"contenttype\":\"image/jpeg\",\"category\":1,\"thumb\":true,\"icon\":\"image\"}");
+            }
+            json.append("]}");
+        }
+        return json.append("]}}").toString();
+    }
+
+    private static StringBuilder appendCommon(StringBuilder json, String id, long parentFolderId, String name, boolean isFolder) {
+        return json.append("{\"id\":\"").append(id).append('"')
+                .append(",\"parentfolderid\":").append(parentFolderId)
+                .append(",\"name\":\"").append(name).append('"')
+                .append(",\"created\":1500000000,\"modified\":1500000000")
+                .append(",\"isfolder\":").append(isFolder)
+                .append(",\"ismine\":true,\"isshared\":false");
+    }
+
+    /**
+     * Binds the entry interfaces to their implementations through Gson's reflective adapters.
+     */
+    private static class ReflectiveEntryTypeAdapterFactory implements TypeAdapterFactory {
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() == RemoteFile.class) {
+                return (TypeAdapter<T>) gson.getAdapter(RealRemoteFile.class);
+            } else if (type.getRawType() == RemoteFolder.class) {
+                return (TypeAdapter<T>) gson.getAdapter(RealRemoteFolder.class);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * Compares tokenizing a {@code listfolder} response through {@link Utf8SourceReader} with
+ * the {@link InputStreamReader} and {@link BufferedReader} chain it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResponseDecodingBenchmark {
+
+    @Param({"100", "10000"})
+    public int entryCount;
+
+    private byte[] response;
+
+    @Setup
+    public void setUp() {
+        response = RemoteEntryDeserializationBenchmark.newListing(entryCount).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int utf8SourceReader() throws IOException {
+        return countTokens(new Utf8SourceReader(newSource()));
+    }
+
+    @Benchmark
+    public int inputStreamReader() throws IOException {
+        return countTokens(new BufferedReader(new InputStreamReader(newSource().inputStream())));
+    }
+
+    private BufferedSource newSource() {
+        return new Buffer().write(response);
+    }
+
+    private static int countTokens(Reader input) throws IOException {
+        int count = 0;
+        try (JsonReader reader = new JsonReader(input)) {
+            JsonToken token;
+            while ((token = reader.peek()) != JsonToken.END_DOCUMENT) {
+                switch (token) {
+                    case BEGIN_OBJECT:
+                        reader.beginObject();
+                        break;
+                    case END_OBJECT:
+                        reader.endObject();
+                        break;
+                    case BEGIN_ARRAY:
+                        reader.beginArray();
+                        break;
+                    case END_ARRAY:
+                        reader.endArray();
+                        break;
+                    case NAME:
+                        reader.nextName();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+}
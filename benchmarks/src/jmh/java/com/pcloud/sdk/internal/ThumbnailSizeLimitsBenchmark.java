@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.Resolution;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures thumbnail size normalization over a fixed set of random, in-range resolutions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ThumbnailSizeLimitsBenchmark {
+
+    private static final int RESOLUTION_COUNT = 1024;
+
+    private Resolution[] resolutions;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int min = ThumbnailSizeLimits.INSTANCE.getStart();
+        int max = ThumbnailSizeLimits.INSTANCE.getEndInclusive();
+        resolutions = new Resolution[RESOLUTION_COUNT];
+        for (int i = 0; i < resolutions.length; i++) {
+            resolutions[i] = new Resolution(min + random.nextInt(max - min + 1), min + random.nextInt(max - min + 1));
+        }
+    }
+
+    @Benchmark
+    public int normalize() {
+        int sum = 0;
+        for (Resolution resolution : resolutions) {
+            sum += ThumbnailSizeLimitsKt.normalize(ThumbnailSizeLimits.INSTANCE, resolution).getWidth();
+        }
+        return sum;
+    }
+}
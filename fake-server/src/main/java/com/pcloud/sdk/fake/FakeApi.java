@@ -0,0 +1,657 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.fake;
+
+import com.google.gson.stream.JsonWriter;
+import com.pcloud.sdk.fake.FakeFileSystem.File;
+import com.pcloud.sdk.fake.FakeFileSystem.Folder;
+import com.pcloud.sdk.fake.FakeFileSystem.Node;
+import com.pcloud.sdk.fake.FakeFileSystem.Target;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.MultipartReader;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * Implements the API methods and the content hosts of a {@link FakePCloudServer} on top of a {@link FakeFileSystem}.
+ * <p>
+ * Responses are fully built before being handed to the server, so the file system lock is never
+ * held while a response is being transferred.
+ */
+class FakeApi {
+
+    private static final long LINK_VALIDITY_MS = TimeUnit.HOURS.toMillis(4);
+    private static final String CONTENT_PATH = "content";
+    private static final String THUMB_PATH = "thumb";
+
+    private final FakeFileSystem fileSystem;
+    private final LongSupplier clock;
+    private final AtomicLong nextUploadId = new AtomicLong(1);
+    private final Map<Long, TreeMap<Long, ByteString>> uploads = new HashMap<>();
+
+    FakeApi(FakeFileSystem fileSystem, LongSupplier clock) {
+        this.fileSystem = fileSystem;
+        this.clock = clock;
+    }
+
+    MockResponse handle(RecordedRequest request) {
+        HttpUrl url = request.getRequestUrl();
+        List<String> segments = url.pathSegments();
+        String method = segments.get(0);
+        try {
+            if (CONTENT_PATH.equals(method)) {
+                return content(request, segments);
+            } else if (THUMB_PATH.equals(method)) {
+                return thumbnailContent(segments);
+            }
+
+            Params params = new Params(request);
+            synchronized (fileSystem) {
+                switch (method) {
+                    case "userinfo":
+                        return userInfo();
+                    case "listfolder":
+                        return listFolder(params);
+                    case "createfolder":
+                        return createFolder(params);
+                    case "deletefolder":
+                        return folderResponse(fileSystem.deleteFolder(folderParam(params), false));
+                    case "deletefolderrecursive":
+                        fileSystem.deleteFolder(folderParam(params), true);
+                        return ok(writer -> {
+                        });
+                    case "renamefolder":
+                        return renameFolder(params);
+                    case "copyfolder":
+                        return folderResponse(fileSystem.copyFolder(folderParam(params), toFolderParam(params),
+                                params.flag("noover"), params.flag("skipexisting")));
+                    case "stat":
+                        return fileResponse(fileParam(params));
+                    case "uploadfile":
+                        return uploadFile(request, params);
+                    case "upload_create":
+                        return uploadCreate();
+                    case "upload_write":
+                        return uploadWrite(request, params);
+                    case "upload_info":
+                        return uploadInfo(params);
+                    case "upload_save":
+                        return uploadSave(params);
+                    case "deletefile":
+                        return fileResponse(fileSystem.deleteFile(fileParam(params)));
+                    case "renamefile":
+                        return renameFile(params);
+                    case "copyfile":
+                        return copyFile(params);
+                    case "checksumfile":
+                        return checksumFile(params);
+                    case "getfilelink":
+                        return fileLink(request, params);
+                    case "getthumb":
+                        return thumbnail(params);
+                    case "getthumblink":
+                        return thumbnailLink(request, params);
+                    default:
+                        return new MockResponse().setResponseCode(404).setBody("Unknown method '" + method + "'.");
+                }
+            }
+        } catch (FakeApiException e) {
+            return error(e.code(), e.getMessage());
+        } catch (IOException e) {
+            return error(FakeApiException.INTERNAL_ERROR, "Internal error. Try again later.");
+        }
+    }
+
+    static MockResponse error(int code, String message) {
+        return json(writer -> writer
+                .name("result").value(code)
+                .name("error").value(message));
+    }
+
+    private MockResponse userInfo() {
+        return ok(writer -> writer
+                .name("userid").value(1)
+                .name("email").value("user@example.com")
+                .name("emailverified").value(true)
+                .name("quota").value(Long.MAX_VALUE)
+                .name("usedquota").value(fileSystem.totalSize()));
+    }
+
+    private MockResponse listFolder(Params params) throws FakeApiException {
+        Folder folder = folderParam(params);
+        boolean recursive = params.flag("recursive");
+        boolean noFiles = params.flag("nofiles");
+        return ok(writer -> {
+            writer.name("metadata");
+            writeFolder(writer, folder, recursive ? Integer.MAX_VALUE : 1, noFiles);
+        });
+    }
+
+    private MockResponse createFolder(Params params) throws FakeApiException {
+        String folderId = params.get("folderid");
+        if (folderId != null) {
+            String name = params.get("name");
+            if (name == null) {
+                throw new FakeApiException(FakeApiException.NO_FULL_PATH_OR_NAME, "No full path or name/folderid provided.");
+            }
+            return folderResponse(fileSystem.createFolder(fileSystem.folder(params.number("folderid")), name));
+        }
+        String path = params.get("path");
+        if (path == null) {
+            throw new FakeApiException(FakeApiException.NO_FULL_PATH_OR_NAME, "No full path or name/folderid provided.");
+        }
+        Target target = fileSystem.target(path, null);
+        return folderResponse(fileSystem.createFolder(target.folder, target.name));
+    }
+
+    private MockResponse renameFolder(Params params) throws FakeApiException {
+        Folder folder = folderParam(params);
+        if (params.get("topath") != null) {
+            Target target = fileSystem.target(params.get("topath"), folder.name);
+            return folderResponse(fileSystem.moveFolder(folder, target.folder, target.name));
+        }
+        Folder toFolder = params.get("tofolderid") != null ? fileSystem.folder(params.number("tofolderid")) : folder.parent;
+        String toName = params.get("toname") != null ? params.get("toname") : folder.name;
+        if (toFolder == null) {
+            throw new FakeApiException(FakeApiException.ACCESS_DENIED, "Cannot rename the root folder.");
+        }
+        return folderResponse(fileSystem.moveFolder(folder, toFolder, toName));
+    }
+
+    private MockResponse renameFile(Params params) throws FakeApiException {
+        File file = fileParam(params);
+        if (params.get("topath") != null) {
+            Target target = fileSystem.target(params.get("topath"), file.name);
+            return fileResponse(fileSystem.moveFile(file, target.folder, target.name));
+        }
+        Folder toFolder = params.get("tofolderid") != null ? fileSystem.folder(params.number("tofolderid")) : file.parent;
+        String toName = params.get("toname") != null ? params.get("toname") : file.name;
+        return fileResponse(fileSystem.moveFile(file, toFolder, toName));
+    }
+
+    private MockResponse copyFile(Params params) throws FakeApiException {
+        File file = fileParam(params);
+        Long modified = modifiedParam(params);
+        if (params.get("topath") != null) {
+            Target target = fileSystem.target(params.get("topath"), file.name);
+            return fileResponse(fileSystem.copyFile(file, target.folder, target.name, params.flag("noover"), modified));
+        }
+        String toName = params.get("toname") != null ? params.get("toname") : file.name;
+        return fileResponse(fileSystem.copyFile(file, toFolderParam(params), toName, params.flag("noover"), modified));
+    }
+
+    private MockResponse uploadFile(RecordedRequest request, Params params) throws FakeApiException, IOException {
+        Folder folder = folderParam(params);
+        boolean renameIfExists = params.flag("renameifexists");
+        Long modified = modifiedParam(params);
+
+        String contentType = request.getHeader("Content-Type");
+        String boundary = contentType != null ? MediaType.get(contentType).parameter("boundary") : null;
+        if (boundary == null) {
+            throw FakeApiException.invalidParameter("file");
+        }
+
+        Buffer uploadedFiles = new Buffer();
+        try (MultipartReader reader = new MultipartReader(request.getBody(), boundary)) {
+            MultipartReader.Part part;
+            while ((part = reader.nextPart()) != null) {
+                String filename = filename(part.headers().get("Content-Disposition"));
+                ByteString content = part.body().readByteString();
+                if (filename != null) {
+                    File file = fileSystem.writeFile(folder, filename, content, renameIfExists, modified);
+                    uploadedFiles.writeLong(file.id);
+                }
+            }
+        }
+
+        return ok(writer -> {
+            writer.name("metadata").beginArray();
+            Buffer ids = uploadedFiles.clone();
+            while (!ids.exhausted()) {
+                writeFile(writer, fileSystem.file(ids.readLong()));
+            }
+            writer.endArray();
+            writer.name("checksums").beginArray();
+            ids = uploadedFiles.clone();
+            while (!ids.exhausted()) {
+                File file = fileSystem.file(ids.readLong());
+                writer.beginObject();
+                writer.name("sha1").value(file.content.sha1().hex());
+                writer.name("sha256").value(file.content.sha256().hex());
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.name("fileids").beginArray();
+            while (!uploadedFiles.exhausted()) {
+                writer.value(uploadedFiles.readLong());
+            }
+            writer.endArray();
+        });
+    }
+
+    private MockResponse uploadCreate() {
+        long uploadId = nextUploadId.getAndIncrement();
+        uploads.put(uploadId, new TreeMap<>());
+        return ok(writer -> writer.name("uploadid").value(uploadId));
+    }
+
+    private MockResponse uploadWrite(RecordedRequest request, Params params) throws FakeApiException {
+        TreeMap<Long, ByteString> chunks = uploadParam(params);
+        long offset = params.number("uploadoffset");
+        if (offset < 0) {
+            throw FakeApiException.invalidParameter("uploadoffset");
+        }
+        // A rewritten chunk, as sent on a retry, replaces the previous one.
+        chunks.put(offset, request.getBody().readByteString());
+        return ok(writer -> {
+        });
+    }
+
+    private MockResponse uploadInfo(Params params) throws FakeApiException {
+        TreeMap<Long, ByteString> chunks = uploadParam(params);
+        long size = 0;
+        for (Map.Entry<Long, ByteString> chunk : chunks.entrySet()) {
+            size = Math.max(size, chunk.getKey() + chunk.getValue().size());
+        }
+        long uploadSize = size;
+        return ok(writer -> writer.name("size").value(uploadSize));
+    }
+
+    private MockResponse uploadSave(Params params) throws FakeApiException {
+        TreeMap<Long, ByteString> chunks = uploadParam(params);
+        Folder folder = folderParam(params);
+        String name = params.get("name");
+        if (name == null) {
+            throw FakeApiException.invalidName();
+        }
+
+        long size = 0;
+        for (Map.Entry<Long, ByteString> chunk : chunks.entrySet()) {
+            size = Math.max(size, chunk.getKey() + chunk.getValue().size());
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw FakeApiException.invalidParameter("uploadoffset");
+        }
+        byte[] content = new byte[(int) size];
+        for (Map.Entry<Long, ByteString> chunk : chunks.entrySet()) {
+            ByteString data = chunk.getValue();
+            data.asByteBuffer().get(content, chunk.getKey().intValue(), data.size());
+        }
+
+        File file = fileSystem.writeFile(folder, name, ByteString.of(content), params.flag("renameifexists"),
+                modifiedParam(params));
+        uploads.remove(params.number("uploadid"));
+        return fileResponse(file);
+    }
+
+    private MockResponse checksumFile(Params params) throws FakeApiException {
+        File file = fileParam(params);
+        return ok(writer -> {
+            writer.name("metadata");
+            writeFile(writer, file);
+            writer.name("sha1").value(file.content.sha1().hex());
+            writer.name("sha256").value(file.content.sha256().hex());
+            writer.name("md5").value(file.content.md5().hex());
+        });
+    }
+
+    private MockResponse fileLink(RecordedRequest request, Params params) throws FakeApiException {
+        File file = fileParam(params);
+        String path = "/" + CONTENT_PATH + "/" + file.id + "/" + file.version + "/" + encodeSegment(file.name);
+        return ok(writer -> {
+            writeLink(writer, request, path);
+            writer.name("hash").value(file.hash);
+        });
+    }
+
+    private MockResponse thumbnail(Params params) throws FakeApiException {
+        File file = fileSystem.file(params.number("fileid"));
+        return thumbnailResponse(file, thumbnailSize(params));
+    }
+
+    private MockResponse thumbnailLink(RecordedRequest request, Params params) throws FakeApiException {
+        File file = fileSystem.file(params.number("fileid"));
+        int[] size = thumbnailSize(params);
+        String path = "/" + THUMB_PATH + "/" + file.id + "/" + size[0] + "x" + size[1] + "/" + encodeSegment(file.name);
+        return ok(writer -> writeLink(writer, request, path));
+    }
+
+    private MockResponse thumbnailContent(List<String> segments) throws FakeApiException {
+        if (segments.size() < 3) {
+            return new MockResponse().setResponseCode(404);
+        }
+        File file;
+        synchronized (fileSystem) {
+            file = fileSystem.file(parseLong(segments.get(1), "fileid"));
+        }
+        return thumbnailResponse(file, parseSize(segments.get(2)));
+    }
+
+    /**
+     * Serve a synthetic thumbnail whose size grows with the requested resolution, derived from the file's hash.
+     */
+    private static MockResponse thumbnailResponse(File file, int[] size) {
+        byte[] data = new byte[Math.max(64, size[0] * size[1] / 10)];
+        new Random(file.hash).nextBytes(data);
+        return new MockResponse()
+                .setHeader("Content-Type", "image/jpeg")
+                .setBody(new Buffer().write(data));
+    }
+
+    private MockResponse content(RecordedRequest request, List<String> segments) throws FakeApiException {
+        if (segments.size() < 3) {
+            return new MockResponse().setResponseCode(404);
+        }
+        ByteString content;
+        String contentType;
+        synchronized (fileSystem) {
+            File file = fileSystem.file(parseLong(segments.get(1), "fileid"));
+            if (file.version != parseLong(segments.get(2), "version")) {
+                // The link points to content that has since been replaced.
+                return new MockResponse().setResponseCode(410);
+            }
+            content = file.content;
+            contentType = file.contentType;
+        }
+
+        long length = content.size();
+        long start = 0;
+        long end = length;
+        String range = request.getHeader("Range");
+        if (range != null && range.startsWith("bytes=") && range.indexOf(',') == -1) {
+            String spec = range.substring("bytes=".length()).trim();
+            int dash = spec.indexOf('-');
+            try {
+                if (dash == 0) {
+                    start = Math.max(0, length - Long.parseLong(spec.substring(1)));
+                } else {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    if (dash < spec.length() - 1) {
+                        end = Math.min(length, Long.parseLong(spec.substring(dash + 1)) + 1);
+                    }
+                }
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                return new MockResponse().setResponseCode(400);
+            }
+            if (start >= length || start >= end) {
+                return new MockResponse().setResponseCode(416)
+                        .setHeader("Content-Range", "bytes */" + length);
+            }
+            return new MockResponse().setResponseCode(206)
+                    .setHeader("Content-Type", contentType)
+                    .setHeader("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + length)
+                    .setBody(new Buffer().write(content.substring((int) start, (int) end)));
+        }
+        return new MockResponse()
+                .setHeader("Content-Type", contentType)
+                .setHeader("Accept-Ranges", "bytes")
+                .setBody(new Buffer().write(content));
+    }
+
+    private void writeLink(JsonWriter writer, RecordedRequest request, String path) throws IOException {
+        HttpUrl url = request.getRequestUrl();
+        writer.name("path").value(path);
+        writer.name("expires").value(TimeUnit.MILLISECONDS.toSeconds(clock.getAsLong() + LINK_VALIDITY_MS));
+        writer.name("hosts").beginArray().value(url.host() + ":" + url.port()).endArray();
+    }
+
+    private MockResponse fileResponse(File file) {
+        return ok(writer -> {
+            writer.name("metadata");
+            writeFile(writer, file);
+        });
+    }
+
+    private MockResponse folderResponse(Folder folder) {
+        return ok(writer -> {
+            writer.name("metadata");
+            writeFolder(writer, folder, 0, false);
+        });
+    }
+
+    private void writeFolder(JsonWriter writer, Folder folder, int depth, boolean noFiles) throws IOException {
+        writer.beginObject();
+        writer.name("id").value("d" + folder.id);
+        writer.name("folderid").value(folder.id);
+        if (folder.parent != null) {
+            writer.name("parentfolderid").value(folder.parent.id);
+        }
+        writer.name("name").value(folder.name);
+        writeCommonFields(writer, folder.created, folder.created);
+        writer.name("cancreate").value(true);
+        writer.name("isfolder").value(true);
+        if (depth > 0) {
+            writer.name("contents").beginArray();
+            for (Node child : fileSystem.children(folder)) {
+                if (child instanceof Folder) {
+                    writeFolder(writer, (Folder) child, depth - 1, noFiles);
+                } else if (!noFiles) {
+                    writeFile(writer, (File) child);
+                }
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+    }
+
+    private static void writeFile(JsonWriter writer, File file) throws IOException {
+        writer.beginObject();
+        writer.name("id").value("f" + file.id);
+        writer.name("fileid").value(file.id);
+        writer.name("parentfolderid").value(file.parent.id);
+        writer.name("name").value(file.name);
+        writeCommonFields(writer, file.created, file.modified);
+        writer.name("isfolder").value(false);
+        writer.name("size").value(file.content.size());
+        writer.name("hash").value(file.hash);
+        writer.name("contenttype").value(file.contentType);
+        writer.name("thumb").value(file.hasThumbnail());
+        writer.endObject();
+    }
+
+    private static void writeCommonFields(JsonWriter writer, long created, long modified) throws IOException {
+        writer.name("created").value(TimeUnit.MILLISECONDS.toSeconds(created));
+        writer.name("modified").value(TimeUnit.MILLISECONDS.toSeconds(modified));
+        writer.name("ismine").value(true);
+        writer.name("isshared").value(false);
+        writer.name("canread").value(true);
+        writer.name("canmodify").value(true);
+        writer.name("candelete").value(true);
+    }
+
+    private Folder folderParam(Params params) throws FakeApiException {
+        if (params.get("folderid") != null) {
+            return fileSystem.folder(params.number("folderid"));
+        } else if (params.get("path") != null) {
+            return fileSystem.folder(params.get("path"));
+        }
+        throw new FakeApiException(FakeApiException.NO_FULL_PATH_OR_FOLDER_ID, "No full path or folderid provided.");
+    }
+
+    private Folder toFolderParam(Params params) throws FakeApiException {
+        if (params.get("tofolderid") != null) {
+            return fileSystem.folder(params.number("tofolderid"));
+        } else if (params.get("topath") != null) {
+            return fileSystem.folder(params.get("topath"));
+        }
+        throw new FakeApiException(FakeApiException.NO_FULL_PATH_OR_FOLDER_ID, "No full path or folderid provided.");
+    }
+
+    private File fileParam(Params params) throws FakeApiException {
+        if (params.get("fileid") != null) {
+            return fileSystem.file(params.number("fileid"));
+        } else if (params.get("path") != null) {
+            return fileSystem.file(params.get("path"));
+        }
+        throw new FakeApiException(FakeApiException.NO_FILE_ID_OR_PATH, "No fileid or path provided.");
+    }
+
+    private TreeMap<Long, ByteString> uploadParam(Params params) throws FakeApiException {
+        TreeMap<Long, ByteString> chunks = uploads.get(params.number("uploadid"));
+        if (chunks == null) {
+            throw new FakeApiException(FakeApiException.INVALID_UPLOAD_ID, "Invalid 'uploadid' provided.");
+        }
+        return chunks;
+    }
+
+    private static Long modifiedParam(Params params) throws FakeApiException {
+        return params.get("mtime") != null ? TimeUnit.SECONDS.toMillis(params.number("mtime")) : null;
+    }
+
+    private static int[] thumbnailSize(Params params) throws FakeApiException {
+        String size = params.get("size");
+        if (size == null) {
+            throw FakeApiException.invalidParameter("size");
+        }
+        return parseSize(size);
+    }
+
+    private static int[] parseSize(String size) throws FakeApiException {
+        int separator = size.indexOf('x');
+        try {
+            return new int[]{
+                    Integer.parseInt(size.substring(0, separator)),
+                    Integer.parseInt(size.substring(separator + 1))};
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw FakeApiException.invalidParameter("size");
+        }
+    }
+
+    private static long parseLong(String value, String name) throws FakeApiException {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw FakeApiException.invalidParameter(name);
+        }
+    }
+
+    private static String filename(String contentDisposition) {
+        if (contentDisposition == null) {
+            return null;
+        }
+        int start = contentDisposition.indexOf("filename=\"");
+        if (start == -1) {
+            return null;
+        }
+        start += "filename=\"".length();
+        int end = contentDisposition.indexOf('"', start);
+        return end != -1 ? contentDisposition.substring(start, end) : null;
+    }
+
+    private static String encodeSegment(String name) {
+        return new HttpUrl.Builder().scheme("http").host("localhost").addPathSegment(name).build().encodedPath().substring(1);
+    }
+
+    private static MockResponse ok(Body body) {
+        return json(writer -> {
+            writer.name("result").value(0);
+            body.write(writer);
+        });
+    }
+
+    private static MockResponse json(Body body) {
+        Buffer buffer = new Buffer();
+        try (Writer output = new OutputStreamWriter(buffer.outputStream(), StandardCharsets.UTF_8);
+             JsonWriter writer = new JsonWriter(output)) {
+            writer.beginObject();
+            body.write(writer);
+            writer.endObject();
+        } catch (IOException | FakeApiException e) {
+            throw new IllegalStateException(e);
+        }
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json; charset=utf-8")
+                .setBody(buffer);
+    }
+
+    private interface Body {
+        void write(JsonWriter writer) throws IOException, FakeApiException;
+    }
+
+    /**
+     * The parameters of an API call, from its query and its URL-encoded form body.
+     */
+    private static final class Params {
+        private final Map<String, String> values = new HashMap<>();
+
+        Params(RecordedRequest request) throws FakeApiException {
+            HttpUrl url = request.getRequestUrl();
+            for (String name : url.queryParameterNames()) {
+                values.put(name, url.queryParameter(name));
+            }
+            String contentType = request.getHeader("Content-Type");
+            if (contentType != null && contentType.toLowerCase(Locale.US).startsWith("application/x-www-form-urlencoded")) {
+                String form = request.getBody().clone().readUtf8();
+                for (String pair : form.split("&")) {
+                    if (pair.isEmpty()) {
+                        continue;
+                    }
+                    int separator = pair.indexOf('=');
+                    String name = separator != -1 ? pair.substring(0, separator) : pair;
+                    String value = separator != -1 ? pair.substring(separator + 1) : "";
+                    values.put(decode(name), decode(value));
+                }
+            }
+        }
+
+        String get(String name) {
+            return values.get(name);
+        }
+
+        long number(String name) throws FakeApiException {
+            String value = values.get(name);
+            if (value == null) {
+                throw FakeApiException.invalidParameter(name);
+            }
+            return parseLong(value, name);
+        }
+
+        boolean flag(String name) {
+            String value = values.get(name);
+            return value != null && !value.equals("0") && !value.isEmpty();
+        }
+
+        private static String decode(String value) throws FakeApiException {
+            try {
+                return URLDecoder.decode(value, "UTF-8");
+            } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+                throw FakeApiException.invalidParameter(value);
+            }
+        }
+    }
+}
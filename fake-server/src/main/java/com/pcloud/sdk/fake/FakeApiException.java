@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.fake;
+
+/**
+ * An error reported to the client in the API's {@code result}/{@code error} envelope.
+ */
+class FakeApiException extends Exception {
+
+    static final int NO_FULL_PATH_OR_NAME = 1001;
+    static final int NO_FULL_PATH_OR_FOLDER_ID = 1002;
+    static final int NO_FILE_ID_OR_PATH = 1004;
+    static final int INVALID_PARAMETER = 1014;
+    static final int INVALID_UPLOAD_ID = 1900;
+    static final int INVALID_NAME = 2001;
+    static final int PARENT_DOES_NOT_EXIST = 2002;
+    static final int ACCESS_DENIED = 2003;
+    static final int ALREADY_EXISTS = 2004;
+    static final int FOLDER_DOES_NOT_EXIST = 2005;
+    static final int FOLDER_NOT_EMPTY = 2006;
+    static final int CANNOT_DELETE_ROOT = 2007;
+    static final int FILE_NOT_FOUND = 2009;
+    static final int MOVE_INTO_ITSELF = 2043;
+    static final int INTERNAL_ERROR = 5000;
+
+    private final int code;
+
+    FakeApiException(int code, String message) {
+        super(message);
+        this.code = code;
+    }
+
+    int code() {
+        return code;
+    }
+
+    static FakeApiException folderNotFound() {
+        return new FakeApiException(FOLDER_DOES_NOT_EXIST, "Directory does not exist.");
+    }
+
+    static FakeApiException fileNotFound() {
+        return new FakeApiException(FILE_NOT_FOUND, "File not found.");
+    }
+
+    static FakeApiException alreadyExists() {
+        return new FakeApiException(ALREADY_EXISTS, "File or folder already exists.");
+    }
+
+    static FakeApiException parentNotFound() {
+        return new FakeApiException(PARENT_DOES_NOT_EXIST, "A component of parent directory does not exist.");
+    }
+
+    static FakeApiException invalidName() {
+        return new FakeApiException(INVALID_NAME, "Invalid file/folder name.");
+    }
+
+    static FakeApiException invalidParameter(String name) {
+        return new FakeApiException(INVALID_PARAMETER, "Invalid '" + name + "' provided.");
+    }
+}
@@ -0,0 +1,491 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.fake;
+
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+import okio.ByteString;
+
+/**
+ * An in-memory file tree, as served by a {@link FakePCloudServer}.
+ * <p>
+ * Folders and files have separate id spaces, same as in the pCloud API, with the root folder
+ * having id {@link #ROOT_FOLDER_ID}. File content is held in memory, so the tree is meant for
+ * test data sets rather than large files. All methods are thread-safe and can be used to seed
+ * or inspect the tree while a server is running.
+ */
+public final class FakeFileSystem {
+
+    public static final long ROOT_FOLDER_ID = 0;
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private final LongSupplier clock;
+    private final Map<Long, Folder> folders = new HashMap<>();
+    private final Map<Long, File> files = new HashMap<>();
+    private final Folder root;
+    private long nextFolderId = ROOT_FOLDER_ID + 1;
+    private long nextFileId = 1;
+
+    public FakeFileSystem() {
+        this(System::currentTimeMillis);
+    }
+
+    FakeFileSystem(LongSupplier clock) {
+        this.clock = clock;
+        this.root = new Folder(ROOT_FOLDER_ID, "/", null, clock.getAsLong());
+        folders.put(root.id, root);
+    }
+
+    /**
+     * Create a folder at the given path, along with any missing parent folders.
+     *
+     * @param path an absolute path, such as {@code /Documents/Reports}
+     * @return the id of the folder
+     * @throws IllegalArgumentException if the path is not absolute or a file is in the way
+     */
+    public synchronized long createFolder(String path) {
+        return mkdirs(segments(path), segments(path).length).id;
+    }
+
+    /**
+     * Create or replace a file at the given path, creating any missing parent folders.
+     * <p>
+     * A replaced file keeps its id, links to its previous content stop working.
+     *
+     * @param path    an absolute path, such as {@code /Documents/report.pdf}
+     * @param content the file content
+     * @return the id of the file
+     * @throws IllegalArgumentException if the path is not absolute or a folder is in the way
+     */
+    public synchronized long putFile(String path, byte[] content) {
+        if (content == null) {
+            throw new IllegalArgumentException("Content argument cannot be null.");
+        }
+        String[] segments = segments(path);
+        if (segments.length == 0) {
+            throw new IllegalArgumentException("'" + path + "' is not a file path.");
+        }
+        Folder parent = mkdirs(segments, segments.length - 1);
+        try {
+            return writeFile(parent, segments[segments.length - 1], ByteString.of(content), false, null).id;
+        } catch (FakeApiException e) {
+            throw new IllegalArgumentException("Cannot create a file at '" + path + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the content of the file at the given path, {@code null} if there is no such file
+     */
+    public synchronized byte[] readFile(String path) {
+        Node node = find(segments(path));
+        return node instanceof File ? ((File) node).content.toByteArray() : null;
+    }
+
+    /**
+     * @return the content of the file with the given id, {@code null} if there is no such file
+     */
+    public synchronized byte[] readFile(long fileId) {
+        File file = files.get(fileId);
+        return file != null ? file.content.toByteArray() : null;
+    }
+
+    /**
+     * @return {@code true} if there is a file or a folder at the given path
+     */
+    public synchronized boolean exists(String path) {
+        return find(segments(path)) != null;
+    }
+
+    /**
+     * @return the number of files in the tree
+     */
+    public synchronized int fileCount() {
+        return files.size();
+    }
+
+    /**
+     * @return the number of folders in the tree, including the root
+     */
+    public synchronized int folderCount() {
+        return folders.size();
+    }
+
+    /**
+     * @return the total size of all files in the tree, in bytes
+     */
+    public synchronized long totalSize() {
+        long size = 0;
+        for (File file : files.values()) {
+            size += file.content.size();
+        }
+        return size;
+    }
+
+    synchronized Folder folder(long folderId) throws FakeApiException {
+        Folder folder = folders.get(folderId);
+        if (folder == null) {
+            throw FakeApiException.folderNotFound();
+        }
+        return folder;
+    }
+
+    synchronized Folder folder(String path) throws FakeApiException {
+        Node node = find(checkedSegments(path));
+        if (!(node instanceof Folder)) {
+            throw FakeApiException.folderNotFound();
+        }
+        return (Folder) node;
+    }
+
+    synchronized File file(long fileId) throws FakeApiException {
+        File file = files.get(fileId);
+        if (file == null) {
+            throw FakeApiException.fileNotFound();
+        }
+        return file;
+    }
+
+    synchronized File file(String path) throws FakeApiException {
+        Node node = find(checkedSegments(path));
+        if (!(node instanceof File)) {
+            throw FakeApiException.fileNotFound();
+        }
+        return (File) node;
+    }
+
+    /**
+     * Resolve a destination path to its parent folder and the name of the destination.
+     * <p>
+     * A path ending with a slash denotes a folder to move into while keeping the current name.
+     */
+    synchronized Target target(String path, String currentName) throws FakeApiException {
+        String[] segments = checkedSegments(path);
+        if (path.endsWith("/")) {
+            return new Target(folder(path), currentName);
+        }
+        if (segments.length == 0) {
+            throw FakeApiException.invalidName();
+        }
+        Node parent = find(segments, segments.length - 1);
+        if (!(parent instanceof Folder)) {
+            throw FakeApiException.parentNotFound();
+        }
+        return new Target((Folder) parent, segments[segments.length - 1]);
+    }
+
+    synchronized Folder createFolder(Folder parent, String name) throws FakeApiException {
+        requireValidName(name);
+        if (parent.children.containsKey(name)) {
+            throw FakeApiException.alreadyExists();
+        }
+        return newFolder(parent, name);
+    }
+
+    synchronized File writeFile(Folder parent, String name, ByteString content, boolean renameIfExists, Long modified)
+            throws FakeApiException {
+        requireValidName(name);
+        requireAttached(parent);
+        Node existing = parent.children.get(name);
+        if (existing != null && renameIfExists) {
+            name = freeName(parent, name);
+            existing = null;
+        }
+        if (existing instanceof Folder) {
+            throw FakeApiException.alreadyExists();
+        }
+
+        long now = clock.getAsLong();
+        File file = (File) existing;
+        if (file == null) {
+            file = new File(nextFileId++, name, parent, now);
+            parent.children.put(name, file);
+            files.put(file.id, file);
+        }
+        file.setContent(content, modified != null ? modified : now);
+        return file;
+    }
+
+    synchronized File deleteFile(File file) throws FakeApiException {
+        requireAttached(file);
+        file.parent.children.remove(file.name);
+        files.remove(file.id);
+        return file;
+    }
+
+    synchronized Folder deleteFolder(Folder folder, boolean recursively) throws FakeApiException {
+        requireAttached(folder);
+        if (folder == root) {
+            throw new FakeApiException(FakeApiException.CANNOT_DELETE_ROOT, "Cannot delete the root folder.");
+        }
+        if (!recursively && !folder.children.isEmpty()) {
+            throw new FakeApiException(FakeApiException.FOLDER_NOT_EMPTY, "Directory is not empty.");
+        }
+        folder.parent.children.remove(folder.name);
+        forget(folder);
+        return folder;
+    }
+
+    synchronized File moveFile(File file, Folder toFolder, String toName) throws FakeApiException {
+        requireAttached(file);
+        requireAttached(toFolder);
+        requireValidName(toName);
+        Node existing = toFolder.children.get(toName);
+        if (existing instanceof Folder) {
+            throw FakeApiException.alreadyExists();
+        } else if (existing != null && existing != file) {
+            // Moving over another file replaces it.
+            deleteFile((File) existing);
+        }
+        file.parent.children.remove(file.name);
+        file.name = toName;
+        file.parent = toFolder;
+        toFolder.children.put(toName, file);
+        return file;
+    }
+
+    synchronized Folder moveFolder(Folder folder, Folder toFolder, String toName) throws FakeApiException {
+        requireAttached(folder);
+        requireAttached(toFolder);
+        requireValidName(toName);
+        if (folder == root) {
+            throw new FakeApiException(FakeApiException.ACCESS_DENIED, "Cannot move the root folder.");
+        }
+        if (isSameOrAncestor(folder, toFolder)) {
+            throw new FakeApiException(FakeApiException.MOVE_INTO_ITSELF, "Cannot move a folder into itself.");
+        }
+        Node existing = toFolder.children.get(toName);
+        if (existing != null && existing != folder) {
+            throw FakeApiException.alreadyExists();
+        }
+        folder.parent.children.remove(folder.name);
+        folder.name = toName;
+        folder.parent = toFolder;
+        toFolder.children.put(toName, folder);
+        return folder;
+    }
+
+    synchronized File copyFile(File file, Folder toFolder, String toName, boolean noOverwrite, Long modified)
+            throws FakeApiException {
+        requireAttached(file);
+        if (noOverwrite && toFolder.children.containsKey(toName)) {
+            throw FakeApiException.alreadyExists();
+        }
+        return writeFile(toFolder, toName, file.content, false, modified != null ? modified : file.modified);
+    }
+
+    /**
+     * Copy a folder into another one, merging it with an existing folder of the same name.
+     */
+    synchronized Folder copyFolder(Folder folder, Folder toFolder, boolean noOverwrite, boolean skipExisting)
+            throws FakeApiException {
+        requireAttached(folder);
+        requireAttached(toFolder);
+        if (folder == root || isSameOrAncestor(folder, toFolder)) {
+            throw new FakeApiException(FakeApiException.MOVE_INTO_ITSELF, "Cannot copy a folder into itself.");
+        }
+        return copyInto(folder, toFolder, noOverwrite, skipExisting);
+    }
+
+    synchronized List<Node> children(Folder folder) {
+        return new ArrayList<>(folder.children.values());
+    }
+
+    private Folder copyInto(Folder folder, Folder toFolder, boolean noOverwrite, boolean skipExisting)
+            throws FakeApiException {
+        Node existing = toFolder.children.get(folder.name);
+        if (existing instanceof File) {
+            throw FakeApiException.alreadyExists();
+        }
+        Folder copy = existing != null ? (Folder) existing : newFolder(toFolder, folder.name);
+        for (Node child : new ArrayList<>(folder.children.values())) {
+            if (child instanceof Folder) {
+                copyInto((Folder) child, copy, noOverwrite, skipExisting);
+            } else if (!copy.children.containsKey(child.name)) {
+                copyFile((File) child, copy, child.name, false, null);
+            } else if (!skipExisting) {
+                copyFile((File) child, copy, child.name, noOverwrite, null);
+            }
+        }
+        return copy;
+    }
+
+    private Folder newFolder(Folder parent, String name) {
+        Folder folder = new Folder(nextFolderId++, name, parent, clock.getAsLong());
+        parent.children.put(name, folder);
+        folders.put(folder.id, folder);
+        return folder;
+    }
+
+    private void forget(Folder folder) {
+        folders.remove(folder.id);
+        for (Node child : folder.children.values()) {
+            if (child instanceof Folder) {
+                forget((Folder) child);
+            } else {
+                files.remove(child.id);
+            }
+        }
+    }
+
+    private Folder mkdirs(String[] segments, int count) {
+        Folder folder = root;
+        for (int i = 0; i < count; i++) {
+            Node child = folder.children.get(segments[i]);
+            if (child == null) {
+                child = newFolder(folder, segments[i]);
+            } else if (!(child instanceof Folder)) {
+                throw new IllegalArgumentException("'" + segments[i] + "' is a file.");
+            }
+            folder = (Folder) child;
+        }
+        return folder;
+    }
+
+    private Node find(String[] segments) {
+        return find(segments, segments.length);
+    }
+
+    private Node find(String[] segments, int count) {
+        Node node = root;
+        for (int i = 0; i < count && node != null; i++) {
+            node = node instanceof Folder ? ((Folder) node).children.get(segments[i]) : null;
+        }
+        return node;
+    }
+
+    private String freeName(Folder parent, String name) {
+        int extension = name.lastIndexOf('.');
+        String base = extension > 0 ? name.substring(0, extension) : name;
+        String suffix = extension > 0 ? name.substring(extension) : "";
+        for (int i = 1; ; i++) {
+            String candidate = base + " (" + i + ")" + suffix;
+            if (!parent.children.containsKey(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    private static boolean isSameOrAncestor(Folder folder, Folder descendant) {
+        for (Folder current = descendant; current != null; current = current.parent) {
+            if (current == folder) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void requireAttached(Node node) throws FakeApiException {
+        if (node instanceof File && files.get(node.id) != node) {
+            throw FakeApiException.fileNotFound();
+        } else if (node instanceof Folder && folders.get(node.id) != node) {
+            throw FakeApiException.folderNotFound();
+        }
+    }
+
+    private static void requireValidName(String name) throws FakeApiException {
+        if (name == null || name.isEmpty() || name.indexOf('/') != -1 || name.equals(".") || name.equals("..")) {
+            throw FakeApiException.invalidName();
+        }
+    }
+
+    private static String[] checkedSegments(String path) throws FakeApiException {
+        try {
+            return segments(path);
+        } catch (IllegalArgumentException e) {
+            throw FakeApiException.invalidName();
+        }
+    }
+
+    private static String[] segments(String path) {
+        if (path == null || !path.startsWith("/")) {
+            throw new IllegalArgumentException("'" + path + "' is not an absolute path.");
+        }
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    static final class Target {
+        final Folder folder;
+        final String name;
+
+        Target(Folder folder, String name) {
+            this.folder = folder;
+            this.name = name;
+        }
+    }
+
+    abstract static class Node {
+        final long id;
+        final long created;
+        String name;
+        Folder parent;
+
+        Node(long id, String name, Folder parent, long created) {
+            this.id = id;
+            this.name = name;
+            this.parent = parent;
+            this.created = created;
+        }
+    }
+
+    static final class Folder extends Node {
+        final Map<String, Node> children = new TreeMap<>();
+
+        Folder(long id, String name, Folder parent, long created) {
+            super(id, name, parent, created);
+        }
+    }
+
+    static final class File extends Node {
+        ByteString content;
+        String contentType;
+        long hash;
+        long modified;
+        // Incremented on every content change, invalidating links to the previous content.
+        int version;
+
+        File(long id, String name, Folder parent, long created) {
+            super(id, name, parent, created);
+        }
+
+        void setContent(ByteString content, long modified) {
+            String guessedType = URLConnection.guessContentTypeFromName(name);
+            this.content = content;
+            this.contentType = guessedType != null ? guessedType : DEFAULT_CONTENT_TYPE;
+            this.hash = content.md5().asByteBuffer().getLong() & Long.MAX_VALUE;
+            this.modified = modified;
+            this.version++;
+        }
+
+        boolean hasThumbnail() {
+            return contentType.startsWith("image/") || contentType.startsWith("video/");
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.fake;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+/**
+ * An in-process HTTP server implementing a subset of the pCloud API on top of a {@link FakeFileSystem}.
+ * <p>
+ * The server serves both the API methods and the file content the links it hands out point to,
+ * so an {@code ApiClient} can be pointed at it with {@code ApiClient.Builder.apiHost(server.apiHost())}.
+ * Supported methods are {@code userinfo}, {@code listfolder}, {@code createfolder}, {@code deletefolder},
+ * {@code deletefolderrecursive}, {@code renamefolder}, {@code copyfolder}, {@code stat}, {@code uploadfile},
+ * {@code upload_create}, {@code upload_write}, {@code upload_info}, {@code upload_save}, {@code deletefile}, {@code renamefile},
+ * {@code copyfile}, {@code checksumfile}, {@code getfilelink}, {@code getthumb} and {@code getthumblink}.
+ * Authentication is not checked.
+ * <p>
+ * Network conditions can be simulated by a fixed latency with random jitter before each response,
+ * a bandwidth limit applied to request and response bodies, and failures injected at a given rate.
+ * All randomness comes from a seeded generator, so that runs with the same seed see the same conditions.
+ *
+ * <pre>
+ * FakePCloudServer server = FakePCloudServer.newBuilder()
+ *         .latency(20, TimeUnit.MILLISECONDS)
+ *         .bandwidth(10 * 1024 * 1024)
+ *         .failureRate(0.01)
+ *         .create();
+ * server.start();
+ * server.fileSystem().putFile("/report.pdf", data);
+ * ApiClient apiClient = PCloudSdk.newClientBuilder().apiHost(server.apiHost()).create();
+ * </pre>
+ */
+public final class FakePCloudServer implements Closeable {
+
+    /**
+     * The kinds of failures that can be injected.
+     */
+    public enum Failure {
+        /**
+         * Respond with an HTTP {@code 500} status code.
+         */
+        HTTP_ERROR,
+        /**
+         * Respond with an API error in an otherwise successful response.
+         */
+        API_ERROR,
+        /**
+         * Close the connection without responding.
+         */
+        DISCONNECT
+    }
+
+    private static final long THROTTLE_PERIOD_MS = 100;
+
+    private final FakeFileSystem fileSystem;
+    private final long latencyMs;
+    private final long latencyJitterMs;
+    private final long bytesPerSecond;
+    private final double failureRate;
+    private final Failure[] failures;
+    private final Random random;
+    private final MockWebServer server = new MockWebServer();
+    private final FakeApi api;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger injectedFailureCount = new AtomicInteger();
+    private volatile boolean started;
+
+    private FakePCloudServer(Builder builder) {
+        this.fileSystem = builder.fileSystem != null ? builder.fileSystem : new FakeFileSystem();
+        this.latencyMs = builder.latencyMs;
+        this.latencyJitterMs = builder.latencyJitterMs;
+        this.bytesPerSecond = builder.bytesPerSecond;
+        this.failureRate = builder.failureRate;
+        this.failures = builder.failures.toArray(new Failure[0]);
+        this.random = new Random(builder.seed);
+        this.api = new FakeApi(fileSystem, System::currentTimeMillis);
+        server.setDispatcher(new ServerDispatcher());
+    }
+
+    /**
+     * @return a new server with no simulated latency, bandwidth limit or failures
+     */
+    public static FakePCloudServer create() {
+        return newBuilder().create();
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Start listening on a free loopback port.
+     *
+     * @throws IOException if the server cannot be bound
+     */
+    public void start() throws IOException {
+        server.start(InetAddress.getLoopbackAddress(), 0);
+        started = true;
+    }
+
+    /**
+     * @return the base URL of the server, to be passed to {@code ApiClient.Builder.apiHost(String)}
+     * @throws IllegalStateException if the server has not been started
+     */
+    public String apiHost() {
+        if (!started) {
+            throw new IllegalStateException("Server has not been started.");
+        }
+        return "http://" + server.getHostName() + ":" + server.getPort();
+    }
+
+    /**
+     * @return the file tree served by this server
+     */
+    public FakeFileSystem fileSystem() {
+        return fileSystem;
+    }
+
+    /**
+     * @return the number of requests received so far, including the ones failed on purpose
+     */
+    public int requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return the number of requests that have been failed on purpose so far
+     */
+    public int injectedFailureCount() {
+        return injectedFailureCount.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    private MockResponse simulateConditions(MockResponse response) {
+        long delay = latencyMs;
+        if (latencyJitterMs > 0) {
+            synchronized (random) {
+                delay += (long) (random.nextDouble() * latencyJitterMs);
+            }
+        }
+        if (delay > 0) {
+            response.setHeadersDelay(delay, TimeUnit.MILLISECONDS);
+        }
+        return throttle(response);
+    }
+
+    private MockResponse throttle(MockResponse response) {
+        if (bytesPerSecond > 0) {
+            long bytesPerPeriod = Math.max(1, bytesPerSecond * THROTTLE_PERIOD_MS / TimeUnit.SECONDS.toMillis(1));
+            response.throttleBody(bytesPerPeriod, THROTTLE_PERIOD_MS, TimeUnit.MILLISECONDS);
+        }
+        return response;
+    }
+
+    private Failure nextFailure() {
+        if (failureRate <= 0) {
+            return null;
+        }
+        synchronized (random) {
+            return random.nextDouble() < failureRate ? failures[random.nextInt(failures.length)] : null;
+        }
+    }
+
+    private class ServerDispatcher extends Dispatcher {
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            // Requests are not kept for inspection, a load test would otherwise keep every uploaded byte in memory.
+            try {
+                while (server.takeRequest(0, TimeUnit.NANOSECONDS) != null) {
+                    // Discard.
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            requestCount.incrementAndGet();
+
+            Failure failure = nextFailure();
+            MockResponse response;
+            if (failure == null) {
+                response = api.handle(request);
+            } else {
+                injectedFailureCount.incrementAndGet();
+                switch (failure) {
+                    case HTTP_ERROR:
+                        response = new MockResponse().setResponseCode(500);
+                        break;
+                    case API_ERROR:
+                        response = FakeApi.error(FakeApiException.INTERNAL_ERROR, "Internal error. Try again later.");
+                        break;
+                    default:
+                        response = new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+                }
+            }
+            return simulateConditions(response);
+        }
+
+        @Override
+        public MockResponse peek() {
+            // Consulted before a request is read, limits the upload bandwidth as well.
+            return throttle(new MockResponse().setSocketPolicy(SocketPolicy.KEEP_OPEN));
+        }
+    }
+
+    /**
+     * A builder for {@link FakePCloudServer} instances.
+     */
+    public static final class Builder {
+
+        private FakeFileSystem fileSystem;
+        private long latencyMs;
+        private long latencyJitterMs;
+        private long bytesPerSecond;
+        private double failureRate;
+        private Set<Failure> failures = EnumSet.allOf(Failure.class);
+        private long seed;
+
+        private Builder() {
+        }
+
+        /**
+         * Serve an existing file tree instead of a new, empty one.
+         *
+         * @param fileSystem the file tree to serve
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException on a null {@code fileSystem} argument
+         */
+        public Builder fileSystem(FakeFileSystem fileSystem) {
+            if (fileSystem == null) {
+                throw new IllegalArgumentException("File system argument cannot be null.");
+            }
+            this.fileSystem = fileSystem;
+            return this;
+        }
+
+        /**
+         * Delay every response by a fixed amount of time.
+         *
+         * @param latency the delay, can be zero
+         * @param unit    the unit of {@code latency}
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException on a negative {@code latency} or a null {@code unit} argument
+         */
+        public Builder latency(long latency, TimeUnit unit) {
+            this.latencyMs = toMillis(latency, unit);
+            return this;
+        }
+
+        /**
+         * Add a random delay, uniformly distributed between zero and the given maximum, to every response.
+         *
+         * @param maxJitter the maximum additional delay, can be zero
+         * @param unit      the unit of {@code maxJitter}
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException on a negative {@code maxJitter} or a null {@code unit} argument
+         */
+        public Builder latencyJitter(long maxJitter, TimeUnit unit) {
+            this.latencyJitterMs = toMillis(maxJitter, unit);
+            return this;
+        }
+
+        /**
+         * Limit the transfer rate of every request and response body.
+         * <p>
+         * The limit applies to each connection separately.
+         *
+         * @param bytesPerSecond the maximum transfer rate, or {@code 0} for no limit
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException on a negative {@code bytesPerSecond} argument
+         */
+        public Builder bandwidth(long bytesPerSecond) {
+            if (bytesPerSecond < 0) {
+                throw new IllegalArgumentException("Bandwidth cannot be negative.");
+            }
+            this.bytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /**
+         * Fail a fraction of the requests with one of the given kinds of failures, picked at random.
+         *
+         * @param failureRate the fraction of requests to fail, from {@code 0} to {@code 1}
+         * @param failures    the kinds of failures to inject, all of them if none are given
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code failureRate} is not in the {@code [0, 1]} range
+         */
+        public Builder failureRate(double failureRate, Failure... failures) {
+            if (!(failureRate >= 0 && failureRate <= 1)) {
+                throw new IllegalArgumentException("Failure rate must be in the [0, 1] range.");
+            }
+            this.failureRate = failureRate;
+            this.failures = failures.length > 0 ?
+                    EnumSet.copyOf(Arrays.asList(failures)) : EnumSet.allOf(Failure.class);
+            return this;
+        }
+
+        /**
+         * Set the seed of the random generator behind latency jitter and failure injection.
+         *
+         * @param seed the seed, {@code 0} by default
+         * @return the same {@link Builder} instance
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public FakePCloudServer create() {
+            return new FakePCloudServer(this);
+        }
+
+        private static long toMillis(long duration, TimeUnit unit) {
+            if (duration < 0) {
+                throw new IllegalArgumentException("Duration cannot be negative.");
+            }
+            if (unit == null) {
+                throw new IllegalArgumentException("TimeUnit argument cannot be null.");
+            }
+            return unit.toMillis(duration);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.fake;
+
+import com.pcloud.sdk.ApiClient;
+import com.pcloud.sdk.ApiError;
+import com.pcloud.sdk.Checksums;
+import com.pcloud.sdk.ChunkedUploadOptions;
+import com.pcloud.sdk.ContentIndex;
+import com.pcloud.sdk.DataSink;
+import com.pcloud.sdk.DataSource;
+import com.pcloud.sdk.DownloadOptions;
+import com.pcloud.sdk.FileLink;
+import com.pcloud.sdk.PCloudSdk;
+import com.pcloud.sdk.RemoteEntry;
+import com.pcloud.sdk.RemoteFile;
+import com.pcloud.sdk.RemoteFolder;
+import com.pcloud.sdk.Resolution;
+import com.pcloud.sdk.SegmentedDownloadOptions;
+import com.pcloud.sdk.UploadOptions;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FakePCloudServerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FakePCloudServer server;
+    private ApiClient apiClient;
+
+    @Before
+    public void setUp() throws Exception {
+        start(FakePCloudServer.create());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        apiClient.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void listFolder_Returns_Seeded_Tree() throws Exception {
+        server.fileSystem().putFile("/Documents/report.txt", "report".getBytes());
+        server.fileSystem().createFolder("/Documents/Archive");
+
+        RemoteFolder root = apiClient.listFolder(RemoteFolder.ROOT_FOLDER_ID, true).execute();
+
+        assertEquals(1, root.children().size());
+        RemoteFolder documents = root.children().get(0).asFolder();
+        assertEquals("Documents", documents.name());
+        assertEquals(2, documents.children().size());
+        RemoteFile report = apiClient.loadFile("/Documents/report.txt").execute();
+        assertEquals(6, report.size());
+        assertEquals(documents.folderId(), report.parentFolderId());
+    }
+
+    @Test
+    public void createFile_Content_Can_Be_Downloaded() throws Exception {
+        byte[] content = randomBytes(100_000);
+
+        RemoteFile file = apiClient.createFile(RemoteFolder.ROOT_FOLDER_ID, "data.bin", DataSource.create(content)).execute();
+
+        assertArrayEquals(content, server.fileSystem().readFile("/data.bin"));
+        assertArrayEquals(content, apiClient.download(file).execute().readByteArray());
+    }
+
+    @Test
+    public void verified_Upload_And_Download_Round_Trip() throws Exception {
+        byte[] content = randomBytes(100_000);
+        UploadOptions options = UploadOptions.create().verifyChecksum(true).build();
+
+        RemoteFile file = apiClient.createFile(RemoteFolder.ROOT_FOLDER_ID, "verified.bin",
+                DataSource.create(content), null, null, options).execute();
+        Buffer downloaded = new Buffer();
+        apiClient.download(file, new DataSink() {
+            @Override
+            public void readAll(BufferedSource source) throws IOException {
+                source.readAll(downloaded);
+            }
+        }, null, true).execute();
+
+        assertArrayEquals(content, downloaded.readByteArray());
+    }
+
+    @Test
+    public void createFileInChunks_Assembles_Chunks() throws Exception {
+        byte[] content = randomBytes(5 * (int) ChunkedUploadOptions.MIN_CHUNK_SIZE + 123);
+        ChunkedUploadOptions options = ChunkedUploadOptions.create()
+                .chunkSize(ChunkedUploadOptions.MIN_CHUNK_SIZE)
+                .parallelism(3)
+                .build();
+
+        RemoteFile file = apiClient.createFileInChunks(RemoteFolder.ROOT_FOLDER_ID, "chunked.bin",
+                DataSource.create(content), null, null, options).execute();
+
+        assertEquals(content.length, file.size());
+        assertArrayEquals(content, server.fileSystem().readFile(file.fileId()));
+    }
+
+    @Test
+    public void segmented_Download_Uses_Ranges() throws Exception {
+        byte[] content = randomBytes(3 * (int) SegmentedDownloadOptions.MIN_SEGMENT_SIZE + 17);
+        long fileId = server.fileSystem().putFile("/big.bin", content);
+        File target = temporaryFolder.newFile();
+        SegmentedDownloadOptions options = SegmentedDownloadOptions.create()
+                .segmentSize(SegmentedDownloadOptions.MIN_SEGMENT_SIZE)
+                .parallelism(2)
+                .build();
+
+        RemoteFile file = apiClient.loadFile(fileId).execute();
+        apiClient.download(file, target, null, options).execute();
+
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void replaced_File_Invalidates_Links() throws Exception {
+        long fileId = server.fileSystem().putFile("/file.txt", "old".getBytes());
+        FileLink link = apiClient.createFileLink(fileId, DownloadOptions.DEFAULT).execute();
+        server.fileSystem().putFile("/file.txt", "new".getBytes());
+
+        try {
+            apiClient.download(link).execute().readByteArray();
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals("new", apiClient.download(apiClient.loadFile(fileId).execute()).execute().readUtf8());
+    }
+
+    @Test
+    public void copy_Move_And_Delete_Change_The_Tree() throws Exception {
+        long fileId = server.fileSystem().putFile("/a/file.txt", "content".getBytes());
+        long folderB = server.fileSystem().createFolder("/b");
+
+        apiClient.copyFile(fileId, folderB).execute();
+        apiClient.moveFile("/a/file.txt", "/b/moved.txt").execute();
+        RemoteFolder copy = apiClient.copyFolder(folderB, server.fileSystem().createFolder("/c")).execute();
+        apiClient.deleteFolder("/a").execute();
+
+        assertEquals("b", copy.name());
+        assertTrue(server.fileSystem().exists("/b/file.txt"));
+        assertTrue(server.fileSystem().exists("/b/moved.txt"));
+        assertTrue(server.fileSystem().exists("/c/b/moved.txt"));
+        assertFalse(server.fileSystem().exists("/a"));
+        assertTrue(apiClient.deleteFile(fileId).execute());
+        assertFalse(server.fileSystem().exists("/b/moved.txt"));
+    }
+
+    @Test
+    public void missing_File_Reports_ApiError() throws Exception {
+        try {
+            apiClient.loadFile("/missing.txt").execute();
+            fail();
+        } catch (ApiError e) {
+            assertEquals(FakeApiException.FILE_NOT_FOUND, e.errorCode());
+        }
+    }
+
+    @Test
+    public void checksums_Match_Content() throws Exception {
+        byte[] content = randomBytes(1000);
+        long fileId = server.fileSystem().putFile("/file.bin", content);
+
+        Checksums checksums = apiClient.getChecksums(fileId).execute();
+
+        assertEquals(ByteString.of(content).sha256(), checksums.getSha256());
+        assertEquals(ByteString.of(content).sha1(), checksums.getSha1());
+    }
+
+    @Test
+    public void thumbnail_Is_Served() throws Exception {
+        long fileId = server.fileSystem().putFile("/photo.jpg", randomBytes(1000));
+
+        byte[] thumbnail = apiClient.getThumbnail(fileId, new Resolution(256, 256), false).execute().readByteArray();
+
+        assertTrue(thumbnail.length > 0);
+        assertNotNull(apiClient.getThumbnailLink(fileId, new Resolution(256, 256), false).execute().bestUrl());
+    }
+
+    @Test
+    public void latency_Delays_Responses() throws Exception {
+        restart(FakePCloudServer.newBuilder().latency(200, TimeUnit.MILLISECONDS));
+
+        long start = System.nanoTime();
+        apiClient.listFolder(RemoteFolder.ROOT_FOLDER_ID).execute();
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 200);
+    }
+
+    @Test
+    public void failures_Are_Injected_At_The_Given_Rate() throws Exception {
+        restart(FakePCloudServer.newBuilder().failureRate(1, FakePCloudServer.Failure.API_ERROR));
+
+        try {
+            apiClient.listFolder(RemoteFolder.ROOT_FOLDER_ID).execute();
+            fail();
+        } catch (ApiError e) {
+            assertEquals(FakeApiException.INTERNAL_ERROR, e.errorCode());
+        }
+        assertEquals(1, server.injectedFailureCount());
+        assertEquals(1, server.requestCount());
+    }
+
+    @Test
+    public void disconnects_Are_Injected() throws Exception {
+        restart(FakePCloudServer.newBuilder().failureRate(1, FakePCloudServer.Failure.DISCONNECT));
+
+        try {
+            apiClient.listFolder(RemoteFolder.ROOT_FOLDER_ID).execute();
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    private void restart(FakePCloudServer.Builder builder) throws IOException {
+        tearDown();
+        start(builder.create());
+    }
+
+    @Test
+    public void content_Index_Turns_Uploads_Of_Known_Content_Into_Copies() throws Exception {
+        byte[] content = randomBytes(4096);
+        long seededId = server.fileSystem().putFile("/seed.bin", content);
+        server.fileSystem().createFolder("/b");
+        ContentIndex index = PCloudSdk.newContentIndex(16);
+        ApiClient indexingClient = apiClient.newBuilder().contentIndex(index).create();
+        assertTrue(index.put(indexingClient.getChecksums(seededId).execute()));
+
+        final AtomicInteger reads = new AtomicInteger();
+        DataSource data = new DataSource() {
+            @Override
+            public long contentLength() {
+                return content.length;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                reads.incrementAndGet();
+                sink.write(content);
+            }
+        };
+        RemoteFile copy = indexingClient.createFile("/b", "copy.bin", data).execute();
+
+        // Read once to be digested, but never uploaded.
+        assertEquals(1, reads.get());
+        assertEquals("copy.bin", copy.name());
+        assertArrayEquals(content, server.fileSystem().readFile("/b/copy.bin"));
+    }
+
+    private void start(FakePCloudServer server) throws IOException {
+        this.server = server;
+        server.start();
+        apiClient = PCloudSdk.newClientBuilder()
+                .apiHost(server.apiHost())
+                .create();
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
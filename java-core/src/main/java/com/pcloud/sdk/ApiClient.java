@@ -17,8 +17,11 @@
 
 package com.pcloud.sdk;
 
+import java.io.File;
 import java.net.URL;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
@@ -103,6 +106,63 @@ public interface ApiClient {
      */
     Call<RemoteFolder> listFolder(String path, boolean recursively);
 
+    /**
+     * Stream the listing of a specified folder.
+     * <p>
+     * Unlike {@link #listFolder(long, boolean)}, the response is read incrementally and every entry
+     * is passed to the {@code visitor} as soon as it arrives, without building the folder tree in memory.
+     * This is the preferred way of walking large folder trees.
+     * <p>
+     * The visitor is invoked on the thread executing the call, before the call completes.
+     * <p>
+     * For more information, see the related <a href="https://docs.pcloud.com/methods/folder/listfolder.html" target="_blank">documentation page</a>.
+     *
+     * @param folderId    target folder id
+     * @param recursively if true, the whole folder tree will be visited, otherwise only the folder and its direct children
+     * @param visitor     the {@link RemoteEntryVisitor} receiving the listed entries
+     * @return {@link Call} completing once all entries have been visited
+     * @throws IllegalArgumentException on a null {@code visitor} argument.
+     */
+    Call<Void> listFolder(long folderId, boolean recursively, RemoteEntryVisitor visitor);
+
+    /**
+     * Stream the listing of a specified folder.
+     * <p>
+     * Same as {@link #listFolder(long, boolean, RemoteEntryVisitor)}, with the folder specified by its path.
+     *
+     * @param path        target folder path
+     * @param recursively if true, the whole folder tree will be visited, otherwise only the folder and its direct children
+     * @param visitor     the {@link RemoteEntryVisitor} receiving the listed entries
+     * @return {@link Call} completing once all entries have been visited
+     * @throws IllegalArgumentException on a null or empty {@code path} argument.
+     * @throws IllegalArgumentException on a null {@code visitor} argument.
+     */
+    Call<Void> listFolder(String path, boolean recursively, RemoteEntryVisitor visitor);
+
+    /**
+     * Load the whole folder tree under a specified folder into a {@link RemoteFolderTree}.
+     * <p>
+     * The result holds the same information as a recursive {@link #listFolder(long, boolean)},
+     * but takes a fraction of the memory, which makes it suitable for keeping the trees of large accounts in memory.
+     * <p>
+     * For more information, see the related <a href="https://docs.pcloud.com/methods/folder/listfolder.html" target="_blank">documentation page</a>.
+     *
+     * @param folderId target folder id
+     * @return {@link Call} resulting in a {@link RemoteFolderTree} rooted at the requested folder
+     */
+    Call<RemoteFolderTree> loadFolderTree(long folderId);
+
+    /**
+     * Load the whole folder tree under a specified folder into a {@link RemoteFolderTree}.
+     * <p>
+     * Same as {@link #loadFolderTree(long)}, with the folder specified by its path.
+     *
+     * @param path target folder path
+     * @return {@link Call} resulting in a {@link RemoteFolderTree} rooted at the requested folder
+     * @throws IllegalArgumentException on a null or empty {@code path} argument.
+     */
+    Call<RemoteFolderTree> loadFolderTree(String path);
+
     /**
      * Create a new folder.
      * <p>Create a new folder in the specified folder</p>
@@ -465,6 +525,9 @@ public interface ApiClient {
      * <p>
      * To create an empty file, call the method with a {@link DataSource#EMPTY} argument.
      * <p>
+     * Data of unknown length, such as a {@link PipedDataSource}, is sent through an upload session as if calling
+     * {@link #createFileInChunks(long, String, DataSource, Date, ProgressListener, ChunkedUploadOptions)}, reporting progress with a {@code total} of {@code -1}.
+     * <p>
      * For more information, see the related <a href="https://docs.pcloud.com/methods/file/uploadfile.html" target="_blank">documentation page</a>.
      *
      * @param folderId     The id of the folder you would like to create the file.
@@ -496,6 +559,9 @@ public interface ApiClient {
      * <p>
      * To create an empty file, call the method with a {@link DataSource#EMPTY} argument.
      * <p>
+     * Data of unknown length, such as a {@link PipedDataSource}, is sent through an upload session as if calling
+     * {@link #createFileInChunks(long, String, DataSource, Date, ProgressListener, ChunkedUploadOptions)}, reporting progress with a {@code total} of {@code -1}.
+     * <p>
      * For more information, see the related <a href="https://docs.pcloud.com/methods/file/uploadfile.html" target="_blank">documentation page</a>.
      *
      * @param folderId      The id of the folder you would like to create the file.
@@ -574,6 +640,9 @@ public interface ApiClient {
      * <p>
      * To create an empty file, call the method with a {@link DataSource#EMPTY} argument.
      * <p>
+     * Data of unknown length, such as a {@link PipedDataSource}, is sent through an upload session as if calling
+     * {@link #createFileInChunks(long, String, DataSource, Date, ProgressListener, ChunkedUploadOptions)}, reporting progress with a {@code total} of {@code -1}.
+     * <p>
      * For more information, see the related <a href="https://docs.pcloud.com/methods/file/uploadfile.html" target="_blank">documentation page</a>.
      *
      * @param path         The path of the folder you would like to create the file.
@@ -606,6 +675,9 @@ public interface ApiClient {
      * <p>
      * To create an empty file, call the method with a {@link DataSource#EMPTY} argument.
      * <p>
+     * Data of unknown length, such as a {@link PipedDataSource}, is sent through an upload session as if calling
+     * {@link #createFileInChunks(long, String, DataSource, Date, ProgressListener, ChunkedUploadOptions)}, reporting progress with a {@code total} of {@code -1}.
+     * <p>
      * For more information, see the related <a href="https://docs.pcloud.com/methods/file/uploadfile.html" target="_blank">documentation page</a>.
      *
      * @param path          The path of the folder you would like to create the file.
@@ -625,6 +697,133 @@ public interface ApiClient {
      */
     Call<RemoteFile> createFile(String path, String filename, DataSource data, Date modifiedDate, ProgressListener listener, UploadOptions uploadOptions);
 
+    /**
+     * Create a new file through an upload session.
+     * <p>
+     * Same as calling {@link #createFileInChunks(long, String, DataSource, Date, ProgressListener, ChunkedUploadOptions)} with {@code folderId} taken from {@linkplain RemoteFolder#folderId()}.
+     *
+     * @param folder         The folder you would like to create the file in. Must not be null.
+     * @param filename       The file name. Must not be null.
+     * @param data           {@link DataSource} object providing the file content. Must not be null.
+     * @param modifiedDate   The last modification date to be used. If set to {@code null}, the upload date will be used instead.
+     * @param listener       The listener to be used to notify about upload progress. If null, no progress will be reported.
+     * @param uploadOptions  {@link ChunkedUploadOptions} to be used for the file creation. Must not be null.
+     * @return {@link Call} resulting in the new file's metadata
+     * @throws IllegalArgumentException on a null {@code folder} argument.
+     * @throws IllegalArgumentException on a null {@code filename} argument.
+     * @throws IllegalArgumentException on a null {@code data} argument.
+     * @throws IllegalArgumentException on a null {@code uploadOptions} argument.
+     * @see #createFileInChunks(long, String, DataSource, Date, ProgressListener, ChunkedUploadOptions)
+     */
+    Call<RemoteFile> createFileInChunks(RemoteFolder folder, String filename, DataSource data, Date modifiedDate, ProgressListener listener, ChunkedUploadOptions uploadOptions);
+
+    /**
+     * Create a new file through an upload session.
+     * <p>
+     * Creates a new file with the specified name in the specified folder.
+     * <p>
+     * Unlike {@link #createFile(long, String, DataSource, Date, ProgressListener, UploadOptions)}, the content
+     * is not sent in a single request. An upload session is opened and the {@link DataSource} contents are split into
+     * chunks of {@link ChunkedUploadOptions#chunkSize()} bytes, which are written at their offsets by up to
+     * {@link ChunkedUploadOptions#parallelism()} concurrent requests. A chunk failing with a network error is resent
+     * on its own, without discarding the chunks the server has already acknowledged.
+     * Once all chunks are written, the session is saved as a file.
+     * <p>
+     * The {@link DataSource} is read once, from start to end, holding no more than {@code parallelism + 1} chunks in memory.
+     * <p>
+     * A failed upload can be resumed by executing a {@link Call#clone()} of the call. The clone reuses the upload
+     * session if it has not expired, reads the {@link DataSource} again and sends only the chunks that were not
+     * acknowledged yet, so the {@link DataSource} must be able to provide its data more than once.
+     * <p>
+     * If set, the {@code modifiedDate} parameter will be set as the last modification date of the file.
+     * <p>
+     * If a {@link ProgressListener} is provided, it will be notified as chunks get acknowledged by the server,
+     * but not more often than every {@code n} bytes, as set per {@link Builder#progressCallbackThreshold(long)}.
+     * <p>
+     * For more information, see the related <a href="https://docs.pcloud.com/methods/upload/" target="_blank">documentation page</a>.
+     *
+     * @param folderId      The id of the folder you would like to create the file.
+     * @param filename      The file name. Must not be null.
+     * @param data          {@link DataSource} object providing the file content. Must not be null.
+     * @param modifiedDate  The last modification date to be used. If set to {@code null}, the upload date will be used instead.
+     * @param listener      The listener to be used to notify about upload progress. If null, no progress will be reported.
+     * @param uploadOptions {@link ChunkedUploadOptions} to be used for the file creation. Must not be null.
+     * @return {@link Call} resulting in the new file's metadata
+     * @throws IllegalArgumentException on a null {@code filename} argument.
+     * @throws IllegalArgumentException on a null {@code data} argument.
+     * @throws IllegalArgumentException on a null {@code uploadOptions} argument.
+     * @see DataSource
+     * @see ProgressListener
+     * @see ChunkedUploadOptions
+     */
+    Call<RemoteFile> createFileInChunks(long folderId, String filename, DataSource data, Date modifiedDate, ProgressListener listener, ChunkedUploadOptions uploadOptions);
+
+    /**
+     * Create a new file through an upload session.
+     * <p>
+     * Same as {@link #createFileInChunks(long, String, DataSource, Date, ProgressListener, ChunkedUploadOptions)},
+     * with the parent folder being specified by its path.
+     *
+     * @param path          The path of the folder you would like to create the file.
+     * @param filename      The file name. Must not be null.
+     * @param data          {@link DataSource} object providing the file content. Must not be null.
+     * @param modifiedDate  The last modification date to be used. If set to {@code null}, the upload date will be used instead.
+     * @param listener      The listener to be used to notify about upload progress. If null, no progress will be reported.
+     * @param uploadOptions {@link ChunkedUploadOptions} to be used for the file creation. Must not be null.
+     * @return {@link Call} resulting in the new file's metadata
+     * @throws IllegalArgumentException on a null or empty {@code path} argument.
+     * @throws IllegalArgumentException on a null {@code filename} argument.
+     * @throws IllegalArgumentException on a null {@code data} argument.
+     * @throws IllegalArgumentException on a null {@code uploadOptions} argument.
+     * @see #createFileInChunks(long, String, DataSource, Date, ProgressListener, ChunkedUploadOptions)
+     */
+    Call<RemoteFile> createFileInChunks(String path, String filename, DataSource data, Date modifiedDate, ProgressListener listener, ChunkedUploadOptions uploadOptions);
+
+    /**
+     * Create many new files in the same folder.
+     * <p>
+     * Creates a new file for every entry of {@code files}, named after the entry's key and populated from its {@link DataSource}.
+     * <p>
+     * Unlike calling {@link #createFile(long, String, DataSource, UploadOptions)} for every file, several files are packed
+     * as parts of the same {@code uploadfile} request, saving a round trip to the API for each of them. A request carries
+     * no more than {@link BatchUploadOptions#maxFilesPerRequest()} files and, unless a single file is larger,
+     * no more than {@link BatchUploadOptions#maxBytesPerRequest()} bytes of file data. The requests are sent one after another.
+     * <p>
+     * If a request fails, the call fails and the files from the preceding requests are left created. If there are any,
+     * the call fails with a {@link BatchUploadException} listing them, caused by the error of the failed request.
+     * <p>
+     * For more information, see the related <a href="https://docs.pcloud.com/methods/file/uploadfile.html" target="_blank">documentation page</a>.
+     *
+     * @param folderId      The id of the folder you would like to create the files in.
+     * @param files         The file names, mapped to {@link DataSource} objects providing the file contents. Must not be null or empty.
+     * @param uploadOptions {@link BatchUploadOptions} to be used for the file creation. Must not be null.
+     * @return {@link Call} resulting in the metadata of the new files, in the iteration order of {@code files}
+     * @throws IllegalArgumentException on a null or empty {@code files} argument.
+     * @throws IllegalArgumentException on a null file name or {@link DataSource} in {@code files}.
+     * @throws IllegalArgumentException on a {@link DataSource} of unknown length in {@code files}.
+     * @throws IllegalArgumentException on a null {@code uploadOptions} argument.
+     * @see BatchUploadOptions
+     */
+    Call<List<RemoteFile>> createFiles(long folderId, Map<String, DataSource> files, BatchUploadOptions uploadOptions);
+
+    /**
+     * Create many new files in the same folder.
+     * <p>
+     * Same as {@link #createFiles(long, Map, BatchUploadOptions)}, with the parent folder being specified by its path.
+     *
+     * @param path          The path of the folder you would like to create the files in.
+     * @param files         The file names, mapped to {@link DataSource} objects providing the file contents. Must not be null or empty.
+     * @param uploadOptions {@link BatchUploadOptions} to be used for the file creation. Must not be null.
+     * @return {@link Call} resulting in the metadata of the new files, in the iteration order of {@code files}
+     * @throws IllegalArgumentException on a null or empty {@code path} argument.
+     * @throws IllegalArgumentException on a null or empty {@code files} argument.
+     * @throws IllegalArgumentException on a null file name or {@link DataSource} in {@code files}.
+     * @throws IllegalArgumentException on a {@link DataSource} of unknown length in {@code files}.
+     * @throws IllegalArgumentException on a null {@code uploadOptions} argument.
+     * @see #createFiles(long, Map, BatchUploadOptions)
+     */
+    Call<List<RemoteFile>> createFiles(String path, Map<String, DataSource> files, BatchUploadOptions uploadOptions);
+
 
     /**
      * Delete a specified file.
@@ -807,6 +1006,28 @@ public interface ApiClient {
      */
     Call<BufferedSource> download(RemoteFile file);
 
+    /**
+     * Download a file to a {@link DataSink}, optionally verifying its contents.
+     * <p>
+     * A download link for the file is created and its contents are passed to {@link DataSink#readAll(BufferedSource, long)}.
+     * <p>
+     * If {@code verifyChecksum} is {@code true}, the checksums of the file are requested before the download and
+     * the SHA-256 digest of the data (or the SHA-1 digest, where SHA-256 is not available) is computed while it is read.
+     * The call fails with an {@link java.io.IOException} if the digest does not match, after the sink has consumed the data.
+     * <p>
+     * If a {@link ProgressListener} is provided, it will be notified on every {@code n} bytes downloaded, as set per {@link Builder#progressCallbackThreshold(long)}
+     *
+     * @param file           the file to be downloaded. Must not be null.
+     * @param sink           the sink to write the data to. Must not be null.
+     * @param listener       the listener to be used to notify about download progress. If null, no progress will be reported.
+     * @param verifyChecksum {@code true} to verify the downloaded data, {@code false} otherwise
+     * @return {@link Call} completing once the data is written to the sink
+     * @throws IllegalArgumentException on a null {@code file} argument.
+     * @throws IllegalArgumentException on a null {@code sink} argument.
+     * @see #getChecksums(long)
+     */
+    Call<Void> download(RemoteFile file, DataSink sink, ProgressListener listener, boolean verifyChecksum);
+
     /**
      * Get the content of a specified content link.
      * <p>
@@ -839,6 +1060,102 @@ public interface ApiClient {
      */
     Call<BufferedSource> download(ContentLink fileLink, URL linkVariant);
 
+    /**
+     * Download a {@link ContentLink} to a local file in segments.
+     * <p>
+     * The file is split in segments of {@link SegmentedDownloadOptions#segmentSize()} bytes, which are
+     * requested with {@code Range} requests by up to {@link SegmentedDownloadOptions#parallelism()} concurrent
+     * connections, spread over all of the {@link ContentLink#urls()}. A request that fails with a network error
+     * is continued from its last received byte on the next URL of the link.
+     * <p>
+     * The {@code target} file is created if needed and resized to {@code contentLength} bytes,
+     * its contents are undefined if the call fails.
+     * <p>
+     * See {@link Builder#progressCallbackThreshold(long)} for details on
+     * how to control the progress notifications rate.
+     * <p>
+     * If set via {@link Builder#callbackExecutor(Executor)}, the progress listener's
+     * methods will be scheduled on the provided Executor.
+     *
+     * @param fileLink      the file link to be downloaded. Must not be null.
+     * @param contentLength the exact size of the linked content, in bytes, as returned by {@link RemoteFile#size()}.
+     * @param target        the file that will receive the data. Must not be null.
+     * @param listener      an optional listener that will get notified on progress. If null, no progress will be reported.
+     * @param options       {@link SegmentedDownloadOptions} to be used for the download. Must not be null.
+     * @return a void {@link Call} which will return on success, or report an error otherwise.
+     * @throws IllegalArgumentException on a null {@code fileLink} argument.
+     * @throws IllegalArgumentException on a negative {@code contentLength} argument.
+     * @throws IllegalArgumentException on a null {@code target} argument.
+     * @throws IllegalArgumentException on a null {@code options} argument.
+     * @see SegmentedDownloadOptions
+     * @see ProgressListener
+     */
+    Call<Void> download(ContentLink fileLink, long contentLength, File target, ProgressListener listener, SegmentedDownloadOptions options);
+
+    /**
+     * Download a {@link RemoteFile} to a local file in segments.
+     * <p>
+     * This call is a shorthand for obtaining a {@link FileLink} object via
+     * {@link #createFileLink(RemoteFile, DownloadOptions)} with {@link DownloadOptions#DEFAULT},
+     * then using it with the {@link #download(ContentLink, long, File, ProgressListener, SegmentedDownloadOptions)} method
+     * and the {@link RemoteFile#size()} of the file.
+     *
+     * @param file     the file to be downloaded. Must not be null.
+     * @param target   the file that will receive the data. Must not be null.
+     * @param listener an optional listener that will get notified on progress. If null, no progress will be reported.
+     * @param options  {@link SegmentedDownloadOptions} to be used for the download. Must not be null.
+     * @return a void {@link Call} which will return on success, or report an error otherwise.
+     * @throws IllegalArgumentException on a null {@code file} argument.
+     * @throws IllegalArgumentException on a null {@code target} argument.
+     * @throws IllegalArgumentException on a null {@code options} argument.
+     * @see #download(ContentLink, long, File, ProgressListener, SegmentedDownloadOptions)
+     */
+    Call<Void> download(RemoteFile file, File target, ProgressListener listener, SegmentedDownloadOptions options);
+
+    /**
+     * Download a remote file to a local file, continuing any previous partial download.
+     * <p>
+     * Same as calling {@link #resumeDownload(long, File, ProgressListener)} with the {@link RemoteFile#fileId()}
+     * of the provided file.
+     *
+     * @param file     the file to be downloaded. Must not be null.
+     * @param target   the file that will receive the data. Must not be null.
+     * @param listener an optional listener that will get notified on progress. If null, no progress will be reported.
+     * @return a void {@link Call} which will return on success, or report an error otherwise.
+     * @throws IllegalArgumentException on a null {@code file} argument.
+     * @throws IllegalArgumentException on a null {@code target} argument.
+     * @see #resumeDownload(long, File, ProgressListener)
+     */
+    Call<Void> resumeDownload(RemoteFile file, File target, ProgressListener listener);
+
+    /**
+     * Download a remote file to a local file, continuing any previous partial download.
+     * <p>
+     * If the {@code target} file already exists, its contents are assumed to be the beginning of the remote file
+     * and only the remaining bytes are requested, using a {@code Range} request. If the content host does not
+     * honor the range, or the existing data is longer than the remote file, the file is downloaded from the start.
+     * <p>
+     * After the download completes, the contents of the {@code target} file are verified against the SHA-256 or SHA-1
+     * checksum reported by {@link #getChecksums(long)}. On a mismatch the {@code target} file is deleted
+     * and the call fails with an {@link java.io.IOException}. The {@code target} file is left in place after any other
+     * failure so that a subsequent call can continue from where this one stopped.
+     * <p>
+     * See {@link Builder#progressCallbackThreshold(long)} for details on
+     * how to control the progress notifications rate, the reported progress includes the already present bytes.
+     * <p>
+     * If set via {@link Builder#callbackExecutor(Executor)}, the progress listener's
+     * methods will be scheduled on the provided Executor.
+     *
+     * @param fileId   the id of the file to be downloaded.
+     * @param target   the file that will receive the data. Must not be null.
+     * @param listener an optional listener that will get notified on progress. If null, no progress will be reported.
+     * @return a void {@link Call} which will return on success, or report an error otherwise.
+     * @throws IllegalArgumentException on a null {@code target} argument.
+     * @see #getChecksums(long)
+     * @see ProgressListener
+     */
+    Call<Void> resumeDownload(long fileId, File target, ProgressListener listener);
+
     /**
      * Copy a specified file.
      * <p>
@@ -1297,6 +1614,30 @@ public interface ApiClient {
      */
     int connectTimeoutMs();
 
+    /**
+     * @return the {@link Dispatcher} used for file transfers by this instance. Cannot be null.
+     * @see Builder#transferDispatcher(Dispatcher)
+     */
+    Dispatcher transferDispatcher();
+
+    /**
+     * @return the {@link ConnectionPool} used for file transfers by this instance. Cannot be null.
+     * @see Builder#transferConnectionPool(ConnectionPool)
+     */
+    ConnectionPool transferConnectionPool();
+
+    /**
+     * @return the file transfer read timeout for this instance, in milliseconds.
+     * @see Builder#transferReadTimeout(long, TimeUnit)
+     */
+    int transferReadTimeoutMs();
+
+    /**
+     * @return the file transfer write timeout for this instance, in milliseconds.
+     * @see Builder#transferWriteTimeout(long, TimeUnit)
+     */
+    int transferWriteTimeoutMs();
+
     /**
      * @return the progress updates threshold for this instance, in bytes.
      * @see Builder#progressCallbackThreshold(long)
@@ -1313,6 +1654,96 @@ public interface ApiClient {
      */
     String apiHost();
 
+    /**
+     * @return the maximum number of cached file links, {@code 0} if caching is disabled.
+     * @see Builder#fileLinkCacheSize(int)
+     */
+    int fileLinkCacheSize();
+
+    /**
+     * @return the {@link ContentIndex} specified via {@link Builder#contentIndex(ContentIndex)}, {@code null} if it was not set.
+     */
+    ContentIndex contentIndex();
+
+    /**
+     * @return the {@link BandwidthLimit} specified via {@link Builder#uploadBandwidthLimit(BandwidthLimit)}, {@code null} if it was not set.
+     */
+    BandwidthLimit uploadBandwidthLimit();
+
+    /**
+     * @return the {@link BandwidthLimit} specified via {@link Builder#downloadBandwidthLimit(BandwidthLimit)}, {@code null} if it was not set.
+     */
+    BandwidthLimit downloadBandwidthLimit();
+
+    /**
+     * @return the {@link RetryPolicy} of this instance. Cannot be null.
+     * @see Builder#retryPolicy(RetryPolicy)
+     */
+    RetryPolicy retryPolicy();
+
+    /**
+     * @return the {@link HedgingPolicy} specified via {@link Builder#hedgingPolicy(HedgingPolicy)}, {@code null} if it was not set.
+     */
+    HedgingPolicy hedgingPolicy();
+
+    /**
+     * @return the {@link ConcurrencyLimitPolicy} specified via {@link Builder#concurrencyLimitPolicy(ConcurrencyLimitPolicy)}, {@code null} if it was not set.
+     */
+    ConcurrencyLimitPolicy concurrencyLimitPolicy();
+
+    /**
+     * Get the current limit on concurrent API requests, along with the number of requests running and waiting.
+     * <p>
+     * With a {@link ConcurrencyLimitPolicy}, the limit adapts to the latency of the API and covers all
+     * API requests. Without one, the limit is the one of the {@link Dispatcher}, which applies only to
+     * calls run via {@link Call#enqueue(Callback)}. The limiter is shared with the instances
+     * created by {@link #withPriority(Priority)}. Transfers have a separate limit, set by their dispatcher.
+     *
+     * @return the {@link ConcurrencyLimiter} of the API requests of this instance. Cannot be null.
+     */
+    ConcurrencyLimiter concurrencyLimiter();
+
+    /**
+     * @return the {@link CircuitBreakerPolicy} specified via {@link Builder#circuitBreakerPolicy(CircuitBreakerPolicy)}, {@code null} if it was not set.
+     */
+    CircuitBreakerPolicy circuitBreakerPolicy();
+
+    /**
+     * @return the {@link MetricsRecorder} specified via {@link Builder#metricsRecorder(MetricsRecorder)}, {@code null} if it was not set.
+     */
+    MetricsRecorder metricsRecorder();
+
+    /**
+     * @return the {@link CallTimelineListener} specified via {@link Builder#callTimelineListener(CallTimelineListener, double)}, {@code null} if it was not set.
+     */
+    CallTimelineListener callTimelineListener();
+
+    /**
+     * Create a view of this instance that performs its calls with a given {@link Priority}.
+     * <p>
+     * When more calls are enqueued via {@link Call#enqueue(Callback)} than the {@link Dispatcher}
+     * allows to run at once, the waiting calls are started by priority instead of in the order
+     * they were enqueued, so that a user-initiated {@code listFolder()} does not wait behind a
+     * batch of prefetches or thumbnail requests. A waiting call is promoted by one priority class
+     * for every second it waits, so lower priority calls are delayed but never starved.
+     * <p>
+     * The returned instance shares the configuration and all resources of this one, including
+     * the request slots its calls compete for. Calls of this instance use {@link Priority#NORMAL}.
+     * Synchronous calls and calls that perform several requests are not affected.
+     *
+     * @param priority the priority of the calls created by the returned instance. Cannot be null.
+     * @return an {@link ApiClient} creating calls with the given priority,
+     * this instance if its priority is already the requested one.
+     * @throws IllegalArgumentException on a null {@code priority} argument.
+     */
+    ApiClient withPriority(Priority priority);
+
+    /**
+     * @return the {@link Priority} of the calls created by this instance.
+     * @see #withPriority(Priority)
+     */
+    Priority priority();
+
     /**
      * Stop this instance and cleanup resources.
      * <ul>
@@ -1341,6 +1772,7 @@ public interface ApiClient {
 
         /**
          * @param connectionPool the connectionPool used to recycle connections. If unset, a new connection pool with a default configuration will be used.
+         *                       <p>File transfers use their own pool, see {@link #transferConnectionPool(ConnectionPool)}.
          * @return the same {@link Builder} instance
          * @see ConnectionPool
          */
@@ -1348,6 +1780,7 @@ public interface ApiClient {
 
         /**
          * @param dispatcher the {@link Dispatcher} used to set policy and execute asynchronous requests. If unset, a new dispatcher with a default configuration will be used.
+         *                   <p>File transfers use their own dispatcher, see {@link #transferDispatcher(Dispatcher)}.
          * @return the same {@link Builder} instance
          * @see Dispatcher
          */
@@ -1395,6 +1828,47 @@ public interface ApiClient {
          */
         Builder connectTimeout(long timeout, TimeUnit timeUnit);
 
+        /**
+         * Set the {@link ConnectionPool} for file transfers.
+         * <p>
+         * Uploads, downloads and the API calls made as part of them are kept apart from other API calls,
+         * on a separate {@link Dispatcher} and {@link ConnectionPool}. Long transfers then neither take the
+         * request slots nor the connections of calls like {@link ApiClient#listFolder(long)}.
+         *
+         * @param connectionPool the connectionPool used to recycle transfer connections. If unset, a new connection pool with a default configuration will be used.
+         * @return the same {@link Builder} instance
+         * @see #transferDispatcher(Dispatcher)
+         */
+        Builder transferConnectionPool(ConnectionPool connectionPool);
+
+        /**
+         * Set the {@link Dispatcher} for file transfers.
+         * <p>
+         * Its limits apply to transfers only, see {@link #transferConnectionPool(ConnectionPool)}.
+         *
+         * @param dispatcher the {@link Dispatcher} executing asynchronous transfer requests. If unset, a new dispatcher with a default configuration will be used.
+         * @return the same {@link Builder} instance
+         */
+        Builder transferDispatcher(Dispatcher dispatcher);
+
+        /**
+         * @param timeout  the read timeout for file transfer connections.
+         *                 <p>A value of 0 means no timeout, otherwise values must be between 1 and
+         *                 {@link Integer#MAX_VALUE} when converted to milliseconds. If unset, the {@link #readTimeout(long, TimeUnit)} is used.
+         * @param timeUnit the unit of the {@code timeout} argument
+         * @return the same {@link Builder} instance
+         */
+        Builder transferReadTimeout(long timeout, TimeUnit timeUnit);
+
+        /**
+         * @param timeout  the write timeout for file transfer connections.
+         *                 <p>A value of 0 means no timeout, otherwise values must be between 1 and
+         *                 {@link Integer#MAX_VALUE} when converted to milliseconds. If unset, the {@link #writeTimeout(long, TimeUnit)} is used.
+         * @param timeUnit the unit of the {@code timeout} argument
+         * @return the same {@link Builder} instance
+         */
+        Builder transferWriteTimeout(long timeout, TimeUnit timeUnit);
+
         /**
          * @param authenticator the {@link Authenticator} instance to be used for authentication when making calls to pCloud's API.
          *                      <p>If set to {@code null}, no authentication will be performed.
@@ -1435,12 +1909,174 @@ public interface ApiClient {
          * <p>
          * if not specifically set, the produced {@link ApiClient} will use
          * {@code api.pcloud.com}.
+         * <p>
+         * A host given without a scheme is accessed over HTTPS. A full base URL such as
+         * {@code http://127.0.0.1:8080} can be given to target a local server, in which case
+         * file content is also requested over its scheme.
          *
          * @param apiHost a valid pCloud API host. {@code (api.pcloud.com, eapi.pcloud.com)}
          * @return the same {@link Builder} instance
          */
         Builder apiHost(String apiHost);
 
+        /**
+         * Set the maximum number of file links to be cached.
+         * <p>
+         * Links created via {@link ApiClient#createFileLink(long, DownloadOptions)} and the methods downloading
+         * a {@link RemoteFile} are cached per file and {@link DownloadOptions}, and reused until shortly before
+         * their {@link ContentLink#expirationDate()}. This saves a {@code getfilelink} request when the
+         * same file is read repeatedly. Links to files deleted or uploaded through the client are dropped.
+         * <p>
+         * A cached link may point to another content host, and expire sooner, than a newly created one.
+         * <p>
+         * If not specifically set, links are not cached and a new link is created for every request.
+         *
+         * @param maxEntries the maximum number of cached links, or {@code 0} to disable caching.
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException on a negative {@code maxEntries} argument.
+         */
+        Builder fileLinkCacheSize(int maxEntries);
+
+        /**
+         * Set a {@link ContentIndex} to turn uploads of already present content into server-side copies.
+         * <p>
+         * Before a file of known size is uploaded, its content is read once to compute its SHA-256 digest.
+         * If the index holds a file with the same digest and size, the new file is created with a
+         * {@code copyfile} request instead. The copy is checked against the indexed file and the content is
+         * uploaded after all if the indexed file no longer exists or has been changed meanwhile.
+         * The {@link DataSource} of such uploads has to be readable more than once.
+         * <p>
+         * The same index can be shared by several clients of the same account.
+         * If not specifically set, uploads are not deduplicated.
+         *
+         * @param index the index to use, or {@code null} to disable deduplication.
+         * @return the same {@link Builder} instance
+         * @see PCloudSdk#newContentIndex(int)
+         */
+        Builder contentIndex(ContentIndex index);
+
+        /**
+         * Limit the rate at which file content is uploaded.
+         * <p>
+         * The limit applies to the {@code uploadfile} and {@code upload_write} requests of the client, and
+         * is shared evenly between concurrent uploads. It can be changed via
+         * {@link BandwidthLimit#setBytesPerSecond(long)} while the client is in use.
+         * <p>
+         * If not specifically set, uploads are not limited.
+         *
+         * @param limit a limit created via {@link PCloudSdk#newBandwidthLimit(long)}, or {@code null} for no limit.
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException on a {@code limit} not created via {@link PCloudSdk#newBandwidthLimit(long)}.
+         */
+        Builder uploadBandwidthLimit(BandwidthLimit limit);
+
+        /**
+         * Limit the rate at which file content is downloaded.
+         * <p>
+         * The limit applies to all downloads from content links of the client, and is shared evenly
+         * between concurrent downloads. It can be changed via {@link BandwidthLimit#setBytesPerSecond(long)}
+         * while the client is in use.
+         * <p>
+         * If not specifically set, downloads are not limited.
+         *
+         * @param limit a limit created via {@link PCloudSdk#newBandwidthLimit(long)}, or {@code null} for no limit.
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException on a {@code limit} not created via {@link PCloudSdk#newBandwidthLimit(long)}.
+         */
+        Builder downloadBandwidthLimit(BandwidthLimit limit);
+
+        /**
+         * Set the policy for retrying requests that fail with a network error or a transient HTTP error.
+         * <p>
+         * Requests that only read data are repeated as configured, requests changing data, such as uploads
+         * and copies, only when it is safe, see {@link RetryPolicy}. Retries are transparent to the
+         * {@link Call}s of the client, which fail only when all attempts have failed.
+         * <p>
+         * If not specifically set, {@link RetryPolicy#NONE} will be used and requests are not retried.
+         *
+         * @param policy the policy to use. Cannot be null.
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException on a null {@code policy} argument.
+         */
+        Builder retryPolicy(RetryPolicy policy);
+
+        /**
+         * Enable hedging of the API requests that only read metadata.
+         * <p>
+         * A second, identical request is sent when a request is slower than usual, and the first
+         * response is used. This reduces the latency of the slowest calls at the cost of some extra
+         * requests, which are capped by the budget of the policy, see {@link HedgingPolicy}.
+         * <p>
+         * If not specifically set, requests are not hedged.
+         *
+         * @param policy the policy to use, or {@code null} to disable hedging.
+         * @return the same {@link Builder} instance
+         */
+        Builder hedgingPolicy(HedgingPolicy policy);
+
+        /**
+         * Limit the concurrent API requests adaptively.
+         * <p>
+         * The limit is lowered when the API slows down or requests fail, and raised again as it recovers,
+         * see {@link ConcurrencyLimitPolicy}. Requests over the limit wait in the client, started by
+         * {@link Priority} when enqueued, and synchronous calls block until they can run.
+         * The current state can be read via {@link ApiClient#concurrencyLimiter()}.
+         * <p>
+         * Clients sharing a {@link Dispatcher} also share a single limit, created with the policy
+         * of the first of them.
+         * <p>
+         * If not specifically set, only the limits of the {@link Dispatcher} apply.
+         *
+         * @param policy the policy to use, or {@code null} to disable the adaptive limit.
+         * @return the same {@link Builder} instance
+         */
+        Builder concurrencyLimitPolicy(ConcurrencyLimitPolicy policy);
+
+        /**
+         * Enable failing API requests fast while the API keeps failing.
+         * <p>
+         * When too many of the recent requests have failed, requests fail right away with an
+         * {@link java.io.IOException} for a while, instead of adding to the load of the API
+         * and waiting for their own timeouts, see {@link CircuitBreakerPolicy}.
+         * <p>
+         * If not specifically set, requests are always sent.
+         *
+         * @param policy the policy to use, or {@code null} to disable the circuit breaker.
+         * @return the same {@link Builder} instance
+         */
+        Builder circuitBreakerPolicy(CircuitBreakerPolicy policy);
+
+        /**
+         * Set a recorder for the latency, size and outcome of the requests made by the client.
+         * <p>
+         * Every request is reported by its API method, including retries and the {@link ApiError}s
+         * returned, see {@link MetricsRecorder}. An {@link InMemoryMetrics} created via
+         * {@link PCloudSdk#newInMemoryMetrics()} aggregates the measurements and provides snapshots of them.
+         * <p>
+         * If not specifically set, requests are not measured.
+         *
+         * @param recorder the recorder to report to, or {@code null} to disable recording.
+         * @return the same {@link Builder} instance
+         */
+        Builder metricsRecorder(MetricsRecorder recorder);
+
+        /**
+         * Set a listener for the phase-by-phase timeline of the calls made by the client.
+         * <p>
+         * For each sampled call, the listener receives the time spent waiting for a request slot, resolving
+         * the host, connecting, writing the request body and producing it, waiting for the response, reading
+         * it and deserializing it, see {@link CallTimeline}. Each HTTP call is reported on its own, so a
+         * {@link Call} performing several requests, such as a download, yields several timelines.
+         * <p>
+         * If not specifically set, timelines are not recorded.
+         *
+         * @param listener   the listener to report to, or {@code null} to disable recording.
+         * @param sampleRate the share of calls to record, greater than {@code 0} and at most {@code 1}.
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code sampleRate} is out of range.
+         */
+        Builder callTimelineListener(CallTimelineListener listener, double sampleRate);
+
         /**
          * Create a new {@link ApiClient} from the provided configuration.
          *
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+/**
+ * A limit on the rate at which file content is transferred.
+ * <p>
+ * A limit set via {@link ApiClient.Builder#uploadBandwidthLimit(BandwidthLimit)} or
+ * {@link ApiClient.Builder#downloadBandwidthLimit(BandwidthLimit)} applies to all uploads or downloads of a
+ * client, and of any client created from its {@link ApiClient#newBuilder()}. A single transfer can be limited
+ * further by passing its data through {@link #limit(DataSource)} or {@link #limit(DataSink)}.
+ * <p>
+ * Transfers sharing a limit get an even share of it, the same instance can be used for both directions and by
+ * several clients to enforce a combined limit. The rate can be changed at any time, also while transfers are
+ * running. API calls other than uploads and downloads are not limited.
+ * <p>
+ * Implementations are safe for use from multiple threads.
+ * Use {@link PCloudSdk#newBandwidthLimit(long)} to create new instances, clients only accept the instances created there.
+ */
+public interface BandwidthLimit {
+
+    /**
+     * A {@link #bytesPerSecond()} value for no limit.
+     */
+    long UNLIMITED = 0;
+
+    /**
+     * @return the allowed transfer rate in bytes per second, or {@link #UNLIMITED}
+     */
+    long bytesPerSecond();
+
+    /**
+     * Change the allowed transfer rate.
+     * <p>
+     * Running transfers adapt to the new rate shortly.
+     *
+     * @param bytesPerSecond the allowed transfer rate in bytes per second, or {@link #UNLIMITED}
+     * @throws IllegalArgumentException on a negative {@code bytesPerSecond} argument
+     */
+    void setBytesPerSecond(long bytesPerSecond);
+
+    /**
+     * Limit the rate at which the content of a {@link DataSource} is read for an upload.
+     *
+     * @param source the data to limit
+     * @return a {@link DataSource} with the same content, written at most at the rate of this limit
+     * @throws IllegalArgumentException on a null {@code source} argument
+     */
+    DataSource limit(DataSource source);
+
+    /**
+     * Limit the rate at which a {@link DataSink} receives the content of a download.
+     *
+     * @param sink the destination to limit
+     * @return a {@link DataSink} reading from downloads at most at the rate of this limit
+     * @throws IllegalArgumentException on a null {@code sink} argument
+     */
+    DataSink limit(DataSink sink);
+}
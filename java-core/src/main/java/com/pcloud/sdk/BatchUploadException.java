@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Signals that a batch upload failed after some of its files had already been created.
+ * <p>
+ * The files created by the requests preceding the failed one are left in place, they are
+ * available via {@link #uploadedFiles()}. The {@linkplain #getCause() cause} is the {@link IOException}
+ * or {@link ApiError} that failed the batch.
+ *
+ * @see ApiClient#createFiles(long, Map, BatchUploadOptions)
+ */
+public class BatchUploadException extends IOException {
+
+    private final List<RemoteFile> uploadedFiles;
+
+    public BatchUploadException(List<RemoteFile> uploadedFiles, Throwable cause) {
+        super("Batch upload failed after creating " + uploadedFiles.size() + " file(s).", cause);
+        this.uploadedFiles = Collections.unmodifiableList(uploadedFiles);
+    }
+
+    /**
+     * Returns the files created before the batch failed.
+     *
+     * @return a non-null, non-empty list of the created files, in the order of the batch
+     */
+    public List<RemoteFile> uploadedFiles() {
+        return uploadedFiles;
+    }
+}
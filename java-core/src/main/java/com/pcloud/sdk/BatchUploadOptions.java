@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+import java.util.Map;
+
+/**
+ * A container for the possible options when creating many files at once.
+ * <p>
+ * BatchUploadOptions is a immutable container for the allowed options when creating files
+ * through {@link ApiClient#createFiles(long, Map, BatchUploadOptions)}
+ * or {@link ApiClient#createFiles(String, Map, BatchUploadOptions)}.
+ * <p>
+ * Instances of the class can be created either the {@link #create()} method
+ * or by mutating an existing object by calling {@link #newBuilder()}.
+ * <p>
+ * The {@link #DEFAULT} instance is pre-configured for the most common usage cases.
+ */
+public final class BatchUploadOptions {
+
+    /**
+     * The default instance of {@link BatchUploadOptions}.
+     * <ul>
+     * <li>
+     * Up to 64 files, or up to 8MB of file data, are sent with a single request.
+     * </li>
+     * <li>
+     * Files <b>WILL BE NOT</b> overridden on the server but instead saved with a number in the end.
+     * </li>
+     * </ul>
+     */
+    public static final BatchUploadOptions DEFAULT = new Builder()
+            .maxFilesPerRequest(64)
+            .maxBytesPerRequest(8 * 1024 * 1024)
+            .overrideFile(false)
+            .build();
+
+    private final int maxFilesPerRequest;
+    private final long maxBytesPerRequest;
+    private final boolean overrideFile;
+
+    /**
+     * Creates new default {@link Builder}.
+     *
+     * @return a new {@link Builder} instance
+     */
+    public static Builder create() {
+        return DEFAULT.newBuilder();
+    }
+
+    private BatchUploadOptions(int maxFilesPerRequest, long maxBytesPerRequest, boolean overrideFile) {
+        this.maxFilesPerRequest = maxFilesPerRequest;
+        this.maxBytesPerRequest = maxBytesPerRequest;
+        this.overrideFile = overrideFile;
+    }
+
+    /**
+     * @return the maximum number of files sent with a single request
+     * @see Builder#maxFilesPerRequest(int)
+     */
+    public int maxFilesPerRequest() {
+        return maxFilesPerRequest;
+    }
+
+    /**
+     * @return the maximum number of file data bytes sent with a single request
+     * @see Builder#maxBytesPerRequest(long)
+     */
+    public long maxBytesPerRequest() {
+        return maxBytesPerRequest;
+    }
+
+    /**
+     * @return {@code true} if the files will be overridden on the backend, {@code false} otherwise
+     * @see Builder#overrideFile(boolean)
+     */
+    public boolean overrideFile() {
+        return overrideFile;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        BatchUploadOptions that = (BatchUploadOptions) o;
+
+        if (maxFilesPerRequest != that.maxFilesPerRequest) return false;
+        if (maxBytesPerRequest != that.maxBytesPerRequest) return false;
+        return overrideFile == that.overrideFile;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = maxFilesPerRequest;
+        result = 31 * result + (int) (maxBytesPerRequest ^ (maxBytesPerRequest >>> 32));
+        result = 31 * result + (overrideFile ? 1 : 0);
+        return result;
+    }
+
+    /**
+     * Creates {@link Builder} from {@link BatchUploadOptions}.
+     *
+     * @return {@link Builder}
+     */
+    public Builder newBuilder() {
+        return new Builder(maxFilesPerRequest, maxBytesPerRequest, overrideFile);
+    }
+
+    /**
+     * A builder for configuring and creating new {@link BatchUploadOptions} instances.
+     * <p>
+     * For more details see <a href="https://docs.pcloud.com/methods/file/uploadfile.html" target="_blank">here</a>
+     *
+     * @see BatchUploadOptions#newBuilder()
+     * @see BatchUploadOptions#create()
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private int maxFilesPerRequest;
+        private long maxBytesPerRequest;
+        private boolean overrideFile;
+
+        private Builder() {
+        }
+
+        private Builder(int maxFilesPerRequest, long maxBytesPerRequest, boolean overrideFile) {
+            this.maxFilesPerRequest = maxFilesPerRequest;
+            this.maxBytesPerRequest = maxBytesPerRequest;
+            this.overrideFile = overrideFile;
+        }
+
+        /**
+         * Sets the maximum number of files sent with a single request.
+         *
+         * @param maxFilesPerRequest a positive number of files
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code maxFilesPerRequest} is not a positive number
+         */
+        public Builder maxFilesPerRequest(int maxFilesPerRequest) {
+            if (maxFilesPerRequest < 1) {
+                throw new IllegalArgumentException("Files per request must be a positive number.");
+            }
+            this.maxFilesPerRequest = maxFilesPerRequest;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of file data bytes sent with a single request.
+         * <p>
+         * A file larger than the limit is sent with a request of its own.
+         *
+         * @param maxBytesPerRequest a positive number of bytes
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code maxBytesPerRequest} is not a positive number
+         */
+        public Builder maxBytesPerRequest(long maxBytesPerRequest) {
+            if (maxBytesPerRequest < 1) {
+                throw new IllegalArgumentException("Bytes per request must be a positive number.");
+            }
+            this.maxBytesPerRequest = maxBytesPerRequest;
+            return this;
+        }
+
+        /**
+         * Sets {@code overrideFile} option.
+         * <p>
+         * If {@code overrideFile} is  {@code TRUE} files with the same name with be overridden on the server.
+         *
+         * @param overrideFile {@code true} to override existing files with same name, {@code false} otherwise
+         * @return the same {@link Builder} instance
+         */
+        public Builder overrideFile(boolean overrideFile) {
+            this.overrideFile = overrideFile;
+            return this;
+        }
+
+        /**
+         * Creates new {@link BatchUploadOptions} with the set options.
+         *
+         * @return a new {@link BatchUploadOptions} object with the configuration from this build
+         */
+        public BatchUploadOptions build() {
+            return new BatchUploadOptions(maxFilesPerRequest, maxBytesPerRequest, overrideFile);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+/**
+ * A breakdown of the time spent by a single HTTP call of an {@link ApiClient}, phase by phase.
+ * <p>
+ * Timelines are reported to a {@link CallTimelineListener} set via
+ * {@link ApiClient.Builder#callTimelineListener(CallTimelineListener, double)}. The network phases are those
+ * of the last attempt of the call, phases that did not take place, such as connecting on a reused
+ * connection, have a duration of {@code -1}.
+ */
+public interface CallTimeline {
+
+    /**
+     * The phases of a call.
+     */
+    enum Phase {
+        /**
+         * Waiting for a free request slot, in the client and in the {@link okhttp3.Dispatcher}.
+         */
+        QUEUE,
+        /**
+         * Resolving the host name.
+         */
+        DNS,
+        /**
+         * Opening the TCP connection.
+         */
+        CONNECT,
+        /**
+         * The TLS handshake.
+         */
+        TLS,
+        /**
+         * Writing the request body, such as the contents of an upload.
+         */
+        REQUEST_BODY,
+        /**
+         * The part of {@link #REQUEST_BODY} spent producing the data, such as reading it from a {@link DataSource},
+         * rather than waiting for the network or the bandwidth limit to take it.
+         */
+        REQUEST_BODY_SOURCE,
+        /**
+         * From the end of the request to the arrival of the response headers.
+         */
+        TIME_TO_FIRST_BYTE,
+        /**
+         * Reading the response body, overlapping with {@link #DESERIALIZATION}, which reads the body as it goes.
+         */
+        RESPONSE_BODY,
+        /**
+         * Converting the response into the result of the {@link Call}, such as parsing the JSON of an API response.
+         */
+        DESERIALIZATION
+    }
+
+    /**
+     * @return the API method of the call, as reported to a {@link MetricsRecorder}
+     */
+    String method();
+
+    /**
+     * @param phase the phase, cannot be null
+     * @return the duration of the phase in nanoseconds, or {@code -1} if it did not take place
+     */
+    long durationNanos(Phase phase);
+
+    /**
+     * @return the time from submitting the call to its completion, in nanoseconds
+     */
+    long totalNanos();
+
+    /**
+     * @return {@code true} if a response was received, {@code false} if the call failed
+     */
+    boolean isSuccessful();
+}
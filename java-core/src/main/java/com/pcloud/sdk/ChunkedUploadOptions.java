@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+import java.util.Date;
+
+/**
+ * A container for the possible options when creating files through upload sessions.
+ * <p>
+ * ChunkedUploadOptions is a immutable container for the allowed options when creating files
+ * through {@link ApiClient#createFileInChunks(long, String, DataSource, Date, ProgressListener, ChunkedUploadOptions)}
+ * or {@link ApiClient#createFileInChunks(String, String, DataSource, Date, ProgressListener, ChunkedUploadOptions)}.
+ * <p>
+ * Instances of the class can be created either the {@link #create()} method
+ * or by mutating an existing object by calling {@link #newBuilder()}.
+ * <p>
+ * The {@link #DEFAULT} instance is pre-configured for the most common usage cases.
+ */
+public final class ChunkedUploadOptions {
+
+    /**
+     * The smallest allowed chunk size, in bytes.
+     */
+    public static final long MIN_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * The default instance of {@link ChunkedUploadOptions}.
+     * <ul>
+     * <li>
+     * Data is sent in chunks of 8MB, with up to 4 chunks being written concurrently.
+     * </li>
+     * <li>
+     * Each chunk will be retried up to 3 times on a network error or a transient HTTP error before the upload fails.
+     * </li>
+     * <li>
+     * Files <b>WILL BE NOT</b> overridden on the server but instead saved with a number in the end.
+     * </li>
+     * </ul>
+     */
+    public static final ChunkedUploadOptions DEFAULT = new Builder()
+            .chunkSize(8 * 1024 * 1024)
+            .parallelism(4)
+            .maxChunkRetries(3)
+            .overrideFile(false)
+            .verifyChecksum(false)
+            .build();
+
+    private final long chunkSize;
+    private final int parallelism;
+    private final int maxChunkRetries;
+    private final boolean overrideFile;
+    private final boolean verifyChecksum;
+
+    /**
+     * Creates new default {@link Builder}.
+     *
+     * @return a new {@link Builder} instance
+     */
+    public static Builder create() {
+        return DEFAULT.newBuilder();
+    }
+
+    private ChunkedUploadOptions(long chunkSize, int parallelism, int maxChunkRetries, boolean overrideFile, boolean verifyChecksum) {
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.maxChunkRetries = maxChunkRetries;
+        this.overrideFile = overrideFile;
+        this.verifyChecksum = verifyChecksum;
+    }
+
+    /**
+     * @return the size of a single chunk, in bytes
+     * @see Builder#chunkSize(long)
+     */
+    public long chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return the maximum number of chunks being written at the same time
+     * @see Builder#parallelism(int)
+     */
+    public int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return the number of times a chunk will be resent after a network error
+     * @see Builder#maxChunkRetries(int)
+     */
+    public int maxChunkRetries() {
+        return maxChunkRetries;
+    }
+
+    /**
+     * @return {@code true} if the file will be overridden on the backend, {@code false} otherwise
+     * @see Builder#overrideFile(boolean)
+     */
+    public boolean overrideFile() {
+        return overrideFile;
+    }
+
+    /**
+     * @return {@code true} if the uploaded data will be verified against the checksums reported by the API, {@code false} otherwise
+     * @see Builder#verifyChecksum(boolean)
+     */
+    public boolean verifyChecksum() {
+        return verifyChecksum;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ChunkedUploadOptions that = (ChunkedUploadOptions) o;
+
+        if (chunkSize != that.chunkSize) return false;
+        if (parallelism != that.parallelism) return false;
+        if (maxChunkRetries != that.maxChunkRetries) return false;
+        if (overrideFile != that.overrideFile) return false;
+        return verifyChecksum == that.verifyChecksum;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (chunkSize ^ (chunkSize >>> 32));
+        result = 31 * result + parallelism;
+        result = 31 * result + maxChunkRetries;
+        result = 31 * result + (overrideFile ? 1 : 0);
+        result = 31 * result + (verifyChecksum ? 1 : 0);
+        return result;
+    }
+
+    /**
+     * Creates {@link Builder} from {@link ChunkedUploadOptions}.
+     *
+     * @return {@link Builder}
+     */
+    public Builder newBuilder() {
+        return new Builder(chunkSize, parallelism, maxChunkRetries, overrideFile, verifyChecksum);
+    }
+
+    /**
+     * A builder for configuring and creating new {@link ChunkedUploadOptions} instances.
+     * <p>
+     * For more details see <a href="https://docs.pcloud.com/methods/upload/" target="_blank">here</a>
+     *
+     * @see ChunkedUploadOptions#newBuilder()
+     * @see ChunkedUploadOptions#create()
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private long chunkSize;
+        private int parallelism;
+        private int maxChunkRetries;
+        private boolean overrideFile;
+        private boolean verifyChecksum;
+
+        private Builder() {
+        }
+
+        private Builder(long chunkSize, int parallelism, int maxChunkRetries, boolean overrideFile, boolean verifyChecksum) {
+            this.chunkSize = chunkSize;
+            this.parallelism = parallelism;
+            this.maxChunkRetries = maxChunkRetries;
+            this.overrideFile = overrideFile;
+            this.verifyChecksum = verifyChecksum;
+        }
+
+        /**
+         * Sets the size of a single chunk.
+         * <p>
+         * Each chunk is held in memory until the server acknowledges it,
+         * up to {@code chunkSize * parallelism} bytes will be buffered per upload.
+         *
+         * @param chunkSize the chunk size in bytes, no less than {@link #MIN_CHUNK_SIZE}
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code chunkSize} is less than {@link #MIN_CHUNK_SIZE}
+         */
+        public Builder chunkSize(long chunkSize) {
+            if (chunkSize < MIN_CHUNK_SIZE) {
+                throw new IllegalArgumentException("Chunk size must be at least " + MIN_CHUNK_SIZE + " bytes.");
+            }
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of chunks that can be written at the same time.
+         * <p>
+         * The chunk writes are also bound by the request limits of the transfer {@link okhttp3.Dispatcher}.
+         *
+         * @param parallelism a positive number of concurrent chunk writes
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code parallelism} is not a positive number
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be a positive number.");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Sets the number of times a chunk will be resent after a network error, or an HTTP error
+         * that may go away on its own: 408, 429 and the 5xx server errors.
+         * <p>
+         * Only the failed chunk is resent, chunks already acknowledged by the server are kept.
+         *
+         * @param maxChunkRetries a non-negative number of retries
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code maxChunkRetries} is negative
+         */
+        public Builder maxChunkRetries(int maxChunkRetries) {
+            if (maxChunkRetries < 0) {
+                throw new IllegalArgumentException("Retries count cannot be negative.");
+            }
+            this.maxChunkRetries = maxChunkRetries;
+            return this;
+        }
+
+        /**
+         * Sets {@code overrideFile} option.
+         * <p>
+         * If {@code overrideFile} is  {@code TRUE} files with the same name with be overridden on the server.
+         *
+         * @param overrideFile {@code true} to override existing files with same name, {@code false} otherwise
+         * @return the same {@link Builder} instance
+         */
+        public Builder overrideFile(boolean overrideFile) {
+            this.overrideFile = overrideFile;
+            return this;
+        }
+
+        /**
+         * Sets {@code verifyChecksum} option.
+         * <p>
+         * If {@code verifyChecksum} is {@code TRUE} the SHA-1 and SHA-256 digests of the data are computed as it is
+         * cut into chunks, and compared with the checksums of the saved file. On a mismatch the upload call fails
+         * with an {@link java.io.IOException}, the file created on the server is left in place.
+         *
+         * @param verifyChecksum {@code true} to verify the uploaded data, {@code false} otherwise
+         * @return the same {@link Builder} instance
+         */
+        public Builder verifyChecksum(boolean verifyChecksum) {
+            this.verifyChecksum = verifyChecksum;
+            return this;
+        }
+
+        /**
+         * Creates new {@link ChunkedUploadOptions} with the set options.
+         *
+         * @return a new {@link ChunkedUploadOptions} object with the configuration from this build
+         */
+        public ChunkedUploadOptions build() {
+            return new ChunkedUploadOptions(chunkSize, parallelism, maxChunkRetries, overrideFile, verifyChecksum);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A container for the options of the circuit breaker guarding the API host.
+ * <p>
+ * CircuitBreakerPolicy is an immutable container set on an {@link ApiClient} through
+ * {@link ApiClient.Builder#circuitBreakerPolicy(CircuitBreakerPolicy)}. The outcomes of the most recent
+ * API requests are kept in a window of {@link #windowSize()} requests; a request fails if it
+ * cannot be completed or gets an HTTP {@code 429} or {@code 5xx} response. Once the share of failed
+ * requests reaches the {@linkplain #failureRateThreshold() threshold}, the circuit opens and requests
+ * fail right away with an {@link java.io.IOException}, without reaching the API, for {@link #openDurationMs()}.
+ * After that a single request is let through: if it succeeds, the circuit closes again, otherwise it
+ * stays open for another period.
+ * <p>
+ * Requests for file contents go to the content hosts and are not guarded.
+ * <p>
+ * Instances of the class can be created either the {@link #create()} method
+ * or by mutating an existing object by calling {@link #newBuilder()}.
+ * <p>
+ * The {@link #DEFAULT} instance is pre-configured for the most common usage cases.
+ */
+public final class CircuitBreakerPolicy {
+
+    /**
+     * The default instance of {@link CircuitBreakerPolicy}.
+     * <ul>
+     * <li>
+     * The circuit opens when half of the last 20 requests have failed, but not before 10 requests have completed.
+     * </li>
+     * <li>
+     * The circuit stays open for 10 seconds.
+     * </li>
+     * </ul>
+     */
+    public static final CircuitBreakerPolicy DEFAULT = new Builder()
+            .failureRateThreshold(0.5)
+            .windowSize(20)
+            .minimumRequests(10)
+            .openDuration(10, TimeUnit.SECONDS)
+            .build();
+
+    private final double failureRateThreshold;
+    private final int windowSize;
+    private final int minimumRequests;
+    private final long openDurationMs;
+
+    /**
+     * Creates new default {@link Builder}.
+     *
+     * @return a new {@link Builder} instance
+     */
+    public static Builder create() {
+        return DEFAULT.newBuilder();
+    }
+
+    private CircuitBreakerPolicy(double failureRateThreshold, int windowSize, int minimumRequests, long openDurationMs) {
+        this.failureRateThreshold = failureRateThreshold;
+        this.windowSize = windowSize;
+        this.minimumRequests = minimumRequests;
+        this.openDurationMs = openDurationMs;
+    }
+
+    /**
+     * @return the share of failed requests in the window that opens the circuit
+     * @see Builder#failureRateThreshold(double)
+     */
+    public double failureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    /**
+     * @return the number of most recent requests considered
+     * @see Builder#windowSize(int)
+     */
+    public int windowSize() {
+        return windowSize;
+    }
+
+    /**
+     * @return the number of requests that must have completed before the circuit can open
+     * @see Builder#minimumRequests(int)
+     */
+    public int minimumRequests() {
+        return minimumRequests;
+    }
+
+    /**
+     * @return the time in milliseconds the circuit stays open
+     * @see Builder#openDuration(long, TimeUnit)
+     */
+    public long openDurationMs() {
+        return openDurationMs;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        CircuitBreakerPolicy that = (CircuitBreakerPolicy) o;
+
+        if (Double.compare(that.failureRateThreshold, failureRateThreshold) != 0) return false;
+        if (windowSize != that.windowSize) return false;
+        if (minimumRequests != that.minimumRequests) return false;
+        return openDurationMs == that.openDurationMs;
+    }
+
+    @Override
+    public int hashCode() {
+        long temp = Double.doubleToLongBits(failureRateThreshold);
+        int result = (int) (temp ^ (temp >>> 32));
+        result = 31 * result + windowSize;
+        result = 31 * result + minimumRequests;
+        result = 31 * result + (int) (openDurationMs ^ (openDurationMs >>> 32));
+        return result;
+    }
+
+    /**
+     * Creates {@link Builder} from {@link CircuitBreakerPolicy}.
+     *
+     * @return {@link Builder}
+     */
+    public Builder newBuilder() {
+        return new Builder(failureRateThreshold, windowSize, minimumRequests, openDurationMs);
+    }
+
+    /**
+     * A builder for configuring and creating new {@link CircuitBreakerPolicy} instances.
+     *
+     * @see CircuitBreakerPolicy#newBuilder()
+     * @see CircuitBreakerPolicy#create()
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private double failureRateThreshold;
+        private int windowSize;
+        private int minimumRequests;
+        private long openDurationMs;
+
+        private Builder() {
+        }
+
+        private Builder(double failureRateThreshold, int windowSize, int minimumRequests, long openDurationMs) {
+            this.failureRateThreshold = failureRateThreshold;
+            this.windowSize = windowSize;
+            this.minimumRequests = minimumRequests;
+            this.openDurationMs = openDurationMs;
+        }
+
+        /**
+         * Sets the share of failed requests in the window that opens the circuit.
+         *
+         * @param threshold a share greater than {@code 0} and up to {@code 1}
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code threshold} is out of range
+         */
+        public Builder failureRateThreshold(double threshold) {
+            if (!(threshold > 0 && threshold <= 1)) {
+                throw new IllegalArgumentException("Failure rate threshold must be greater than 0 and at most 1.");
+            }
+            this.failureRateThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Sets the number of most recent requests considered.
+         *
+         * @param size a positive number of requests
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code size} is not a positive number
+         */
+        public Builder windowSize(int size) {
+            if (size < 1) {
+                throw new IllegalArgumentException("Window size must be a positive number.");
+            }
+            this.windowSize = size;
+            return this;
+        }
+
+        /**
+         * Sets the number of requests that must have completed before the circuit can open.
+         *
+         * @param count a positive number of requests, not greater than the window size
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code count} is not a positive number
+         */
+        public Builder minimumRequests(int count) {
+            if (count < 1) {
+                throw new IllegalArgumentException("Minimum requests must be a positive number.");
+            }
+            this.minimumRequests = count;
+            return this;
+        }
+
+        /**
+         * Sets the time the circuit stays open.
+         *
+         * @param duration a positive duration
+         * @param unit     the unit of {@code duration}, cannot be null
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code duration} is not positive or {@code unit} is null
+         */
+        public Builder openDuration(long duration, TimeUnit unit) {
+            if (unit == null) {
+                throw new IllegalArgumentException("TimeUnit argument cannot be null.");
+            }
+            if (duration <= 0) {
+                throw new IllegalArgumentException("Duration must be a positive number.");
+            }
+            this.openDurationMs = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Creates new {@link CircuitBreakerPolicy} with the set options.
+         *
+         * @return a new {@link CircuitBreakerPolicy} object with the configuration from this build
+         * @throws IllegalArgumentException if the minimum requests exceed the window size
+         */
+        public CircuitBreakerPolicy build() {
+            if (minimumRequests > windowSize) {
+                throw new IllegalArgumentException("Minimum requests cannot exceed the window size.");
+            }
+            return new CircuitBreakerPolicy(failureRateThreshold, windowSize, minimumRequests, openDurationMs);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+/**
+ * A container for the options of the adaptive limit on concurrent API requests.
+ * <p>
+ * ConcurrencyLimitPolicy is an immutable container set on an {@link ApiClient} through
+ * {@link ApiClient.Builder#concurrencyLimitPolicy(ConcurrencyLimitPolicy)}. The limit follows the latency of the API:
+ * while requests complete about as fast as the fastest recent ones, it grows by one request per round of
+ * requests, and once the latency exceeds that baseline by the {@linkplain #latencyTolerance() tolerance} or
+ * requests fail, it shrinks by the {@linkplain #backoffRatio() backoff ratio}. Requests over the limit
+ * wait in the client, where they can be ordered by {@link Priority}, instead of piling up at a slow API.
+ * <p>
+ * Instances of the class can be created either the {@link #create()} method
+ * or by mutating an existing object by calling {@link #newBuilder()}.
+ * <p>
+ * The {@link #DEFAULT} instance is pre-configured for the most common usage cases.
+ *
+ * @see ApiClient#concurrencyLimiter()
+ */
+public final class ConcurrencyLimitPolicy {
+
+    /**
+     * The default instance of {@link ConcurrencyLimitPolicy}.
+     * <ul>
+     * <li>
+     * The limit starts at 8 concurrent requests and is kept between 1 and 64, also never exceeding
+     * the per-host limit of the client's {@link okhttp3.Dispatcher}.
+     * </li>
+     * <li>
+     * The limit is cut by 10% when requests take more than twice the baseline latency, or fail.
+     * </li>
+     * <li>
+     * The number of waiting requests is not limited.
+     * </li>
+     * </ul>
+     */
+    public static final ConcurrencyLimitPolicy DEFAULT = new Builder()
+            .initialLimit(8)
+            .minLimit(1)
+            .maxLimit(64)
+            .latencyTolerance(2)
+            .backoffRatio(0.9)
+            .maxQueueDepth(Integer.MAX_VALUE)
+            .build();
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private final int maxQueueDepth;
+
+    /**
+     * Creates new default {@link Builder}.
+     *
+     * @return a new {@link Builder} instance
+     */
+    public static Builder create() {
+        return DEFAULT.newBuilder();
+    }
+
+    private ConcurrencyLimitPolicy(int initialLimit, int minLimit, int maxLimit, double latencyTolerance, double backoffRatio, int maxQueueDepth) {
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+    /**
+     * @return the number of concurrent requests allowed before any latency has been observed
+     * @see Builder#initialLimit(int)
+     */
+    public int initialLimit() {
+        return initialLimit;
+    }
+
+    /**
+     * @return the lowest the limit can go
+     * @see Builder#minLimit(int)
+     */
+    public int minLimit() {
+        return minLimit;
+    }
+
+    /**
+     * @return the highest the limit can go
+     * @see Builder#maxLimit(int)
+     */
+    public int maxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * @return the factor by which latency can exceed the baseline before the limit is reduced
+     * @see Builder#latencyTolerance(double)
+     */
+    public double latencyTolerance() {
+        return latencyTolerance;
+    }
+
+    /**
+     * @return the factor the limit is multiplied by when it is reduced
+     * @see Builder#backoffRatio(double)
+     */
+    public double backoffRatio() {
+        return backoffRatio;
+    }
+
+    /**
+     * @return the largest number of requests waiting for the limit
+     * @see Builder#maxQueueDepth(int)
+     */
+    public int maxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ConcurrencyLimitPolicy that = (ConcurrencyLimitPolicy) o;
+
+        if (initialLimit != that.initialLimit) return false;
+        if (minLimit != that.minLimit) return false;
+        if (maxLimit != that.maxLimit) return false;
+        if (Double.compare(that.latencyTolerance, latencyTolerance) != 0) return false;
+        if (Double.compare(that.backoffRatio, backoffRatio) != 0) return false;
+        return maxQueueDepth == that.maxQueueDepth;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = initialLimit;
+        result = 31 * result + minLimit;
+        result = 31 * result + maxLimit;
+        long temp = Double.doubleToLongBits(latencyTolerance);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        temp = Double.doubleToLongBits(backoffRatio);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        result = 31 * result + maxQueueDepth;
+        return result;
+    }
+
+    /**
+     * Creates {@link Builder} from {@link ConcurrencyLimitPolicy}.
+     *
+     * @return {@link Builder}
+     */
+    public Builder newBuilder() {
+        return new Builder(initialLimit, minLimit, maxLimit, latencyTolerance, backoffRatio, maxQueueDepth);
+    }
+
+    /**
+     * A builder for configuring and creating new {@link ConcurrencyLimitPolicy} instances.
+     *
+     * @see ConcurrencyLimitPolicy#newBuilder()
+     * @see ConcurrencyLimitPolicy#create()
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private int initialLimit;
+        private int minLimit;
+        private int maxLimit;
+        private double latencyTolerance;
+        private double backoffRatio;
+        private int maxQueueDepth;
+
+        private Builder() {
+        }
+
+        private Builder(int initialLimit, int minLimit, int maxLimit, double latencyTolerance, double backoffRatio, int maxQueueDepth) {
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.latencyTolerance = latencyTolerance;
+            this.backoffRatio = backoffRatio;
+            this.maxQueueDepth = maxQueueDepth;
+        }
+
+        /**
+         * Sets the number of concurrent requests allowed before any latency has been observed.
+         *
+         * @param limit a positive number of requests
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code limit} is not a positive number
+         */
+        public Builder initialLimit(int limit) {
+            this.initialLimit = requirePositive(limit);
+            return this;
+        }
+
+        /**
+         * Sets the lowest the limit can go.
+         *
+         * @param limit a positive number of requests
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code limit} is not a positive number
+         */
+        public Builder minLimit(int limit) {
+            this.minLimit = requirePositive(limit);
+            return this;
+        }
+
+        /**
+         * Sets the highest the limit can go.
+         *
+         * @param limit a positive number of requests
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code limit} is not a positive number
+         */
+        public Builder maxLimit(int limit) {
+            this.maxLimit = requirePositive(limit);
+            return this;
+        }
+
+        /**
+         * Sets the factor by which the latency of a request can exceed the baseline before the limit is reduced.
+         * <p>
+         * The baseline is the lowest latency among the recent requests.
+         *
+         * @param tolerance a factor greater than {@code 1}
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code tolerance} is not greater than {@code 1}
+         */
+        public Builder latencyTolerance(double tolerance) {
+            if (!(tolerance > 1)) {
+                throw new IllegalArgumentException("Latency tolerance must be greater than 1.");
+            }
+            this.latencyTolerance = tolerance;
+            return this;
+        }
+
+        /**
+         * Sets the factor the limit is multiplied by when it is reduced.
+         *
+         * @param ratio a factor greater than {@code 0} and less than {@code 1}
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code ratio} is out of range
+         */
+        public Builder backoffRatio(double ratio) {
+            if (!(ratio > 0 && ratio < 1)) {
+                throw new IllegalArgumentException("Backoff ratio must be greater than 0 and less than 1.");
+            }
+            this.backoffRatio = ratio;
+            return this;
+        }
+
+        /**
+         * Sets the largest number of requests waiting for the limit.
+         * <p>
+         * Requests arriving at a full queue fail right away with an {@link java.io.IOException}.
+         *
+         * @param depth a non-negative number of requests, {@link Integer#MAX_VALUE} for no limit
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code depth} is negative
+         */
+        public Builder maxQueueDepth(int depth) {
+            if (depth < 0) {
+                throw new IllegalArgumentException("Queue depth cannot be negative.");
+            }
+            this.maxQueueDepth = depth;
+            return this;
+        }
+
+        /**
+         * Creates new {@link ConcurrencyLimitPolicy} with the set options.
+         *
+         * @return a new {@link ConcurrencyLimitPolicy} object with the configuration from this build
+         * @throws IllegalArgumentException if the initial limit is not between the minimum and maximum limits
+         */
+        public ConcurrencyLimitPolicy build() {
+            if (minLimit > initialLimit || initialLimit > maxLimit) {
+                throw new IllegalArgumentException("Initial limit must be between the minimum and maximum limits.");
+            }
+            return new ConcurrencyLimitPolicy(initialLimit, minLimit, maxLimit, latencyTolerance, backoffRatio, maxQueueDepth);
+        }
+
+        private static int requirePositive(int limit) {
+            if (limit < 1) {
+                throw new IllegalArgumentException("Limit must be a positive number.");
+            }
+            return limit;
+        }
+    }
+}
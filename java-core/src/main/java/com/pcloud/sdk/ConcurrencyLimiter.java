@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+/**
+ * A view of the limit on concurrent API requests of an {@link ApiClient}.
+ * <p>
+ * The values are read at the time of the call and may change right after it.
+ *
+ * @see ApiClient#concurrencyLimiter()
+ * @see ConcurrencyLimitPolicy
+ */
+public interface ConcurrencyLimiter {
+
+    /**
+     * @return the current number of API requests allowed to run at the same time
+     */
+    int limit();
+
+    /**
+     * @return the number of API requests currently running
+     */
+    int inFlight();
+
+    /**
+     * @return the number of API requests waiting for the limit
+     */
+    int queueDepth();
+}
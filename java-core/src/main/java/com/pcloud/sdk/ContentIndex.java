@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+import okio.ByteString;
+
+/**
+ * An index of remote files by the SHA-256 digest of their content.
+ * <p>
+ * When an {@link ApiClient} is created with an index via {@link ApiClient.Builder#contentIndex(ContentIndex)},
+ * the content of each new file of known size and {@linkplain DataSource#isRepeatable() repeatable data} is digested
+ * before it is uploaded. If the index holds a file
+ * with the same digest and size, the new file is created with a server-side copy of it instead, and the
+ * upload is skipped. Uploaded files are added to the index, files deleted or overwritten through the client
+ * are removed from it.
+ * <p>
+ * Folder listings do not carry SHA-256 digests, files uploaded by other means can be added with
+ * {@link #put(Checksums)} from the results of {@link ApiClient#getChecksums(long)}.
+ * <p>
+ * Implementations are safe for use from multiple threads.
+ * Use {@link PCloudSdk#newContentIndex(int)} to create new instances.
+ */
+public interface ContentIndex {
+
+    /**
+     * @param sha256 the SHA-256 digest of the content
+     * @return the last file indexed with the digest, or {@code null} if there is none
+     * @throws IllegalArgumentException on a null {@code sha256} argument
+     */
+    RemoteFile get(ByteString sha256);
+
+    /**
+     * Index a file by the SHA-256 digest of its content, replacing any file indexed with the same digest.
+     *
+     * @param sha256 the SHA-256 digest of the file content
+     * @param file   the file to index
+     * @throws IllegalArgumentException on a null {@code sha256} or {@code file} argument
+     */
+    void put(ByteString sha256, RemoteFile file);
+
+    /**
+     * Index the file of a {@link ApiClient#getChecksums(long)} result.
+     *
+     * @param checksums the checksums of a file
+     * @return {@code true} if the file was indexed, {@code false} if the checksums have no SHA-256 digest
+     * @throws IllegalArgumentException on a null {@code checksums} argument
+     */
+    boolean put(Checksums checksums);
+
+    /**
+     * Remove all entries for a file.
+     *
+     * @param fileId the id of the file
+     */
+    void remove(long fileId);
+
+    /**
+     * @return the number of indexed digests
+     */
+    int size();
+
+    /**
+     * @return the maximum number of indexed digests
+     */
+    int maxEntries();
+
+    /**
+     * Remove all entries.
+     */
+    void clear();
+}
@@ -24,6 +24,11 @@ import okio.Okio;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import static com.pcloud.sdk.internal.IOUtils.closeQuietly;
 
@@ -33,11 +38,14 @@ import static com.pcloud.sdk.internal.IOUtils.closeQuietly;
  * An abstraction over the byte stream reading operations, this class allows for a flexible way to read bytes from a {@link BufferedSource}.
  * <ul>
  * <li>The {@link #create(File)} method can be used for writing data to a file.</li>
+ * <li>The {@link #create(Path, boolean)} method can be used for writing large files with less copying.</li>
  * <li>For any other cases just extend the class and do your magic in the {@link #readAll(BufferedSource)} method.</li>
  * </ul>
  */
 public abstract class DataSink {
 
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
     /**
      * Reads all bytes from a source
      * <p>
@@ -49,6 +57,20 @@ public abstract class DataSink {
      */
     public abstract void readAll(BufferedSource source) throws IOException;
 
+    /**
+     * Reads all bytes from a source of a known length.
+     * <p>
+     * Called instead of {@link #readAll(BufferedSource)} when the length of the data is known
+     * before it is read, so that the sink can prepare for it. By default the length is ignored.
+     *
+     * @param source        the source
+     * @param contentLength the number of bytes that the source will provide, or {@code -1} if unknown
+     * @throws IOException the io exception
+     */
+    public void readAll(BufferedSource source, long contentLength) throws IOException {
+        readAll(source);
+    }
+
     /**
      * Create a {@link DataSink} instance that writes data to a file.
      *
@@ -76,4 +98,90 @@ public abstract class DataSink {
             }
         };
     }
+
+    /**
+     * Create a {@link DataSink} instance that writes data to a file through a {@link FileChannel}.
+     * <p>
+     * Same as calling {@link #create(Path, boolean)} with {@code sync} set to {@code false}.
+     * <p>
+     * Requires Android API level 26, where {@link Path} was introduced.
+     *
+     * @param path a path to the file where the data will be written. Must not be null.
+     * @return a {@link DataSink} that will write to the given file.
+     * @throws IllegalArgumentException on a null {@code path} argument.
+     */
+    public static DataSink create(Path path) {
+        return create(path, false);
+    }
+
+    /**
+     * Create a {@link DataSink} instance that writes data to a file through a {@link FileChannel}.
+     * <p>
+     * The data is gathered in a 1MB direct buffer and written at its position in the file, avoiding
+     * the intermediate copies of {@link #create(File)}. The file is created if missing and truncated otherwise.
+     * <p>
+     * When the length of the data is known, the file is extended to it before the first write. The extension
+     * may be sparse, it sets the length of the file but does not reserve storage space for it.
+     * If reading fails, the file is truncated to the bytes written so far.
+     * <p>
+     * Requires Android API level 26, where {@link Path} was introduced.
+     *
+     * @param path a path to the file where the data will be written. Must not be null.
+     * @param sync {@code true} to force the written data to the storage device before returning, {@code false} otherwise
+     * @return a {@link DataSink} that will write to the given file.
+     * @throws IllegalArgumentException on a null {@code path} argument.
+     */
+    public static DataSink create(final Path path, final boolean sync) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path argument cannot be null.");
+        }
+
+        return new DataSink() {
+            @Override
+            public void readAll(BufferedSource source) throws IOException {
+                readAll(source, -1);
+            }
+
+            @Override
+            public void readAll(BufferedSource source, long contentLength) throws IOException {
+                try (FileChannel channel = FileChannel.open(path,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    long position = 0;
+                    try {
+                        if (contentLength > 0) {
+                            channel.write(ByteBuffer.allocate(1), contentLength - 1);
+                        }
+                        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+                        // Called through the base class, as the covariant ByteBuffer overrides do not exist on Java 8 and Android.
+                        Buffer bufferState = buffer;
+                        boolean exhausted = false;
+                        while (!exhausted) {
+                            while (buffer.hasRemaining()) {
+                                if (source.read(buffer) == -1) {
+                                    exhausted = true;
+                                    break;
+                                }
+                            }
+                            bufferState.flip();
+                            while (buffer.hasRemaining()) {
+                                position += channel.write(buffer, position);
+                            }
+                            bufferState.clear();
+                        }
+                    } finally {
+                        if (channel.size() != position) {
+                            channel.truncate(position);
+                        }
+                    }
+                    if (sync) {
+                        channel.force(true);
+                    }
+                } finally {
+                    closeQuietly(source);
+                }
+            }
+        };
+    }
 }
@@ -22,8 +22,11 @@ import okio.ByteString;
 import okio.Okio;
 import okio.Source;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * A source of data.
@@ -34,6 +37,7 @@ import java.io.IOException;
  * Generally used for specifying a data source when creating/uploading files.
  * <ul>
  * <li>The {@link #create(File)} method can be used for reading data from a local file.</li>
+ * <li>The {@link #create(Path)} method can be used for reading data from a local file given by a {@link Path}.</li>
  * <li>The {@link #create(byte[])} method can be used for reading data from a byte array.</li>
  * <li>The {@link #create(ByteString)} method can be used for reading data from Okio's immutable byte arrays.</li>
  * <li>For any other cases just extend the class and do your magic in the {@link #writeTo(BufferedSink)} method.</li>
@@ -57,6 +61,11 @@ public abstract class DataSource {
         public void writeTo(BufferedSink sink) throws IOException {
 
         }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
     };
 
     /**
@@ -75,6 +84,19 @@ public abstract class DataSource {
      */
     public abstract void writeTo(BufferedSink sink) throws IOException;
 
+    /**
+     * Tells whether {@link #writeTo(BufferedSink)} can be called more than once, writing the same data every time.
+     * <p>
+     * Only uploads of repeatable data are retried after a failed attempt, see {@link RetryPolicy}.
+     * The instances returned by the {@code create()} methods are repeatable, other implementations are not
+     * unless they override this method.
+     *
+     * @return {@code true} if the data can be written more than once, {@code false} otherwise
+     */
+    public boolean isRepeatable() {
+        return false;
+    }
+
     /**
      * Create a {@link DataSource} instance that reads from a byte array.
      *
@@ -98,6 +120,10 @@ public abstract class DataSource {
             public void writeTo(BufferedSink sink) throws IOException {
                 sink.write(data);
             }
+            @Override
+            public boolean isRepeatable() {
+                return true;
+            }
         };
     }
 
@@ -124,6 +150,10 @@ public abstract class DataSource {
             public void writeTo(BufferedSink sink) throws IOException {
                 sink.write(data);
             }
+            @Override
+            public boolean isRepeatable() {
+                return true;
+            }
         };
     }
 
@@ -152,6 +182,51 @@ public abstract class DataSource {
                     sink.writeAll(source);
                 }
             }
+            @Override
+            public boolean isRepeatable() {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Create a {@link DataSource} instance that reads from a file given by a {@link Path}.
+     * <p>
+     * The size of the file is read once, when the instance is created, and exactly that many bytes
+     * are written to the sink. The file should not be truncated or modified while it is being read.
+     * <p>
+     * Requires Android API level 26, where {@link Path} was introduced.
+     *
+     * @param path a path to the file which will be read. Must not be null.
+     * @return a {@link DataSource} that will read the given file.
+     * @throws IllegalArgumentException on a null {@code path} argument.
+     * @throws IOException if the size of the file cannot be read.
+     */
+    public static DataSource create(final Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Path argument cannot be null.");
+        }
+
+        final long size = Files.size(path);
+        return new DataSource() {
+
+            @Override
+            public long contentLength() {
+                return size;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                try (Source source = Okio.source(Files.newInputStream(path))) {
+                    sink.write(source, size);
+                } catch (EOFException e) {
+                    throw new EOFException("File is shorter than when the DataSource was created.");
+                }
+            }
+            @Override
+            public boolean isRepeatable() {
+                return true;
+            }
         };
     }
 }
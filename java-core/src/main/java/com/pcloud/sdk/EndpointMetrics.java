@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+import java.util.Map;
+
+/**
+ * The measurements of the requests of an API method, as aggregated by {@link InMemoryMetrics}.
+ *
+ * @see InMemoryMetrics#snapshot()
+ */
+public interface EndpointMetrics {
+
+    /**
+     * @return the API method, as reported to the {@link MetricsRecorder}
+     */
+    String method();
+
+    /**
+     * @return the number of completed requests, with or without a response
+     */
+    long requestCount();
+
+    /**
+     * @return the number of requests that failed without a response
+     */
+    long failureCount();
+
+    /**
+     * @return the number of times requests were sent again
+     */
+    long retryCount();
+
+    /**
+     * @return the total number of request body bytes sent
+     */
+    long requestBytes();
+
+    /**
+     * @return the total number of response body bytes read
+     */
+    long responseBytes();
+
+    /**
+     * @return an unmodifiable map of the number of responses by HTTP status code
+     */
+    Map<Integer, Long> statusCodes();
+
+    /**
+     * @return an unmodifiable map of the number of {@link ApiError}s by error code
+     */
+    Map<Integer, Long> apiErrors();
+
+    /**
+     * @return the mean latency of the completed requests in milliseconds, {@code 0} if there were none
+     */
+    double meanLatencyMs();
+
+    /**
+     * @return the highest latency of the completed requests in milliseconds, {@code 0} if there were none
+     */
+    double maxLatencyMs();
+
+    /**
+     * Estimate a percentile of the latency of the completed requests.
+     *
+     * @param percentile the percentile, between {@code 0} and {@code 100}
+     * @return the latency in milliseconds below which the given percentage of the requests completed,
+     * {@code 0} if there were no requests
+     * @throws IllegalArgumentException if {@code percentile} is out of range
+     */
+    double latencyMs(double percentile);
+}
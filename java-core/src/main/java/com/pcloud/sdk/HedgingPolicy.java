@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+
+/**
+ * A container for the options controlling hedged requests.
+ * <p>
+ * HedgingPolicy is an immutable container set on an {@link ApiClient} through
+ * {@link ApiClient.Builder#hedgingPolicy(HedgingPolicy)}. When a request that only reads metadata, such as
+ * {@link ApiClient#listFolder(long)} or {@link ApiClient#loadFile(long)}, gets no response within the usual
+ * time, an identical second request is sent and the first response to arrive is used, the other request
+ * is cancelled. This cuts the latency of the calls that happen to hit a slow connection or server.
+ * <p>
+ * The usual time is the {@linkplain #latencyPercentile() percentile} of the recently observed latencies
+ * of the same API method, clamped between {@link #minDelayMs()} and {@link #maxDelayMs()}. The extra
+ * requests are capped by a budget, as a fraction of the requests sent.
+ * <p>
+ * Instances of the class can be created either the {@link #create()} method
+ * or by mutating an existing object by calling {@link #newBuilder()}.
+ * <p>
+ * The {@link #DEFAULT} instance is pre-configured for the most common usage cases.
+ */
+public final class HedgingPolicy {
+
+    /**
+     * The default instance of {@link HedgingPolicy}.
+     * <ul>
+     * <li>
+     * A second request is sent when the first one takes longer than 95% of the recent ones,
+     * but no sooner than after 50ms and no later than after 1 second.
+     * </li>
+     * <li>
+     * Second requests make for no more than 5% of the requests sent.
+     * </li>
+     * <li>
+     * Second requests go to the same API host.
+     * </li>
+     * </ul>
+     */
+    public static final HedgingPolicy DEFAULT = new Builder()
+            .latencyPercentile(95)
+            .minDelay(50, TimeUnit.MILLISECONDS)
+            .maxDelay(1, TimeUnit.SECONDS)
+            .budget(0.05)
+            .alternateApiHost(null)
+            .build();
+
+    private final double latencyPercentile;
+    private final long minDelayMs;
+    private final long maxDelayMs;
+    private final double budget;
+    private final HttpUrl alternateApiHost;
+
+    /**
+     * Creates new default {@link Builder}.
+     *
+     * @return a new {@link Builder} instance
+     */
+    public static Builder create() {
+        return DEFAULT.newBuilder();
+    }
+
+    private HedgingPolicy(double latencyPercentile, long minDelayMs, long maxDelayMs, double budget, HttpUrl alternateApiHost) {
+        this.latencyPercentile = latencyPercentile;
+        this.minDelayMs = minDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.budget = budget;
+        this.alternateApiHost = alternateApiHost;
+    }
+
+    /**
+     * @return the percentile of recent latencies after which a second request is sent
+     * @see Builder#latencyPercentile(double)
+     */
+    public double latencyPercentile() {
+        return latencyPercentile;
+    }
+
+    /**
+     * @return the shortest delay before a second request, in milliseconds
+     * @see Builder#minDelay(long, TimeUnit)
+     */
+    public long minDelayMs() {
+        return minDelayMs;
+    }
+
+    /**
+     * @return the longest delay before a second request, in milliseconds
+     * @see Builder#maxDelay(long, TimeUnit)
+     */
+    public long maxDelayMs() {
+        return maxDelayMs;
+    }
+
+    /**
+     * @return the largest fraction of second requests among the requests sent
+     * @see Builder#budget(double)
+     */
+    public double budget() {
+        return budget;
+    }
+
+    /**
+     * @return the API host receiving the second requests, {@code null} if they go to the same host as the first ones
+     * @see Builder#alternateApiHost(String)
+     */
+    public String alternateApiHost() {
+        return alternateApiHost != null ? alternateApiHost.toString() : null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        HedgingPolicy that = (HedgingPolicy) o;
+
+        if (Double.compare(that.latencyPercentile, latencyPercentile) != 0) return false;
+        if (minDelayMs != that.minDelayMs) return false;
+        if (maxDelayMs != that.maxDelayMs) return false;
+        if (Double.compare(that.budget, budget) != 0) return false;
+        return Objects.equals(alternateApiHost, that.alternateApiHost);
+    }
+
+    @Override
+    public int hashCode() {
+        long temp = Double.doubleToLongBits(latencyPercentile);
+        int result = (int) (temp ^ (temp >>> 32));
+        result = 31 * result + (int) (minDelayMs ^ (minDelayMs >>> 32));
+        result = 31 * result + (int) (maxDelayMs ^ (maxDelayMs >>> 32));
+        temp = Double.doubleToLongBits(budget);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        result = 31 * result + (alternateApiHost != null ? alternateApiHost.hashCode() : 0);
+        return result;
+    }
+
+    /**
+     * Creates {@link Builder} from {@link HedgingPolicy}.
+     *
+     * @return {@link Builder}
+     */
+    public Builder newBuilder() {
+        return new Builder(latencyPercentile, minDelayMs, maxDelayMs, budget, alternateApiHost);
+    }
+
+    /**
+     * A builder for configuring and creating new {@link HedgingPolicy} instances.
+     *
+     * @see HedgingPolicy#newBuilder()
+     * @see HedgingPolicy#create()
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private double latencyPercentile;
+        private long minDelayMs;
+        private long maxDelayMs;
+        private double budget;
+        private HttpUrl alternateApiHost;
+
+        private Builder() {
+        }
+
+        private Builder(double latencyPercentile, long minDelayMs, long maxDelayMs, double budget, HttpUrl alternateApiHost) {
+            this.latencyPercentile = latencyPercentile;
+            this.minDelayMs = minDelayMs;
+            this.maxDelayMs = maxDelayMs;
+            this.budget = budget;
+            this.alternateApiHost = alternateApiHost;
+        }
+
+        /**
+         * Sets the percentile of the recent latencies of an API method after which a second request is sent.
+         * <p>
+         * Lower percentiles cut more of the slow calls, but need a larger {@linkplain #budget(double) budget}.
+         *
+         * @param percentile a percentile greater than {@code 0} and less than {@code 100}
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code percentile} is out of range
+         */
+        public Builder latencyPercentile(double percentile) {
+            if (!(percentile > 0 && percentile < 100)) {
+                throw new IllegalArgumentException("Percentile must be greater than 0 and less than 100.");
+            }
+            this.latencyPercentile = percentile;
+            return this;
+        }
+
+        /**
+         * Sets the shortest delay before a second request.
+         *
+         * @param delay    a non-negative delay
+         * @param timeUnit the unit of {@code delay}
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code delay} is negative or {@code timeUnit} is null
+         */
+        public Builder minDelay(long delay, TimeUnit timeUnit) {
+            this.minDelayMs = toMillis(delay, timeUnit);
+            return this;
+        }
+
+        /**
+         * Sets the longest delay before a second request.
+         * <p>
+         * This delay is also used for an API method until enough of its latencies have been observed.
+         *
+         * @param delay    a non-negative delay
+         * @param timeUnit the unit of {@code delay}
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code delay} is negative or {@code timeUnit} is null
+         */
+        public Builder maxDelay(long delay, TimeUnit timeUnit) {
+            this.maxDelayMs = toMillis(delay, timeUnit);
+            return this;
+        }
+
+        /**
+         * Sets the largest fraction of second requests among the requests sent.
+         * <p>
+         * Every request that can be hedged adds the fraction to a budget that a second request takes
+         * a whole unit from, so that slow periods can't multiply the load on the API.
+         *
+         * @param budget a fraction between {@code 0} and {@code 1}
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code budget} is not between {@code 0} and {@code 1}
+         */
+        public Builder budget(double budget) {
+            if (!(budget >= 0 && budget <= 1)) {
+                throw new IllegalArgumentException("Budget must be between 0 and 1.");
+            }
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * Sets the API host receiving the second requests.
+         * <p>
+         * Sending them to another host avoids waiting behind whatever slows down the first one.
+         * Both hosts must serve the same accounts.
+         *
+         * @param apiHost a host name or base URL, {@code null} to use the host of the first request
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code apiHost} is not a valid host
+         */
+        public Builder alternateApiHost(String apiHost) {
+            if (apiHost == null) {
+                this.alternateApiHost = null;
+                return this;
+            }
+            HttpUrl host = HttpUrl.parse(apiHost.contains("://") ? apiHost : "https://" + apiHost);
+            if (host == null) {
+                throw new IllegalArgumentException("'" + apiHost + "' is not a valid API host.");
+            }
+            this.alternateApiHost = host;
+            return this;
+        }
+
+        /**
+         * Creates new {@link HedgingPolicy} with the set options.
+         *
+         * @return a new {@link HedgingPolicy} object with the configuration from this build
+         * @throws IllegalArgumentException if the minimum delay is longer than the maximum one
+         */
+        public HedgingPolicy build() {
+            if (minDelayMs > maxDelayMs) {
+                throw new IllegalArgumentException("Minimum delay cannot be longer than the maximum delay.");
+            }
+            return new HedgingPolicy(latencyPercentile, minDelayMs, maxDelayMs, budget, alternateApiHost);
+        }
+
+        private static long toMillis(long delay, TimeUnit timeUnit) {
+            if (timeUnit == null) {
+                throw new IllegalArgumentException("TimeUnit argument cannot be null.");
+            }
+            if (delay < 0) {
+                throw new IllegalArgumentException("Delay cannot be negative.");
+            }
+            return timeUnit.toMillis(delay);
+        }
+    }
+}
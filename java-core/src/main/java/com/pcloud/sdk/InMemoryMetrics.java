@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+import java.util.Map;
+
+/**
+ * A {@link MetricsRecorder} aggregating the measurements in memory, per API method.
+ * <p>
+ * Recording is lock-free and takes constant memory per API method, latencies are kept in a histogram
+ * with logarithmic buckets, accurate to about 20%. The same instance can be shared by several clients
+ * to aggregate their requests.
+ * <p>
+ * Use {@link PCloudSdk#newInMemoryMetrics()} to create new instances.
+ */
+public interface InMemoryMetrics extends MetricsRecorder {
+
+    /**
+     * Take a snapshot of the aggregated measurements.
+     * <p>
+     * The measurements of each method are copied without stopping the recording, so a snapshot taken
+     * while requests are running may be off by the requests completing at that moment.
+     *
+     * @return an unmodifiable map of the measurements by API method, sorted by method name
+     */
+    Map<String, EndpointMetrics> snapshot();
+
+    /**
+     * Discard all measurements taken so far.
+     */
+    void reset();
+}
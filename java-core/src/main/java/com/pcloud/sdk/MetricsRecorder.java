@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+import java.io.IOException;
+
+/**
+ * Receives measurements of the requests made by an {@link ApiClient}.
+ * <p>
+ * A recorder set via {@link ApiClient.Builder#metricsRecorder(MetricsRecorder)} is told about every
+ * HTTP request of the client, retries included, keyed by the name of the API method, such as
+ * {@code "listfolder"}, {@code "uploadfile"} or {@code "getfilelink"}. Requests for file contents
+ * to the content hosts are reported under {@link #CONTENT_METHOD}. Cancelled requests are not reported.
+ * <p>
+ * The methods are called on the threads performing the requests, often while a response is being
+ * read, so implementations must be thread-safe and return quickly.
+ * Use {@link PCloudSdk#newInMemoryMetrics()} for a ready-made implementation.
+ */
+public interface MetricsRecorder {
+
+    /**
+     * The method name of requests for file contents.
+     */
+    String CONTENT_METHOD = "content";
+
+    /**
+     * Called when the body of a response has been read or closed.
+     *
+     * @param method        the API method of the request
+     * @param statusCode    the HTTP status code of the response
+     * @param latencyNanos  the time from sending the request to receiving the response headers, in nanoseconds
+     * @param requestBytes  the number of request body bytes sent
+     * @param responseBytes the number of response body bytes read
+     */
+    void onResponse(String method, int statusCode, long latencyNanos, long requestBytes, long responseBytes);
+
+    /**
+     * Called when a request fails without a response.
+     *
+     * @param method       the API method of the request
+     * @param error        the error the request failed with
+     * @param latencyNanos the time from starting the request to the failure, in nanoseconds
+     * @param requestBytes the number of request body bytes sent
+     */
+    void onFailure(String method, IOException error, long latencyNanos, long requestBytes);
+
+    /**
+     * Called when a response carries an {@link ApiError}.
+     *
+     * @param method    the API method of the request
+     * @param errorCode the {@link ApiError#errorCode()} of the error
+     */
+    void onApiError(String method, int errorCode);
+
+    /**
+     * Called when a request is about to be sent again, as allowed by the {@link RetryPolicy} of the client.
+     *
+     * @param method the API method of the request
+     */
+    void onRetry(String method);
+}
@@ -39,4 +39,42 @@ public final class PCloudSdk {
     public static ApiClient.Builder newClientBuilder(){
         return Internal.newBuilder();
     }
+
+    /**
+     * @param apiClient the {@link ApiClient} to make transfers with. Must not be null.
+     * @return a new {@link TransferManager.Builder} instance.
+     * @throws IllegalArgumentException on a null {@code apiClient} argument.
+     */
+    public static TransferManager.Builder newTransferManagerBuilder(ApiClient apiClient){
+        return Internal.newTransferManagerBuilder(apiClient);
+    }
+
+    /**
+     * @param maxEntries the maximum number of indexed digests. Must be a positive number.
+     * @return a new, empty {@link ContentIndex} instance.
+     * @throws IllegalArgumentException on a {@code maxEntries} argument less than 1.
+     * @see ApiClient.Builder#contentIndex(ContentIndex)
+     */
+    public static ContentIndex newContentIndex(int maxEntries){
+        return Internal.newContentIndex(maxEntries);
+    }
+
+    /**
+     * @param bytesPerSecond the allowed transfer rate in bytes per second, or {@link BandwidthLimit#UNLIMITED}.
+     * @return a new {@link BandwidthLimit} instance.
+     * @throws IllegalArgumentException on a negative {@code bytesPerSecond} argument.
+     * @see ApiClient.Builder#uploadBandwidthLimit(BandwidthLimit)
+     * @see ApiClient.Builder#downloadBandwidthLimit(BandwidthLimit)
+     */
+    public static BandwidthLimit newBandwidthLimit(long bytesPerSecond){
+        return Internal.newBandwidthLimit(bytesPerSecond);
+    }
+
+    /**
+     * @return a new, empty {@link InMemoryMetrics} instance.
+     * @see ApiClient.Builder#metricsRecorder(MetricsRecorder)
+     */
+    public static InMemoryMetrics newInMemoryMetrics(){
+        return Internal.newInMemoryMetrics();
+    }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Pipe;
+import okio.Source;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link DataSource} of unknown length, providing the data that the application writes into it while the upload runs.
+ * <p>
+ * Data written to {@link #sink()} or {@link #outputStream()} is handed over to the upload through a buffer
+ * of bounded size, the writer blocks while the buffer is full. Closing the sink marks the end of the data.
+ * Since the writes block, the upload {@link Call} has to be executed on a thread other than the writing one,
+ * for example through {@link Call#enqueue(Callback)}.
+ * <p>
+ * The data can be read only once, uploads of it are always performed through an upload session,
+ * see {@link ApiClient#createFileInChunks(long, String, DataSource, java.util.Date, ProgressListener, ChunkedUploadOptions)}.
+ * <p>
+ * If the data cannot be produced to the end, call {@link #cancel()} so that the upload fails instead of saving
+ * a partial file. The same should be done when the upload call fails, to release a writer blocked on a full buffer.
+ */
+public final class PipedDataSource extends DataSource {
+
+    /**
+     * The default size of the buffer between the writer and the upload, in bytes.
+     */
+    public static final long DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    private final Pipe pipe;
+    private final BufferedSink sink;
+    private final AtomicBoolean consumed = new AtomicBoolean();
+
+    /**
+     * Create a new {@link PipedDataSource} with a buffer of {@link #DEFAULT_BUFFER_SIZE} bytes.
+     */
+    public PipedDataSource() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a new {@link PipedDataSource}.
+     *
+     * @param maxBufferSize the maximum number of bytes written but not yet read by the upload
+     * @throws IllegalArgumentException if {@code maxBufferSize} is not a positive number
+     */
+    public PipedDataSource(long maxBufferSize) {
+        if (maxBufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be a positive number.");
+        }
+        this.pipe = new Pipe(maxBufferSize);
+        this.sink = Okio.buffer(pipe.sink());
+    }
+
+    /**
+     * @return {@code -1}, as the length of the data is not known until the sink is closed.
+     */
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    /**
+     * @throws IllegalStateException if called more than once
+     */
+    @Override
+    public void writeTo(BufferedSink target) throws IOException {
+        if (!consumed.compareAndSet(false, true)) {
+            throw new IllegalStateException("Piped data can be read only once.");
+        }
+        try (Source source = pipe.source()) {
+            target.writeAll(source);
+        } catch (IOException | RuntimeException e) {
+            pipe.cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the {@link BufferedSink} to write the data to, to be closed once all data is written
+     */
+    public BufferedSink sink() {
+        return sink;
+    }
+
+    /**
+     * @return an {@link OutputStream} writing to {@link #sink()}, to be closed once all data is written
+     */
+    public OutputStream outputStream() {
+        return sink.outputStream();
+    }
+
+    /**
+     * Abort the transfer of the data.
+     * <p>
+     * Any pending and subsequent reads and writes fail with an {@link IOException}.
+     */
+    public void cancel() {
+        pipe.cancel();
+    }
+}
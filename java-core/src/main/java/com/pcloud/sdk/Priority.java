@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+/**
+ * The priority classes of scheduled work, from the most to the least urgent.
+ * <p>
+ * Work of a higher priority is started before queued work of a lower priority,
+ * work of the same priority is started in the order it was submitted.
+ * A scheduler may let long waiting work catch up with more urgent work, so that it is not starved.
+ */
+public enum Priority {
+    /**
+     * Work a user is actively waiting for.
+     */
+    HIGH,
+    /**
+     * The default priority.
+     */
+    NORMAL,
+    /**
+     * Background work, such as prefetching or bulk synchronization.
+     */
+    LOW
+}
@@ -23,7 +23,7 @@ package com.pcloud.sdk;
 public interface ProgressListener {
     /**
      * @param done  the current amount of bytes transferred
-     * @param total the total amount of bytes to transfer
+     * @param total the total amount of bytes to transfer, or {@code -1} if unknown
      */
     void onProgress(long done, long total);
 }
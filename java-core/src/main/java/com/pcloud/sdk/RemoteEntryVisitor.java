@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+import java.io.IOException;
+
+/**
+ * A callback receiving the entries of a folder listing as they are being read from the network.
+ * <p>
+ * Entries are reported in depth-first order, each folder before any of its children. Reported
+ * {@link RemoteFolder} instances do not hold their {@linkplain RemoteFolder#children() children},
+ * as these are passed to the visitor separately.
+ *
+ * @see ApiClient#listFolder(long, boolean, RemoteEntryVisitor)
+ * @see ApiClient#listFolder(String, boolean, RemoteEntryVisitor)
+ */
+public interface RemoteEntryVisitor {
+
+    /**
+     * @param entry the entry read from the listing
+     * @param path  the path of the entry relative to the listed folder, e.g. {@code "/Photos/image.jpg"},
+     *              or {@code "/"} for the listed folder itself
+     * @throws IOException to abort the listing, the exception will be the result of the call
+     */
+    void visit(RemoteEntry entry, String path) throws IOException;
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+/**
+ * A memory-efficient, read-only snapshot of a folder tree.
+ * <p>
+ * The metadata of all entries is kept in a compact columnar form, and {@link RemoteEntry}
+ * objects are created only when navigating the tree from its {@link #root()}. Such entries
+ * are not retained by the tree and can be garbage-collected once no longer used.
+ *
+ * @see ApiClient#loadFolderTree(long)
+ * @see ApiClient#loadFolderTree(String)
+ */
+public interface RemoteFolderTree {
+
+    /**
+     * @return the folder the tree was loaded for, with its {@linkplain RemoteFolder#children() children}
+     * resolved lazily from the tree.
+     */
+    RemoteFolder root();
+
+    /**
+     * @return the number of entries in the tree, including its root folder.
+     */
+    int size();
+}
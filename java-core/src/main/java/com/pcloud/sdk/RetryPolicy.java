@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A container for the options controlling how failed requests are retried.
+ * <p>
+ * RetryPolicy is an immutable container set on an {@link ApiClient} through
+ * {@link ApiClient.Builder#retryPolicy(RetryPolicy)}. A request failing with a network error or a
+ * {@code 408}, {@code 429} or {@code 5xx} HTTP response is repeated after an exponentially growing,
+ * randomized delay, a {@code Retry-After} header of the response is respected up to the
+ * {@linkplain #maxBackoffMs() maximum delay}. Errors returned by the API itself are never retried.
+ * <p>
+ * Only requests that can safely be repeated are retried right away, such as listing a folder or
+ * obtaining a file link. Requests that change data, such as uploading or copying a file, are repeated
+ * only when the request could not have reached the server, or when a reconciliation check confirms
+ * that the failed attempt did not take effect, see {@link Builder#reconcile(boolean)}.
+ * <p>
+ * Instances of the class can be created either the {@link #create()} method
+ * or by mutating an existing object by calling {@link #newBuilder()}.
+ * <p>
+ * The {@link #DEFAULT} instance is pre-configured for the most common usage cases.
+ */
+public final class RetryPolicy {
+
+    /**
+     * A policy that does not retry any request.
+     */
+    public static final RetryPolicy NONE = new Builder()
+            .maxRetries(0)
+            .initialBackoff(0, TimeUnit.MILLISECONDS)
+            .maxBackoff(0, TimeUnit.MILLISECONDS)
+            .backoffMultiplier(1)
+            .jitter(0)
+            .reconcile(false)
+            .build();
+
+    /**
+     * The default instance of {@link RetryPolicy}.
+     * <ul>
+     * <li>
+     * A failed request is retried up to 3 times.
+     * </li>
+     * <li>
+     * The first retry is delayed by 500ms, every next one by twice as long, up to 10 seconds.
+     * Each delay is randomly shortened by up to a half.
+     * </li>
+     * <li>
+     * Uploads and copies are not reconciled, they are retried only if they failed to connect.
+     * </li>
+     * </ul>
+     */
+    public static final RetryPolicy DEFAULT = new Builder()
+            .maxRetries(3)
+            .initialBackoff(500, TimeUnit.MILLISECONDS)
+            .maxBackoff(10, TimeUnit.SECONDS)
+            .backoffMultiplier(2)
+            .jitter(0.5)
+            .reconcile(false)
+            .build();
+
+    private final int maxRetries;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final double backoffMultiplier;
+    private final double jitter;
+    private final boolean reconcile;
+
+    /**
+     * Creates new default {@link Builder}.
+     *
+     * @return a new {@link Builder} instance
+     */
+    public static Builder create() {
+        return DEFAULT.newBuilder();
+    }
+
+    private RetryPolicy(int maxRetries, long initialBackoffMs, long maxBackoffMs, double backoffMultiplier, double jitter, boolean reconcile) {
+        this.maxRetries = maxRetries;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.backoffMultiplier = backoffMultiplier;
+        this.jitter = jitter;
+        this.reconcile = reconcile;
+    }
+
+    /**
+     * @return the maximum number of times a failed request is repeated
+     * @see Builder#maxRetries(int)
+     */
+    public int maxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @return the delay before the first retry, in milliseconds
+     * @see Builder#initialBackoff(long, TimeUnit)
+     */
+    public long initialBackoffMs() {
+        return initialBackoffMs;
+    }
+
+    /**
+     * @return the longest delay before a retry, in milliseconds
+     * @see Builder#maxBackoff(long, TimeUnit)
+     */
+    public long maxBackoffMs() {
+        return maxBackoffMs;
+    }
+
+    /**
+     * @return the factor by which the delay grows with every retry
+     * @see Builder#backoffMultiplier(double)
+     */
+    public double backoffMultiplier() {
+        return backoffMultiplier;
+    }
+
+    /**
+     * @return the largest fraction by which a delay is randomly shortened
+     * @see Builder#jitter(double)
+     */
+    public double jitter() {
+        return jitter;
+    }
+
+    /**
+     * @return {@code true} if requests changing data are retried after a reconciliation check
+     * @see Builder#reconcile(boolean)
+     */
+    public boolean reconcile() {
+        return reconcile;
+    }
+
+    /**
+     * Computes the delay before a retry, without the random jitter.
+     *
+     * @param retry the zero-based number of the retry
+     * @return the delay in milliseconds, no longer than {@link #maxBackoffMs()}
+     */
+    public long backoffMs(int retry) {
+        double backoff = initialBackoffMs * Math.pow(backoffMultiplier, retry);
+        return (long) Math.min(backoff, maxBackoffMs);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RetryPolicy that = (RetryPolicy) o;
+
+        if (maxRetries != that.maxRetries) return false;
+        if (initialBackoffMs != that.initialBackoffMs) return false;
+        if (maxBackoffMs != that.maxBackoffMs) return false;
+        if (Double.compare(that.backoffMultiplier, backoffMultiplier) != 0) return false;
+        if (Double.compare(that.jitter, jitter) != 0) return false;
+        return reconcile == that.reconcile;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = maxRetries;
+        result = 31 * result + (int) (initialBackoffMs ^ (initialBackoffMs >>> 32));
+        result = 31 * result + (int) (maxBackoffMs ^ (maxBackoffMs >>> 32));
+        long temp = Double.doubleToLongBits(backoffMultiplier);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        temp = Double.doubleToLongBits(jitter);
+        result = 31 * result + (int) (temp ^ (temp >>> 32));
+        result = 31 * result + (reconcile ? 1 : 0);
+        return result;
+    }
+
+    /**
+     * Creates {@link Builder} from {@link RetryPolicy}.
+     *
+     * @return {@link Builder}
+     */
+    public Builder newBuilder() {
+        return new Builder(maxRetries, initialBackoffMs, maxBackoffMs, backoffMultiplier, jitter, reconcile);
+    }
+
+    /**
+     * A builder for configuring and creating new {@link RetryPolicy} instances.
+     *
+     * @see RetryPolicy#newBuilder()
+     * @see RetryPolicy#create()
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private int maxRetries;
+        private long initialBackoffMs;
+        private long maxBackoffMs;
+        private double backoffMultiplier;
+        private double jitter;
+        private boolean reconcile;
+
+        private Builder() {
+        }
+
+        private Builder(int maxRetries, long initialBackoffMs, long maxBackoffMs, double backoffMultiplier, double jitter, boolean reconcile) {
+            this.maxRetries = maxRetries;
+            this.initialBackoffMs = initialBackoffMs;
+            this.maxBackoffMs = maxBackoffMs;
+            this.backoffMultiplier = backoffMultiplier;
+            this.jitter = jitter;
+            this.reconcile = reconcile;
+        }
+
+        /**
+         * Sets the maximum number of times a failed request is repeated.
+         *
+         * @param maxRetries a non-negative number of retries, {@code 0} disables retrying
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code maxRetries} is negative
+         */
+        public Builder maxRetries(int maxRetries) {
+            if (maxRetries < 0) {
+                throw new IllegalArgumentException("Retries count cannot be negative.");
+            }
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Sets the delay before the first retry.
+         *
+         * @param backoff  a non-negative delay
+         * @param timeUnit the unit of {@code backoff}
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code backoff} is negative or {@code timeUnit} is null
+         */
+        public Builder initialBackoff(long backoff, TimeUnit timeUnit) {
+            this.initialBackoffMs = toMillis(backoff, timeUnit);
+            return this;
+        }
+
+        /**
+         * Sets the longest delay before a retry, including one requested by a {@code Retry-After} header.
+         *
+         * @param backoff  a non-negative delay
+         * @param timeUnit the unit of {@code backoff}
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code backoff} is negative or {@code timeUnit} is null
+         */
+        public Builder maxBackoff(long backoff, TimeUnit timeUnit) {
+            this.maxBackoffMs = toMillis(backoff, timeUnit);
+            return this;
+        }
+
+        /**
+         * Sets the factor by which the delay grows with every retry.
+         *
+         * @param multiplier a factor of at least {@code 1}
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code multiplier} is less than {@code 1}
+         */
+        public Builder backoffMultiplier(double multiplier) {
+            if (!(multiplier >= 1)) {
+                throw new IllegalArgumentException("Backoff multiplier must be at least 1.");
+            }
+            this.backoffMultiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * Sets the largest fraction by which a delay is randomly shortened.
+         * <p>
+         * Randomizing the delays keeps clients that failed at the same time from retrying in lockstep.
+         *
+         * @param jitter a fraction between {@code 0} and {@code 1}, {@code 0} for exact delays
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code jitter} is not between {@code 0} and {@code 1}
+         */
+        public Builder jitter(double jitter) {
+            if (!(jitter >= 0 && jitter <= 1)) {
+                throw new IllegalArgumentException("Jitter must be between 0 and 1.");
+            }
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Sets whether requests changing data are retried after a reconciliation check.
+         * <p>
+         * When a request such as an upload fails after it was sent, the server may still have carried it out.
+         * With reconciliation enabled, the target of the request is looked up before retrying: if it already
+         * holds the expected content, the call succeeds with it instead of being repeated. Otherwise the request
+         * is retried only if repeating it cannot leave a duplicate behind. Without reconciliation such requests
+         * are retried only if they failed to connect.
+         * <p>
+         * Uploads are never repeated unless their {@link DataSource} {@linkplain DataSource#isRepeatable() is repeatable},
+         * as the ones created by the {@code DataSource.create()} methods.
+         * <p>
+         * Reconciliation is disabled by default, as each check adds lookup requests to the failed call.
+         *
+         * @param reconcile {@code true} to reconcile and retry requests changing data
+         * @return the same {@link Builder} instance
+         */
+        public Builder reconcile(boolean reconcile) {
+            this.reconcile = reconcile;
+            return this;
+        }
+
+        /**
+         * Creates new {@link RetryPolicy} with the set options.
+         *
+         * @return a new {@link RetryPolicy} object with the configuration from this build
+         * @throws IllegalArgumentException if the initial delay is longer than the maximum one
+         */
+        public RetryPolicy build() {
+            if (initialBackoffMs > maxBackoffMs) {
+                throw new IllegalArgumentException("Initial backoff cannot be longer than the maximum backoff.");
+            }
+            return new RetryPolicy(maxRetries, initialBackoffMs, maxBackoffMs, backoffMultiplier, jitter, reconcile);
+        }
+
+        private static long toMillis(long backoff, TimeUnit timeUnit) {
+            if (timeUnit == null) {
+                throw new IllegalArgumentException("TimeUnit argument cannot be null.");
+            }
+            if (backoff < 0) {
+                throw new IllegalArgumentException("Backoff cannot be negative.");
+            }
+            return timeUnit.toMillis(backoff);
+        }
+    }
+}
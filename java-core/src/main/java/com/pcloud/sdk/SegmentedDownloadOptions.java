@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+import java.io.File;
+
+/**
+ * A container for the possible options when downloading files in segments.
+ * <p>
+ * SegmentedDownloadOptions is a immutable container for the allowed options when downloading files
+ * through {@link ApiClient#download(ContentLink, long, File, ProgressListener, SegmentedDownloadOptions)}
+ * or {@link ApiClient#download(RemoteFile, File, ProgressListener, SegmentedDownloadOptions)}.
+ * <p>
+ * Instances of the class can be created either the {@link #create()} method
+ * or by mutating an existing object by calling {@link #newBuilder()}.
+ * <p>
+ * The {@link #DEFAULT} instance is pre-configured for the most common usage cases.
+ */
+public final class SegmentedDownloadOptions {
+
+    /**
+     * The smallest allowed segment size, in bytes.
+     */
+    public static final long MIN_SEGMENT_SIZE = 64 * 1024;
+
+    /**
+     * The default instance of {@link SegmentedDownloadOptions}.
+     * <ul>
+     * <li>
+     * Files are fetched in segments of 8MB, with up to 4 segments being downloaded concurrently.
+     * </li>
+     * <li>
+     * Each segment will be retried up to 3 times on a network error before the download fails.
+     * </li>
+     * </ul>
+     */
+    public static final SegmentedDownloadOptions DEFAULT = new Builder()
+            .segmentSize(8 * 1024 * 1024)
+            .parallelism(4)
+            .maxSegmentRetries(3)
+            .build();
+
+    private final long segmentSize;
+    private final int parallelism;
+    private final int maxSegmentRetries;
+
+    /**
+     * Creates new default {@link Builder}.
+     *
+     * @return a new {@link Builder} instance
+     */
+    public static Builder create() {
+        return DEFAULT.newBuilder();
+    }
+
+    private SegmentedDownloadOptions(long segmentSize, int parallelism, int maxSegmentRetries) {
+        this.segmentSize = segmentSize;
+        this.parallelism = parallelism;
+        this.maxSegmentRetries = maxSegmentRetries;
+    }
+
+    /**
+     * @return the size of a single segment, in bytes
+     * @see Builder#segmentSize(long)
+     */
+    public long segmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * @return the maximum number of segments being downloaded at the same time
+     * @see Builder#parallelism(int)
+     */
+    public int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return the number of times a segment will be requested again after a network error
+     * @see Builder#maxSegmentRetries(int)
+     */
+    public int maxSegmentRetries() {
+        return maxSegmentRetries;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SegmentedDownloadOptions that = (SegmentedDownloadOptions) o;
+
+        if (segmentSize != that.segmentSize) return false;
+        if (parallelism != that.parallelism) return false;
+        return maxSegmentRetries == that.maxSegmentRetries;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (segmentSize ^ (segmentSize >>> 32));
+        result = 31 * result + parallelism;
+        result = 31 * result + maxSegmentRetries;
+        return result;
+    }
+
+    /**
+     * Creates {@link Builder} from {@link SegmentedDownloadOptions}.
+     *
+     * @return {@link Builder}
+     */
+    public Builder newBuilder() {
+        return new Builder(segmentSize, parallelism, maxSegmentRetries);
+    }
+
+    /**
+     * A builder for configuring and creating new {@link SegmentedDownloadOptions} instances.
+     * <p>
+     * For more details see <a href="https://docs.pcloud.com/methods/streaming/getfilelink.html" target="_blank">here</a>
+     *
+     * @see SegmentedDownloadOptions#newBuilder()
+     * @see SegmentedDownloadOptions#create()
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static class Builder {
+
+        private long segmentSize;
+        private int parallelism;
+        private int maxSegmentRetries;
+
+        private Builder() {
+        }
+
+        private Builder(long segmentSize, int parallelism, int maxSegmentRetries) {
+            this.segmentSize = segmentSize;
+            this.parallelism = parallelism;
+            this.maxSegmentRetries = maxSegmentRetries;
+            }
+
+        /**
+         * Sets the size of a single segment.
+         * <p>
+         * Each segment is requested with its own {@code Range} request, smaller segments spread
+         * the load more evenly between the content hosts at the cost of more requests.
+         *
+         * @param segmentSize the segment size in bytes, no less than {@link #MIN_SEGMENT_SIZE}
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code segmentSize} is less than {@link #MIN_SEGMENT_SIZE}
+         */
+        public Builder segmentSize(long segmentSize) {
+            if (segmentSize < MIN_SEGMENT_SIZE) {
+                throw new IllegalArgumentException("Segment size must be at least " + MIN_SEGMENT_SIZE + " bytes.");
+            }
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of segments that can be downloaded at the same time.
+         *
+         * @param parallelism a positive number of concurrent segment downloads
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code parallelism} is not a positive number
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be a positive number.");
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Sets the number of times a segment will be requested again after a network error.
+         * <p>
+         * Each retry continues from the last byte received for the segment and uses the next
+         * available URL from the {@link ContentLink}.
+         *
+         * @param maxSegmentRetries a non-negative number of retries
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code maxSegmentRetries} is negative
+         */
+        public Builder maxSegmentRetries(int maxSegmentRetries) {
+            if (maxSegmentRetries < 0) {
+                throw new IllegalArgumentException("Retries count cannot be negative.");
+            }
+            this.maxSegmentRetries = maxSegmentRetries;
+            return this;
+        }
+
+
+        /**
+         * Creates new {@link SegmentedDownloadOptions} with the set options.
+         *
+         * @return a new {@link SegmentedDownloadOptions} object with the configuration from this build
+         */
+        public SegmentedDownloadOptions build() {
+            return new SegmentedDownloadOptions(segmentSize, parallelism, maxSegmentRetries);
+        }
+    }
+}
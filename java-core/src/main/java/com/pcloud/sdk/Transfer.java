@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+import java.io.IOException;
+
+/**
+ * An upload or a download scheduled on a {@link TransferManager}.
+ * <p>
+ * A transfer is queued as soon as it is created, and started once the manager's concurrency
+ * and byte limits allow it. Cancelling a queued transfer removes it from the queue, cancelling
+ * a running one cancels its underlying {@link Call}.
+ *
+ * @param <T> the type of the transfer's result
+ * @see TransferManager
+ */
+public interface Transfer<T> {
+
+    /**
+     * The states of a transfer.
+     */
+    enum State {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED,
+        CANCELED
+    }
+
+    /**
+     * A listener notified once a transfer completes.
+     * <p>
+     * Listeners are called on the thread that completes the transfer, or on the calling thread if the
+     * transfer has already completed when the listener is added.
+     *
+     * @param <T> the type of the transfer's result
+     */
+    interface Listener<T> {
+        /**
+         * @param transfer the successfully completed transfer
+         * @param result   the result of the transfer
+         */
+        void onSuccess(Transfer<T> transfer, T result);
+
+        /**
+         * @param transfer the failed or cancelled transfer
+         * @param error    the error that caused the failure
+         */
+        void onFailure(Transfer<T> transfer, Throwable error);
+    }
+
+    /**
+     * @return the priority the transfer was submitted with
+     */
+    Priority priority();
+
+    /**
+     * @return the number of bytes to transfer, {@code -1} if not known
+     */
+    long size();
+
+    /**
+     * @return the number of bytes transferred so far, counted again from {@code 0} when an upload is retried
+     */
+    long transferredBytes();
+
+    /**
+     * @return the current state of the transfer
+     */
+    State state();
+
+    /**
+     * Block until the transfer completes and return its result.
+     *
+     * @return the result of the transfer
+     * @throws IOException if the transfer failed, was cancelled or the waiting thread was interrupted
+     * @throws ApiError    on an error reported by the pCloud API
+     */
+    T await() throws IOException, ApiError;
+
+    /**
+     * Add a listener to be notified when the transfer completes.
+     *
+     * @param listener a non-null listener
+     * @throws IllegalArgumentException on a null {@code listener} argument
+     */
+    void addListener(Listener<T> listener);
+
+    /**
+     * Cancel the transfer. It is safe to call this method multiple times.
+     */
+    void cancel();
+}
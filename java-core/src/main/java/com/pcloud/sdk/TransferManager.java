@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Queues uploads and downloads made through an {@link ApiClient} and runs them under shared limits.
+ * <p>
+ * Submitted transfers are started in {@link Priority} order, with at most {@link #maxConcurrentTransfers()}
+ * running at the same time. The sizes of the running transfers are reserved against a budget of
+ * {@link #maxBytesInFlight()} bytes: a transfer is only started when its size fits in what is left of
+ * the budget, a transfer larger than the whole budget or of unknown size runs alone. The transfer at the
+ * head of the queue waits for the budget rather than being overtaken, so that large transfers cannot
+ * be starved by smaller ones.
+ * <p>
+ * Aggregate progress, throughput and an estimated time of completion are available through {@link #stats()}.
+ * <p>
+ * Use {@link PCloudSdk#newTransferManagerBuilder(ApiClient)} to create new instances.
+ *
+ * @see Transfer
+ */
+public interface TransferManager {
+
+    /**
+     * Queue an upload of a new file to a folder.
+     *
+     * @param folderId the id of the folder to upload to
+     * @param filename the name of the new file
+     * @param data     the content of the new file
+     * @param priority the priority of the upload
+     * @return a {@link Transfer} resulting in the metadata of the uploaded file
+     * @throws IllegalArgumentException on a null {@code filename}, {@code data} or {@code priority} argument
+     * @throws IllegalStateException    if the manager has been shut down
+     * @see ApiClient#createFile(long, String, DataSource)
+     */
+    Transfer<RemoteFile> upload(long folderId, String filename, DataSource data, Priority priority);
+
+    /**
+     * Queue an upload of a new file to a folder.
+     *
+     * @param path     the path of the folder to upload to
+     * @param filename the name of the new file
+     * @param data     the content of the new file
+     * @param priority the priority of the upload
+     * @return a {@link Transfer} resulting in the metadata of the uploaded file
+     * @throws IllegalArgumentException on a null {@code path}, {@code filename}, {@code data} or {@code priority} argument
+     * @throws IllegalStateException    if the manager has been shut down
+     * @see ApiClient#createFile(String, String, DataSource)
+     */
+    Transfer<RemoteFile> upload(String path, String filename, DataSource data, Priority priority);
+
+    /**
+     * Queue a download of a file.
+     *
+     * @param file     the file to download
+     * @param sink     the destination of the file content
+     * @param priority the priority of the download
+     * @return a {@link Transfer} completing once the content has been written to the {@code sink}
+     * @throws IllegalArgumentException on a null {@code file}, {@code sink} or {@code priority} argument
+     * @throws IllegalStateException    if the manager has been shut down
+     * @see ApiClient#download(RemoteFile)
+     */
+    Transfer<Void> download(RemoteFile file, DataSink sink, Priority priority);
+
+    /**
+     * @return a snapshot of the aggregate state of the transfers
+     */
+    TransferStats stats();
+
+    /**
+     * Block until there are no queued or running transfers.
+     *
+     * @throws InterruptedException if the waiting thread was interrupted
+     */
+    void awaitIdle() throws InterruptedException;
+
+    /**
+     * Cancel all queued and running transfers and stop accepting new ones.
+     * <p>
+     * The {@link ApiClient} used by the manager is not shut down.
+     */
+    void shutdown();
+
+    /**
+     * @return the maximum number of transfers running at the same time
+     * @see Builder#maxConcurrentTransfers(int)
+     */
+    int maxConcurrentTransfers();
+
+    /**
+     * @return the maximum number of bytes of the running transfers combined
+     * @see Builder#maxBytesInFlight(long)
+     */
+    long maxBytesInFlight();
+
+    /**
+     * A builder for {@link TransferManager} instances.
+     */
+    interface Builder {
+
+        /**
+         * Set the maximum number of transfers running at the same time.
+         * <p>
+         * If not set, up to {@code 4} transfers will run at the same time.
+         *
+         * @param maxConcurrentTransfers a positive number
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code maxConcurrentTransfers} is not a positive number
+         */
+        Builder maxConcurrentTransfers(int maxConcurrentTransfers);
+
+        /**
+         * Set the budget of bytes the running transfers are allowed to reserve.
+         * <p>
+         * If not set, a budget of 128 MiB will be used.
+         *
+         * @param maxBytesInFlight a positive number of bytes
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException if {@code maxBytesInFlight} is not a positive number
+         */
+        Builder maxBytesInFlight(long maxBytesInFlight);
+
+        /**
+         * Set the {@link Executor} that runs the transfers.
+         * <p>
+         * The executor must be able to run {@link #maxConcurrentTransfers(int)} tasks at the same time.
+         * If not set, the manager will use its own threads, which are stopped by {@link TransferManager#shutdown()}.
+         *
+         * @param executor a non-null {@link Executor}
+         * @return the same {@link Builder} instance
+         * @throws IllegalArgumentException on a null {@code executor} argument
+         */
+        Builder executor(Executor executor);
+
+        /**
+         * @return a new {@link TransferManager} instance with the provided configuration.
+         */
+        TransferManager create();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+/**
+ * A snapshot of the aggregate progress of a {@link TransferManager}.
+ *
+ * @see TransferManager#stats()
+ */
+public interface TransferStats {
+
+    /**
+     * @return the number of transfers waiting to be started
+     */
+    int queuedTransfers();
+
+    /**
+     * @return the number of transfers currently running
+     */
+    int activeTransfers();
+
+    /**
+     * @return the number of transfers that have completed successfully
+     */
+    long completedTransfers();
+
+    /**
+     * @return the number of transfers that have failed or were cancelled
+     */
+    long failedTransfers();
+
+    /**
+     * @return the number of bytes reserved by the running transfers against {@link TransferManager#maxBytesInFlight()}
+     */
+    long bytesInFlight();
+
+    /**
+     * @return the total number of bytes transferred since the manager was created, not counting retried bytes twice
+     */
+    long transferredBytes();
+
+    /**
+     * @return the number of bytes left to transfer by the queued and running transfers of known size
+     */
+    long remainingBytes();
+
+    /**
+     * @return the recent aggregate transfer rate, in bytes per second
+     */
+    long bytesPerSecond();
+
+    /**
+     * @return the estimated time to transfer the {@linkplain #remainingBytes() remaining bytes} at the
+     * {@linkplain #bytesPerSecond() recent rate} in milliseconds, {@code -1} if no estimate can be made.
+     */
+    long estimatedTimeRemainingMs();
+}
@@ -87,6 +87,7 @@ public final class UploadOptions {
 
     private final boolean overrideFile;
     private final boolean partialUpload;
+    private final boolean verifyChecksum;
 
     /**
      * Creates new default {@link Builder}.
@@ -99,9 +100,10 @@ public final class UploadOptions {
         return DEFAULT.newBuilder();
     }
 
-    private UploadOptions(boolean overrideFile, boolean partialUpload) {
+    private UploadOptions(boolean overrideFile, boolean partialUpload, boolean verifyChecksum) {
         this.overrideFile = overrideFile;
         this.partialUpload = partialUpload;
+        this.verifyChecksum = verifyChecksum;
     }
 
     /**
@@ -120,6 +122,14 @@ public final class UploadOptions {
         return partialUpload;
     }
 
+    /**
+     * @return {@code true} if the uploaded data will be verified against the checksums reported by the API, {@code false} otherwise
+     * @see Builder#verifyChecksum(boolean)
+     */
+    public boolean verifyChecksum() {
+        return verifyChecksum;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -127,13 +137,16 @@ public final class UploadOptions {
 
         UploadOptions that = (UploadOptions) o;
 
-        return (overrideFile != that.overrideFile) && (partialUpload != that.partialUpload);
+        return overrideFile == that.overrideFile &&
+                partialUpload == that.partialUpload &&
+                verifyChecksum == that.verifyChecksum;
     }
 
     @Override
     public int hashCode() {
         int result = (overrideFile ? 1 : 0);
         result = 31 * result + (partialUpload ? 1 : 0);
+        result = 31 * result + (verifyChecksum ? 1 : 0);
         return result;
     }
 
@@ -145,7 +158,7 @@ public final class UploadOptions {
      * @return {@link Builder}
      */
     public Builder newBuilder() {
-        return new Builder(overrideFile, partialUpload);
+        return new Builder(overrideFile, partialUpload, verifyChecksum);
     }
 
     /**
@@ -161,13 +174,15 @@ public final class UploadOptions {
 
         private boolean overrideFile;
         private boolean partialUpload;
+        private boolean verifyChecksum;
 
         private Builder() {
         }
 
-        private Builder(boolean overrideFile, boolean partialUpload) {
+        private Builder(boolean overrideFile, boolean partialUpload, boolean verifyChecksum) {
             this.overrideFile = overrideFile;
             this.partialUpload = partialUpload;
+            this.verifyChecksum = verifyChecksum;
         }
 
 
@@ -204,12 +219,27 @@ public final class UploadOptions {
         }
 
         /**
-         * Creates new {@link UploadOptions} with the set {@code overrideFile, partialUpload} options.
+         * Sets {@code verifyChecksum} option.
+         * <p>
+         * If {@code verifyChecksum} is {@code TRUE} the SHA-1 and SHA-256 digests of the data are computed while it is being sent
+         * and compared with the checksums the API returns for the new file. On a mismatch the upload call fails with an
+         * {@link java.io.IOException}, the file created on the server is left in place.
+         *
+         * @param verifyChecksum {@code true} to verify the uploaded data, {@code false} otherwise
+         * @return the same {@link Builder} instance
+         */
+        public Builder verifyChecksum(boolean verifyChecksum) {
+            this.verifyChecksum = verifyChecksum;
+            return this;
+        }
+
+        /**
+         * Creates new {@link UploadOptions} with the set {@code overrideFile, partialUpload, verifyChecksum} options.
          *
          * @return a new {@link UploadOptions} object with the configuration from this build
          */
         public UploadOptions build() {
-            return new UploadOptions(overrideFile, partialUpload);
+            return new UploadOptions(overrideFile, partialUpload, verifyChecksum);
         }
     }
 }
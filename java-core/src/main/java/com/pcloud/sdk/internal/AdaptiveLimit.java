@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ConcurrencyLimitPolicy;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An additive-increase, multiplicative-decrease limit on concurrent requests, driven by their latency.
+ * <p>
+ * Each API method has a latency baseline, the lowest latency seen over the current and the previous
+ * {@link #BASELINE_WINDOW} samples of the method, so that the baseline follows lasting changes.
+ * A request slower than the baseline times the tolerance of the policy, or failing, signals congestion
+ * and the limit is multiplied by the backoff ratio, at most once per round of requests: requests
+ * started before the last decrease cannot reflect it and do not cut the limit again. Otherwise the limit
+ * grows by {@code 1 / limit}, adding about one request per round, but only while the limit is in use.
+ */
+class AdaptiveLimit {
+
+    static final int BASELINE_WINDOW = 100;
+
+    private final ConcurrencyLimitPolicy policy;
+    private final Map<String, Baseline> baselines = new HashMap<>();
+    private double limit;
+    private boolean decreased;
+    private long lastDecreaseNanos;
+
+    AdaptiveLimit(ConcurrencyLimitPolicy policy) {
+        this.policy = policy;
+        this.limit = policy.initialLimit();
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    /**
+     * Adjust the limit for a completed request.
+     *
+     * @param method     the API method of the request
+     * @param startNanos the time the request was started
+     * @param endNanos   the time the response arrived or the request failed
+     * @param failed     whether the request failed in a way that points to an overloaded API
+     * @param inFlight   the number of requests running when the request completed, itself included
+     */
+    synchronized void onSample(String method, long startNanos, long endNanos, boolean failed, int inFlight) {
+        long latency = endNanos - startNanos;
+        boolean congested = failed;
+        if (!failed) {
+            Baseline baseline = baselines.get(method);
+            if (baseline == null) {
+                baseline = new Baseline();
+                baselines.put(method, baseline);
+            }
+            long minLatency = baseline.minLatency();
+            baseline.add(latency);
+            congested = minLatency != Long.MAX_VALUE && latency > minLatency * policy.latencyTolerance();
+        }
+
+        if (congested) {
+            if (!decreased || startNanos - lastDecreaseNanos >= 0) {
+                limit = Math.max(policy.minLimit(), limit * policy.backoffRatio());
+                decreased = true;
+                lastDecreaseNanos = endNanos;
+            }
+        } else if (inFlight * 2 >= limit) {
+            limit = Math.min(policy.maxLimit(), limit + 1 / limit);
+        }
+    }
+
+    private static final class Baseline {
+        private long previousMin = Long.MAX_VALUE;
+        private long currentMin = Long.MAX_VALUE;
+        private int count;
+
+        long minLatency() {
+            return Math.min(previousMin, currentMin);
+        }
+
+        void add(long latency) {
+            currentMin = Math.min(currentMin, latency);
+            if (++count == BASELINE_WINDOW) {
+                previousMin = currentMin;
+                currentMin = Long.MAX_VALUE;
+                count = 0;
+            }
+        }
+    }
+}
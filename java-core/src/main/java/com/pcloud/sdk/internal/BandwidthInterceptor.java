@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.BandwidthLimit;
+
+import org.jetbrains.annotations.NotNull;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.Okio;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies the client-wide {@link BandwidthLimit}s to the bodies of upload requests and content downloads.
+ */
+class BandwidthInterceptor implements Interceptor {
+
+    private static final Set<String> UPLOAD_METHODS = new HashSet<>(Arrays.asList("uploadfile", "upload_write"));
+
+    private final TokenBucket uploads;
+    private final TokenBucket downloads;
+
+    BandwidthInterceptor(BandwidthLimit uploadLimit, BandwidthLimit downloadLimit) {
+        this.uploads = uploadLimit != null ? ((RealBandwidthLimit) uploadLimit).bucket() : null;
+        this.downloads = downloadLimit != null ? ((RealBandwidthLimit) downloadLimit).bucket() : null;
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestBody body = request.body();
+        if (uploads != null && body != null && isUpload(request)) {
+            request = request.newBuilder()
+                    .method(request.method(), new ThrottledRequestBody(body, uploads))
+                    .build();
+        }
+
+        Response response = chain.proceed(request);
+        ResponseBody responseBody = response.body();
+        if (downloads != null && responseBody != null &&
+                request.tag(ContentHostSelector.Alternatives.class) != null) {
+            response = response.newBuilder()
+                    .body(ResponseBody.create(
+                            Okio.buffer(new ThrottledSource(responseBody.source(), downloads)),
+                            responseBody.contentType(),
+                            responseBody.contentLength()))
+                    .build();
+        }
+        return response;
+    }
+
+    private static boolean isUpload(Request request) {
+        List<String> segments = request.url().pathSegments();
+        return UPLOAD_METHODS.contains(segments.get(segments.size() - 1));
+    }
+
+    private static class ThrottledRequestBody extends RequestBody {
+
+        private final RequestBody delegate;
+        private final TokenBucket bucket;
+
+        ThrottledRequestBody(RequestBody delegate, TokenBucket bucket) {
+            this.delegate = delegate;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public boolean isOneShot() {
+            return delegate.isOneShot();
+        }
+
+        @Override
+        public void writeTo(@NotNull BufferedSink sink) throws IOException {
+            BufferedSink throttledSink = Okio.buffer(new ThrottledSink(sink, bucket));
+            delegate.writeTo(throttledSink);
+            throttledSink.emit();
+        }
+    }
+}
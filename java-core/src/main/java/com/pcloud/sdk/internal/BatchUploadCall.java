@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ApiError;
+import com.pcloud.sdk.BatchUploadException;
+import com.pcloud.sdk.RemoteFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+/**
+ * Creates files with a series of multi-part {@code uploadfile} requests, one batch of files after another.
+ * <p>
+ * The files of all batches are returned in the order of the requests and of the parts within them.
+ * A request failing after others created files fails the call with a {@link BatchUploadException}.
+ */
+class BatchUploadCall extends CompositeCall<List<RemoteFile>> {
+
+    private final RealApiClient apiClient;
+    private final List<Request> requests;
+    private final List<Integer> requestFileCounts;
+
+    BatchUploadCall(RealApiClient apiClient,
+                    OkHttpClient httpClient,
+                    List<Request> requests,
+                    List<Integer> requestFileCounts) {
+        super(httpClient);
+        this.apiClient = apiClient;
+        this.requests = requests;
+        this.requestFileCounts = requestFileCounts;
+    }
+
+    @Override
+    protected List<RemoteFile> run() throws IOException, ApiError {
+        List<RemoteFile> files = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            final int expectedCount = requestFileCounts.get(i);
+            try {
+                files.addAll(executeRequest(requests.get(i),
+                        response -> apiClient.getUploadedFiles(response, expectedCount)));
+            } catch (IOException | ApiError e) {
+                if (files.isEmpty()) {
+                    throw e;
+                }
+                throw new BatchUploadException(files, e);
+            }
+        }
+        return Collections.unmodifiableList(files);
+    }
+
+    @SuppressWarnings("MethodDoesntCallSuperMethod")
+    @Override
+    public BatchUploadCall clone() {
+        return new BatchUploadCall(apiClient, httpClient(), requests, requestFileCounts);
+    }
+}
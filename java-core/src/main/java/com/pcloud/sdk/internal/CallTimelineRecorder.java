@@ -0,0 +1,448 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.CallTimeline;
+import com.pcloud.sdk.CallTimelineListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+/**
+ * Records the {@link CallTimeline} of a sample of calls and reports it to a {@link CallTimelineListener}.
+ * <p>
+ * The network phases come from an {@link EventListener} created for each sampled call. The remaining
+ * marks are set by the {@link OkHttpCall} performing the call, when it is submitted and around the
+ * {@link ResponseAdapter}, and by {@link #interceptor()}, when the call starts running. That interceptor
+ * also times the writes of the request body to the network, the rest of the body time is spent producing it.
+ * <p>
+ * A timeline is reported when its call ends, or once its response is adapted if an {@link OkHttpCall} does that.
+ */
+class CallTimelineRecorder implements EventListener.Factory {
+
+    private static final long UNSET = Long.MIN_VALUE;
+
+    private final CallTimelineListener listener;
+    private final double sampleRate;
+    private final RandomSource random;
+    private final Clock nanoClock;
+    // Calls that get created but never run must not be kept around.
+    private final Map<okhttp3.Call, Timeline> timelines = Collections.synchronizedMap(new WeakHashMap<>());
+
+    CallTimelineRecorder(CallTimelineListener listener, double sampleRate) {
+        this(listener, sampleRate, RandomSource.DEFAULT, Clock.NANO_TIME);
+    }
+
+    CallTimelineRecorder(CallTimelineListener listener, double sampleRate, RandomSource random, Clock nanoClock) {
+        this.listener = listener;
+        this.sampleRate = sampleRate;
+        this.random = random;
+        this.nanoClock = nanoClock;
+    }
+
+    CallTimelineListener listener() {
+        return listener;
+    }
+
+    double sampleRate() {
+        return sampleRate;
+    }
+
+    @NotNull
+    @Override
+    public EventListener create(@NotNull okhttp3.Call call) {
+        if (sampleRate < 1 && random.nextDouble() >= sampleRate) {
+            return EventListener.NONE;
+        }
+        Timeline timeline = new Timeline(MetricsInterceptor.methodOf(call.request()));
+        timelines.put(call, timeline);
+        return new TimelineEventListener(timeline);
+    }
+
+    void onSubmitted(okhttp3.Call call) {
+        Timeline timeline = timelines.get(call);
+        if (timeline != null) {
+            timeline.markOnce(Mark.SUBMITTED);
+        }
+    }
+
+    void onAdaptStart(okhttp3.Call call) {
+        Timeline timeline = timelines.get(call);
+        if (timeline != null) {
+            timeline.adaptStarted();
+        }
+    }
+
+    void onAdaptEnd(okhttp3.Call call) {
+        Timeline timeline = timelines.get(call);
+        if (timeline != null) {
+            report(call, timeline.adaptEnded());
+        }
+    }
+
+    Interceptor interceptor() {
+        return new DispatchInterceptor();
+    }
+
+    private void report(okhttp3.Call call, CallTimeline completed) {
+        if (completed != null) {
+            timelines.remove(call);
+            listener.onCallCompleted(completed);
+        }
+    }
+
+    private enum Mark {
+        SUBMITTED, CALL_START, DISPATCHED,
+        DNS_START, DNS_END, CONNECT_START, SECURE_CONNECT_START, SECURE_CONNECT_END, CONNECT_END,
+        REQUEST_HEADERS_END, REQUEST_BODY_START, REQUEST_BODY_END,
+        RESPONSE_HEADERS_END, RESPONSE_BODY_START, RESPONSE_BODY_END,
+        CALL_END, ADAPT_START, ADAPT_END
+    }
+
+    private final class Timeline {
+        private final String method;
+        private final long[] marks = new long[Mark.values().length];
+        private long bodyBlockedNanos;
+        private boolean adapting;
+        private boolean ended;
+        private boolean failed;
+        private boolean reported;
+
+        Timeline(String method) {
+            this.method = method;
+            Arrays.fill(marks, UNSET);
+        }
+
+        synchronized void mark(Mark mark) {
+            marks[mark.ordinal()] = nanoClock.read();
+        }
+
+        synchronized void markOnce(Mark mark) {
+            if (marks[mark.ordinal()] == UNSET) {
+                marks[mark.ordinal()] = nanoClock.read();
+            }
+        }
+
+        synchronized void resetBodyBlocked() {
+            bodyBlockedNanos = 0;
+        }
+
+        synchronized void addBodyBlocked(long nanos) {
+            bodyBlockedNanos += nanos;
+        }
+
+        synchronized void adaptStarted() {
+            adapting = true;
+            marks[Mark.ADAPT_START.ordinal()] = nanoClock.read();
+        }
+
+        /**
+         * @return the completed timeline, {@code null} if it has already been reported
+         */
+        synchronized CallTimeline adaptEnded() {
+            adapting = false;
+            marks[Mark.ADAPT_END.ordinal()] = nanoClock.read();
+            return complete();
+        }
+
+        /**
+         * @return the completed timeline, {@code null} if it is to be completed by the adapter or has already been reported
+         */
+        synchronized CallTimeline ended(boolean failed) {
+            this.ended = true;
+            this.failed = failed;
+            marks[Mark.CALL_END.ordinal()] = nanoClock.read();
+            return adapting ? null : complete();
+        }
+
+        private CallTimeline complete() {
+            if (reported) {
+                return null;
+            }
+            reported = true;
+
+            long[] durations = new long[CallTimeline.Phase.values().length];
+            long start = first(Mark.SUBMITTED, Mark.CALL_START);
+            durations[CallTimeline.Phase.QUEUE.ordinal()] = between(start, get(Mark.DISPATCHED));
+            durations[CallTimeline.Phase.DNS.ordinal()] = between(get(Mark.DNS_START), get(Mark.DNS_END));
+            durations[CallTimeline.Phase.CONNECT.ordinal()] = between(get(Mark.CONNECT_START),
+                    first(Mark.SECURE_CONNECT_START, Mark.CONNECT_END));
+            durations[CallTimeline.Phase.TLS.ordinal()] = between(get(Mark.SECURE_CONNECT_START), get(Mark.SECURE_CONNECT_END));
+            long requestBody = between(get(Mark.REQUEST_BODY_START), get(Mark.REQUEST_BODY_END));
+            durations[CallTimeline.Phase.REQUEST_BODY.ordinal()] = requestBody;
+            durations[CallTimeline.Phase.REQUEST_BODY_SOURCE.ordinal()] =
+                    requestBody >= 0 ? Math.max(requestBody - bodyBlockedNanos, 0) : -1;
+            durations[CallTimeline.Phase.TIME_TO_FIRST_BYTE.ordinal()] = between(
+                    first(Mark.REQUEST_BODY_END, Mark.REQUEST_HEADERS_END), get(Mark.RESPONSE_HEADERS_END));
+            durations[CallTimeline.Phase.RESPONSE_BODY.ordinal()] = between(get(Mark.RESPONSE_BODY_START), get(Mark.RESPONSE_BODY_END));
+            durations[CallTimeline.Phase.DESERIALIZATION.ordinal()] = between(get(Mark.ADAPT_START), get(Mark.ADAPT_END));
+            long end = Math.max(get(Mark.CALL_END), get(Mark.ADAPT_END));
+            return new CompletedTimeline(method, durations, between(start, end), ended && !failed);
+        }
+
+        private long get(Mark mark) {
+            return marks[mark.ordinal()];
+        }
+
+        private long first(Mark preferred, Mark fallback) {
+            long value = get(preferred);
+            return value != UNSET ? value : get(fallback);
+        }
+
+        private long between(long start, long end) {
+            return start != UNSET && end != UNSET ? Math.max(end - start, 0) : -1;
+        }
+    }
+
+    private static final class CompletedTimeline implements CallTimeline {
+        private final String method;
+        private final long[] durations;
+        private final long totalNanos;
+        private final boolean successful;
+
+        CompletedTimeline(String method, long[] durations, long totalNanos, boolean successful) {
+            this.method = method;
+            this.durations = durations;
+            this.totalNanos = totalNanos;
+            this.successful = successful;
+        }
+
+        @Override
+        public String method() {
+            return method;
+        }
+
+        @Override
+        public long durationNanos(Phase phase) {
+            if (phase == null) {
+                throw new IllegalArgumentException("Phase argument cannot be null.");
+            }
+            return durations[phase.ordinal()];
+        }
+
+        @Override
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        @Override
+        public boolean isSuccessful() {
+            return successful;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(method).append(':');
+            for (Phase phase : Phase.values()) {
+                if (durations[phase.ordinal()] >= 0) {
+                    builder.append(' ').append(phase.name().toLowerCase(Locale.US))
+                            .append('=').append(durations[phase.ordinal()] / 1000).append("us");
+                }
+            }
+            return builder.append(" total=").append(totalNanos / 1000).append("us").toString();
+        }
+    }
+
+    private final class TimelineEventListener extends EventListener {
+
+        private final Timeline timeline;
+
+        TimelineEventListener(Timeline timeline) {
+            this.timeline = timeline;
+        }
+
+        @Override
+        public void callStart(@NotNull okhttp3.Call call) {
+            timeline.markOnce(Mark.CALL_START);
+        }
+
+        @Override
+        public void dnsStart(@NotNull okhttp3.Call call, @NotNull String domainName) {
+            timeline.mark(Mark.DNS_START);
+        }
+
+        @Override
+        public void dnsEnd(@NotNull okhttp3.Call call, @NotNull String domainName, @NotNull List<InetAddress> inetAddressList) {
+            timeline.mark(Mark.DNS_END);
+        }
+
+        @Override
+        public void connectStart(@NotNull okhttp3.Call call, @NotNull InetSocketAddress inetSocketAddress, @NotNull Proxy proxy) {
+            timeline.mark(Mark.CONNECT_START);
+        }
+
+        @Override
+        public void secureConnectStart(@NotNull okhttp3.Call call) {
+            timeline.mark(Mark.SECURE_CONNECT_START);
+        }
+
+        @Override
+        public void secureConnectEnd(@NotNull okhttp3.Call call, @Nullable Handshake handshake) {
+            timeline.mark(Mark.SECURE_CONNECT_END);
+        }
+
+        @Override
+        public void connectEnd(@NotNull okhttp3.Call call, @NotNull InetSocketAddress inetSocketAddress, @NotNull Proxy proxy, @Nullable Protocol protocol) {
+            timeline.mark(Mark.CONNECT_END);
+        }
+
+        @Override
+        public void requestHeadersEnd(@NotNull okhttp3.Call call, @NotNull Request request) {
+            timeline.mark(Mark.REQUEST_HEADERS_END);
+        }
+
+        @Override
+        public void requestBodyStart(@NotNull okhttp3.Call call) {
+            timeline.mark(Mark.REQUEST_BODY_START);
+        }
+
+        @Override
+        public void requestBodyEnd(@NotNull okhttp3.Call call, long byteCount) {
+            timeline.mark(Mark.REQUEST_BODY_END);
+        }
+
+        @Override
+        public void responseHeadersEnd(@NotNull okhttp3.Call call, @NotNull Response response) {
+            timeline.mark(Mark.RESPONSE_HEADERS_END);
+        }
+
+        @Override
+        public void responseBodyStart(@NotNull okhttp3.Call call) {
+            timeline.mark(Mark.RESPONSE_BODY_START);
+        }
+
+        @Override
+        public void responseBodyEnd(@NotNull okhttp3.Call call, long byteCount) {
+            timeline.mark(Mark.RESPONSE_BODY_END);
+        }
+
+        @Override
+        public void callEnd(@NotNull okhttp3.Call call) {
+            report(call, timeline.ended(false));
+        }
+
+        @Override
+        public void callFailed(@NotNull okhttp3.Call call, @NotNull IOException ioe) {
+            report(call, timeline.ended(true));
+        }
+    }
+
+    private class DispatchInterceptor implements Interceptor {
+
+        @NotNull
+        @Override
+        public Response intercept(@NotNull Chain chain) throws IOException {
+            Request request = chain.request();
+            Timeline timeline = timelines.get(chain.call());
+            if (timeline == null) {
+                return chain.proceed(request);
+            }
+
+            timeline.markOnce(Mark.DISPATCHED);
+            if (request.body() != null) {
+                request = request.newBuilder()
+                        .method(request.method(), new TimedRequestBody(request.body(), timeline))
+                        .build();
+            }
+            return chain.proceed(request);
+        }
+    }
+
+    private final class TimedRequestBody extends RequestBody {
+
+        private final RequestBody delegate;
+        private final Timeline timeline;
+
+        TimedRequestBody(RequestBody delegate, Timeline timeline) {
+            this.delegate = delegate;
+            this.timeline = timeline;
+        }
+
+        @Nullable
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public boolean isOneShot() {
+            return delegate.isOneShot();
+        }
+
+        @Override
+        public boolean isDuplex() {
+            return delegate.isDuplex();
+        }
+
+        @Override
+        public void writeTo(@NotNull BufferedSink sink) throws IOException {
+            timeline.resetBodyBlocked();
+            BufferedSink timedSink = Okio.buffer(new ForwardingSink(sink) {
+                @Override
+                public void write(@NotNull Buffer source, long byteCount) throws IOException {
+                    long start = nanoClock.read();
+                    try {
+                        super.write(source, byteCount);
+                    } finally {
+                        timeline.addBodyBlocked(nanoClock.read() - start);
+                    }
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    long start = nanoClock.read();
+                    try {
+                        super.flush();
+                    } finally {
+                        timeline.addBodyBlocked(nanoClock.read() - start);
+                    }
+                }
+            });
+            delegate.writeTo(timedSink);
+            timedSink.emit();
+        }
+    }
+}
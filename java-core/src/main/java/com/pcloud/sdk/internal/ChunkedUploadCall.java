@@ -0,0 +1,515 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ApiError;
+import com.pcloud.sdk.ChunkedUploadOptions;
+import com.pcloud.sdk.DataSource;
+import com.pcloud.sdk.ProgressListener;
+import com.pcloud.sdk.RemoteFile;
+import com.pcloud.sdk.internal.networking.APIHttpException;
+import com.pcloud.sdk.internal.networking.ApiResponse;
+import com.pcloud.sdk.internal.networking.ChecksumsResponse;
+import com.pcloud.sdk.internal.networking.GetFileResponse;
+import com.pcloud.sdk.internal.networking.UploadCreateResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Sink;
+import okio.Timeout;
+
+/**
+ * Uploads a {@link DataSource} through the {@code upload_create}/{@code upload_write}/{@code upload_save} methods.
+ * <p>
+ * The data is cut into chunks as it is being written, each chunk is sent with its own
+ * {@code upload_write} request at its offset in the file. A {@link Semaphore} keeps the number of
+ * chunks in flight (and in memory) bounded by {@link ChunkedUploadOptions#parallelism()}, blocking
+ * the writing {@link DataSource} until a slot is free. The chunks are enqueued through the
+ * {@link RequestScheduler} of the client, within the request limits of its dispatcher, and a chunk
+ * is sent again only after a network failure or a transient HTTP error.
+ * <p>
+ * The upload session and the chunks it acknowledged are shared with the {@link #clone() clones} of a call.
+ * A clone of a failed call resumes the upload: the session is reused while {@code upload_info} still knows
+ * it, and the chunks it already holds are skipped as the data is written again.
+ */
+class ChunkedUploadCall extends CompositeCall<RemoteFile> {
+
+    private static final MediaType OCTET_STREAM = MediaType.get("application/octet-stream");
+    private static final long INITIAL_RETRY_DELAY_MS = 250;
+    private static final long MAX_RETRY_DELAY_MS = 8000;
+
+    private final RealApiClient apiClient;
+    private final RequestScheduler scheduler;
+    private final HttpUrl apiHost;
+    private final Long folderId;
+    private final String path;
+    private final String filename;
+    private final DataSource data;
+    private final Date modifiedDate;
+    private final ProgressListener listener;
+    private final long progressThreshold;
+    private final ChunkedUploadOptions options;
+    private final UploadSession session;
+
+    ChunkedUploadCall(RealApiClient apiClient,
+                      OkHttpClient httpClient,
+                      RequestScheduler scheduler,
+                      HttpUrl apiHost,
+                      Long folderId,
+                      String path,
+                      String filename,
+                      DataSource data,
+                      Date modifiedDate,
+                      ProgressListener listener,
+                      long progressThreshold,
+                      ChunkedUploadOptions options) {
+        this(apiClient, httpClient, scheduler, apiHost, folderId, path, filename, data, modifiedDate, listener,
+                progressThreshold, options, new UploadSession());
+    }
+
+    private ChunkedUploadCall(RealApiClient apiClient,
+                              OkHttpClient httpClient,
+                              RequestScheduler scheduler,
+                              HttpUrl apiHost,
+                              Long folderId,
+                              String path,
+                              String filename,
+                              DataSource data,
+                              Date modifiedDate,
+                              ProgressListener listener,
+                              long progressThreshold,
+                              ChunkedUploadOptions options,
+                              UploadSession session) {
+        super(httpClient);
+        this.apiClient = apiClient;
+        this.scheduler = scheduler;
+        this.apiHost = apiHost;
+        this.folderId = folderId;
+        this.path = path;
+        this.filename = filename;
+        this.data = data;
+        this.modifiedDate = modifiedDate;
+        this.listener = listener;
+        this.progressThreshold = progressThreshold;
+        this.options = options;
+        this.session = session;
+    }
+
+    @Override
+    protected RemoteFile run() throws IOException, ApiError {
+        long uploadId = openUploadSession();
+        ChunkWriter writer = new ChunkWriter(uploadId, data.contentLength());
+        ContentDigests digests = options.verifyChecksum() ? new ContentDigests(true, true) : null;
+        BufferedSink sink = Okio.buffer(digests != null ? digests.hashing(writer) : writer);
+        try {
+            try {
+                data.writeTo(sink);
+                sink.flush();
+                writer.finish();
+            } finally {
+                writer.awaitAllChunks();
+            }
+        } catch (ChunkFailedException e) {
+            throw (ApiError) e.getCause();
+        }
+        RemoteFile file = saveUploadSession(uploadId);
+        // The saved session is gone, a clone has to upload from scratch.
+        session.reset();
+        if (digests != null) {
+            ChecksumsResponse checksums = executeRequest(apiClient.newChecksumsRequest(file.fileId()),
+                    response -> apiClient.getAsApiResponse(response, ChecksumsResponse.class));
+            digests.verify("uploaded file", checksums.getSha1(), checksums.getSha256());
+        }
+        return file;
+    }
+
+    @SuppressWarnings("MethodDoesntCallSuperMethod")
+    @Override
+    public ChunkedUploadCall clone() {
+        return new ChunkedUploadCall(apiClient, httpClient(), scheduler, apiHost, folderId, path, filename,
+                data, modifiedDate, listener, progressThreshold, options, session);
+    }
+
+    /**
+     * Reuse the session of an earlier attempt if the API still has it, create a new one otherwise.
+     */
+    private long openUploadSession() throws IOException, ApiError {
+        Long uploadId = session.uploadId();
+        if (uploadId != null) {
+            Request request = new Request.Builder()
+                    .url(apiHost.newBuilder()
+                            .addPathSegment("upload_info")
+                            .addQueryParameter("uploadid", String.valueOf(uploadId))
+                            .build())
+                    .get()
+                    .build();
+            try {
+                executeRequest(request, response -> apiClient.getAsApiResponse(response, ApiResponse.class));
+                return uploadId;
+            } catch (ApiError e) {
+                // The session has expired, start over.
+            }
+        }
+        uploadId = createUploadSession();
+        session.start(uploadId);
+        return uploadId;
+    }
+
+    private long createUploadSession() throws IOException, ApiError {
+        Request request = new Request.Builder()
+                .url(apiHost.newBuilder().addPathSegment("upload_create").build())
+                .get()
+                .build();
+        return executeRequest(request, response ->
+                apiClient.getAsApiResponse(response, UploadCreateResponse.class).getUploadId());
+    }
+
+    private Request newChunkRequest(long uploadId, long offset, Buffer chunk) {
+        return new Request.Builder()
+                .url(apiHost.newBuilder()
+                        .addPathSegment("upload_write")
+                        .addQueryParameter("uploadid", String.valueOf(uploadId))
+                        .addQueryParameter("uploadoffset", String.valueOf(offset))
+                        .build())
+                // The snapshot shares the chunk's segments and can be written again on a retry.
+                .put(RequestBody.create(chunk.snapshot(), OCTET_STREAM))
+                .build();
+    }
+
+    /**
+     * @return {@code true} for network failures and the HTTP errors that may go away on their own
+     */
+    static boolean isTransient(IOException error) {
+        if (error instanceof APIHttpException) {
+            int code = ((APIHttpException) error).getCode();
+            return code == 408 || code == 429 || code >= 500;
+        }
+        return true;
+    }
+
+    private RemoteFile saveUploadSession(long uploadId) throws IOException, ApiError {
+        HttpUrl.Builder urlBuilder = apiHost.newBuilder()
+                .addPathSegment("upload_save")
+                .addQueryParameter("uploadid", String.valueOf(uploadId))
+                .addQueryParameter("name", filename)
+                .addQueryParameter("renameifexists", String.valueOf(options.overrideFile() ? 0 : 1));
+
+        if (folderId != null) {
+            urlBuilder.addQueryParameter("folderid", String.valueOf(folderId));
+        }
+
+        if (path != null) {
+            urlBuilder.addEncodedQueryParameter("path", path);
+        }
+
+        if (modifiedDate != null) {
+            urlBuilder.addQueryParameter("mtime", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(modifiedDate.getTime())));
+        }
+
+        Request request = new Request.Builder()
+                .url(urlBuilder.build())
+                .get()
+                .build();
+
+        return executeRequest(request, response -> {
+            RemoteFile file = apiClient.getAsApiResponse(response, GetFileResponse.class).getFile();
+            if (file == null) {
+                throw new IOException("API saved the upload but did not return remote file data.");
+            }
+            apiClient.forgetFileContent(file.fileId());
+            return file;
+        });
+    }
+
+    /**
+     * A {@link Sink} cutting the written data into chunks and dispatching them for upload.
+     */
+    private class ChunkWriter implements Sink {
+
+        private final long uploadId;
+        private final long totalBytes;
+        private final Semaphore slots = new Semaphore(options.parallelism());
+        private final Buffer pending = new Buffer();
+
+        private long nextOffset;
+        private long acknowledgedBytes;
+        private long lastReportedBytes;
+        private volatile Exception failure;
+
+        ChunkWriter(long uploadId, long totalBytes) {
+            this.uploadId = uploadId;
+            this.totalBytes = totalBytes;
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            throwIfFailed();
+            while (byteCount > 0) {
+                long toMove = Math.min(byteCount, options.chunkSize() - pending.size());
+                pending.write(source, toMove);
+                byteCount -= toMove;
+                if (pending.size() == options.chunkSize()) {
+                    dispatchPendingChunk();
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /**
+         * Send any remaining data and wait for all chunks to be acknowledged.
+         */
+        void finish() throws IOException {
+            if (pending.size() > 0) {
+                dispatchPendingChunk();
+            }
+            awaitAllChunks();
+            throwIfFailed();
+            if (isCanceled()) {
+                throw new IOException("Canceled");
+            }
+        }
+
+        private void dispatchPendingChunk() throws IOException {
+            final Buffer chunk = new Buffer();
+            chunk.write(pending, pending.size());
+            final long offset = nextOffset;
+            nextOffset += chunk.size();
+            if (session.isAcknowledged(offset, chunk.size())) {
+                onChunkAcknowledged(chunk.size());
+                chunk.clear();
+                return;
+            }
+
+            acquireSlot();
+            new ChunkUpload(offset, chunk).send();
+        }
+
+        private void acquireSlot() throws IOException {
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a chunk upload slot.");
+            }
+            try {
+                throwIfFailed();
+            } catch (IOException | RuntimeException e) {
+                // No chunk is going to use the slot, awaitAllChunks() would wait for it forever.
+                slots.release();
+                throw e;
+            }
+        }
+
+        void awaitAllChunks() throws InterruptedIOException {
+            try {
+                slots.acquire(options.parallelism());
+                slots.release(options.parallelism());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for chunk uploads to complete.");
+            }
+        }
+
+        private synchronized void onChunkFailed(Exception e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+
+        private synchronized void onChunkAcknowledged(long size) {
+            acknowledgedBytes += size;
+            if (listener != null && (acknowledgedBytes - lastReportedBytes >= progressThreshold ||
+                    acknowledgedBytes == totalBytes)) {
+                lastReportedBytes = acknowledgedBytes;
+                listener.onProgress(acknowledgedBytes, totalBytes);
+            }
+        }
+
+        private void throwIfFailed() throws IOException {
+            Exception error = failure;
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error != null) {
+                // ApiError is checked, surface it through the Sink contract and unwrap it in run().
+                throw new ChunkFailedException(error);
+            }
+        }
+
+        /**
+         * The {@code upload_write} request of a chunk, holding a slot of the {@link ChunkWriter} until it succeeds
+         * or fails for good.
+         */
+        private class ChunkUpload implements okhttp3.Callback {
+
+            private final long offset;
+            private final Buffer chunk;
+            private int attempt;
+            private long retryDelayMs = INITIAL_RETRY_DELAY_MS;
+
+            ChunkUpload(long offset, Buffer chunk) {
+                this.offset = offset;
+                this.chunk = chunk;
+            }
+
+            void send() {
+                if (failure != null) {
+                    finish();
+                    return;
+                }
+                okhttp3.Call call;
+                try {
+                    call = newRawCall(newChunkRequest(uploadId, offset, chunk));
+                } catch (IOException e) {
+                    fail(e);
+                    return;
+                }
+                scheduler.enqueue(call, apiClient.priority(), this);
+            }
+
+            @Override
+            public void onFailure(okhttp3.Call call, IOException e) {
+                release(call);
+                retryOrFail(e);
+            }
+
+            @Override
+            public void onResponse(okhttp3.Call call, Response response) {
+                try (Response ignored = response) {
+                    apiClient.getAsApiResponse(response, ApiResponse.class);
+                } catch (IOException e) {
+                    retryOrFail(e);
+                    return;
+                } catch (ApiError | RuntimeException e) {
+                    fail(e);
+                    return;
+                } finally {
+                    release(call);
+                }
+                session.acknowledge(offset, chunk.size());
+                onChunkAcknowledged(chunk.size());
+                finish();
+            }
+
+            private void retryOrFail(IOException error) {
+                if (isCanceled() || attempt >= options.maxChunkRetries() || !isTransient(error)) {
+                    fail(error);
+                    return;
+                }
+                attempt++;
+                final long delay = retryDelayMs;
+                retryDelayMs = Math.min(retryDelayMs * 2, MAX_RETRY_DELAY_MS);
+                // Wait outside of the callback, the dispatcher counts the failed request as running until it returns.
+                ExecutorService executor = httpClient().dispatcher().executorService();
+                try {
+                    executor.execute(() -> {
+                        try {
+                            Thread.sleep(delay);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            fail(new InterruptedIOException("Interrupted while waiting to resend a chunk."));
+                            return;
+                        }
+                        send();
+                    });
+                } catch (RejectedExecutionException e) {
+                    InterruptedIOException rejected = new InterruptedIOException("Executor rejected the chunk upload.");
+                    rejected.initCause(e);
+                    fail(rejected);
+                }
+            }
+
+            private void fail(Exception error) {
+                onChunkFailed(error);
+                finish();
+            }
+
+            private void finish() {
+                chunk.clear();
+                slots.release();
+            }
+        }
+    }
+
+    /**
+     * The upload session of a call and its clones, with the offset and size of each acknowledged chunk.
+     */
+    private static final class UploadSession {
+
+        private final Map<Long, Long> acknowledgedChunks = new HashMap<>();
+        private Long uploadId;
+
+        synchronized Long uploadId() {
+            return uploadId;
+        }
+
+        synchronized void start(long uploadId) {
+            this.uploadId = uploadId;
+            acknowledgedChunks.clear();
+        }
+
+        synchronized void reset() {
+            uploadId = null;
+            acknowledgedChunks.clear();
+        }
+
+        synchronized boolean isAcknowledged(long offset, long size) {
+            Long acknowledgedSize = acknowledgedChunks.get(offset);
+            return acknowledgedSize != null && acknowledgedSize == size;
+        }
+
+        synchronized void acknowledge(long offset, long size) {
+            acknowledgedChunks.put(offset, size);
+        }
+    }
+
+    private static class ChunkFailedException extends IOException {
+        ChunkFailedException(Throwable cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.CircuitBreakerPolicy;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Fails API requests right away while too many of the recent ones have failed, as configured by a {@link CircuitBreakerPolicy}.
+ * <p>
+ * The outcomes of the completed requests are kept in a ring of the window size. When the share of
+ * failures reaches the threshold, the circuit opens and requests fail with a {@link CircuitOpenException}
+ * until the open duration elapses. Then the circuit is half-open: one request is let through as a probe
+ * while the others keep failing, and its outcome either closes the circuit with a clean window or opens it again.
+ * <p>
+ * Content requests, tagged with {@link ContentHostSelector.Alternatives}, are not guarded, their hosts
+ * fail independently of the API.
+ */
+class CircuitBreakerInterceptor implements Interceptor {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Thrown for requests not sent because the circuit is open.
+     */
+    static final class CircuitOpenException extends IOException {
+        CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+
+    private final CircuitBreakerPolicy policy;
+    private final Clock nanoClock;
+    private final boolean[] failures;
+    private int nextIndex;
+    private int sampleCount;
+    private int failureCount;
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private boolean probing;
+
+    CircuitBreakerInterceptor(CircuitBreakerPolicy policy) {
+        this(policy, Clock.NANO_TIME);
+    }
+
+    CircuitBreakerInterceptor(CircuitBreakerPolicy policy, Clock nanoClock) {
+        this.policy = policy;
+        this.nanoClock = nanoClock;
+        this.failures = new boolean[policy.windowSize()];
+    }
+
+    CircuitBreakerPolicy policy() {
+        return policy;
+    }
+
+    synchronized State state() {
+        if (state == State.OPEN && openElapsed(nanoClock.read())) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.tag(ContentHostSelector.Alternatives.class) != null) {
+            return chain.proceed(request);
+        }
+
+        boolean probe = acquire();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            if (chain.call().isCanceled()) {
+                release(probe);
+            } else {
+                record(probe, true);
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            release(probe);
+            throw e;
+        }
+        record(probe, response.code() == 429 || response.code() >= 500);
+        return response;
+    }
+
+    /**
+     * Let a request through or fail it.
+     *
+     * @return whether the request is the probe of a half-open circuit
+     * @throws CircuitOpenException if the request cannot go through
+     */
+    private synchronized boolean acquire() throws CircuitOpenException {
+        long now = nanoClock.read();
+        if (state == State.OPEN) {
+            if (!openElapsed(now)) {
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(openedAtNanos + openDurationNanos() - now);
+                throw new CircuitOpenException("Too many API requests have failed, requests are suspended for another " + remainingMs + "ms.");
+            }
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probing) {
+                throw new CircuitOpenException("Too many API requests have failed, waiting for a probe request to complete.");
+            }
+            probing = true;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void release(boolean probe) {
+        if (probe && state == State.HALF_OPEN) {
+            probing = false;
+        }
+    }
+
+    private synchronized void record(boolean probe, boolean failed) {
+        if (probe) {
+            if (state == State.HALF_OPEN) {
+                if (failed) {
+                    open();
+                } else {
+                    close();
+                }
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            // The request was let through before the circuit opened, its outcome is of no use anymore.
+            return;
+        }
+
+        if (sampleCount == failures.length) {
+            if (failures[nextIndex]) {
+                failureCount--;
+            }
+        } else {
+            sampleCount++;
+        }
+        failures[nextIndex] = failed;
+        if (failed) {
+            failureCount++;
+        }
+        nextIndex = (nextIndex + 1) % failures.length;
+
+        if (sampleCount >= policy.minimumRequests() &&
+                failureCount >= policy.failureRateThreshold() * sampleCount) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAtNanos = nanoClock.read();
+        probing = false;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        probing = false;
+        sampleCount = 0;
+        failureCount = 0;
+        nextIndex = 0;
+    }
+
+    private boolean openElapsed(long now) {
+        return now - openedAtNanos >= openDurationNanos();
+    }
+
+    private long openDurationNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(policy.openDurationMs());
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+/**
+ * A source of the current time, replaceable in tests.
+ * <p>
+ * Stands in for {@code java.util.function.LongSupplier}, which Android provides from API level 24 only.
+ */
+interface Clock {
+
+    /**
+     * Monotonic time in nanoseconds, see {@link System#nanoTime()}.
+     */
+    Clock NANO_TIME = System::nanoTime;
+
+    /**
+     * Wall-clock time in milliseconds, see {@link System#currentTimeMillis()}.
+     */
+    Clock CURRENT_TIME_MILLIS = System::currentTimeMillis;
+
+    long read();
+}
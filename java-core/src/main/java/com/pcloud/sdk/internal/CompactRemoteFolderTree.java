@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.pcloud.sdk.ApiClient;
+import com.pcloud.sdk.RemoteEntry;
+import com.pcloud.sdk.RemoteFolder;
+import com.pcloud.sdk.RemoteFolderTree;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link RemoteFolderTree} storing entry metadata in primitive arrays.
+ * <p>
+ * Entries are stored in depth-first order, so that the subtree of an entry occupies the
+ * indexes up to its {@link #subtreeEnd} and the children of a folder can be enumerated by
+ * skipping over the subtrees of its children. Names and content types are indexes into a
+ * table of distinct strings, and entry ids like {@code "d1"} or {@code "f2"} are derived
+ * from the numeric file or folder ids instead of being stored.
+ */
+class CompactRemoteFolderTree implements RemoteFolderTree {
+
+    private static final int FLAG_FOLDER = 1;
+    private static final int FLAG_SHARED = 1 << 1;
+    private static final int FLAG_MINE = 1 << 2;
+    private static final int FLAG_CAN_READ = 1 << 3;
+    private static final int FLAG_CAN_MODIFY = 1 << 4;
+    private static final int FLAG_CAN_DELETE = 1 << 5;
+    private static final int FLAG_CAN_CREATE = 1 << 6;
+    private static final int FLAG_THUMBNAIL = 1 << 7;
+    private static final int DEFAULT_FLAGS = FLAG_CAN_READ | FLAG_CAN_MODIFY | FLAG_CAN_DELETE | FLAG_CAN_CREATE;
+
+    private static final int NO_VALUE = -1;
+    private static final String MAX_UNSIGNED_LONG = "18446744073709551615";
+
+    private final ApiClient apiClient;
+    private final int size;
+    private final long rootParentFolderId;
+    private final String[] strings;
+    // File id for files, folder id for folders.
+    private final long[] ids;
+    private final int[] parents;
+    private final int[] subtreeEnd;
+    private final byte[] flags;
+    private final int[] names;
+    private final int[] contentTypes;
+    private final long[] sizes;
+    private final long[] hashes;
+    // Creation and modification times, in seconds.
+    private final int[] created;
+    private final int[] modified;
+    // Hashes that are not unsigned 64-bit numbers, expected to be rare.
+    private final Map<Integer, String> irregularHashes;
+
+    private CompactRemoteFolderTree(ApiClient apiClient, Builder builder) {
+        this.apiClient = apiClient;
+        this.size = builder.size;
+        this.rootParentFolderId = builder.rootParentFolderId;
+        this.strings = new String[builder.strings.size()];
+        for (Map.Entry<String, Integer> entry : builder.strings.entrySet()) {
+            strings[entry.getValue()] = entry.getKey();
+        }
+        this.ids = Arrays.copyOf(builder.ids, size);
+        this.parents = Arrays.copyOf(builder.parents, size);
+        this.subtreeEnd = Arrays.copyOf(builder.subtreeEnd, size);
+        this.flags = Arrays.copyOf(builder.flags, size);
+        this.names = Arrays.copyOf(builder.names, size);
+        this.contentTypes = Arrays.copyOf(builder.contentTypes, size);
+        this.sizes = Arrays.copyOf(builder.sizes, size);
+        this.hashes = Arrays.copyOf(builder.hashes, size);
+        this.created = Arrays.copyOf(builder.created, size);
+        this.modified = Arrays.copyOf(builder.modified, size);
+        this.irregularHashes = builder.irregularHashes;
+    }
+
+    @Override
+    public RemoteFolder root() {
+        return entry(0).asFolder();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    RealRemoteEntry entry(int index) {
+        RealRemoteEntry.Fields fields = new RealRemoteEntry.Fields();
+        int entryFlags = flags[index];
+        fields.isFolder = (entryFlags & FLAG_FOLDER) != 0;
+        fields.id = (fields.isFolder ? "d" : "f") + ids[index];
+        fields.parentFolderId = parents[index] != NO_VALUE ? ids[parents[index]] : rootParentFolderId;
+        fields.name = string(names[index]);
+        fields.created = date(created[index]);
+        fields.lastModified = date(modified[index]);
+        fields.isShared = (entryFlags & FLAG_SHARED) != 0;
+        fields.isMine = (entryFlags & FLAG_MINE) != 0;
+        fields.canRead = (entryFlags & FLAG_CAN_READ) != 0;
+        fields.canModify = (entryFlags & FLAG_CAN_MODIFY) != 0;
+        fields.canDelete = (entryFlags & FLAG_CAN_DELETE) != 0;
+        if (fields.isFolder) {
+            fields.folderId = ids[index];
+            fields.canCreate = (entryFlags & FLAG_CAN_CREATE) != 0;
+            fields.children = new ChildList(index);
+            return new RealRemoteFolder(apiClient, fields);
+        } else {
+            fields.fileId = ids[index];
+            fields.contentType = string(contentTypes[index]);
+            fields.size = sizes[index];
+            fields.hash = irregularHashes.containsKey(index) ?
+                    irregularHashes.get(index) : toUnsignedString(hashes[index]);
+            fields.hasThumbnail = (entryFlags & FLAG_THUMBNAIL) != 0;
+            return new RealRemoteFile(apiClient, fields);
+        }
+    }
+
+    private String string(int index) {
+        return index != NO_VALUE ? strings[index] : null;
+    }
+
+    private static Date date(int seconds) {
+        return seconds != NO_VALUE ? new Date((seconds & 0xFFFFFFFFL) * 1000) : null;
+    }
+
+    // Long.toUnsignedString() and Long.parseUnsignedLong() are available on Android from API level 26 only.
+
+    private static String toUnsignedString(long value) {
+        if (value >= 0) {
+            return Long.toString(value);
+        }
+        long quotient = (value >>> 1) / 5;
+        return Long.toString(quotient) + (value - quotient * 10);
+    }
+
+    /**
+     * Parse a decimal unsigned 64-bit number, accepting only the form written by {@link #toUnsignedString(long)}.
+     */
+    private static long parseUnsignedLong(String value) {
+        int length = value.length();
+        if (length == 0 || length > MAX_UNSIGNED_LONG.length() ||
+                (length == MAX_UNSIGNED_LONG.length() && value.compareTo(MAX_UNSIGNED_LONG) > 0) ||
+                (length > 1 && value.charAt(0) == '0')) {
+            throw new NumberFormatException(value);
+        }
+        long result = 0;
+        for (int i = 0; i < length; i++) {
+            char digit = value.charAt(i);
+            if (digit < '0' || digit > '9') {
+                throw new NumberFormatException(value);
+            }
+            result = result * 10 + (digit - '0');
+        }
+        return result;
+    }
+
+    /**
+     * The children of a folder, materialized on access.
+     */
+    private class ChildList extends AbstractList<RemoteEntry> {
+
+        private final int folderIndex;
+        private int[] childIndexes;
+
+        ChildList(int folderIndex) {
+            this.folderIndex = folderIndex;
+        }
+
+        @Override
+        public RemoteEntry get(int index) {
+            return entry(childIndexes()[index]);
+        }
+
+        @Override
+        public int size() {
+            return childIndexes().length;
+        }
+
+        private int[] childIndexes() {
+            if (childIndexes == null) {
+                int count = 0;
+                for (int i = folderIndex + 1; i < subtreeEnd[folderIndex]; i = subtreeEnd[i]) {
+                    count++;
+                }
+                int[] indexes = new int[count];
+                count = 0;
+                for (int i = folderIndex + 1; i < subtreeEnd[folderIndex]; i = subtreeEnd[i]) {
+                    indexes[count++] = i;
+                }
+                childIndexes = indexes;
+            }
+            return childIndexes;
+        }
+    }
+
+    /**
+     * Reads a {@code listfolder} response straight into the columns of a tree, without creating entry objects.
+     */
+    static class Reader extends ListFolderResponseReader {
+
+        private final ApiClient apiClient;
+        private Builder builder;
+
+        Reader(ApiClient apiClient) {
+            this.apiClient = apiClient;
+        }
+
+        CompactRemoteFolderTree tree() {
+            return builder != null ? new CompactRemoteFolderTree(apiClient, builder) : null;
+        }
+
+        @Override
+        protected void readMetadata(JsonReader reader) throws IOException {
+            builder = new Builder();
+            readEntry(reader, NO_VALUE);
+            if (builder.size == 0 || (builder.flags[0] & FLAG_FOLDER) == 0) {
+                throw new IOException("Listed entry is not a folder.");
+            }
+        }
+
+        private void readEntry(JsonReader reader, int parent) throws IOException {
+            Builder tree = builder;
+            int index = tree.add(parent);
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "parentfolderid":
+                        long parentFolderId = reader.nextLong();
+                        if (parent == NO_VALUE) {
+                            tree.rootParentFolderId = parentFolderId;
+                        }
+                        break;
+                    case "name":
+                        tree.names[index] = tree.string(reader.nextString());
+                        break;
+                    case "modified":
+                        tree.modified[index] = readSeconds(reader);
+                        break;
+                    case "created":
+                        tree.created[index] = readSeconds(reader);
+                        break;
+                    case "isfolder":
+                        tree.setFlag(index, FLAG_FOLDER, reader.nextBoolean());
+                        break;
+                    case "isshared":
+                        tree.setFlag(index, FLAG_SHARED, reader.nextBoolean());
+                        break;
+                    case "ismine":
+                        tree.setFlag(index, FLAG_MINE, reader.nextBoolean());
+                        break;
+                    case "canread":
+                        tree.setFlag(index, FLAG_CAN_READ, reader.nextBoolean());
+                        break;
+                    case "canmodify":
+                        tree.setFlag(index, FLAG_CAN_MODIFY, reader.nextBoolean());
+                        break;
+                    case "candelete":
+                        tree.setFlag(index, FLAG_CAN_DELETE, reader.nextBoolean());
+                        break;
+                    case "cancreate":
+                        tree.setFlag(index, FLAG_CAN_CREATE, reader.nextBoolean());
+                        break;
+                    case "thumb":
+                        tree.setFlag(index, FLAG_THUMBNAIL, reader.nextBoolean());
+                        break;
+                    case "fileid":
+                    case "folderid":
+                        tree.ids[index] = reader.nextLong();
+                        break;
+                    case "contenttype":
+                        tree.contentTypes[index] = tree.string(reader.nextString());
+                        break;
+                    case "size":
+                        tree.sizes[index] = reader.nextLong();
+                        break;
+                    case "hash":
+                        tree.setHash(index, reader.nextString());
+                        break;
+                    case "contents":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            readEntry(reader, index);
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            tree.subtreeEnd[index] = tree.size;
+        }
+
+        private static int readSeconds(JsonReader reader) throws IOException {
+            if (reader.peek() == JsonToken.NUMBER) {
+                return (int) reader.nextLong();
+            }
+            reader.skipValue();
+            return NO_VALUE;
+        }
+    }
+
+    private static class Builder {
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        int size;
+        long rootParentFolderId;
+        final Map<String, Integer> strings = new HashMap<>();
+        long[] ids = new long[INITIAL_CAPACITY];
+        int[] parents = new int[INITIAL_CAPACITY];
+        int[] subtreeEnd = new int[INITIAL_CAPACITY];
+        byte[] flags = new byte[INITIAL_CAPACITY];
+        int[] names = new int[INITIAL_CAPACITY];
+        int[] contentTypes = new int[INITIAL_CAPACITY];
+        long[] sizes = new long[INITIAL_CAPACITY];
+        long[] hashes = new long[INITIAL_CAPACITY];
+        int[] created = new int[INITIAL_CAPACITY];
+        int[] modified = new int[INITIAL_CAPACITY];
+        final Map<Integer, String> irregularHashes = new HashMap<>();
+
+        int add(int parent) {
+            if (size == ids.length) {
+                grow();
+            }
+            int index = size++;
+            parents[index] = parent;
+            flags[index] = (byte) DEFAULT_FLAGS;
+            names[index] = NO_VALUE;
+            contentTypes[index] = NO_VALUE;
+            created[index] = NO_VALUE;
+            modified[index] = NO_VALUE;
+            return index;
+        }
+
+        int string(String value) {
+            Integer index = strings.get(value);
+            if (index == null) {
+                index = strings.size();
+                strings.put(value, index);
+            }
+            return index;
+        }
+
+        void setFlag(int index, int flag, boolean value) {
+            flags[index] = (byte) (value ? flags[index] | flag : flags[index] & ~flag);
+        }
+
+        void setHash(int index, String hash) {
+            try {
+                hashes[index] = parseUnsignedLong(hash);
+            } catch (NumberFormatException e) {
+                irregularHashes.put(index, hash);
+            }
+        }
+
+        private void grow() {
+            int capacity = size + (size >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            subtreeEnd = Arrays.copyOf(subtreeEnd, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            names = Arrays.copyOf(names, capacity);
+            contentTypes = Arrays.copyOf(contentTypes, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            created = Arrays.copyOf(created, capacity);
+            modified = Arrays.copyOf(modified, capacity);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ApiError;
+import com.pcloud.sdk.Call;
+import com.pcloud.sdk.Callback;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * A {@link Call} performing one or more HTTP exchanges as a single operation.
+ * <p>
+ * Subclasses implement {@link #run()} in a blocking manner, creating their requests through
+ * {@link #newRawCall(Request)} so that {@link #cancel()} reaches every exchange in flight.
+ * Enqueued calls are run on the {@link okhttp3.Dispatcher}'s executor.
+ */
+abstract class CompositeCall<T> implements Call<T> {
+
+    private final OkHttpClient httpClient;
+    private final AtomicBoolean executed = new AtomicBoolean();
+    private final Set<okhttp3.Call> runningCalls = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private volatile boolean canceled;
+
+    CompositeCall(OkHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    protected abstract T run() throws IOException, ApiError;
+
+    @Override
+    public T execute() throws IOException, ApiError {
+        markExecuted();
+        throwIfCanceled();
+        return run();
+    }
+
+    @Override
+    public void enqueue(final Callback<T> callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("Callback argument cannot be null.");
+        }
+        markExecuted();
+
+        ExecutorService executor = httpClient.dispatcher().executorService();
+        try {
+            executor.execute(() -> {
+                T result;
+                try {
+                    throwIfCanceled();
+                    result = run();
+                } catch (IOException | ApiError | RuntimeException e) {
+                    callback.onFailure(CompositeCall.this, e);
+                    return;
+                }
+                callback.onResponse(CompositeCall.this, result);
+            });
+        } catch (RejectedExecutionException e) {
+            InterruptedIOException error = new InterruptedIOException("Executor rejected the call.");
+            error.initCause(e);
+            callback.onFailure(this, error);
+        }
+    }
+
+    @Override
+    public boolean isExecuted() {
+        return executed.get();
+    }
+
+    @Override
+    public void cancel() {
+        canceled = true;
+        for (okhttp3.Call call : runningCalls) {
+            call.cancel();
+        }
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    @Override
+    public abstract CompositeCall<T> clone();
+
+    protected OkHttpClient httpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Create a new exchange bound to this call's lifecycle.
+     * <p>
+     * The returned call must be released through {@link #release(okhttp3.Call)}
+     * once its response has been consumed.
+     */
+    protected okhttp3.Call newRawCall(Request request) throws IOException {
+        throwIfCanceled();
+        okhttp3.Call call = httpClient.newCall(request);
+        runningCalls.add(call);
+        if (canceled) {
+            call.cancel();
+        }
+        return call;
+    }
+
+    protected void release(okhttp3.Call call) {
+        runningCalls.remove(call);
+    }
+
+    /**
+     * Execute a request synchronously on the current thread and adapt its response.
+     */
+    protected <R> R executeRequest(Request request, ResponseAdapter<R> adapter) throws IOException, ApiError {
+        okhttp3.Call call = newRawCall(request);
+        try {
+            Response response = call.execute();
+            return adapter.adapt(response);
+        } finally {
+            release(call);
+        }
+    }
+
+    protected void throwIfCanceled() throws IOException {
+        if (canceled) {
+            throw new IOException("Canceled");
+        }
+    }
+
+    private void markExecuted() {
+        if (!executed.compareAndSet(false, true)) {
+            throw new IllegalStateException("Already executed.");
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import java.io.IOException;
+
+import okio.ByteString;
+import okio.HashingSink;
+import okio.HashingSource;
+import okio.Sink;
+import okio.Source;
+
+/**
+ * Computes the SHA-1 and/or SHA-256 digests of content while it is being transferred,
+ * to be verified against the checksums reported by the API.
+ * <p>
+ * Every call to {@link #hashing(Sink)} or {@link #hashing(Source)} starts over, so that a request body
+ * written again on a retry is digested from its start.
+ */
+final class ContentDigests {
+
+    private interface Digest {
+        ByteString hash();
+    }
+
+    private final boolean sha1;
+    private final boolean sha256;
+    private volatile Digest sha1Digest;
+    private volatile Digest sha256Digest;
+
+    ContentDigests(boolean sha1, boolean sha256) {
+        if (!sha1 && !sha256) {
+            throw new IllegalArgumentException("At least one digest has to be computed.");
+        }
+        this.sha1 = sha1;
+        this.sha256 = sha256;
+    }
+
+    Sink hashing(Sink sink) {
+        if (sha1) {
+            HashingSink hashingSink = HashingSink.sha1(sink);
+            sha1Digest = hashingSink::hash;
+            sink = hashingSink;
+        }
+        if (sha256) {
+            HashingSink hashingSink = HashingSink.sha256(sink);
+            sha256Digest = hashingSink::hash;
+            sink = hashingSink;
+        }
+        return sink;
+    }
+
+    Source hashing(Source source) {
+        if (sha1) {
+            HashingSource hashingSource = HashingSource.sha1(source);
+            sha1Digest = hashingSource::hash;
+            source = hashingSource;
+        }
+        if (sha256) {
+            HashingSource hashingSource = HashingSource.sha256(source);
+            sha256Digest = hashingSource::hash;
+            source = hashingSource;
+        }
+        return source;
+    }
+
+    /**
+     * Compare the computed digests with the expected ones, preferring SHA-256 when both are known.
+     *
+     * @param subject a description of the content, for the error message
+     * @throws IOException if a digest does not match, or if none of the computed digests can be verified
+     */
+    void verify(String subject, ByteString expectedSha1, ByteString expectedSha256) throws IOException {
+        if (sha256 && expectedSha256 != null) {
+            verify(subject, "SHA-256", sha256Digest, expectedSha256);
+        } else if (sha1 && expectedSha1 != null) {
+            verify(subject, "SHA-1", sha1Digest, expectedSha1);
+        } else {
+            throw new IOException("No checksum was provided by the API to verify the " + subject + " against.");
+        }
+    }
+
+    /**
+     * @return {@code true} if a computed digest is known and equal to the expected one, preferring SHA-256
+     */
+    boolean matches(ByteString expectedSha1, ByteString expectedSha256) {
+        if (sha256 && expectedSha256 != null) {
+            return sha256Digest != null && sha256Digest.hash().equals(expectedSha256);
+        } else if (sha1 && expectedSha1 != null) {
+            return sha1Digest != null && sha1Digest.hash().equals(expectedSha1);
+        }
+        return false;
+    }
+
+    private static void verify(String subject, String algorithm, Digest digest, ByteString expected) throws IOException {
+        if (digest == null) {
+            throw new IOException("The " + subject + " was not transferred.");
+        }
+        ByteString actual = digest.hash();
+        if (!actual.equals(expected)) {
+            throw new IOException("The " + subject + " " + algorithm + " digest " + actual.hex() +
+                    " does not match the expected " + expected.hex() + ".");
+        }
+    }
+}
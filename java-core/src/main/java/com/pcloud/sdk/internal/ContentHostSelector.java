@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pcloud.sdk.internal;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Keeps a decaying performance score for each content host and ranks the URLs of content links by it.
+ * <p>
+ * Each host has an exponentially weighted moving average of its time-to-first-byte and of its
+ * throughput, sampled from the content requests passing through {@link #interceptor()}. Hosts are
+ * ranked by the estimated time to transfer {@link #REFERENCE_TRANSFER_BYTES}; hosts without samples
+ * are tried before measured ones so that every host gets measured. A host failing with a connection
+ * error is moved to the end of the ranking for a cool-down period growing with consecutive failures.
+ */
+class ContentHostSelector {
+
+    static final long REFERENCE_TRANSFER_BYTES = 1024 * 1024;
+
+    private static final double SMOOTHING_FACTOR = 0.3;
+    private static final long MIN_THROUGHPUT_SAMPLE_BYTES = 64 * 1024;
+    private static final long BASE_COOL_DOWN_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long MAX_COOL_DOWN_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final ConcurrentMap<String, HostScore> scores = new ConcurrentHashMap<>();
+    private final Clock nanoClock;
+
+    ContentHostSelector() {
+        this(Clock.NANO_TIME);
+    }
+
+    ContentHostSelector(Clock nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Order the URLs from the fastest healthy host to the slowest, with unhealthy hosts last.
+     * <p>
+     * The sort is stable, URLs of hosts that compare equal keep the order given by the API.
+     */
+    List<URL> rank(List<URL> urls) {
+        if (urls.size() < 2) {
+            return urls;
+        }
+        final long now = nanoClock.read();
+        List<URL> ranked = new ArrayList<>(urls);
+        Collections.sort(ranked, (first, second) -> {
+            int byHealth = Boolean.compare(!isHealthy(first.getHost(), now), !isHealthy(second.getHost(), now));
+            return byHealth != 0 ? byHealth :
+                    Double.compare(estimatedTransferMillis(first.getHost()), estimatedTransferMillis(second.getHost()));
+        });
+        return Collections.unmodifiableList(ranked);
+    }
+
+    URL best(List<URL> urls) {
+        return rank(urls).get(0);
+    }
+
+    void recordTimeToFirstByte(String host, long millis) {
+        score(host).recordTimeToFirstByte(millis);
+    }
+
+    void recordTransfer(String host, long bytes, long nanos) {
+        if (bytes >= MIN_THROUGHPUT_SAMPLE_BYTES && nanos > 0) {
+            score(host).recordThroughput(bytes * (double) TimeUnit.SECONDS.toNanos(1) / nanos);
+        }
+    }
+
+    void recordFailure(String host) {
+        score(host).recordFailure(nanoClock.read());
+    }
+
+    /**
+     * Create an interceptor sampling content requests and failing over to alternative URLs.
+     * <p>
+     * Only requests tagged with {@link Alternatives} are sampled, the ones failing to connect are
+     * retried against the remaining alternative URLs, fastest first. Other requests pass through untouched.
+     */
+    Interceptor interceptor() {
+        return new SamplingInterceptor();
+    }
+
+    private boolean isHealthy(String host, long now) {
+        HostScore score = scores.get(host);
+        return score == null || score.isHealthy(now);
+    }
+
+    private double estimatedTransferMillis(String host) {
+        HostScore score = scores.get(host);
+        return score != null ? score.estimatedTransferMillis() : 0;
+    }
+
+    private HostScore score(String host) {
+        HostScore score = scores.get(host);
+        if (score == null) {
+            HostScore newScore = new HostScore();
+            score = scores.putIfAbsent(host, newScore);
+            if (score == null) {
+                score = newScore;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * A request tag listing the URLs that can serve the same content as the tagged request.
+     */
+    static final class Alternatives {
+
+        /**
+         * Marks a request to be sampled, without failing over to other URLs.
+         */
+        static final Alternatives NONE = new Alternatives(Collections.emptyList());
+
+        final List<URL> urls;
+
+        Alternatives(List<URL> urls) {
+            this.urls = urls;
+        }
+    }
+
+    private static final class HostScore {
+        private double timeToFirstByteMillis = -1;
+        private double bytesPerSecond = -1;
+        private int consecutiveFailures;
+        private long unhealthyUntilNanos;
+
+        synchronized void recordTimeToFirstByte(long millis) {
+            timeToFirstByteMillis = average(timeToFirstByteMillis, millis);
+            consecutiveFailures = 0;
+            unhealthyUntilNanos = 0;
+        }
+
+        synchronized void recordThroughput(double value) {
+            bytesPerSecond = average(bytesPerSecond, value);
+        }
+
+        synchronized void recordFailure(long now) {
+            consecutiveFailures++;
+            long coolDown = Math.min(BASE_COOL_DOWN_NANOS << Math.min(consecutiveFailures - 1, 16), MAX_COOL_DOWN_NANOS);
+            unhealthyUntilNanos = now + coolDown;
+        }
+
+        synchronized boolean isHealthy(long now) {
+            return consecutiveFailures == 0 || now - unhealthyUntilNanos >= 0;
+        }
+
+        synchronized double estimatedTransferMillis() {
+            double estimate = Math.max(timeToFirstByteMillis, 0);
+            if (bytesPerSecond > 0) {
+                estimate += REFERENCE_TRANSFER_BYTES * 1000d / bytesPerSecond;
+            }
+            return estimate;
+        }
+
+        private static double average(double current, double sample) {
+            return current < 0 ? sample : current + SMOOTHING_FACTOR * (sample - current);
+        }
+    }
+
+    private class SamplingInterceptor implements Interceptor {
+
+        @NotNull
+        @Override
+        public Response intercept(@NotNull Chain chain) throws IOException {
+            Request request = chain.request();
+            Alternatives alternatives = request.tag(Alternatives.class);
+            if (alternatives == null) {
+                return chain.proceed(request);
+            }
+
+            IOException failure;
+            try {
+                return proceed(chain, request);
+            } catch (IOException e) {
+                failure = e;
+            }
+
+            for (URL url : rank(alternatives.urls)) {
+                HttpUrl alternative = HttpUrl.get(url);
+                if (alternative == null || alternative.equals(request.url()) || chain.call().isCanceled()) {
+                    continue;
+                }
+                try {
+                    return proceed(chain, request.newBuilder().url(alternative).build());
+                } catch (IOException e) {
+                    failure.addSuppressed(e);
+                }
+            }
+            throw failure;
+        }
+
+        private Response proceed(Chain chain, Request request) throws IOException {
+            final String host = request.url().host();
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                if (!chain.call().isCanceled()) {
+                    recordFailure(host);
+                }
+                throw e;
+            }
+
+            if (!response.isSuccessful() || response.body() == null) {
+                return response;
+            }
+
+            recordTimeToFirstByte(host, response.receivedResponseAtMillis() - response.sentRequestAtMillis());
+            ResponseBody body = response.body();
+            BufferedSource sampledSource = Okio.buffer(new ForwardingSource(body.source()) {
+                private final long startNanos = nanoClock.read();
+                private long bytesRead;
+                private boolean recorded;
+
+                @Override
+                public long read(@NotNull Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read != -1) {
+                        bytesRead += read;
+                    } else {
+                        record();
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    record();
+                    super.close();
+                }
+
+                private void record() {
+                    if (!recorded) {
+                        recorded = true;
+                        recordTransfer(host, bytesRead, nanoClock.read() - startNanos);
+                    }
+                }
+            });
+            return response.newBuilder()
+                    .body(ResponseBody.create(sampledSource, body.contentType(), body.contentLength()))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ApiError;
+import com.pcloud.sdk.ContentIndex;
+import com.pcloud.sdk.DataSource;
+import com.pcloud.sdk.ProgressListener;
+import com.pcloud.sdk.RemoteFile;
+import com.pcloud.sdk.internal.networking.GetFileResponse;
+
+import java.io.IOException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okio.BufferedSink;
+import okio.ByteString;
+import okio.HashingSink;
+import okio.Okio;
+
+/**
+ * Creates a file with a server-side copy of an indexed file of the same content, uploading it otherwise.
+ * <p>
+ * The {@link DataSource} is read once to compute its SHA-256 digest, which is looked up in the
+ * {@link ContentIndex}. The copy is only kept if its pCloud content hash matches the one of the indexed
+ * file, as the indexed file may have been changed since it was indexed. Stale or missing files are removed
+ * from the index and the content is uploaded instead, the uploaded file is added to the index.
+ */
+class DeduplicatingUploadCall extends CompositeCall<RemoteFile> {
+
+    static final int FILE_NOT_FOUND = 2009;
+
+    interface CopyRequestFactory {
+        Request newRequest(long fileId);
+    }
+
+    private final RealApiClient apiClient;
+    private final ContentIndex index;
+    private final DataSource data;
+    private final ProgressListener listener;
+    private final boolean overwrite;
+    private final CopyRequestFactory copyRequestFactory;
+    private final Request uploadRequest;
+    private final ResponseAdapter<RemoteFile> uploadAdapter;
+
+    DeduplicatingUploadCall(RealApiClient apiClient,
+                            OkHttpClient httpClient,
+                            ContentIndex index,
+                            DataSource data,
+                            ProgressListener listener,
+                            boolean overwrite,
+                            CopyRequestFactory copyRequestFactory,
+                            Request uploadRequest,
+                            ResponseAdapter<RemoteFile> uploadAdapter) {
+        super(httpClient);
+        this.apiClient = apiClient;
+        this.index = index;
+        this.data = data;
+        this.listener = listener;
+        this.overwrite = overwrite;
+        this.copyRequestFactory = copyRequestFactory;
+        this.uploadRequest = uploadRequest;
+        this.uploadAdapter = uploadAdapter;
+    }
+
+    @Override
+    protected RemoteFile run() throws IOException, ApiError {
+        long contentLength = data.contentLength();
+        ByteString sha256 = digest();
+        throwIfCanceled();
+
+        RemoteFile indexedFile = index.get(sha256);
+        if (indexedFile != null && indexedFile.size() == contentLength) {
+            RemoteFile copy = copy(indexedFile);
+            if (copy != null) {
+                if (listener != null) {
+                    listener.onProgress(contentLength, contentLength);
+                }
+                return copy;
+            }
+        }
+
+        RemoteFile file = executeRequest(uploadRequest, uploadAdapter);
+        index.put(sha256, file);
+        return file;
+    }
+
+    @SuppressWarnings("MethodDoesntCallSuperMethod")
+    @Override
+    public DeduplicatingUploadCall clone() {
+        return new DeduplicatingUploadCall(apiClient, httpClient(), index, data, listener, overwrite,
+                copyRequestFactory, uploadRequest, uploadAdapter);
+    }
+
+    private ByteString digest() throws IOException {
+        HashingSink hashingSink = HashingSink.sha256(Okio.blackhole());
+        try (BufferedSink sink = Okio.buffer(hashingSink)) {
+            data.writeTo(sink);
+        }
+        return hashingSink.hash();
+    }
+
+    /**
+     * @return the copy of the indexed file, or {@code null} if the content has to be uploaded
+     */
+    private RemoteFile copy(RemoteFile indexedFile) throws IOException, ApiError {
+        RemoteFile copy;
+        try {
+            copy = executeRequest(copyRequestFactory.newRequest(indexedFile.fileId()),
+                    response -> apiClient.readApiResponse(response, GetFileResponse.class).getFile());
+        } catch (ApiError e) {
+            // Could also be a conflicting file when not overwriting, which the upload resolves by renaming.
+            if (e.errorCode() == FILE_NOT_FOUND) {
+                index.remove(indexedFile.fileId());
+            }
+            return null;
+        }
+        apiClient.forgetFileContent(copy.fileId());
+
+        String expectedHash = indexedFile.hash();
+        if (expectedHash != null && expectedHash.equals(copy.hash()) && copy.size() == indexedFile.size()) {
+            return copy;
+        }
+
+        // The indexed file has been changed after being indexed, replace the copy with the actual content.
+        index.remove(indexedFile.fileId());
+        if (!overwrite) {
+            executeRequest(apiClient.newDeleteFileRequest(copy.fileId()),
+                    response -> apiClient.getAsApiResponse(response, GetFileResponse.class));
+            apiClient.forgetFileContent(copy.fileId());
+        }
+        return null;
+    }
+}
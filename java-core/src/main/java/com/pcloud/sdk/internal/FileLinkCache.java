@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.DownloadOptions;
+import com.pcloud.sdk.FileLink;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A size-bounded, least-recently-used cache of {@link FileLink}s keyed by file id and {@link DownloadOptions}.
+ * <p>
+ * A link is served from the cache only while it has more than {@link #EXPIRATION_MARGIN_MS} left
+ * before its {@link FileLink#expirationDate()}, leaving enough time for the transfer to begin.
+ */
+class FileLinkCache {
+
+    static final long EXPIRATION_MARGIN_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final int maxEntries;
+    private final Clock clock;
+    private final LinkedHashMap<Key, FileLink> entries;
+
+    FileLinkCache(int maxEntries) {
+        this(maxEntries, Clock.CURRENT_TIME_MILLIS);
+    }
+
+    FileLinkCache(int maxEntries, Clock clock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache size must be a positive number.");
+        }
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<Key, FileLink>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, FileLink> eldest) {
+                return size() > FileLinkCache.this.maxEntries;
+            }
+        };
+    }
+
+    synchronized FileLink get(long fileId, DownloadOptions options) {
+        Key key = new Key(fileId, options);
+        FileLink link = entries.get(key);
+        if (link != null && !isUsable(link)) {
+            entries.remove(key);
+            link = null;
+        }
+        return link;
+    }
+
+    synchronized void put(long fileId, DownloadOptions options, FileLink link) {
+        if (isUsable(link)) {
+            entries.put(new Key(fileId, options), link);
+        }
+    }
+
+    /**
+     * Drop all links for a file, as they may point to content that is no longer current.
+     */
+    synchronized void evict(long fileId) {
+        Iterator<Key> keys = entries.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().fileId == fileId) {
+                keys.remove();
+            }
+        }
+    }
+
+    synchronized void evict(long fileId, DownloadOptions options, FileLink link) {
+        entries.remove(new Key(fileId, options), link);
+    }
+
+    int maxEntries() {
+        return maxEntries;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    private boolean isUsable(FileLink link) {
+        return link.expirationDate().getTime() - EXPIRATION_MARGIN_MS > clock.read();
+    }
+
+    private static final class Key {
+        final long fileId;
+        final DownloadOptions options;
+
+        Key(long fileId, DownloadOptions options) {
+            this.fileId = fileId;
+            this.options = options;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return fileId == key.fileId && options.equals(key.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fileId, options);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ApiError;
+import com.pcloud.sdk.DownloadOptions;
+import com.pcloud.sdk.FileLink;
+import com.pcloud.sdk.internal.networking.APIHttpException;
+
+import java.io.IOException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+/**
+ * Obtains a {@link FileLink} for a file, from a {@link FileLinkCache} if possible, and performs an action with it.
+ * <p>
+ * If a cached link gets rejected by the content host, it is evicted and the action is
+ * repeated once with a freshly created link.
+ */
+class FileLinkCall<T> extends CompositeCall<T> {
+
+    interface LinkAction<T> {
+        T apply(FileLinkCall<T> call, FileLink link) throws IOException, ApiError;
+    }
+
+    private final FileLinkCache cache;
+    private final long fileId;
+    private final DownloadOptions options;
+    private final Request linkRequest;
+    private final ResponseAdapter<FileLink> linkAdapter;
+    private final LinkAction<T> action;
+
+    FileLinkCall(OkHttpClient httpClient,
+                 FileLinkCache cache,
+                 long fileId,
+                 DownloadOptions options,
+                 Request linkRequest,
+                 ResponseAdapter<FileLink> linkAdapter,
+                 LinkAction<T> action) {
+        super(httpClient);
+        this.cache = cache;
+        this.fileId = fileId;
+        this.options = options;
+        this.linkRequest = linkRequest;
+        this.linkAdapter = linkAdapter;
+        this.action = action;
+    }
+
+    @Override
+    protected T run() throws IOException, ApiError {
+        FileLink cachedLink = cache != null ? cache.get(fileId, options) : null;
+        if (cachedLink != null) {
+            try {
+                return action.apply(this, cachedLink);
+            } catch (APIHttpException e) {
+                throwIfCanceled();
+                cache.evict(fileId, options, cachedLink);
+            }
+        }
+
+        FileLink link = executeRequest(linkRequest, linkAdapter);
+        if (cache != null) {
+            cache.put(fileId, options, link);
+        }
+        return action.apply(this, link);
+    }
+
+    @SuppressWarnings("MethodDoesntCallSuperMethod")
+    @Override
+    public FileLinkCall<T> clone() {
+        return new FileLinkCall<>(httpClient(), cache, fileId, options, linkRequest, linkAdapter, action);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.pcloud.sdk.ApiClient;
+import com.pcloud.sdk.RemoteEntryVisitor;
+
+import java.io.IOException;
+
+/**
+ * Reads a {@code listfolder} response incrementally, passing each entry to a {@link RemoteEntryVisitor}.
+ * <p>
+ * Only the metadata of the entry being read and the path of its ancestors are held in memory,
+ * regardless of the size of the listed tree.
+ */
+class FolderListingReader extends ListFolderResponseReader {
+
+    private final RealRemoteEntry.EntryTypeAdapter<RealRemoteEntry> adapter;
+    private final RemoteEntryVisitor visitor;
+
+    FolderListingReader(ApiClient apiClient, RemoteEntryVisitor visitor) {
+        this.adapter = new RealRemoteEntry.EntryTypeAdapter<>(apiClient, RealRemoteEntry.class);
+        this.visitor = visitor;
+    }
+
+    @Override
+    protected void readMetadata(JsonReader reader) throws IOException {
+        readEntry(reader, null);
+    }
+
+    private void readEntry(JsonReader reader, String parentPath) throws IOException {
+        Contents contents = new Contents(parentPath);
+        RealRemoteEntry entry = adapter.read(reader, contents);
+        if (!contents.visited) {
+            visitor.visit(entry, childPath(parentPath, entry));
+        }
+    }
+
+    private static String childPath(String parentPath, RealRemoteEntry entry) {
+        if (parentPath == null) {
+            return "/";
+        }
+        if (entry.name() == null) {
+            throw new JsonParseException("Listed entry has no name.");
+        }
+        return (parentPath.equals("/") ? "" : parentPath) + "/" + entry.name();
+    }
+
+    /**
+     * Visits a folder once its contents are reached, the API sends them after the rest of the folder's
+     * metadata, so the folder can be reported before its children.
+     */
+    private class Contents implements RealRemoteEntry.ContentsReader {
+
+        private final String parentPath;
+        private boolean visited;
+
+        Contents(String parentPath) {
+            this.parentPath = parentPath;
+        }
+
+        @Override
+        public void read(JsonReader in, RealRemoteEntry folder) throws IOException {
+            String path = childPath(parentPath, folder);
+            visitor.visit(folder, path);
+            visited = true;
+            in.beginArray();
+            while (in.hasNext()) {
+                readEntry(in, path);
+            }
+            in.endArray();
+        }
+    }
+}
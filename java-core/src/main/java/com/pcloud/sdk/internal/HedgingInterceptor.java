@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.HedgingPolicy;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+import static com.pcloud.sdk.internal.IOUtils.closeQuietly;
+
+/**
+ * Sends a second, identical request when an idempotent API request is slower than usual, as configured
+ * by a {@link HedgingPolicy}, and uses whichever response arrives first.
+ * <p>
+ * The attempts are separate calls of a client without this interceptor. The first one is executed on the
+ * thread of the intercepted call, only the hedged attempt is forked to the client's dispatcher executor.
+ * The first response wins and the other attempt is cancelled, cancelling the intercepted call cancels the
+ * attempts and the read of the winning response body. The latencies of the winning attempts are kept per
+ * API method, to derive the delay before hedging from.
+ */
+class HedgingInterceptor implements Interceptor {
+
+    static final int MIN_SAMPLES = 20;
+
+    private static final int MAX_SAMPLES = 128;
+    private static final double MAX_BUDGET_TOKENS = 10;
+    private static final long CANCELLATION_CHECK_MS = 100;
+
+    private final HedgingPolicy policy;
+    private final HttpUrl alternateApiHost;
+    private final OkHttpClient client;
+    private final Clock nanoClock;
+    private final ScheduledExecutorService timer;
+    private final ConcurrentMap<String, LatencyTracker> latencies = new ConcurrentHashMap<>();
+    private double budgetTokens;
+
+    HedgingInterceptor(HedgingPolicy policy, OkHttpClient client) {
+        this(policy, client, Clock.NANO_TIME);
+    }
+
+    HedgingInterceptor(HedgingPolicy policy, OkHttpClient client, Clock nanoClock) {
+        this.policy = policy;
+        this.alternateApiHost = policy.alternateApiHost() != null ? HttpUrl.get(policy.alternateApiHost()) : null;
+        this.client = client;
+        this.nanoClock = nanoClock;
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "pCloud SDK request hedging");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        this.timer = timer;
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!isHedgeable(request)) {
+            return chain.proceed(request);
+        }
+
+        String method = apiMethod(request);
+        LatencyTracker tracker = latencies.get(method);
+        if (tracker == null) {
+            LatencyTracker newTracker = new LatencyTracker();
+            tracker = latencies.putIfAbsent(method, newTracker);
+            if (tracker == null) {
+                tracker = newTracker;
+            }
+        }
+        depositBudget();
+
+        Race race = new Race();
+        okhttp3.Call outerCall = chain.call();
+        ScheduledFuture<?> cancellationCheck = timer.scheduleWithFixedDelay(() -> {
+            if (outerCall.isCanceled()) {
+                race.cancel();
+            }
+        }, CANCELLATION_CHECK_MS, CANCELLATION_CHECK_MS, TimeUnit.MILLISECONDS);
+        Attempt primary = race.start(client.newCall(request));
+        ScheduledFuture<?> hedge = timer.schedule(() -> {
+            if (!race.isDecided() && withdrawBudget()) {
+                fork(race, hedgeRequest(request));
+            }
+        }, hedgeDelayMs(tracker), TimeUnit.MILLISECONDS);
+
+        Attempt winner;
+        try {
+            primary.run();
+            winner = race.awaitWinner();
+        } catch (IOException | RuntimeException e) {
+            cancellationCheck.cancel(false);
+            throw e;
+        } finally {
+            hedge.cancel(false);
+        }
+        // Measured from the start of the race, a hedged win took the hedge delay plus its own latency.
+        tracker.record(TimeUnit.NANOSECONDS.toMillis(winner.respondedAtNanos - race.startNanos));
+        return stoppingOnClose(winner.response, cancellationCheck);
+    }
+
+    void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * @return the current delay before a request of the API method is hedged, in milliseconds
+     */
+    long hedgeDelayMs(String method) {
+        LatencyTracker tracker = latencies.get(method);
+        return tracker != null ? hedgeDelayMs(tracker) : policy.maxDelayMs();
+    }
+
+    static boolean isHedgeable(Request request) {
+        return "GET".equals(request.method()) &&
+                request.tag(ContentHostSelector.Alternatives.class) == null &&
+                !"getthumb".equals(apiMethod(request)) &&
+                RetryInterceptor.isIdempotent(request);
+    }
+
+    private static String apiMethod(Request request) {
+        List<String> segments = request.url().pathSegments();
+        return segments.get(segments.size() - 1);
+    }
+
+    private long hedgeDelayMs(LatencyTracker tracker) {
+        long percentile = tracker.percentile(policy.latencyPercentile());
+        if (percentile < 0) {
+            return policy.maxDelayMs();
+        }
+        return Math.max(policy.minDelayMs(), Math.min(percentile, policy.maxDelayMs()));
+    }
+
+    private synchronized void depositBudget() {
+        budgetTokens = Math.min(budgetTokens + policy.budget(), MAX_BUDGET_TOKENS);
+    }
+
+    private synchronized boolean withdrawBudget() {
+        if (budgetTokens >= 1) {
+            budgetTokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    private Request hedgeRequest(Request request) {
+        if (alternateApiHost == null) {
+            return request;
+        }
+        return request.newBuilder()
+                .url(request.url().newBuilder()
+                        .scheme(alternateApiHost.scheme())
+                        .host(alternateApiHost.host())
+                        .port(alternateApiHost.port())
+                        .build())
+                .build();
+    }
+
+    /**
+     * Keep checking for the cancellation of the intercepted call until the body of its response is
+     * exhausted or closed, as the body is read from the call of the winning attempt.
+     */
+    private static Response stoppingOnClose(Response response, ScheduledFuture<?> cancellationCheck) {
+        ResponseBody body = response.body();
+        if (body == null) {
+            cancellationCheck.cancel(false);
+            return response;
+        }
+        Source source = new ForwardingSource(body.source()) {
+            @Override
+            public long read(@NotNull Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read == -1) {
+                    cancellationCheck.cancel(false);
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                cancellationCheck.cancel(false);
+                super.close();
+            }
+        };
+        return response.newBuilder()
+                .body(ResponseBody.create(Okio.buffer(source), body.contentType(), body.contentLength()))
+                .build();
+    }
+
+    private void fork(Race race, Request request) {
+        Attempt attempt = race.start(client.newCall(request));
+        if (attempt == null) {
+            return;
+        }
+        ExecutorService executor = client.dispatcher().executorService();
+        try {
+            executor.execute(attempt::run);
+        } catch (RejectedExecutionException e) {
+            race.finish(attempt, null, new InterruptedIOException("Executor rejected the request."));
+        }
+    }
+
+    /**
+     * The attempts of a single request, the first one to produce a response wins.
+     */
+    private class Race {
+
+        private final long startNanos = nanoClock.read();
+        private final List<Attempt> attempts = new ArrayList<>(2);
+        private Attempt winner;
+        private IOException failure;
+        private int running;
+
+        synchronized boolean isDecided() {
+            return winner != null || (running == 0 && !attempts.isEmpty());
+        }
+
+        synchronized Attempt start(okhttp3.Call attemptCall) {
+            if (isDecided()) {
+                return null;
+            }
+            Attempt attempt = new Attempt(this, attemptCall);
+            attempts.add(attempt);
+            running++;
+            return attempt;
+        }
+
+        void finish(Attempt attempt, Response response, IOException error) {
+            boolean won = false;
+            synchronized (this) {
+                running--;
+                if (response != null && winner == null) {
+                    winner = attempt;
+                    attempt.response = response;
+                    won = true;
+                } else if (error != null && failure == null) {
+                    failure = error;
+                } else if (error != null) {
+                    failure.addSuppressed(error);
+                }
+                notifyAll();
+            }
+            if (won) {
+                for (Attempt other : attemptsSnapshot()) {
+                    if (other != attempt) {
+                        other.call.cancel();
+                    }
+                }
+            } else if (response != null) {
+                closeQuietly(response);
+            }
+        }
+
+        synchronized Attempt awaitWinner() throws IOException {
+            try {
+                while (winner == null && running > 0) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new InterruptedIOException("Interrupted while waiting for a hedged request.");
+            }
+            if (winner != null) {
+                return winner;
+            }
+            throw failure;
+        }
+
+        void cancel() {
+            for (Attempt attempt : attemptsSnapshot()) {
+                attempt.call.cancel();
+            }
+        }
+
+        private synchronized List<Attempt> attemptsSnapshot() {
+            return Arrays.asList(attempts.toArray(new Attempt[0]));
+        }
+    }
+
+    private class Attempt {
+
+        final Race race;
+        final okhttp3.Call call;
+        Response response;
+        long respondedAtNanos;
+
+        Attempt(Race race, okhttp3.Call call) {
+            this.race = race;
+            this.call = call;
+        }
+
+        void run() {
+            Response result = null;
+            IOException error = null;
+            try {
+                result = call.execute();
+                respondedAtNanos = nanoClock.read();
+            } catch (IOException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                error = new IOException("Hedged request failed.", e);
+            }
+            race.finish(this, result, error);
+        }
+    }
+
+    /**
+     * A window of the most recent latencies of an API method.
+     */
+    private static class LatencyTracker {
+
+        private final long[] samples = new long[MAX_SAMPLES];
+        private int count;
+        private int next;
+
+        synchronized void record(long latencyMs) {
+            samples[next] = latencyMs;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        /**
+         * @return the percentile of the recorded latencies, {@code -1} if there are too few of them
+         */
+        synchronized long percentile(double percentile) {
+            if (count < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * count) - 1;
+            return sorted[Math.max(0, Math.min(index, count - 1))];
+        }
+    }
+}
@@ -18,6 +18,10 @@ package com.pcloud.sdk.internal;
 
 import com.pcloud.sdk.ApiClient;
 import com.pcloud.sdk.Authenticator;
+import com.pcloud.sdk.BandwidthLimit;
+import com.pcloud.sdk.ContentIndex;
+import com.pcloud.sdk.InMemoryMetrics;
+import com.pcloud.sdk.TransferManager;
 
 import java.util.concurrent.Callable;
 
@@ -31,6 +35,22 @@ public final class Internal {
         return new RealApiServiceBuilder();
     }
 
+    public static TransferManager.Builder newTransferManagerBuilder(ApiClient apiClient){
+        return new RealTransferManager.Builder(apiClient);
+    }
+
+    public static ContentIndex newContentIndex(int maxEntries){
+        return new RealContentIndex(maxEntries);
+    }
+
+    public static BandwidthLimit newBandwidthLimit(long bytesPerSecond){
+        return new RealBandwidthLimit(bytesPerSecond);
+    }
+
+    public static InMemoryMetrics newInMemoryMetrics(){
+        return new RealInMemoryMetrics();
+    }
+
     public static Authenticator createOAuthAuthenticator(Callable<String> tokenProvider){
         return new AccessTokenAuthenticator(tokenProvider);
     }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.pcloud.sdk.ApiError;
+
+import java.io.IOException;
+
+/**
+ * Reads the envelope of a {@code listfolder} response, leaving the {@code metadata} object to subclasses.
+ */
+abstract class ListFolderResponseReader {
+
+    void read(JsonReader reader) throws IOException, ApiError {
+        int result = -1;
+        String error = null;
+        boolean hasMetadata = false;
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "result":
+                        result = reader.nextInt();
+                        break;
+                    case "error":
+                        error = reader.nextString();
+                        break;
+                    case "metadata":
+                        readMetadata(reader);
+                        hasMetadata = true;
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | NumberFormatException | JsonParseException e) {
+            throw new IOException("Malformed JSON response.", e);
+        }
+
+        if (result != 0) {
+            if (result == -1) {
+                throw new IOException("API returned an empty response body.");
+            }
+            throw new ApiError(result, error);
+        }
+        if (!hasMetadata) {
+            throw new IOException("API did not return the folder metadata.");
+        }
+    }
+
+    /**
+     * Read the metadata object of the listed folder, including its contents.
+     */
+    protected abstract void readMetadata(JsonReader reader) throws IOException;
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.MetricsRecorder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.List;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Reports the outcome, latency and body sizes of every request passing through it to a {@link MetricsRecorder}.
+ * <p>
+ * Request bodies are counted as they are written. A response is reported once its body has been read
+ * to the end or closed, with the latency up to its headers.
+ */
+class MetricsInterceptor implements Interceptor {
+
+    private final MetricsRecorder metrics;
+    private final Clock nanoClock;
+
+    MetricsInterceptor(MetricsRecorder metrics) {
+        this(metrics, Clock.NANO_TIME);
+    }
+
+    MetricsInterceptor(MetricsRecorder metrics, Clock nanoClock) {
+        this.metrics = metrics;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @return the API method of a request, {@link MetricsRecorder#CONTENT_METHOD} for content requests
+     */
+    static String methodOf(Request request) {
+        if (request.tag(ContentHostSelector.Alternatives.class) != null) {
+            return MetricsRecorder.CONTENT_METHOD;
+        }
+        List<String> segments = request.url().pathSegments();
+        return segments.get(segments.size() - 1);
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Request request = chain.request();
+        String method = methodOf(request);
+        CountingRequestBody requestBody = null;
+        if (request.body() != null) {
+            requestBody = new CountingRequestBody(request.body());
+            request = request.newBuilder().method(request.method(), requestBody).build();
+        }
+
+        long startNanos = nanoClock.read();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            if (!chain.call().isCanceled()) {
+                long requestBytes = requestBody != null ? requestBody.bytesWritten : 0;
+                metrics.onFailure(method, e, nanoClock.read() - startNanos, requestBytes);
+            }
+            throw e;
+        }
+        long latencyNanos = nanoClock.read() - startNanos;
+        long requestBytes = requestBody != null ? requestBody.bytesWritten : 0;
+
+        ResponseBody body = response.body();
+        if (body == null) {
+            metrics.onResponse(method, response.code(), latencyNanos, requestBytes, 0);
+            return response;
+        }
+        return response.newBuilder()
+                .body(ResponseBody.create(Okio.buffer(
+                        new CountingSource(body, method, response.code(), latencyNanos, requestBytes)),
+                        body.contentType(), body.contentLength()))
+                .build();
+    }
+
+    private static final class CountingRequestBody extends RequestBody {
+
+        private final RequestBody delegate;
+        private volatile long bytesWritten;
+
+        CountingRequestBody(RequestBody delegate) {
+            this.delegate = delegate;
+        }
+
+        @Nullable
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public boolean isOneShot() {
+            return delegate.isOneShot();
+        }
+
+        @Override
+        public boolean isDuplex() {
+            return delegate.isDuplex();
+        }
+
+        @Override
+        public void writeTo(@NotNull BufferedSink sink) throws IOException {
+            // A body can be written more than once, only the last attempt is counted.
+            bytesWritten = 0;
+            BufferedSink countingSink = Okio.buffer(new ForwardingSink(sink) {
+                @Override
+                public void write(@NotNull Buffer source, long byteCount) throws IOException {
+                    super.write(source, byteCount);
+                    bytesWritten += byteCount;
+                }
+            });
+            delegate.writeTo(countingSink);
+            countingSink.emit();
+        }
+    }
+
+    private final class CountingSource extends ForwardingSource {
+
+        private final String method;
+        private final int statusCode;
+        private final long latencyNanos;
+        private final long requestBytes;
+        private long bytesRead;
+        private boolean reported;
+
+        CountingSource(ResponseBody body, String method, int statusCode, long latencyNanos, long requestBytes) {
+            super(body.source());
+            this.method = method;
+            this.statusCode = statusCode;
+            this.latencyNanos = latencyNanos;
+            this.requestBytes = requestBytes;
+        }
+
+        @Override
+        public long read(@NotNull Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read != -1) {
+                bytesRead += read;
+            } else {
+                report();
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            report();
+            super.close();
+        }
+
+        private void report() {
+            if (!reported) {
+                reported = true;
+                metrics.onResponse(method, statusCode, latencyNanos, requestBytes, bytesRead);
+            }
+        }
+    }
+}
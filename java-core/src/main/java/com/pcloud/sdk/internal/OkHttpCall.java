@@ -19,9 +19,11 @@ package com.pcloud.sdk.internal;
 import com.pcloud.sdk.ApiError;
 import com.pcloud.sdk.Call;
 import com.pcloud.sdk.Callback;
+import com.pcloud.sdk.Priority;
 import okhttp3.Response;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.pcloud.sdk.internal.IOUtils.closeQuietly;
 
@@ -31,15 +33,38 @@ final class OkHttpCall<T> implements Call<T> {
 
     private final okhttp3.Call rawCall;
     private final ResponseAdapter<T> responseAdapter;
+    private final RequestScheduler scheduler;
+    private final Priority priority;
+    private final CallTimelineRecorder timelines;
+    private final AtomicBoolean executed = new AtomicBoolean();
 
     OkHttpCall(okhttp3.Call rawCall, ResponseAdapter<T> adapter) {
+        this(rawCall, adapter, null, Priority.NORMAL);
+    }
+
+    OkHttpCall(okhttp3.Call rawCall, ResponseAdapter<T> adapter, RequestScheduler scheduler, Priority priority) {
+        this(rawCall, adapter, scheduler, priority, null);
+    }
+
+    OkHttpCall(okhttp3.Call rawCall, ResponseAdapter<T> adapter, RequestScheduler scheduler, Priority priority,
+               CallTimelineRecorder timelines) {
         this.rawCall = rawCall;
         this.responseAdapter = adapter;
+        this.scheduler = scheduler;
+        this.priority = priority;
+        this.timelines = timelines;
     }
 
     @Override
     public T execute() throws IOException, ApiError {
-        Response response = rawCall.execute();
+        onSubmitted();
+        Response response;
+        if (scheduler != null) {
+            checkNotExecuted();
+            response = scheduler.execute(rawCall);
+        } else {
+            response = rawCall.execute();
+        }
         return adapt(response);
     }
 
@@ -49,7 +74,7 @@ final class OkHttpCall<T> implements Call<T> {
             throw new IllegalArgumentException("Callback argument cannot be null.");
         }
 
-        rawCall.enqueue(new okhttp3.Callback() {
+        okhttp3.Callback rawCallback = new okhttp3.Callback() {
             @Override
             public void onFailure(@NotNull okhttp3.Call call, @NotNull IOException e) {
                 callback.onFailure(OkHttpCall.this, e);
@@ -64,12 +89,19 @@ final class OkHttpCall<T> implements Call<T> {
                     callback.onFailure(OkHttpCall.this, e);
                 }
             }
-        });
+        };
+        onSubmitted();
+        if (scheduler != null) {
+            checkNotExecuted();
+            scheduler.enqueue(rawCall, priority, rawCallback);
+        } else {
+            rawCall.enqueue(rawCallback);
+        }
     }
 
     @Override
     public boolean isExecuted() {
-        return rawCall.isExecuted();
+        return executed.get() || rawCall.isExecuted();
     }
 
     @Override
@@ -86,7 +118,7 @@ final class OkHttpCall<T> implements Call<T> {
     @Override
     public OkHttpCall<T> clone() {
         // Class is final, there will be no 'super'.
-        return new OkHttpCall<>(rawCall.clone(), responseAdapter);
+        return new OkHttpCall<>(rawCall.clone(), responseAdapter, scheduler, priority, timelines);
     }
 
     okhttp3.Call rawCall() {
@@ -97,7 +129,32 @@ final class OkHttpCall<T> implements Call<T> {
         return responseAdapter;
     }
 
+    Priority priority() {
+        return priority;
+    }
+
+    private void checkNotExecuted() {
+        // A scheduled call reaches the raw call only later, the check cannot be left to it.
+        if (!executed.compareAndSet(false, true)) {
+            throw new IllegalStateException("Already Executed");
+        }
+    }
+
+    private void onSubmitted() {
+        if (timelines != null) {
+            timelines.onSubmitted(rawCall);
+        }
+    }
+
     private T adapt(Response response) throws IOException, ApiError {
-        return responseAdapter.adapt(response);
+        if (timelines == null) {
+            return responseAdapter.adapt(response);
+        }
+        timelines.onAdaptStart(rawCall);
+        try {
+            return responseAdapter.adapt(response);
+        } finally {
+            timelines.onAdaptEnd(rawCall);
+        }
     }
 }
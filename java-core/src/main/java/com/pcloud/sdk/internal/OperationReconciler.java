@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.pcloud.sdk.ApiError;
+import com.pcloud.sdk.RemoteEntry;
+import com.pcloud.sdk.RemoteFile;
+import com.pcloud.sdk.internal.networking.ApiResponse;
+import com.pcloud.sdk.internal.networking.ChecksumsResponse;
+import com.pcloud.sdk.internal.networking.GetFileResponse;
+import com.pcloud.sdk.internal.networking.GetFolderResponse;
+
+import java.io.IOException;
+
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Creates the {@link RetryInterceptor.Reconciliation}s of the requests of a {@link RealApiClient} that change data.
+ * <p>
+ * A reconciliation looks up the target of a failed request. If it holds the expected content, the API response
+ * describing it is returned in place of the lost one. If the target is missing, the request is repeated.
+ * Otherwise the request is repeated only if a second attempt replaces the target rather than adding a new file.
+ */
+class OperationReconciler {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final int ERROR_PARENT_FOLDER_NOT_FOUND = 2002;
+    private static final int ERROR_FOLDER_NOT_FOUND = 2005;
+    private static final int ERROR_FILE_NOT_FOUND = 2009;
+
+    private final RealApiClient apiClient;
+    private final OkHttpClient httpClient;
+    private final HttpUrl apiHost;
+
+    OperationReconciler(RealApiClient apiClient, OkHttpClient httpClient, HttpUrl apiHost) {
+        this.apiClient = apiClient;
+        this.httpClient = httpClient;
+        this.apiHost = apiHost;
+    }
+
+    /**
+     * Reconcile an {@code uploadfile} request of a single file, by comparing the digests of the sent content
+     * with the checksums of the file having the uploaded name.
+     * <p>
+     * An upload that renames the file on a name conflict cannot be repeated once a different file with the
+     * name is found, as the failed attempt may have stored the content under a new name.
+     */
+    RetryInterceptor.Reconciliation upload(Long folderId, String path, String filename, boolean overwrite, ContentDigests digests) {
+        return request -> {
+            Long fileId = path != null ? null : findFileId(folderId, filename);
+            if (path == null && fileId == null) {
+                return null;
+            }
+            HttpUrl.Builder url = apiHost.newBuilder().addPathSegment("checksumfile");
+            if (fileId != null) {
+                url.addQueryParameter("fileid", String.valueOf(fileId));
+            } else {
+                url.addEncodedQueryParameter("path", path.endsWith("/") ? path + filename : path + "/" + filename);
+            }
+
+            Request checksumsRequest = new Request.Builder().url(url.build()).get().build();
+            String json = executeForJson(checksumsRequest);
+            ChecksumsResponse checksums = parse(checksumsRequest, json, ChecksumsResponse.class);
+            if (checksums == null) {
+                return null;
+            }
+            if (digests.matches(checksums.getSha1(), checksums.getSha256())) {
+                return newResponse(request, toUploadResponse(json));
+            }
+            if (overwrite) {
+                return null;
+            }
+            throw new IOException("Cannot tell whether the upload of '" + filename +
+                    "' took effect, a different file with the same name exists.");
+        };
+    }
+
+    /**
+     * Reconcile a {@code copyfile} request, by comparing the content hash of the copied file with the one of
+     * the file at the target.
+     * <p>
+     * A copy either replaces the target or fails on a conflict, repeating it cannot leave a duplicate behind.
+     */
+    RetryInterceptor.Reconciliation copy(long fileId, Long toFolderId, String toPath, String toName) {
+        return request -> {
+            Request sourceRequest = newStatRequest(fileId);
+            GetFileResponse sourceResponse = parse(sourceRequest, executeForJson(sourceRequest), GetFileResponse.class);
+            if (sourceResponse == null) {
+                throw new IOException("Cannot tell whether the copy took effect, the copied file does not exist.");
+            }
+            RemoteFile source = sourceResponse.getFile();
+            String name = toName != null ? toName : source.name();
+            Long targetId;
+            if (toPath != null) {
+                String targetPath = toPath.endsWith("/") ? toPath + name : toPath;
+                Request targetRequest = new Request.Builder()
+                        .url(apiHost.newBuilder()
+                                .addPathSegment("stat")
+                                .addEncodedQueryParameter("path", targetPath)
+                                .build())
+                        .get()
+                        .build();
+                GetFileResponse target = parse(targetRequest, executeForJson(targetRequest), GetFileResponse.class);
+                targetId = target != null ? target.getFile().fileId() : null;
+            } else {
+                targetId = findFileId(toFolderId, name);
+            }
+            if (targetId == null) {
+                return null;
+            }
+
+            Request targetRequest = newStatRequest(targetId);
+            String json = executeForJson(targetRequest);
+            GetFileResponse targetResponse = parse(targetRequest, json, GetFileResponse.class);
+            if (targetResponse == null) {
+                return null;
+            }
+            RemoteFile target = targetResponse.getFile();
+            if (target.size() == source.size() && source.hash() != null && source.hash().equals(target.hash())) {
+                return newResponse(request, json);
+            }
+            return null;
+        };
+    }
+
+    private Long findFileId(Long folderId, String filename) throws IOException {
+        Request request = new Request.Builder()
+                .url(apiHost.newBuilder()
+                        .addPathSegment("listfolder")
+                        .addQueryParameter("folderid", String.valueOf(folderId))
+                        .build())
+                .get()
+                .build();
+        GetFolderResponse listing = parse(request, executeForJson(request), GetFolderResponse.class);
+        if (listing == null) {
+            return null;
+        }
+        for (RemoteEntry entry : listing.getFolder().children()) {
+            if (entry.isFile() && entry.name().equals(filename)) {
+                return entry.asFile().fileId();
+            }
+        }
+        return null;
+    }
+
+    private Request newStatRequest(long fileId) {
+        return new Request.Builder()
+                .url(apiHost.newBuilder()
+                        .addPathSegment("stat")
+                        .addQueryParameter("fileid", String.valueOf(fileId))
+                        .build())
+                .get()
+                .build();
+    }
+
+    private String executeForJson(Request request) throws IOException {
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Reconciliation request failed with HTTP " + response.code() + ".");
+            }
+            return response.body().string();
+        }
+    }
+
+    /**
+     * Parse the API response of a lookup, mapping the errors of missing files and folders to {@code null}.
+     * <p>
+     * Only the unexpected errors are recorded, under the method of the lookup that returned them.
+     */
+    private <T extends ApiResponse> T parse(Request lookupRequest, String json, Class<T> type) throws IOException {
+        Response response = newResponse(lookupRequest, json);
+        try {
+            return apiClient.readApiResponse(response, type);
+        } catch (ApiError e) {
+            int code = e.errorCode();
+            if (code == ERROR_PARENT_FOLDER_NOT_FOUND || code == ERROR_FOLDER_NOT_FOUND || code == ERROR_FILE_NOT_FOUND) {
+                return null;
+            }
+            throw new IOException("Reconciliation request failed.", apiClient.recordApiError(response, e));
+        }
+    }
+
+    /**
+     * Turn a {@code checksumfile} response into the {@code uploadfile} response of the same file.
+     */
+    private static String toUploadResponse(String checksumsJson) {
+        JsonObject checksums = JsonParser.parseString(checksumsJson).getAsJsonObject();
+        JsonElement metadata = checksums.get("metadata");
+        JsonObject fileChecksums = new JsonObject();
+        for (String algorithm : new String[]{"sha1", "sha256"}) {
+            if (checksums.has(algorithm)) {
+                fileChecksums.add(algorithm, checksums.get(algorithm));
+            }
+        }
+
+        JsonObject upload = new JsonObject();
+        upload.addProperty("result", 0);
+        JsonArray files = new JsonArray();
+        files.add(metadata);
+        upload.add("metadata", files);
+        JsonArray fileIds = new JsonArray();
+        fileIds.add(metadata.getAsJsonObject().get("fileid"));
+        upload.add("fileids", fileIds);
+        JsonArray checksumsArray = new JsonArray();
+        checksumsArray.add(fileChecksums);
+        upload.add("checksums", checksumsArray);
+        return upload.toString();
+    }
+
+    private static Response newResponse(Request request, String json) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(json, JSON))
+                .build();
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A source of random numbers uniformly distributed between {@code 0} (inclusive) and {@code 1} (exclusive),
+ * replaceable in tests.
+ * <p>
+ * Stands in for {@code java.util.function.DoubleSupplier}, which Android provides from API level 24 only.
+ */
+interface RandomSource {
+
+    RandomSource DEFAULT = () -> ThreadLocalRandom.current().nextDouble();
+
+    double nextDouble();
+}
@@ -30,18 +30,33 @@ import com.google.gson.stream.JsonReader;
 import com.pcloud.sdk.ApiClient;
 import com.pcloud.sdk.ApiError;
 import com.pcloud.sdk.Authenticator;
+import com.pcloud.sdk.BandwidthLimit;
+import com.pcloud.sdk.BatchUploadOptions;
 import com.pcloud.sdk.Call;
+import com.pcloud.sdk.CallTimelineListener;
 import com.pcloud.sdk.Checksums;
+import com.pcloud.sdk.CircuitBreakerPolicy;
+import com.pcloud.sdk.ChunkedUploadOptions;
+import com.pcloud.sdk.ConcurrencyLimitPolicy;
+import com.pcloud.sdk.ConcurrencyLimiter;
+import com.pcloud.sdk.ContentIndex;
 import com.pcloud.sdk.ContentLink;
 import com.pcloud.sdk.DataSink;
 import com.pcloud.sdk.DataSource;
 import com.pcloud.sdk.DownloadOptions;
 import com.pcloud.sdk.FileLink;
+import com.pcloud.sdk.HedgingPolicy;
+import com.pcloud.sdk.MetricsRecorder;
+import com.pcloud.sdk.Priority;
 import com.pcloud.sdk.ProgressListener;
 import com.pcloud.sdk.RemoteEntry;
+import com.pcloud.sdk.RemoteEntryVisitor;
 import com.pcloud.sdk.RemoteFile;
 import com.pcloud.sdk.RemoteFolder;
+import com.pcloud.sdk.RemoteFolderTree;
+import com.pcloud.sdk.RetryPolicy;
 import com.pcloud.sdk.Resolution;
+import com.pcloud.sdk.SegmentedDownloadOptions;
 import com.pcloud.sdk.UploadOptions;
 import com.pcloud.sdk.UserInfo;
 import com.pcloud.sdk.internal.networking.APIHttpException;
@@ -60,9 +75,8 @@ import com.pcloud.sdk.internal.networking.serialization.UnmodifiableListTypeFact
 
 import org.jetbrains.annotations.NotNull;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -93,6 +107,7 @@ import okio.BufferedSink;
 import okio.BufferedSource;
 import okio.ByteString;
 import okio.Okio;
+import okio.Sink;
 
 class RealApiClient implements ApiClient {
 
@@ -102,8 +117,25 @@ class RealApiClient implements ApiClient {
     private final Authenticator authenticator;
     private final Gson gson;
     private final OkHttpClient httpClient;
+    private final OkHttpClient transferHttpClient;
     private final Executor callbackExecutor;
     private final HttpUrl apiHost;
+    private final ContentHostSelector contentHostSelector;
+    private final FileLinkCache fileLinkCache;
+    private final ContentIndex contentIndex;
+    private final BandwidthLimit uploadBandwidthLimit;
+    private final BandwidthLimit downloadBandwidthLimit;
+    private final RequestScheduler requestScheduler;
+    private final RequestScheduler transferRequestScheduler;
+    private final Priority priority;
+    private final RetryPolicy retryPolicy;
+    private final OperationReconciler reconciler;
+    private final HedgingPolicy hedgingPolicy;
+    private final HedgingInterceptor hedgingInterceptor;
+    private final ConcurrencyLimitPolicy concurrencyLimitPolicy;
+    private final CircuitBreakerPolicy circuitBreakerPolicy;
+    private final MetricsRecorder metricsRecorder;
+    private final CallTimelineRecorder timelineRecorder;
 
     RealApiClient() {
         this(new RealApiServiceBuilder());
@@ -113,13 +145,46 @@ class RealApiClient implements ApiClient {
         Map<String, String> globalParams = new TreeMap<>();
         globalParams.put("timeformat", "timestamp");
         String userAgent = String.format(Locale.US, "pCloud SDK Java %s", Version.NAME);
+        this.contentHostSelector = new ContentHostSelector();
         OkHttpClient.Builder httpClientBuilder = new OkHttpClient.Builder()
                 .readTimeout(builder.readTimeoutMs(), TimeUnit.MILLISECONDS)
                 .writeTimeout(builder.writeTimeoutMs(), TimeUnit.MILLISECONDS)
                 .connectTimeout(builder.connectTimeoutMs(), TimeUnit.MILLISECONDS)
-                .protocols(Collections.singletonList(Protocol.HTTP_1_1))
+                .protocols(Collections.singletonList(Protocol.HTTP_1_1));
+
+        if (builder.callTimelineListener() != null) {
+            // First in the chain, to tell when a call leaves the dispatcher queue.
+            this.timelineRecorder = new CallTimelineRecorder(builder.callTimelineListener(), builder.callTimelineSampleRate());
+            httpClientBuilder.eventListenerFactory(timelineRecorder)
+                    .addInterceptor(timelineRecorder.interceptor());
+        } else {
+            this.timelineRecorder = null;
+        }
+
+        this.circuitBreakerPolicy = builder.circuitBreakerPolicy();
+        if (circuitBreakerPolicy != null) {
+            // Ahead of the retries, a request failing fast should not be retried.
+            httpClientBuilder.addInterceptor(new CircuitBreakerInterceptor(circuitBreakerPolicy));
+        }
+
+        this.metricsRecorder = builder.metricsRecorder();
+        this.retryPolicy = builder.retryPolicy();
+        if (retryPolicy.maxRetries() > 0) {
+            // Each attempt goes through the whole chain, including the content host failover.
+            httpClientBuilder.addInterceptor(new RetryInterceptor(retryPolicy, metricsRecorder));
+        }
+        if (metricsRecorder != null) {
+            httpClientBuilder.addInterceptor(new MetricsInterceptor(metricsRecorder));
+        }
+        httpClientBuilder.addInterceptor(contentHostSelector.interceptor())
                 .addInterceptor(new GlobalRequestInterceptor(userAgent, globalParams));
 
+        this.uploadBandwidthLimit = builder.uploadBandwidthLimit();
+        this.downloadBandwidthLimit = builder.downloadBandwidthLimit();
+        if (uploadBandwidthLimit != null || downloadBandwidthLimit != null) {
+            httpClientBuilder.addInterceptor(new BandwidthInterceptor(uploadBandwidthLimit, downloadBandwidthLimit));
+        }
+
         if (builder.dispatcher() != null) {
             httpClientBuilder.dispatcher(builder.dispatcher());
         }
@@ -139,21 +204,76 @@ class RealApiClient implements ApiClient {
             httpClientBuilder.addInterceptor((RealAuthenticator) builder.authenticator());
         }
 
-        this.httpClient = httpClientBuilder.build();
+        OkHttpClient baseHttpClient = httpClientBuilder.build();
+        this.hedgingPolicy = builder.hedgingPolicy();
+        if (hedgingPolicy != null) {
+            // Hedged attempts are calls of the base client, which knows nothing about hedging.
+            this.hedgingInterceptor = new HedgingInterceptor(hedgingPolicy, baseHttpClient);
+            OkHttpClient.Builder hedgingClientBuilder = baseHttpClient.newBuilder();
+            hedgingClientBuilder.interceptors().add(0, hedgingInterceptor);
+            this.httpClient = hedgingClientBuilder.build();
+        } else {
+            this.hedgingInterceptor = null;
+            this.httpClient = baseHttpClient;
+        }
+
+        // Transfers get their own lane, so that they cannot hold up other API calls.
+        this.transferHttpClient = baseHttpClient.newBuilder()
+                .readTimeout(builder.transferReadTimeoutMs(), TimeUnit.MILLISECONDS)
+                .writeTimeout(builder.transferWriteTimeoutMs(), TimeUnit.MILLISECONDS)
+                .dispatcher(builder.transferDispatcher() != null ? builder.transferDispatcher() : new Dispatcher())
+                .connectionPool(builder.transferConnectionPool() != null ? builder.transferConnectionPool() : new ConnectionPool())
+                .cache(null)
+                .build();
+        this.concurrencyLimitPolicy = builder.concurrencyLimitPolicy();
+        this.requestScheduler = RequestScheduler.of(httpClient.dispatcher(), concurrencyLimitPolicy);
+        this.transferRequestScheduler = RequestScheduler.of(transferHttpClient.dispatcher(), null);
+        this.priority = Priority.NORMAL;
         this.callbackExecutor = builder.callbackExecutor();
         this.progressCallbackThresholdBytes = builder.progressCallbackThresholdBytes();
-        this.gson = new GsonBuilder()
+        this.gson = newGson();
+        this.apiHost = builder.apiHost();
+        this.fileLinkCache = builder.fileLinkCacheSize() > 0 ? new FileLinkCache(builder.fileLinkCacheSize()) : null;
+        this.contentIndex = builder.contentIndex();
+        this.reconciler = new OperationReconciler(this, httpClient, apiHost);
+    }
+
+    private RealApiClient(RealApiClient client, Priority priority) {
+        this.progressCallbackThresholdBytes = client.progressCallbackThresholdBytes;
+        this.authenticator = client.authenticator;
+        this.httpClient = client.httpClient;
+        this.transferHttpClient = client.transferHttpClient;
+        this.callbackExecutor = client.callbackExecutor;
+        this.apiHost = client.apiHost;
+        this.contentHostSelector = client.contentHostSelector;
+        this.fileLinkCache = client.fileLinkCache;
+        this.contentIndex = client.contentIndex;
+        this.uploadBandwidthLimit = client.uploadBandwidthLimit;
+        this.downloadBandwidthLimit = client.downloadBandwidthLimit;
+        this.requestScheduler = client.requestScheduler;
+        this.transferRequestScheduler = client.transferRequestScheduler;
+        this.priority = priority;
+        this.retryPolicy = client.retryPolicy;
+        this.reconciler = client.reconciler;
+        this.hedgingPolicy = client.hedgingPolicy;
+        this.hedgingInterceptor = client.hedgingInterceptor;
+        this.concurrencyLimitPolicy = client.concurrencyLimitPolicy;
+        this.circuitBreakerPolicy = client.circuitBreakerPolicy;
+        this.metricsRecorder = client.metricsRecorder;
+        this.timelineRecorder = client.timelineRecorder;
+        // Entries returned by this client should perform their calls with its priority.
+        this.gson = newGson();
+    }
+
+    private Gson newGson() {
+        return new GsonBuilder()
                 .excludeFieldsWithoutExposeAnnotation()
-                .registerTypeAdapterFactory(new RealRemoteEntry.TypeAdapterFactory())
+                .registerTypeAdapterFactory(new RealRemoteEntry.TypeAdapterFactory(this))
                 .registerTypeAdapterFactory(new UnmodifiableListTypeFactory())
-                .registerTypeAdapter(RemoteEntry.class, new RealRemoteEntry.FileEntryDeserializer())
                 .registerTypeAdapter(Date.class, new DateTypeAdapter())
-                .registerTypeAdapter(RealRemoteFile.class, new RealRemoteFile.InstanceCreator(this))
-                .registerTypeAdapter(RealRemoteFolder.class, new RealRemoteFolder.InstanceCreator(this))
                 .registerTypeAdapter(ByteString.class, new ByteStringTypeAdapter())
                 .registerTypeAdapter(Resolution.class, ResolutionDeserializer.INSTANCE)
                 .create();
-        this.apiHost = builder.apiHost();
     }
 
     @Override
@@ -201,6 +321,82 @@ class RealApiClient implements ApiClient {
         return newCall(request, response -> getAsApiResponse(response, GetFolderResponse.class).getFolder());
     }
 
+    @Override
+    public Call<Void> listFolder(long folderId, boolean recursively, RemoteEntryVisitor visitor) {
+        if (visitor == null) {
+            throw new IllegalArgumentException("Visitor argument cannot be null.");
+        }
+        HttpUrl.Builder urlBuilder = apiHost.newBuilder()
+                .addPathSegment("listfolder")
+                .addQueryParameter("folderid", String.valueOf(folderId));
+        if (recursively) {
+            urlBuilder.addEncodedQueryParameter("recursive", String.valueOf(1));
+        }
+
+        Request request = newRequest()
+                .url(urlBuilder.build())
+                .get()
+                .build();
+
+        return newCall(request, response -> {
+            readListFolderResponse(response, new FolderListingReader(this, visitor));
+            return null;
+        });
+    }
+
+    @Override
+    public Call<Void> listFolder(String path, boolean recursively, RemoteEntryVisitor visitor) {
+        requireValidPath(path);
+        if (visitor == null) {
+            throw new IllegalArgumentException("Visitor argument cannot be null.");
+        }
+        HttpUrl.Builder urlBuilder = apiHost.newBuilder()
+                .addPathSegment("listfolder")
+                .addEncodedQueryParameter("path", path);
+        if (recursively) {
+            urlBuilder.addEncodedQueryParameter("recursive", String.valueOf(1));
+        }
+
+        Request request = newRequest()
+                .url(urlBuilder.build())
+                .get()
+                .build();
+
+        return newCall(request, response -> {
+            readListFolderResponse(response, new FolderListingReader(this, visitor));
+            return null;
+        });
+    }
+
+    @Override
+    public Call<RemoteFolderTree> loadFolderTree(long folderId) {
+        Request request = newRequest()
+                .url(apiHost.newBuilder()
+                        .addPathSegment("listfolder")
+                        .addQueryParameter("folderid", String.valueOf(folderId))
+                        .addEncodedQueryParameter("recursive", String.valueOf(1))
+                        .build())
+                .get()
+                .build();
+
+        return newCall(request, this::readFolderTree);
+    }
+
+    @Override
+    public Call<RemoteFolderTree> loadFolderTree(String path) {
+        requireValidPath(path);
+        Request request = newRequest()
+                .url(apiHost.newBuilder()
+                        .addPathSegment("listfolder")
+                        .addEncodedQueryParameter("path", path)
+                        .addEncodedQueryParameter("recursive", String.valueOf(1))
+                        .build())
+                .get()
+                .build();
+
+        return newCall(request, this::readFolderTree);
+    }
+
     @Override
     public Call<RemoteFile> createFile(RemoteFolder folder, String filename, DataSource data) {
         return createFile(folder, filename, data, null, null, UploadOptions.DEFAULT);
@@ -277,7 +473,180 @@ class RealApiClient implements ApiClient {
             throw new IllegalArgumentException("Upload options cannot be null.");
         }
 
-        RequestBody dataBody = new RequestBody() {
+        if (data.contentLength() < 0) {
+            // A multipart body needs the length of its parts, stream the data through an upload session instead.
+            ChunkedUploadOptions chunkedUploadOptions = ChunkedUploadOptions.create()
+                    .overrideFile(uploadOptions.overrideFile())
+                    .verifyChecksum(uploadOptions.verifyChecksum())
+                    .build();
+            return createFileInChunks(folderId, path, filename, data, modifiedDate, listener, chunkedUploadOptions);
+        }
+
+        boolean reconcile = retryPolicy.maxRetries() > 0 && retryPolicy.reconcile() && data.isRepeatable();
+        final ContentDigests digests = uploadOptions.verifyChecksum() || reconcile ? new ContentDigests(true, true) : null;
+        RequestBody compositeBody = withOneShotParts(new MultipartBody.Builder(MULTIPART_BOUNDARY)
+                .setType(MultipartBody.FORM)
+                .addFormDataPart("file", filename, newFileDataBody(data, listener, digests))
+                .build());
+
+        HttpUrl.Builder urlBuilder = newUploadUrlBuilder(folderId, path, uploadOptions.overrideFile(), uploadOptions.partialUpload());
+        if (modifiedDate != null) {
+            urlBuilder.addQueryParameter("mtime", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(modifiedDate.getTime())));
+        }
+
+        Request.Builder uploadRequestBuilder = new Request.Builder()
+                .url(urlBuilder.build())
+                .method("POST", compositeBody);
+        if (reconcile) {
+            uploadRequestBuilder.tag(RetryInterceptor.Reconciliation.class,
+                    reconciler.upload(folderId, path, filename, uploadOptions.overrideFile(), digests));
+        }
+        Request uploadRequest = uploadRequestBuilder.build();
+
+        ResponseAdapter<RemoteFile> uploadAdapter = response -> {
+            UploadFilesResponse body = getAsApiResponse(response, UploadFilesResponse.class);
+            if (!body.getUploadedFiles().isEmpty()) {
+                RemoteFile file = body.getUploadedFiles().get(0);
+                forgetFileContent(file.fileId());
+                if (uploadOptions.verifyChecksum()) {
+                    List<UploadFilesResponse.FileChecksums> checksums = body.getChecksums();
+                    UploadFilesResponse.FileChecksums expected = checksums != null && !checksums.isEmpty() ? checksums.get(0) : null;
+                    digests.verify("uploaded file",
+                            expected != null ? expected.getSha1() : null,
+                            expected != null ? expected.getSha256() : null);
+                }
+                return file;
+            } else {
+                throw new IOException("API uploaded file but did not return remote file data.");
+            }
+        };
+
+        if (contentIndex == null || !data.isRepeatable()) {
+            // Digesting the content reads the data once more, before it is uploaded.
+            return newTransferCall(uploadRequest, uploadAdapter);
+        }
+
+        String copyPath = path == null ? null : path.endsWith("/") ? path + filename : path + "/" + filename;
+        DeduplicatingUploadCall.CopyRequestFactory copyRequestFactory = fileId -> newCopyFileRequest(fileId, folderId, copyPath,
+                folderId != null ? filename : null, uploadOptions.overrideFile(), modifiedDate);
+        Call<RemoteFile> call = new DeduplicatingUploadCall(this, transferHttpClient, contentIndex, data, listener,
+                uploadOptions.overrideFile(), copyRequestFactory, uploadRequest, uploadAdapter);
+        if (callbackExecutor != null) {
+            return new ScheduledCall<>(call, callbackExecutor);
+        } else {
+            return call;
+        }
+    }
+
+    @Override
+    public Call<List<RemoteFile>> createFiles(long folderId, Map<String, DataSource> files, BatchUploadOptions uploadOptions) {
+        return createFiles(folderId, null, files, uploadOptions);
+    }
+
+    @Override
+    public Call<List<RemoteFile>> createFiles(String path, Map<String, DataSource> files, BatchUploadOptions uploadOptions) {
+        requireValidPath(path);
+        return createFiles(null, path, files, uploadOptions);
+    }
+
+    private Call<List<RemoteFile>> createFiles(Long folderId, String path, Map<String, DataSource> files, BatchUploadOptions uploadOptions) {
+        if (files == null || files.isEmpty()) {
+            throw new IllegalArgumentException("Files argument cannot be null or empty.");
+        }
+        if (uploadOptions == null) {
+            throw new IllegalArgumentException("Upload options cannot be null.");
+        }
+
+        List<Request> requests = new ArrayList<>();
+        List<Integer> requestFileCounts = new ArrayList<>();
+        MultipartBody.Builder batchBody = null;
+        int batchFiles = 0;
+        long batchBytes = 0;
+        for (Map.Entry<String, DataSource> entry : files.entrySet()) {
+            String filename = entry.getKey();
+            DataSource data = entry.getValue();
+            if (filename == null) {
+                throw new IllegalArgumentException("Filename cannot be null.");
+            }
+            if (data == null) {
+                throw new IllegalArgumentException("File data cannot be null.");
+            }
+            long contentLength = data.contentLength();
+            if (contentLength < 0) {
+                throw new IllegalArgumentException("Content length must be >= 0.");
+            }
+
+            if (batchBody != null && (batchFiles == uploadOptions.maxFilesPerRequest() ||
+                    batchBytes + contentLength > uploadOptions.maxBytesPerRequest())) {
+                requests.add(newBatchUploadRequest(folderId, path, batchBody, uploadOptions));
+                requestFileCounts.add(batchFiles);
+                batchBody = null;
+            }
+            if (batchBody == null) {
+                batchBody = new MultipartBody.Builder(MULTIPART_BOUNDARY).setType(MultipartBody.FORM);
+                batchFiles = 0;
+                batchBytes = 0;
+            }
+            batchBody.addFormDataPart("file", filename, newFileDataBody(data, null, null));
+            batchFiles++;
+            batchBytes += contentLength;
+        }
+        requests.add(newBatchUploadRequest(folderId, path, batchBody, uploadOptions));
+        requestFileCounts.add(batchFiles);
+
+        if (requests.size() == 1) {
+            return newTransferCall(requests.get(0), response -> getUploadedFiles(response, files.size()));
+        }
+
+        Call<List<RemoteFile>> call = new BatchUploadCall(this, transferHttpClient, requests, requestFileCounts);
+        if (callbackExecutor != null) {
+            return new ScheduledCall<>(call, callbackExecutor);
+        } else {
+            return call;
+        }
+    }
+
+    private Request newBatchUploadRequest(Long folderId, String path, MultipartBody.Builder body, BatchUploadOptions uploadOptions) {
+        return new Request.Builder()
+                .url(newUploadUrlBuilder(folderId, path, uploadOptions.overrideFile(), false).build())
+                .method("POST", withOneShotParts(body.build()))
+                .build();
+    }
+
+    /**
+     * Read the files created by an {@code uploadfile} request, which are listed in the order of the request's parts.
+     */
+    List<RemoteFile> getUploadedFiles(Response response, int expectedCount) throws IOException, ApiError {
+        UploadFilesResponse body = getAsApiResponse(response, UploadFilesResponse.class);
+        List<RemoteFile> files = body.getUploadedFiles();
+        int count = files != null ? files.size() : 0;
+        if (count != expectedCount) {
+            throw new IOException("API uploaded " + expectedCount + " files but returned data for " + count + ".");
+        }
+        for (RemoteFile file : files) {
+            forgetFileContent(file.fileId());
+        }
+        return files;
+    }
+
+    private HttpUrl.Builder newUploadUrlBuilder(Long folderId, String path, boolean overrideFile, boolean partialUpload) {
+        HttpUrl.Builder urlBuilder = apiHost.newBuilder().
+                addPathSegment("uploadfile")
+                .addQueryParameter("renameifexists", String.valueOf(overrideFile ? 0 : 1))
+                .addQueryParameter("nopartial", String.valueOf(partialUpload ? 0 : 1));
+
+        if (folderId != null) {
+            urlBuilder.addQueryParameter("folderid", String.valueOf(folderId));
+        }
+
+        if (path != null) {
+            urlBuilder.addEncodedQueryParameter("path", path);
+        }
+        return urlBuilder;
+    }
+
+    private RequestBody newFileDataBody(final DataSource data, final ProgressListener listener, final ContentDigests digests) {
+        return new RequestBody() {
             @Override
             public MediaType contentType() {
                 return MediaType.parse("multipart/form-data");
@@ -285,22 +654,30 @@ class RealApiClient implements ApiClient {
 
             @Override
             public void writeTo(@NotNull BufferedSink sink) throws IOException {
+                if (listener == null && digests == null) {
+                    data.writeTo(sink);
+                    return;
+                }
+
+                Sink target = sink;
+                if (digests != null) {
+                    target = digests.hashing(target);
+                }
                 if (listener != null) {
                     ProgressListener realListener = listener;
                     if (callbackExecutor != null) {
                         realListener = new ExecutorProgressListener(listener, callbackExecutor);
                     }
 
-                    BufferedSink targetSink = Okio.buffer(new ProgressCountingSink(
-                            sink,
+                    target = new ProgressCountingSink(
+                            target,
                             data.contentLength(),
                             realListener,
-                            progressCallbackThresholdBytes));
-                    data.writeTo(targetSink);
-                    targetSink.emit();
-                } else {
-                    data.writeTo(sink);
+                            progressCallbackThresholdBytes);
                 }
+                BufferedSink targetSink = Okio.buffer(target);
+                data.writeTo(targetSink);
+                targetSink.emit();
             }
 
             @Override
@@ -310,43 +687,91 @@ class RealApiClient implements ApiClient {
                     throw new IllegalArgumentException("Content length must be >= 0.");
                 return contentLength;
             }
+
+            @Override
+            public boolean isOneShot() {
+                return !data.isRepeatable();
+            }
         };
+    }
 
-        RequestBody compositeBody = new MultipartBody.Builder(MULTIPART_BOUNDARY)
-                .setType(MultipartBody.FORM)
-                .addFormDataPart("file", filename, dataBody)
-                .build();
+    /**
+     * Marks a multipart body as one-shot when any of its parts is, as {@link MultipartBody} itself never is.
+     */
+    private static RequestBody withOneShotParts(final MultipartBody body) {
+        boolean oneShot = false;
+        for (MultipartBody.Part part : body.parts()) {
+            oneShot |= part.body().isOneShot();
+        }
+        if (!oneShot) {
+            return body;
+        }
 
-        HttpUrl.Builder urlBuilder = apiHost.newBuilder().
-                addPathSegment("uploadfile")
-                .addQueryParameter("renameifexists", String.valueOf(uploadOptions.overrideFile() ? 0 : 1))
-                .addQueryParameter("nopartial", String.valueOf(uploadOptions.partialUpload() ? 0 : 1));
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
 
-        if (folderId != null) {
-            urlBuilder.addQueryParameter("folderid", String.valueOf(folderId));
-        }
+            @Override
+            public long contentLength() throws IOException {
+                return body.contentLength();
+            }
 
-        if (path != null) {
-            urlBuilder.addEncodedQueryParameter("path", path);
+            @Override
+            public void writeTo(@NotNull BufferedSink sink) throws IOException {
+                body.writeTo(sink);
+            }
+
+            @Override
+            public boolean isOneShot() {
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public Call<RemoteFile> createFileInChunks(RemoteFolder folder, String filename, DataSource data, Date modifiedDate, ProgressListener listener, ChunkedUploadOptions uploadOptions) {
+        if (folder == null) {
+            throw new IllegalArgumentException("Folder argument cannot be null.");
         }
+        return createFileInChunks(folder.folderId(), filename, data, modifiedDate, listener, uploadOptions);
+    }
 
-        if (modifiedDate != null) {
-            urlBuilder.addQueryParameter("mtime", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(modifiedDate.getTime())));
+    @Override
+    public Call<RemoteFile> createFileInChunks(long folderId, String filename, DataSource data, Date modifiedDate, ProgressListener listener, ChunkedUploadOptions uploadOptions) {
+        return createFileInChunks(folderId, null, filename, data, modifiedDate, listener, uploadOptions);
+    }
+
+    @Override
+    public Call<RemoteFile> createFileInChunks(String path, String filename, DataSource data, Date modifiedDate, ProgressListener listener, ChunkedUploadOptions uploadOptions) {
+        requireValidPath(path);
+        return createFileInChunks(null, path, filename, data, modifiedDate, listener, uploadOptions);
+    }
+
+    private Call<RemoteFile> createFileInChunks(Long folderId, String path, String filename, DataSource data, Date modifiedDate, ProgressListener listener, ChunkedUploadOptions uploadOptions) {
+        if (filename == null) {
+            throw new IllegalArgumentException("Filename cannot be null.");
+        }
+        if (data == null) {
+            throw new IllegalArgumentException("File data cannot be null.");
+        }
+        if (uploadOptions == null) {
+            throw new IllegalArgumentException("Upload options cannot be null.");
         }
 
-        Request uploadRequest = new Request.Builder()
-                .url(urlBuilder.build())
-                .method("POST", compositeBody)
-                .build();
+        ProgressListener realListener = listener;
+        if (listener != null && callbackExecutor != null) {
+            realListener = new ExecutorProgressListener(listener, callbackExecutor);
+        }
 
-        return newCall(uploadRequest, response -> {
-            UploadFilesResponse body = getAsApiResponse(response, UploadFilesResponse.class);
-            if (!body.getUploadedFiles().isEmpty()) {
-                return body.getUploadedFiles().get(0);
-            } else {
-                throw new IOException("API uploaded file but did not return remote file data.");
-            }
-        });
+        Call<RemoteFile> call = new ChunkedUploadCall(this, transferHttpClient, transferRequestScheduler, apiHost, folderId, path, filename,
+                data, modifiedDate, realListener, progressCallbackThresholdBytes, uploadOptions);
+        if (callbackExecutor != null) {
+            return new ScheduledCall<>(call, callbackExecutor);
+        } else {
+            return call;
+        }
     }
 
     @Override
@@ -359,19 +784,25 @@ class RealApiClient implements ApiClient {
 
     @Override
     public Call<Boolean> deleteFile(long fileId) {
-        Request request = new Request.Builder()
+        return newCall(newDeleteFileRequest(fileId), response -> {
+            GetFileResponse body = deserializeResponseBody(response, GetFileResponse.class);
+            if (body.isSuccessful() && body.getFile() != null) {
+                forgetFileContent(body.getFile().fileId());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    Request newDeleteFileRequest(long fileId) {
+        return new Request.Builder()
                 .url(apiHost.newBuilder()
                         .addPathSegment("deletefile")
                         .build())
-                .get()
                 .post(new FormBody.Builder()
                         .add("fileid", String.valueOf(fileId))
                         .build())
                 .build();
-        return newCall(request, response -> {
-            GetFileResponse body = deserializeResponseBody(response, GetFileResponse.class);
-            return body.isSuccessful() && body.getFile() != null;
-        });
     }
 
     @Override
@@ -388,7 +819,11 @@ class RealApiClient implements ApiClient {
                 .build();
         return newCall(request, response -> {
             GetFileResponse body = deserializeResponseBody(response, GetFileResponse.class);
-            return body.isSuccessful() && body.getFile() != null;
+            if (body.isSuccessful() && body.getFile() != null) {
+                forgetFileContent(body.getFile().fileId());
+                return true;
+            }
+            return false;
         });
     }
 
@@ -408,7 +843,7 @@ class RealApiClient implements ApiClient {
 
         Request request = newDownloadLinkRequest(fileId, null, options);
 
-        return newCall(request, this::getAsFileLink);
+        return newFileLinkCall(httpClient, fileId, options, request, (call, link) -> link);
     }
 
     @Override
@@ -427,25 +862,30 @@ class RealApiClient implements ApiClient {
         ContentLinkResponse body = getAsApiResponse(response, ContentLinkResponse.class);
         List<URL> downloadUrls = buildUrlsList(body.getHosts(), body.getPath());
 
-        return new RealContentLink(RealApiClient.this, body.getExpires(), downloadUrls);
+        return new RealContentLink(RealApiClient.this, body.getExpires(), downloadUrls, contentHostSelector);
     }
 
-    private FileLink getAsFileLink(Response response) throws IOException, ApiError {
+    FileLink getAsFileLink(Response response) throws IOException, ApiError {
         GetFileLinkResponse body = getAsApiResponse(response, GetFileLinkResponse.class);
         List<URL> downloadUrls = buildUrlsList(body.getHosts(), body.getPath());
 
-        return new RealFileLink(RealApiClient.this, body.getExpires(), downloadUrls, body.getHash());
+        return new RealFileLink(RealApiClient.this, body.getExpires(), downloadUrls, body.getHash(), contentHostSelector);
     }
 
-    private static List<URL> buildUrlsList(List<String> body, String body1) throws MalformedURLException {
-        List<URL> downloadUrls = new ArrayList<>(body.size());
-        for (String host : body) {
-            downloadUrls.add(new URL("https", host, body1));
+    private List<URL> buildUrlsList(List<String> hosts, String path) throws MalformedURLException {
+        List<URL> downloadUrls = new ArrayList<>(hosts.size());
+        for (String host : hosts) {
+            // Content is served over the same scheme as the API, hosts may come with a port.
+            HttpUrl url = HttpUrl.parse(apiHost.scheme() + "://" + host + path);
+            if (url == null) {
+                throw new MalformedURLException("Invalid content host '" + host + "'.");
+            }
+            downloadUrls.add(url.url());
         }
         return downloadUrls;
     }
 
-    private Request newDownloadLinkRequest(Long fileId, String path, DownloadOptions options) {
+    Request newDownloadLinkRequest(Long fileId, String path, DownloadOptions options) {
         HttpUrl.Builder urlBuilder = apiHost.newBuilder().
                 addPathSegment("getfilelink");
 
@@ -535,32 +975,77 @@ class RealApiClient implements ApiClient {
             throw new IllegalArgumentException("DataSink argument cannot be null.");
         }
 
-        Request request = newDownloadRequest(linkVariant);
+        Request request = newDownloadRequest(fileLink, linkVariant);
 
-        return newCall(request, response -> {
-            try {
-                BufferedSource source = getAsRawBytes(response);
-                if (listener != null) {
-                    ProgressListener realListener = listener;
-                    if (callbackExecutor != null) {
-                        realListener = new ExecutorProgressListener(listener, callbackExecutor);
-                    }
+        return newTransferCall(request, response -> {
+            readResponse(response, sink, listener, null);
+            return null;
+        });
+    }
 
-                    source = Okio.buffer(new ProgressCountingSource(
-                            source,
-                            Objects.requireNonNull(response.body()).contentLength(),
-                            realListener,
-                            progressCallbackThresholdBytes));
-                }
+    @Override
+    public Call<Void> download(RemoteFile file, final DataSink sink, final ProgressListener listener, final boolean verifyChecksum) {
+        if (file == null) {
+            throw new IllegalArgumentException("RemoteFile argument cannot be null.");
+        }
+        if (sink == null) {
+            throw new IllegalArgumentException("DataSink argument cannot be null.");
+        }
 
-                sink.readAll(source);
+        final long fileId = file.fileId();
+        DownloadOptions options = DownloadOptions.create()
+                .skipFilename(false)
+                .contentType(file.contentType())
+                .build();
+        return newFileLinkCall(transferHttpClient, fileId, options, newDownloadLinkRequest(fileId, null, options), (call, link) -> {
+            final ChecksumsResponse checksums = verifyChecksum ?
+                    call.executeRequest(newChecksumsRequest(fileId), response -> getAsApiResponse(response, ChecksumsResponse.class)) :
+                    null;
+            return call.executeRequest(newDownloadRequest(link, link.bestUrl()), response -> {
+                readResponse(response, sink, listener, checksums);
                 return null;
-            } finally {
-                closeQuietly(response);
-            }
+            });
         });
     }
 
+    /**
+     * Read a content response into a {@link DataSink}, verifying it against {@code expectedChecksums} if not null.
+     */
+    private void readResponse(Response response, DataSink sink, ProgressListener listener, Checksums expectedChecksums) throws IOException, ApiError {
+        try {
+            BufferedSource source = getAsRawBytes(response);
+            long contentLength = Objects.requireNonNull(response.body()).contentLength();
+
+            ContentDigests digests = null;
+            if (expectedChecksums != null) {
+                // Only one digest is computed, the one that can be verified.
+                boolean sha256 = expectedChecksums.getSha256() != null;
+                digests = new ContentDigests(!sha256, sha256);
+                source = Okio.buffer(digests.hashing(source));
+            }
+
+            if (listener != null) {
+                ProgressListener realListener = listener;
+                if (callbackExecutor != null) {
+                    realListener = new ExecutorProgressListener(listener, callbackExecutor);
+                }
+
+                source = Okio.buffer(new ProgressCountingSource(
+                        source,
+                        contentLength,
+                        realListener,
+                        progressCallbackThresholdBytes));
+            }
+
+            sink.readAll(source, contentLength);
+            if (digests != null) {
+                digests.verify("downloaded file", expectedChecksums.getSha1(), expectedChecksums.getSha256());
+            }
+        } finally {
+            closeQuietly(response);
+        }
+    }
+
     @Override
     public Call<BufferedSource> download(RemoteFile file) {
         if (file == null) {
@@ -571,10 +1056,8 @@ class RealApiClient implements ApiClient {
                 .skipFilename(false)
                 .contentType(file.contentType())
                 .build();
-        return newCall(newDownloadLinkRequest(file.fileId(), null, options), response -> {
-            FileLink link = getAsFileLink(response);
-            return newDownloadCall(link.bestUrl());
-        });
+        return newFileLinkCall(transferHttpClient, file.fileId(), options, newDownloadLinkRequest(file.fileId(), null, options),
+                (call, link) -> call.executeRequest(newDownloadRequest(link, link.bestUrl()), this::getAsRawBytes));
     }
 
     @Override
@@ -588,7 +1071,77 @@ class RealApiClient implements ApiClient {
         requireLinkNotNull(fileLink);
         requireUrlFromLink(fileLink, linkVariant);
 
-        return newCall(newDownloadRequest(linkVariant), this::getAsRawBytes);
+        return newTransferCall(newDownloadRequest(fileLink, linkVariant), this::getAsRawBytes);
+    }
+
+    @Override
+    public Call<Void> download(ContentLink fileLink, long contentLength, File target, ProgressListener listener, SegmentedDownloadOptions options) {
+        requireLinkNotNull(fileLink);
+        if (contentLength < 0) {
+            throw new IllegalArgumentException("Content length must be >= 0.");
+        }
+        return newSegmentedDownloadCall(call -> fileLink, contentLength, target, listener, options);
+    }
+
+    @Override
+    public Call<Void> download(RemoteFile file, File target, ProgressListener listener, SegmentedDownloadOptions options) {
+        if (file == null) {
+            throw new IllegalArgumentException("RemoteFile argument cannot be null.");
+        }
+
+        Request linkRequest = newDownloadLinkRequest(file.fileId(), null, DownloadOptions.DEFAULT);
+        return newSegmentedDownloadCall(call -> call.executeRequest(linkRequest, this::getAsFileLink),
+                file.size(), target, listener, options);
+    }
+
+    @Override
+    public Call<Void> resumeDownload(RemoteFile file, File target, ProgressListener listener) {
+        if (file == null) {
+            throw new IllegalArgumentException("RemoteFile argument cannot be null.");
+        }
+        return resumeDownload(file.fileId(), target, listener);
+    }
+
+    @Override
+    public Call<Void> resumeDownload(long fileId, File target, ProgressListener listener) {
+        if (target == null) {
+            throw new IllegalArgumentException("Target file argument cannot be null.");
+        }
+
+        ProgressListener realListener = listener;
+        if (listener != null && callbackExecutor != null) {
+            realListener = new ExecutorProgressListener(listener, callbackExecutor);
+        }
+
+        Call<Void> call = new ResumableDownloadCall(this, transferHttpClient, apiHost, fileId, target,
+                realListener, progressCallbackThresholdBytes);
+        if (callbackExecutor != null) {
+            return new ScheduledCall<>(call, callbackExecutor);
+        } else {
+            return call;
+        }
+    }
+
+    private Call<Void> newSegmentedDownloadCall(SegmentedDownloadCall.LinkProvider linkProvider, long contentLength, File target, ProgressListener listener, SegmentedDownloadOptions options) {
+        if (target == null) {
+            throw new IllegalArgumentException("Target file argument cannot be null.");
+        }
+        if (options == null) {
+            throw new IllegalArgumentException("Download options cannot be null.");
+        }
+
+        ProgressListener realListener = listener;
+        if (listener != null && callbackExecutor != null) {
+            realListener = new ExecutorProgressListener(listener, callbackExecutor);
+        }
+
+        Call<Void> call = new SegmentedDownloadCall(transferHttpClient, linkProvider, contentLength, target,
+                realListener, progressCallbackThresholdBytes, options);
+        if (callbackExecutor != null) {
+            return new ScheduledCall<>(call, callbackExecutor);
+        } else {
+            return call;
+        }
     }
 
     @Override
@@ -598,22 +1151,37 @@ class RealApiClient implements ApiClient {
 
     @Override
     public Call<RemoteFile> copyFile(long fileId, long toFolderId, boolean overwrite) {
+        Request request = newCopyFileRequest(fileId, toFolderId, null, null, overwrite, null);
+        return newCall(request, response -> getAsApiResponse(response, GetFileResponse.class).getFile());
+    }
+
+    private Request newCopyFileRequest(long fileId, Long toFolderId, String toPath, String toName, boolean overwrite, Date modifiedDate) {
         FormBody.Builder builder = new FormBody.Builder()
-                .add("fileid", String.valueOf(fileId))
-                .add("tofolderid", String.valueOf(toFolderId));
+                .add("fileid", String.valueOf(fileId));
+        if (toFolderId != null) {
+            builder.add("tofolderid", String.valueOf(toFolderId));
+        }
+        if (toPath != null) {
+            builder.add("topath", toPath);
+        }
+        if (toName != null) {
+            builder.add("toname", toName);
+        }
 
         if (!overwrite) {
             builder.add("noover", String.valueOf(1));
         }
+        if (modifiedDate != null) {
+            builder.add("mtime", String.valueOf(TimeUnit.MILLISECONDS.toSeconds(modifiedDate.getTime())));
+        }
 
-        Request request = newRequest()
+        return newRequest()
                 .url(apiHost.newBuilder()
                         .addPathSegment("copyfile")
                         .build())
                 .post(builder.build())
+                .tag(RetryInterceptor.Reconciliation.class, reconciler.copy(fileId, toFolderId, toPath, toName))
                 .build();
-
-        return newCall(request, response -> getAsApiResponse(response, GetFileResponse.class).getFile());
     }
 
     @Override
@@ -1122,14 +1690,16 @@ class RealApiClient implements ApiClient {
 
     @Override
     public Call<Checksums> getChecksums(long fileId) {
-        Request request = newRequest()
+        return newCall(newChecksumsRequest(fileId), response -> getAsApiResponse(response, ChecksumsResponse.class));
+    }
+
+    Request newChecksumsRequest(long fileId) {
+        return newRequest()
                 .url(apiHost.newBuilder()
                         .addPathSegment("checksumfile")
                         .addQueryParameter("fileid", String.valueOf(fileId))
                         .build())
                 .get().build();
-
-        return newCall(request, response -> getAsApiResponse(response, ChecksumsResponse.class));
     }
 
     @Override
@@ -1170,7 +1740,11 @@ class RealApiClient implements ApiClient {
 
     @Override
     public RealApiServiceBuilder newBuilder() {
-        return new RealApiServiceBuilder(httpClient, callbackExecutor, progressCallbackThresholdBytes, authenticator, apiHost);
+        return new RealApiServiceBuilder(httpClient, transferHttpClient, callbackExecutor, progressCallbackThresholdBytes, authenticator, apiHost, fileLinkCacheSize(), contentIndex,
+                uploadBandwidthLimit, downloadBandwidthLimit, retryPolicy, hedgingPolicy,
+                concurrencyLimitPolicy, circuitBreakerPolicy, metricsRecorder,
+                timelineRecorder != null ? timelineRecorder.listener() : null,
+                timelineRecorder != null ? timelineRecorder.sampleRate() : 1);
     }
 
     @Override
@@ -1208,6 +1782,26 @@ class RealApiClient implements ApiClient {
         return httpClient.connectTimeoutMillis();
     }
 
+    @Override
+    public Dispatcher transferDispatcher() {
+        return transferHttpClient.dispatcher();
+    }
+
+    @Override
+    public ConnectionPool transferConnectionPool() {
+        return transferHttpClient.connectionPool();
+    }
+
+    @Override
+    public int transferReadTimeoutMs() {
+        return transferHttpClient.readTimeoutMillis();
+    }
+
+    @Override
+    public int transferWriteTimeoutMs() {
+        return transferHttpClient.writeTimeoutMillis();
+    }
+
     @Override
     public long progressCallbackThreshold() {
         return progressCallbackThresholdBytes;
@@ -1223,11 +1817,105 @@ class RealApiClient implements ApiClient {
         return apiHost.host();
     }
 
+    @Override
+    public int fileLinkCacheSize() {
+        return fileLinkCache != null ? fileLinkCache.maxEntries() : 0;
+    }
+
+    @Override
+    public ContentIndex contentIndex() {
+        return contentIndex;
+    }
+
+    @Override
+    public BandwidthLimit uploadBandwidthLimit() {
+        return uploadBandwidthLimit;
+    }
+
+    @Override
+    public BandwidthLimit downloadBandwidthLimit() {
+        return downloadBandwidthLimit;
+    }
+
+    @Override
+    public RetryPolicy retryPolicy() {
+        return retryPolicy;
+    }
+
+    @Override
+    public HedgingPolicy hedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    @Override
+    public ConcurrencyLimitPolicy concurrencyLimitPolicy() {
+        return concurrencyLimitPolicy;
+    }
+
+    @Override
+    public ConcurrencyLimiter concurrencyLimiter() {
+        return requestScheduler;
+    }
+
+    @Override
+    public CircuitBreakerPolicy circuitBreakerPolicy() {
+        return circuitBreakerPolicy;
+    }
+
+    @Override
+    public MetricsRecorder metricsRecorder() {
+        return metricsRecorder;
+    }
+
+    @Override
+    public CallTimelineListener callTimelineListener() {
+        return timelineRecorder != null ? timelineRecorder.listener() : null;
+    }
+
+    @Override
+    public ApiClient withPriority(Priority priority) {
+        if (priority == null) {
+            throw new IllegalArgumentException("Priority argument cannot be null.");
+        }
+        return priority == this.priority ? this : new RealApiClient(this, priority);
+    }
+
+    @Override
+    public Priority priority() {
+        return priority;
+    }
+
     @Override
     public void shutdown() {
         this.httpClient.connectionPool().evictAll();
         this.httpClient.dispatcher().executorService().shutdownNow();
+        this.transferHttpClient.connectionPool().evictAll();
+        this.transferHttpClient.dispatcher().executorService().shutdownNow();
         closeQuietly(this.httpClient.cache());
+        if (hedgingInterceptor != null) {
+            hedgingInterceptor.shutdown();
+        }
+    }
+
+    /**
+     * Forget any cached links to and indexed digests of the content of a file that has been modified or deleted.
+     */
+    void forgetFileContent(long fileId) {
+        if (fileLinkCache != null) {
+            fileLinkCache.evict(fileId);
+        }
+        if (contentIndex != null) {
+            contentIndex.remove(fileId);
+        }
+    }
+
+    private <T> Call<T> newFileLinkCall(OkHttpClient client, long fileId, DownloadOptions options, Request linkRequest, FileLinkCall.LinkAction<T> action) {
+        Call<T> call = new FileLinkCall<>(client, fileLinkCache, fileId, options, linkRequest, this::getAsFileLink, action);
+        if (callbackExecutor != null) {
+            return new ScheduledCall<>(call, callbackExecutor);
+        } else {
+            return call;
+        }
     }
 
     private Request.Builder newRequest() {
@@ -1235,7 +1923,15 @@ class RealApiClient implements ApiClient {
     }
 
     private <T> Call<T> newCall(Request request, ResponseAdapter<T> adapter) {
-        Call<T> apiCall = new OkHttpCall<>(httpClient.newCall(request), adapter);
+        return newCall(httpClient, requestScheduler, request, adapter);
+    }
+
+    private <T> Call<T> newTransferCall(Request request, ResponseAdapter<T> adapter) {
+        return newCall(transferHttpClient, transferRequestScheduler, request, adapter);
+    }
+
+    private <T> Call<T> newCall(OkHttpClient client, RequestScheduler scheduler, Request request, ResponseAdapter<T> adapter) {
+        Call<T> apiCall = new OkHttpCall<>(client.newCall(request), adapter, scheduler, priority, timelineRecorder);
         if (callbackExecutor != null) {
             return new ScheduledCall<>(apiCall, callbackExecutor);
         } else {
@@ -1243,7 +1939,20 @@ class RealApiClient implements ApiClient {
         }
     }
 
-    private <T extends ApiResponse> T getAsApiResponse(Response response, Class<? extends T> bodyType) throws IOException, ApiError {
+    <T extends ApiResponse> T getAsApiResponse(Response response, Class<? extends T> bodyType) throws IOException, ApiError {
+        try {
+            return readApiResponse(response, bodyType);
+        } catch (ApiError e) {
+            throw recordApiError(response, e);
+        }
+    }
+
+    /**
+     * Same as {@link #getAsApiResponse(Response, Class)}, without recording the returned API errors.
+     * <p>
+     * Used by the internal lookups that expect some errors as an answer, which should not be reported as failures.
+     */
+    <T extends ApiResponse> T readApiResponse(Response response, Class<? extends T> bodyType) throws IOException, ApiError {
         T body = deserializeResponseBody(response, bodyType);
         if (body == null) {
             throw new IOException("API returned an empty response body.");
@@ -1255,13 +1964,20 @@ class RealApiClient implements ApiClient {
         }
     }
 
+    ApiError recordApiError(Response response, ApiError error) {
+        if (metricsRecorder != null) {
+            metricsRecorder.onApiError(MetricsInterceptor.methodOf(response.request()), error.errorCode());
+        }
+        return error;
+    }
+
     private <T> T deserializeResponseBody(Response response, Class<? extends T> bodyType) throws IOException {
         try {
             if (!response.isSuccessful()) {
                 throw new APIHttpException(response.code(), response.message());
             }
 
-            JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(Objects.requireNonNull(response.body()).byteStream())));
+            JsonReader reader = new JsonReader(new Utf8SourceReader(Objects.requireNonNull(response.body()).source()));
             try {
                 return gson.fromJson(reader, bodyType);
             } catch (JsonSyntaxException e) {
@@ -1274,20 +1990,37 @@ class RealApiClient implements ApiClient {
         }
     }
 
-    private Request newDownloadRequest(URL url) {
-        return new Request.Builder()
-                .url(url)
-                .get()
-                .build();
+    private RemoteFolderTree readFolderTree(Response response) throws IOException, ApiError {
+        CompactRemoteFolderTree.Reader treeReader = new CompactRemoteFolderTree.Reader(this);
+        readListFolderResponse(response, treeReader);
+        return treeReader.tree();
     }
 
-    private BufferedSource newDownloadCall(URL url) throws IOException {
-        return newDownloadCall(newDownloadRequest(url));
+    private void readListFolderResponse(Response response, ListFolderResponseReader listingReader) throws IOException, ApiError {
+        try {
+            if (!response.isSuccessful()) {
+                throw new APIHttpException(response.code(), response.message());
+            }
+
+            JsonReader reader = new JsonReader(new Utf8SourceReader(Objects.requireNonNull(response.body()).source()));
+            try {
+                listingReader.read(reader);
+            } catch (ApiError e) {
+                throw recordApiError(response, e);
+            } finally {
+                closeQuietly(reader);
+            }
+        } finally {
+            closeQuietly(response);
+        }
     }
 
-    private BufferedSource newDownloadCall(Request request) throws IOException {
-        Response response = httpClient.newCall(request).execute();
-        return getAsRawBytes(response);
+    private Request newDownloadRequest(ContentLink link, URL url) {
+        return new Request.Builder()
+                .url(url)
+                .tag(ContentHostSelector.Alternatives.class, new ContentHostSelector.Alternatives(link.urls()))
+                .get()
+                .build();
     }
 
     private BufferedSource getAsRawBytes(Response response) throws APIHttpException {
@@ -18,6 +18,14 @@ package com.pcloud.sdk.internal;
 
 import com.pcloud.sdk.ApiClient;
 import com.pcloud.sdk.Authenticator;
+import com.pcloud.sdk.BandwidthLimit;
+import com.pcloud.sdk.CallTimelineListener;
+import com.pcloud.sdk.CircuitBreakerPolicy;
+import com.pcloud.sdk.ConcurrencyLimitPolicy;
+import com.pcloud.sdk.ContentIndex;
+import com.pcloud.sdk.HedgingPolicy;
+import com.pcloud.sdk.MetricsRecorder;
+import com.pcloud.sdk.RetryPolicy;
 
 import java.util.Objects;
 import java.util.concurrent.Executor;
@@ -32,6 +40,8 @@ import okhttp3.OkHttpClient;
 class RealApiServiceBuilder implements ApiClient.Builder {
 
     private static final HttpUrl DEFAULT_API_HOST = HttpUrl.parse("https://api.pcloud.com");
+    private static final int DEFAULT_FILE_LINK_CACHE_SIZE = 0;
+    private static final int UNSET_TIMEOUT = -1;
 
     private Cache cache;
     private Executor callbackExecutor;
@@ -40,11 +50,26 @@ class RealApiServiceBuilder implements ApiClient.Builder {
     private int readTimeoutMs;
     private int writeTimeoutMs;
     private int connectTimeoutMs;
+    private ConnectionPool transferConnectionPool;
+    private Dispatcher transferDispatcher;
+    private int transferReadTimeoutMs = UNSET_TIMEOUT;
+    private int transferWriteTimeoutMs = UNSET_TIMEOUT;
     private long progressCallbackThresholdBytes;
     private Authenticator authenticator;
     private HttpUrl apiHost;
-
-    RealApiServiceBuilder(OkHttpClient okHttpClient, Executor callbackExecutor, long progressCallbackThresholdBytes, Authenticator authenticator, HttpUrl apiHost) {
+    private int fileLinkCacheSize;
+    private ContentIndex contentIndex;
+    private BandwidthLimit uploadBandwidthLimit;
+    private BandwidthLimit downloadBandwidthLimit;
+    private RetryPolicy retryPolicy;
+    private HedgingPolicy hedgingPolicy;
+    private ConcurrencyLimitPolicy concurrencyLimitPolicy;
+    private CircuitBreakerPolicy circuitBreakerPolicy;
+    private MetricsRecorder metricsRecorder;
+    private CallTimelineListener callTimelineListener;
+    private double callTimelineSampleRate;
+
+    RealApiServiceBuilder(OkHttpClient okHttpClient, OkHttpClient transferHttpClient, Executor callbackExecutor, long progressCallbackThresholdBytes, Authenticator authenticator, HttpUrl apiHost, int fileLinkCacheSize, ContentIndex contentIndex, BandwidthLimit uploadBandwidthLimit, BandwidthLimit downloadBandwidthLimit, RetryPolicy retryPolicy, HedgingPolicy hedgingPolicy, ConcurrencyLimitPolicy concurrencyLimitPolicy, CircuitBreakerPolicy circuitBreakerPolicy, MetricsRecorder metricsRecorder, CallTimelineListener callTimelineListener, double callTimelineSampleRate) {
         this.cache = okHttpClient.cache();
         this.callbackExecutor = callbackExecutor;
         this.connectionPool = okHttpClient.connectionPool();
@@ -52,13 +77,31 @@ class RealApiServiceBuilder implements ApiClient.Builder {
         this.readTimeoutMs = okHttpClient.readTimeoutMillis();
         this.writeTimeoutMs = okHttpClient.writeTimeoutMillis();
         this.connectTimeoutMs = okHttpClient.connectTimeoutMillis();
+        this.transferConnectionPool = transferHttpClient.connectionPool();
+        this.transferDispatcher = transferHttpClient.dispatcher();
+        this.transferReadTimeoutMs = transferHttpClient.readTimeoutMillis();
+        this.transferWriteTimeoutMs = transferHttpClient.writeTimeoutMillis();
         this.progressCallbackThresholdBytes = progressCallbackThresholdBytes;
         this.authenticator = authenticator;
         this.apiHost = apiHost;
+        this.fileLinkCacheSize = fileLinkCacheSize;
+        this.contentIndex = contentIndex;
+        this.uploadBandwidthLimit = uploadBandwidthLimit;
+        this.downloadBandwidthLimit = downloadBandwidthLimit;
+        this.retryPolicy = retryPolicy;
+        this.hedgingPolicy = hedgingPolicy;
+        this.concurrencyLimitPolicy = concurrencyLimitPolicy;
+        this.circuitBreakerPolicy = circuitBreakerPolicy;
+        this.metricsRecorder = metricsRecorder;
+        this.callTimelineListener = callTimelineListener;
+        this.callTimelineSampleRate = callTimelineSampleRate;
     }
 
     RealApiServiceBuilder() {
         this.apiHost = DEFAULT_API_HOST;
+        this.fileLinkCacheSize = DEFAULT_FILE_LINK_CACHE_SIZE;
+        this.retryPolicy = RetryPolicy.NONE;
+        this.callTimelineSampleRate = 1;
     }
 
     @Override
@@ -107,6 +150,30 @@ class RealApiServiceBuilder implements ApiClient.Builder {
         return this;
     }
 
+    @Override
+    public ApiClient.Builder transferConnectionPool(ConnectionPool connectionPool) {
+        this.transferConnectionPool = connectionPool;
+        return this;
+    }
+
+    @Override
+    public ApiClient.Builder transferDispatcher(Dispatcher dispatcher) {
+        this.transferDispatcher = dispatcher;
+        return this;
+    }
+
+    @Override
+    public ApiClient.Builder transferReadTimeout(long timeout, TimeUnit timeUnit) {
+        this.transferReadTimeoutMs = (int) timeUnit.toMillis(timeout);
+        return this;
+    }
+
+    @Override
+    public ApiClient.Builder transferWriteTimeout(long timeout, TimeUnit timeUnit) {
+        this.transferWriteTimeoutMs = (int) timeUnit.toMillis(timeout);
+        return this;
+    }
+
     @Override
     public ApiClient.Builder authenticator(Authenticator authenticator) {
         this.authenticator = authenticator;
@@ -128,6 +195,78 @@ class RealApiServiceBuilder implements ApiClient.Builder {
         return this;
     }
 
+    @Override
+    public ApiClient.Builder fileLinkCacheSize(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Cache size cannot be negative.");
+        }
+        this.fileLinkCacheSize = maxEntries;
+        return this;
+    }
+
+    @Override
+    public ApiClient.Builder contentIndex(ContentIndex index) {
+        this.contentIndex = index;
+        return this;
+    }
+
+    @Override
+    public ApiClient.Builder uploadBandwidthLimit(BandwidthLimit limit) {
+        requireSdkBandwidthLimit(limit);
+        this.uploadBandwidthLimit = limit;
+        return this;
+    }
+
+    @Override
+    public ApiClient.Builder downloadBandwidthLimit(BandwidthLimit limit) {
+        requireSdkBandwidthLimit(limit);
+        this.downloadBandwidthLimit = limit;
+        return this;
+    }
+
+    @Override
+    public ApiClient.Builder retryPolicy(RetryPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("RetryPolicy argument cannot be null.");
+        }
+        this.retryPolicy = policy;
+        return this;
+    }
+
+    @Override
+    public ApiClient.Builder hedgingPolicy(HedgingPolicy policy) {
+        this.hedgingPolicy = policy;
+        return this;
+    }
+
+    @Override
+    public ApiClient.Builder concurrencyLimitPolicy(ConcurrencyLimitPolicy policy) {
+        this.concurrencyLimitPolicy = policy;
+        return this;
+    }
+
+    @Override
+    public ApiClient.Builder circuitBreakerPolicy(CircuitBreakerPolicy policy) {
+        this.circuitBreakerPolicy = policy;
+        return this;
+    }
+
+    @Override
+    public ApiClient.Builder metricsRecorder(MetricsRecorder recorder) {
+        this.metricsRecorder = recorder;
+        return this;
+    }
+
+    @Override
+    public ApiClient.Builder callTimelineListener(CallTimelineListener listener, double sampleRate) {
+        if (!(sampleRate > 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("Sample rate must be greater than 0 and at most 1.");
+        }
+        this.callTimelineListener = listener;
+        this.callTimelineSampleRate = sampleRate;
+        return this;
+    }
+
     @Override
     public ApiClient create() {
         return new RealApiClient(this);
@@ -161,6 +300,22 @@ class RealApiServiceBuilder implements ApiClient.Builder {
         return connectTimeoutMs;
     }
 
+    public ConnectionPool transferConnectionPool() {
+        return transferConnectionPool;
+    }
+
+    public Dispatcher transferDispatcher() {
+        return transferDispatcher;
+    }
+
+    public int transferReadTimeoutMs() {
+        return transferReadTimeoutMs != UNSET_TIMEOUT ? transferReadTimeoutMs : readTimeoutMs;
+    }
+
+    public int transferWriteTimeoutMs() {
+        return transferWriteTimeoutMs != UNSET_TIMEOUT ? transferWriteTimeoutMs : writeTimeoutMs;
+    }
+
     public long progressCallbackThresholdBytes() {
         return progressCallbackThresholdBytes;
     }
@@ -173,9 +328,56 @@ class RealApiServiceBuilder implements ApiClient.Builder {
         return authenticator;
     }
 
+    public int fileLinkCacheSize() {
+        return fileLinkCacheSize;
+    }
+
+    public ContentIndex contentIndex() {
+        return contentIndex;
+    }
+
+    public BandwidthLimit uploadBandwidthLimit() {
+        return uploadBandwidthLimit;
+    }
+
+    public BandwidthLimit downloadBandwidthLimit() {
+        return downloadBandwidthLimit;
+    }
+
+    public RetryPolicy retryPolicy() {
+        return retryPolicy;
+    }
+
+    public HedgingPolicy hedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    public ConcurrencyLimitPolicy concurrencyLimitPolicy() {
+        return concurrencyLimitPolicy;
+    }
+
+    public CircuitBreakerPolicy circuitBreakerPolicy() {
+        return circuitBreakerPolicy;
+    }
+
+    public MetricsRecorder metricsRecorder() {
+        return metricsRecorder;
+    }
+
+    public CallTimelineListener callTimelineListener() {
+        return callTimelineListener;
+    }
+
+    public double callTimelineSampleRate() {
+        return callTimelineSampleRate;
+    }
+
     @Override
     public ApiClient.Builder apiHost(String apiHost) {
-        HttpUrl newHost = HttpUrl.parse("https://" + apiHost);
+        if (apiHost == null) {
+            throw new IllegalArgumentException("API host argument cannot be null.");
+        }
+        HttpUrl newHost = HttpUrl.parse(apiHost.contains("://") ? apiHost : "https://" + apiHost);
         if (newHost == null) {
             throw new IllegalArgumentException("'" + apiHost + "' is not a valid API host.");
         }
@@ -183,6 +385,14 @@ class RealApiServiceBuilder implements ApiClient.Builder {
         return this;
     }
 
+    RealApiServiceBuilder apiHost(HttpUrl apiHost) {
+        if (apiHost == null) {
+            throw new IllegalArgumentException("API host argument cannot be null.");
+        }
+        this.apiHost = apiHost;
+        return this;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -193,11 +403,26 @@ class RealApiServiceBuilder implements ApiClient.Builder {
         if (readTimeoutMs != builder.readTimeoutMs) return false;
         if (writeTimeoutMs != builder.writeTimeoutMs) return false;
         if (connectTimeoutMs != builder.connectTimeoutMs) return false;
+        if (transferReadTimeoutMs != builder.transferReadTimeoutMs) return false;
+        if (transferWriteTimeoutMs != builder.transferWriteTimeoutMs) return false;
         if (progressCallbackThresholdBytes != builder.progressCallbackThresholdBytes) return false;
+        if (fileLinkCacheSize != builder.fileLinkCacheSize) return false;
         if (!Objects.equals(cache, builder.cache)) return false;
         if (!Objects.equals(callbackExecutor, builder.callbackExecutor)) return false;
         if (!Objects.equals(connectionPool, builder.connectionPool)) return false;
         if (!Objects.equals(dispatcher, builder.dispatcher)) return false;
+        if (!Objects.equals(transferConnectionPool, builder.transferConnectionPool)) return false;
+        if (!Objects.equals(transferDispatcher, builder.transferDispatcher)) return false;
+        if (!Objects.equals(contentIndex, builder.contentIndex)) return false;
+        if (!Objects.equals(uploadBandwidthLimit, builder.uploadBandwidthLimit)) return false;
+        if (!Objects.equals(downloadBandwidthLimit, builder.downloadBandwidthLimit)) return false;
+        if (!Objects.equals(retryPolicy, builder.retryPolicy)) return false;
+        if (!Objects.equals(hedgingPolicy, builder.hedgingPolicy)) return false;
+        if (!Objects.equals(concurrencyLimitPolicy, builder.concurrencyLimitPolicy)) return false;
+        if (!Objects.equals(circuitBreakerPolicy, builder.circuitBreakerPolicy)) return false;
+        if (!Objects.equals(metricsRecorder, builder.metricsRecorder)) return false;
+        if (!Objects.equals(callTimelineListener, builder.callTimelineListener)) return false;
+        if (Double.compare(builder.callTimelineSampleRate, callTimelineSampleRate) != 0) return false;
         return Objects.equals(authenticator, builder.authenticator);
     }
 
@@ -210,8 +435,31 @@ class RealApiServiceBuilder implements ApiClient.Builder {
         result = 31 * result + readTimeoutMs;
         result = 31 * result + writeTimeoutMs;
         result = 31 * result + connectTimeoutMs;
+        result = 31 * result + (transferConnectionPool != null ? transferConnectionPool.hashCode() : 0);
+        result = 31 * result + (transferDispatcher != null ? transferDispatcher.hashCode() : 0);
+        result = 31 * result + transferReadTimeoutMs;
+        result = 31 * result + transferWriteTimeoutMs;
         result = 31 * result + (int) (progressCallbackThresholdBytes ^ (progressCallbackThresholdBytes >>> 32));
         result = 31 * result + (authenticator != null ? authenticator.hashCode() : 0);
+        result = 31 * result + fileLinkCacheSize;
+        result = 31 * result + (contentIndex != null ? contentIndex.hashCode() : 0);
+        result = 31 * result + (uploadBandwidthLimit != null ? uploadBandwidthLimit.hashCode() : 0);
+        result = 31 * result + (downloadBandwidthLimit != null ? downloadBandwidthLimit.hashCode() : 0);
+        result = 31 * result + (retryPolicy != null ? retryPolicy.hashCode() : 0);
+        result = 31 * result + (hedgingPolicy != null ? hedgingPolicy.hashCode() : 0);
+        result = 31 * result + (concurrencyLimitPolicy != null ? concurrencyLimitPolicy.hashCode() : 0);
+        result = 31 * result + (circuitBreakerPolicy != null ? circuitBreakerPolicy.hashCode() : 0);
+        result = 31 * result + (metricsRecorder != null ? metricsRecorder.hashCode() : 0);
+        result = 31 * result + (callTimelineListener != null ? callTimelineListener.hashCode() : 0);
+        long sampleRateBits = Double.doubleToLongBits(callTimelineSampleRate);
+        result = 31 * result + (int) (sampleRateBits ^ (sampleRateBits >>> 32));
         return result;
     }
+
+    private static void requireSdkBandwidthLimit(BandwidthLimit limit) {
+        // The limit's token bucket is shared with the client's interceptor.
+        if (limit != null && !(limit instanceof RealBandwidthLimit)) {
+            throw new IllegalArgumentException("BandwidthLimit must be created via PCloudSdk.newBandwidthLimit().");
+        }
+    }
 }
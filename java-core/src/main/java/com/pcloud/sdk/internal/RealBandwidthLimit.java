@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.BandwidthLimit;
+import com.pcloud.sdk.DataSink;
+import com.pcloud.sdk.DataSource;
+
+import java.io.IOException;
+
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * A {@link BandwidthLimit} backed by a {@link TokenBucket}.
+ */
+class RealBandwidthLimit implements BandwidthLimit {
+
+    private final TokenBucket bucket;
+
+    RealBandwidthLimit(long bytesPerSecond) {
+        this(new TokenBucket(bytesPerSecond));
+    }
+
+    RealBandwidthLimit(TokenBucket bucket) {
+        this.bucket = bucket;
+    }
+
+    TokenBucket bucket() {
+        return bucket;
+    }
+
+    @Override
+    public long bytesPerSecond() {
+        return bucket.bytesPerSecond();
+    }
+
+    @Override
+    public void setBytesPerSecond(long bytesPerSecond) {
+        bucket.setBytesPerSecond(bytesPerSecond);
+    }
+
+    @Override
+    public DataSource limit(final DataSource source) {
+        if (source == null) {
+            throw new IllegalArgumentException("Source argument cannot be null.");
+        }
+        return new DataSource() {
+            @Override
+            public long contentLength() {
+                return source.contentLength();
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                BufferedSink throttledSink = Okio.buffer(new ThrottledSink(sink, bucket));
+                source.writeTo(throttledSink);
+                throttledSink.emit();
+            }
+
+            @Override
+            public boolean isRepeatable() {
+                return source.isRepeatable();
+            }
+        };
+    }
+
+    @Override
+    public DataSink limit(final DataSink sink) {
+        if (sink == null) {
+            throw new IllegalArgumentException("Sink argument cannot be null.");
+        }
+        return new DataSink() {
+            @Override
+            public void readAll(BufferedSource source) throws IOException {
+                sink.readAll(Okio.buffer(new ThrottledSource(source, bucket)));
+            }
+
+            @Override
+            public void readAll(BufferedSource source, long contentLength) throws IOException {
+                sink.readAll(Okio.buffer(new ThrottledSource(source, bucket)), contentLength);
+            }
+        };
+    }
+}
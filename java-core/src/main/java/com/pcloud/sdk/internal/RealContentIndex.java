@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.Checksums;
+import com.pcloud.sdk.ContentIndex;
+import com.pcloud.sdk.RemoteFile;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okio.ByteString;
+
+/**
+ * A size-bounded {@link ContentIndex} dropping the least recently used digests first.
+ */
+class RealContentIndex implements ContentIndex {
+
+    private final int maxEntries;
+    private final LinkedHashMap<ByteString, RemoteFile> entries;
+
+    RealContentIndex(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Index size must be a positive number.");
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<ByteString, RemoteFile>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteString, RemoteFile> eldest) {
+                return size() > RealContentIndex.this.maxEntries;
+            }
+        };
+    }
+
+    @Override
+    public synchronized RemoteFile get(ByteString sha256) {
+        if (sha256 == null) {
+            throw new IllegalArgumentException("Digest argument cannot be null.");
+        }
+        return entries.get(sha256);
+    }
+
+    @Override
+    public synchronized void put(ByteString sha256, RemoteFile file) {
+        if (sha256 == null) {
+            throw new IllegalArgumentException("Digest argument cannot be null.");
+        }
+        if (file == null) {
+            throw new IllegalArgumentException("File argument cannot be null.");
+        }
+        entries.put(sha256, file);
+    }
+
+    @Override
+    public boolean put(Checksums checksums) {
+        if (checksums == null) {
+            throw new IllegalArgumentException("Checksums argument cannot be null.");
+        }
+        ByteString sha256 = checksums.getSha256();
+        if (sha256 == null) {
+            return false;
+        }
+        put(sha256, checksums.getFile());
+        return true;
+    }
+
+    @Override
+    public synchronized void remove(long fileId) {
+        Iterator<RemoteFile> files = entries.values().iterator();
+        while (files.hasNext()) {
+            if (files.next().fileId() == fileId) {
+                files.remove();
+            }
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public int maxEntries() {
+        return maxEntries;
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+    }
+}
@@ -22,11 +22,17 @@ class RealContentLink implements ContentLink {
     private final ApiClient apiClient;
     private final Date expirationDate;
     private final List<URL> links;
+    private final ContentHostSelector hostSelector;
 
     RealContentLink(ApiClient apiClient, Date expirationDate, List<URL> links) {
+        this(apiClient, expirationDate, links, null);
+    }
+
+    RealContentLink(ApiClient apiClient, Date expirationDate, List<URL> links, ContentHostSelector hostSelector) {
         this.apiClient = apiClient;
         this.expirationDate = expirationDate;
         this.links = Collections.unmodifiableList(links);
+        this.hostSelector = hostSelector;
     }
 
     static void requireLinkNotNull(ContentLink fileLink) {
@@ -53,7 +59,7 @@ class RealContentLink implements ContentLink {
 
     @Override
     public URL bestUrl() {
-        return links.get(0);
+        return hostSelector != null ? hostSelector.best(links) : links.get(0);
     }
 
     @Override
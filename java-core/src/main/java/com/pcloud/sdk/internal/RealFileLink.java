@@ -41,7 +41,11 @@ class RealFileLink extends RealContentLink implements FileLink {
     private final String hash;
 
     RealFileLink(ApiClient apiClient, Date expirationDate, List<URL> links, String hash) {
-        super(apiClient, expirationDate, links);
+        this(apiClient, expirationDate, links, hash, null);
+    }
+
+    RealFileLink(ApiClient apiClient, Date expirationDate, List<URL> links, String hash, ContentHostSelector hostSelector) {
+        super(apiClient, expirationDate, links, hostSelector);
         this.hash = hash;
     }
 
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.EndpointMetrics;
+import com.pcloud.sdk.InMemoryMetrics;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+class RealInMemoryMetrics implements InMemoryMetrics {
+
+    private final ConcurrentMap<String, Recorder> recorders = new ConcurrentHashMap<>();
+
+    @Override
+    public void onResponse(String method, int statusCode, long latencyNanos, long requestBytes, long responseBytes) {
+        Recorder recorder = recorder(method);
+        recorder.recordLatency(latencyNanos);
+        recorder.requestBytes.addAndGet(requestBytes);
+        recorder.responseBytes.addAndGet(responseBytes);
+        increment(recorder.statusCodes, statusCode);
+    }
+
+    @Override
+    public void onFailure(String method, IOException error, long latencyNanos, long requestBytes) {
+        Recorder recorder = recorder(method);
+        recorder.recordLatency(latencyNanos);
+        recorder.requestBytes.addAndGet(requestBytes);
+        recorder.failures.incrementAndGet();
+    }
+
+    @Override
+    public void onApiError(String method, int errorCode) {
+        increment(recorder(method).apiErrors, errorCode);
+    }
+
+    @Override
+    public void onRetry(String method) {
+        recorder(method).retries.incrementAndGet();
+    }
+
+    @Override
+    public Map<String, EndpointMetrics> snapshot() {
+        Map<String, EndpointMetrics> snapshot = new TreeMap<>();
+        for (Map.Entry<String, Recorder> entry : recorders.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().snapshot(entry.getKey()));
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    @Override
+    public void reset() {
+        recorders.clear();
+    }
+
+    private Recorder recorder(String method) {
+        Recorder recorder = recorders.get(method);
+        if (recorder == null) {
+            Recorder newRecorder = new Recorder();
+            recorder = recorders.putIfAbsent(method, newRecorder);
+            if (recorder == null) {
+                recorder = newRecorder;
+            }
+        }
+        return recorder;
+    }
+
+    private static void increment(ConcurrentMap<Integer, AtomicLong> counters, int key) {
+        AtomicLong counter = counters.get(key);
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+            counter = counters.putIfAbsent(key, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    private static Map<Integer, Long> sum(ConcurrentMap<Integer, AtomicLong> counters) {
+        Map<Integer, Long> sums = new TreeMap<>();
+        for (Map.Entry<Integer, AtomicLong> entry : counters.entrySet()) {
+            sums.put(entry.getKey(), entry.getValue().get());
+        }
+        return Collections.unmodifiableMap(sums);
+    }
+
+    private static final class Recorder {
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong totalLatencyNanos = new AtomicLong();
+        final AtomicLong maxLatencyNanos = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong retries = new AtomicLong();
+        final AtomicLong requestBytes = new AtomicLong();
+        final AtomicLong responseBytes = new AtomicLong();
+        final ConcurrentMap<Integer, AtomicLong> statusCodes = new ConcurrentHashMap<>();
+        final ConcurrentMap<Integer, AtomicLong> apiErrors = new ConcurrentHashMap<>();
+
+        void recordLatency(long nanos) {
+            requests.incrementAndGet();
+            totalLatencyNanos.addAndGet(nanos);
+            long max;
+            do {
+                max = maxLatencyNanos.get();
+            } while (nanos > max && !maxLatencyNanos.compareAndSet(max, nanos));
+            latencies.record(nanos);
+        }
+
+        EndpointMetrics snapshot(String method) {
+            return new Snapshot(method, requests.get(), failures.get(), retries.get(),
+                    requestBytes.get(), responseBytes.get(), sum(statusCodes), sum(apiErrors),
+                    totalLatencyNanos.get(), maxLatencyNanos.get(), latencies.counts());
+        }
+    }
+
+    private static final class Snapshot implements EndpointMetrics {
+        private final String method;
+        private final long requestCount;
+        private final long failureCount;
+        private final long retryCount;
+        private final long requestBytes;
+        private final long responseBytes;
+        private final Map<Integer, Long> statusCodes;
+        private final Map<Integer, Long> apiErrors;
+        private final long totalLatencyNanos;
+        private final long maxLatencyNanos;
+        private final long[] latencyCounts;
+
+        Snapshot(String method, long requestCount, long failureCount, long retryCount,
+                 long requestBytes, long responseBytes, Map<Integer, Long> statusCodes, Map<Integer, Long> apiErrors,
+                 long totalLatencyNanos, long maxLatencyNanos, long[] latencyCounts) {
+            this.method = method;
+            this.requestCount = requestCount;
+            this.failureCount = failureCount;
+            this.retryCount = retryCount;
+            this.requestBytes = requestBytes;
+            this.responseBytes = responseBytes;
+            this.statusCodes = statusCodes;
+            this.apiErrors = apiErrors;
+            this.totalLatencyNanos = totalLatencyNanos;
+            this.maxLatencyNanos = maxLatencyNanos;
+            this.latencyCounts = latencyCounts;
+        }
+
+        @Override
+        public String method() {
+            return method;
+        }
+
+        @Override
+        public long requestCount() {
+            return requestCount;
+        }
+
+        @Override
+        public long failureCount() {
+            return failureCount;
+        }
+
+        @Override
+        public long retryCount() {
+            return retryCount;
+        }
+
+        @Override
+        public long requestBytes() {
+            return requestBytes;
+        }
+
+        @Override
+        public long responseBytes() {
+            return responseBytes;
+        }
+
+        @Override
+        public Map<Integer, Long> statusCodes() {
+            return statusCodes;
+        }
+
+        @Override
+        public Map<Integer, Long> apiErrors() {
+            return apiErrors;
+        }
+
+        @Override
+        public double meanLatencyMs() {
+            return requestCount > 0 ? totalLatencyNanos / 1e6 / requestCount : 0;
+        }
+
+        @Override
+        public double maxLatencyMs() {
+            return maxLatencyNanos / 1e6;
+        }
+
+        @Override
+        public double latencyMs(double percentile) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+            }
+            return LatencyHistogram.percentile(latencyCounts, percentile) / 1e3;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%s: %d requests, %d failed, %d retried, p50=%.1fms p99=%.1fms, sent %d bytes, received %d bytes, statuses %s, API errors %s",
+                    method, requestCount, failureCount, retryCount, latencyMs(50), latencyMs(99),
+                    requestBytes, responseBytes, statusCodes, apiErrors);
+        }
+    }
+}
@@ -17,14 +17,14 @@
 package com.pcloud.sdk.internal;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
 import com.google.gson.TypeAdapter;
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.pcloud.sdk.ApiClient;
 import com.pcloud.sdk.ApiError;
 import com.pcloud.sdk.RemoteEntry;
@@ -32,8 +32,10 @@ import com.pcloud.sdk.RemoteFile;
 import com.pcloud.sdk.RemoteFolder;
 
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 abstract class RealRemoteEntry implements RemoteEntry {
 
@@ -85,6 +87,21 @@ abstract class RealRemoteEntry implements RemoteEntry {
         this.apiClient = apiClient;
     }
 
+    RealRemoteEntry(ApiClient apiClient, Fields fields) {
+        this.apiClient = apiClient;
+        this.id = fields.id;
+        this.parentFolderId = fields.parentFolderId;
+        this.name = fields.name;
+        this.lastModified = fields.lastModified;
+        this.created = fields.created;
+        this.isFolder = fields.isFolder;
+        this.isShared = fields.isShared;
+        this.isMine = fields.isMine;
+        this.canRead = fields.canRead;
+        this.canModify = fields.canModify;
+        this.canDelete = fields.canDelete;
+    }
+
     @Override
     public String id() {
         return id;
@@ -201,35 +218,256 @@ abstract class RealRemoteEntry implements RemoteEntry {
         return result;
     }
 
+    /**
+     * Maps {@link RemoteEntry}, {@link RemoteFile}, {@link RemoteFolder} and their implementations
+     * to an {@link EntryTypeAdapter}.
+     */
     static class TypeAdapterFactory implements com.google.gson.TypeAdapterFactory {
 
-        private static final TypeToken<RemoteEntry> FILE_ENTRY_TYPE_TOKEN = new TypeToken<RemoteEntry>(){};
-        private static final TypeToken<RemoteFile> REMOTE_FILE_TYPE_TOKEN = new TypeToken<RemoteFile>(){};
-        private static final TypeToken<RemoteFolder> REMOTE_FOLDER_TYPE_TOKEN = new TypeToken<RemoteFolder>(){};
+        private final ApiClient apiClient;
+
+        TypeAdapterFactory(ApiClient apiClient) {
+            this.apiClient = apiClient;
+        }
 
         @SuppressWarnings("unchecked")
         @Override
         public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
-            if (FILE_ENTRY_TYPE_TOKEN.equals(type)){
-                return gson.getAdapter((TypeToken<T>) FILE_ENTRY_TYPE_TOKEN);
-            } else if (REMOTE_FILE_TYPE_TOKEN.equals(type)) {
-                return gson.getAdapter((Class<T>) RealRemoteFile.class);
-            } else if (REMOTE_FOLDER_TYPE_TOKEN.equals(type)) {
-                return gson.getAdapter((Class<T>) RealRemoteFolder.class);
+            Class<? super T> rawType = type.getRawType();
+            if (rawType == RemoteEntry.class || rawType == RealRemoteEntry.class) {
+                return (TypeAdapter<T>) new EntryTypeAdapter<>(apiClient, RealRemoteEntry.class);
+            } else if (rawType == RemoteFile.class || rawType == RealRemoteFile.class) {
+                return (TypeAdapter<T>) new EntryTypeAdapter<>(apiClient, RealRemoteFile.class);
+            } else if (rawType == RemoteFolder.class || rawType == RealRemoteFolder.class) {
+                return (TypeAdapter<T>) new EntryTypeAdapter<>(apiClient, RealRemoteFolder.class);
             }
 
             return null;
         }
     }
 
-    static class FileEntryDeserializer implements JsonDeserializer<RemoteEntry> {
+    /**
+     * The values of a {@code metadata} object, collected before it is known whether it describes a file or a folder.
+     */
+    static final class Fields {
+        String id;
+        long parentFolderId;
+        String name;
+        Date lastModified;
+        Date created;
+        boolean isFolder;
+        boolean isShared;
+        boolean isMine;
+        boolean canRead = true;
+        boolean canModify = true;
+        boolean canDelete = true;
+
+        long fileId;
+        String contentType;
+        long size;
+        String hash;
+        Boolean hasThumbnail;
+
+        Long folderId;
+        List<RemoteEntry> children;
+        boolean canCreate = true;
+    }
+
+    /**
+     * Reads the {@code contents} array of a folder in place of an {@link EntryTypeAdapter}.
+     */
+    interface ContentsReader {
+
+        /**
+         * @param in     the reader, positioned at the {@code contents} array
+         * @param folder the entry with the metadata read before its contents, without children
+         */
+        void read(JsonReader in, RealRemoteEntry folder) throws IOException;
+    }
+
+    /**
+     * Reads entry metadata in a single pass over the JSON stream, without building an intermediate
+     * tree or binding fields through reflection.
+     */
+    static class EntryTypeAdapter<T extends RealRemoteEntry> extends TypeAdapter<T> {
+
+        private final ApiClient apiClient;
+        private final Class<T> entryType;
+
+        EntryTypeAdapter(ApiClient apiClient, Class<T> entryType) {
+            this.apiClient = apiClient;
+            this.entryType = entryType;
+        }
+
+        @Override
+        public T read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            RealRemoteEntry entry = readEntry(in, null);
+            if (!entryType.isInstance(entry)) {
+                throw new JsonParseException("Expected a " + (entryType == RealRemoteFolder.class ? "folder" : "file") +
+                        " entry, got \"" + entry.name() + "\".");
+            }
+            return entryType.cast(entry);
+        }
+
+        /**
+         * Read an entry, passing the {@code contents} of a folder to a {@link ContentsReader} instead of
+         * collecting them as its children.
+         */
+        RealRemoteEntry read(JsonReader in, ContentsReader contentsReader) throws IOException {
+            return readEntry(in, contentsReader);
+        }
+
+        private RealRemoteEntry readEntry(JsonReader in, ContentsReader contentsReader) throws IOException {
+            Fields fields = new Fields();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "id":
+                        fields.id = in.nextString();
+                        break;
+                    case "parentfolderid":
+                        fields.parentFolderId = in.nextLong();
+                        break;
+                    case "name":
+                        fields.name = in.nextString();
+                        break;
+                    case "modified":
+                        fields.lastModified = readDate(in);
+                        break;
+                    case "created":
+                        fields.created = readDate(in);
+                        break;
+                    case "isfolder":
+                        fields.isFolder = in.nextBoolean();
+                        break;
+                    case "isshared":
+                        fields.isShared = in.nextBoolean();
+                        break;
+                    case "ismine":
+                        fields.isMine = in.nextBoolean();
+                        break;
+                    case "canread":
+                        fields.canRead = in.nextBoolean();
+                        break;
+                    case "canmodify":
+                        fields.canModify = in.nextBoolean();
+                        break;
+                    case "candelete":
+                        fields.canDelete = in.nextBoolean();
+                        break;
+                    case "fileid":
+                        fields.fileId = in.nextLong();
+                        break;
+                    case "contenttype":
+                        fields.contentType = in.nextString();
+                        break;
+                    case "size":
+                        fields.size = in.nextLong();
+                        break;
+                    case "hash":
+                        fields.hash = in.nextString();
+                        break;
+                    case "thumb":
+                        fields.hasThumbnail = in.nextBoolean();
+                        break;
+                    case "folderid":
+                        fields.folderId = in.nextLong();
+                        break;
+                    case "contents":
+                        if (contentsReader != null) {
+                            contentsReader.read(in, newEntry(fields));
+                        } else {
+                            fields.children = readChildren(in);
+                        }
+                        break;
+                    case "cancreate":
+                        fields.canCreate = in.nextBoolean();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return newEntry(fields);
+        }
+
+        private RealRemoteEntry newEntry(Fields fields) {
+            return fields.isFolder ? new RealRemoteFolder(apiClient, fields) : new RealRemoteFile(apiClient, fields);
+        }
+
+        private List<RemoteEntry> readChildren(JsonReader in) throws IOException {
+            List<RemoteEntry> children = new ArrayList<>();
+            in.beginArray();
+            while (in.hasNext()) {
+                children.add(readEntry(in, null));
+            }
+            in.endArray();
+            return Collections.unmodifiableList(children);
+        }
+
+        private static Date readDate(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NUMBER) {
+                return new Date(in.nextLong() * 1000);
+            }
+            in.skipValue();
+            return null;
+        }
 
         @Override
-        public RemoteEntry deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-            if(json.getAsJsonObject().get("isfolder").getAsBoolean()){
-                return context.deserialize(json, RealRemoteFolder.class);
-            }else{
-                return context.deserialize(json, RealRemoteFile.class);
+        public void write(JsonWriter out, T value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+            } else {
+                writeEntry(out, value);
+            }
+        }
+
+        private void writeEntry(JsonWriter out, RealRemoteEntry value) throws IOException {
+            out.beginObject();
+            out.name("id").value(value.id());
+            out.name("parentfolderid").value(value.parentFolderId());
+            out.name("name").value(value.name());
+            writeDate(out.name("modified"), value.lastModified());
+            writeDate(out.name("created"), value.created());
+            out.name("isfolder").value(value.isFolder());
+            out.name("isshared").value(value.isShared());
+            out.name("ismine").value(value.isMine());
+            out.name("canread").value(value.canRead());
+            out.name("canmodify").value(value.canModify());
+            out.name("candelete").value(value.canDelete());
+            if (value.isFolder()) {
+                RealRemoteFolder folder = (RealRemoteFolder) value;
+                out.name("folderid").value(folder.folderId());
+                out.name("cancreate").value(folder.canCreate());
+                out.name("contents").beginArray();
+                for (RemoteEntry child : folder.children()) {
+                    writeEntry(out, (RealRemoteEntry) child);
+                }
+                out.endArray();
+            } else {
+                RealRemoteFile file = (RealRemoteFile) value;
+                out.name("fileid").value(file.fileId());
+                out.name("contenttype").value(file.contentType());
+                out.name("size").value(file.size());
+                out.name("hash").value(file.hash());
+            }
+            out.endObject();
+        }
+
+        private static void writeDate(JsonWriter out, Date date) throws IOException {
+            if (date != null) {
+                out.value(date.getTime() / 1000);
+            } else {
+                out.nullValue();
             }
         }
     }
@@ -23,7 +23,6 @@ import okio.BufferedSource;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Type;
 import java.util.Locale;
 
 class RealRemoteFile extends RealRemoteEntry implements RemoteFile {
@@ -52,6 +51,15 @@ class RealRemoteFile extends RealRemoteEntry implements RemoteFile {
         super(apiClient);
     }
 
+    RealRemoteFile(ApiClient apiClient, Fields fields) {
+        super(apiClient, fields);
+        this.fileId = fields.fileId;
+        this.contentType = fields.contentType;
+        this.size = fields.size;
+        this.hash = fields.hash;
+        this.hasThumbnail = fields.hasThumbnail;
+    }
+
     @Override
     public long fileId() {
         return fileId;
@@ -198,18 +206,4 @@ class RealRemoteFile extends RealRemoteEntry implements RemoteFile {
     public String toString() {
         return String.format(Locale.US, "%s | ID:%s | Created:%s | Modified: %s | Size:%s", name(), id(), created(), lastModified(), size());
     }
-
-    static class InstanceCreator implements com.google.gson.InstanceCreator<RealRemoteFile> {
-
-        private final ApiClient apiClient;
-
-        InstanceCreator(ApiClient apiClient) {
-            this.apiClient = apiClient;
-        }
-
-        @Override
-        public RealRemoteFile createInstance(Type type) {
-            return new RealRemoteFile(apiClient);
-        }
-    }
 }
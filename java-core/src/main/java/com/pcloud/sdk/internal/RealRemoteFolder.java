@@ -24,7 +24,6 @@ import com.pcloud.sdk.RemoteEntry;
 import com.pcloud.sdk.RemoteFolder;
 
 import java.io.IOException;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -40,16 +39,25 @@ public class RealRemoteFolder extends RealRemoteEntry implements RemoteFolder {
 
     @Expose
     @SerializedName("contents")
-    private final List<RemoteEntry> children = UNKNOWN_CHILDREN;
+    private List<RemoteEntry> children = UNKNOWN_CHILDREN;
 
     @Expose
-    @SerializedName("cancreate ")
+    @SerializedName("cancreate")
     private boolean canCreate = true;
 
     RealRemoteFolder(ApiClient apiClient) {
         super(apiClient);
     }
 
+    RealRemoteFolder(ApiClient apiClient, Fields fields) {
+        super(apiClient, fields);
+        this.folderId = fields.folderId;
+        if (fields.children != null) {
+            this.children = fields.children;
+        }
+        this.canCreate = fields.canCreate;
+    }
+
     @Override
     public long folderId() {
         return folderId;
@@ -154,18 +162,4 @@ public class RealRemoteFolder extends RealRemoteEntry implements RemoteFolder {
     public String toString() {
         return String.format(Locale.US, "%s | ID:%s | Created:%s | Modified: %s | Child count:%s", name(), id(), created(), lastModified(), children == UNKNOWN_CHILDREN ? "?" : children().size());
     }
-
-    static class InstanceCreator implements com.google.gson.InstanceCreator<RealRemoteFolder> {
-
-        private final ApiClient apiClient;
-
-        InstanceCreator(ApiClient apiClient) {
-            this.apiClient = apiClient;
-        }
-
-        @Override
-        public RealRemoteFolder createInstance(Type type) {
-            return new RealRemoteFolder(apiClient);
-        }
-    }
 }
@@ -0,0 +1,573 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ApiClient;
+import com.pcloud.sdk.ApiError;
+import com.pcloud.sdk.Call;
+import com.pcloud.sdk.DataSink;
+import com.pcloud.sdk.DataSource;
+import com.pcloud.sdk.Priority;
+import com.pcloud.sdk.RemoteFile;
+import com.pcloud.sdk.Transfer;
+import com.pcloud.sdk.TransferManager;
+import com.pcloud.sdk.TransferStats;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ForwardingSink;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+class RealTransferManager implements TransferManager {
+
+    static final int DEFAULT_MAX_CONCURRENT_TRANSFERS = 4;
+    static final long DEFAULT_MAX_BYTES_IN_FLIGHT = 128 * 1024 * 1024;
+
+    private static final Comparator<RealTransfer<?>> QUEUE_ORDER = (first, second) -> {
+        int byPriority = first.priority.compareTo(second.priority);
+        return byPriority != 0 ? byPriority : Long.compare(first.sequence, second.sequence);
+    };
+
+    private final ApiClient apiClient;
+    private final int maxConcurrentTransfers;
+    private final long maxBytesInFlight;
+    private final Executor executor;
+    private final ThreadPoolExecutor ownExecutor;
+    private final ThroughputMeter throughputMeter = new ThroughputMeter();
+    private final AtomicLong transferredBytes = new AtomicLong();
+
+    private final PriorityQueue<RealTransfer<?>> queue = new PriorityQueue<>(QUEUE_ORDER);
+    private final Set<RealTransfer<?>> active = new LinkedHashSet<>();
+    private long nextSequence;
+    private long bytesInFlight;
+    private long completedTransfers;
+    private long failedTransfers;
+    private boolean shutdown;
+
+    private RealTransferManager(Builder builder) {
+        this.apiClient = builder.apiClient;
+        this.maxConcurrentTransfers = builder.maxConcurrentTransfers;
+        this.maxBytesInFlight = builder.maxBytesInFlight;
+        if (builder.executor != null) {
+            this.executor = builder.executor;
+            this.ownExecutor = null;
+        } else {
+            this.ownExecutor = newExecutor(maxConcurrentTransfers);
+            this.executor = ownExecutor;
+        }
+    }
+
+    @Override
+    public Transfer<RemoteFile> upload(long folderId, String filename, DataSource data, Priority priority) {
+        requireUploadArguments(filename, data, priority);
+        return submit(priority, data.contentLength(), transfer ->
+                transfer.execute(apiClient.createFile(folderId, filename, transfer.counting(data), null, null)));
+    }
+
+    @Override
+    public Transfer<RemoteFile> upload(String path, String filename, DataSource data, Priority priority) {
+        if (path == null) {
+            throw new IllegalArgumentException("Path argument cannot be null.");
+        }
+        requireUploadArguments(filename, data, priority);
+        return submit(priority, data.contentLength(), transfer ->
+                transfer.execute(apiClient.createFile(path, filename, transfer.counting(data), null, null)));
+    }
+
+    @Override
+    public Transfer<Void> download(RemoteFile file, DataSink sink, Priority priority) {
+        if (file == null) {
+            throw new IllegalArgumentException("RemoteFile argument cannot be null.");
+        }
+        if (sink == null) {
+            throw new IllegalArgumentException("DataSink argument cannot be null.");
+        }
+        requirePriority(priority);
+        return submit(priority, file.size(), transfer -> {
+            BufferedSource source = transfer.execute(apiClient.download(file));
+            try (BufferedSource countedSource = Okio.buffer(transfer.counting(source))) {
+                sink.readAll(countedSource, file.size());
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public synchronized TransferStats stats() {
+        long remainingBytes = 0;
+        for (RealTransfer<?> transfer : queue) {
+            remainingBytes += transfer.remainingBytes();
+        }
+        for (RealTransfer<?> transfer : active) {
+            remainingBytes += transfer.remainingBytes();
+        }
+        long bytesPerSecond = throughputMeter.bytesPerSecond();
+        long estimatedTimeRemainingMs;
+        if (remainingBytes == 0) {
+            estimatedTimeRemainingMs = 0;
+        } else if (bytesPerSecond > 0) {
+            estimatedTimeRemainingMs = (long) (remainingBytes * 1000d / bytesPerSecond);
+        } else {
+            estimatedTimeRemainingMs = -1;
+        }
+        return new RealTransferStats(queue.size(), active.size(), completedTransfers, failedTransfers,
+                bytesInFlight, transferredBytes.get(), remainingBytes, bytesPerSecond, estimatedTimeRemainingMs);
+    }
+
+    @Override
+    public synchronized void awaitIdle() throws InterruptedException {
+        while (!queue.isEmpty() || !active.isEmpty()) {
+            wait();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        List<RealTransfer<?>> queued;
+        List<RealTransfer<?>> running;
+        synchronized (this) {
+            shutdown = true;
+            queued = new ArrayList<>(queue);
+            running = new ArrayList<>(active);
+        }
+        for (RealTransfer<?> transfer : queued) {
+            transfer.cancel();
+        }
+        for (RealTransfer<?> transfer : running) {
+            transfer.cancel();
+        }
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public int maxConcurrentTransfers() {
+        return maxConcurrentTransfers;
+    }
+
+    @Override
+    public long maxBytesInFlight() {
+        return maxBytesInFlight;
+    }
+
+    private <T> Transfer<T> submit(Priority priority, long size, Work<T> work) {
+        RealTransfer<T> transfer;
+        synchronized (this) {
+            if (shutdown) {
+                throw new IllegalStateException("TransferManager has been shut down.");
+            }
+            transfer = new RealTransfer<>(priority, size, nextSequence++, work);
+            queue.add(transfer);
+        }
+        dispatch();
+        return transfer;
+    }
+
+    /**
+     * Start as many transfers from the head of the queue as the limits allow.
+     */
+    private void dispatch() {
+        List<RealTransfer<?>> started = new ArrayList<>();
+        synchronized (this) {
+            while (!shutdown && active.size() < maxConcurrentTransfers && !queue.isEmpty()) {
+                RealTransfer<?> next = queue.peek();
+                long reservation = reservation(next.size);
+                if (!active.isEmpty() && bytesInFlight + reservation > maxBytesInFlight) {
+                    break;
+                }
+                queue.poll();
+                next.reservation = reservation;
+                bytesInFlight += reservation;
+                active.add(next);
+                started.add(next);
+            }
+        }
+
+        for (RealTransfer<?> transfer : started) {
+            try {
+                executor.execute(transfer);
+            } catch (RejectedExecutionException e) {
+                InterruptedIOException error = new InterruptedIOException("Executor rejected the transfer.");
+                error.initCause(e);
+                transfer.finish(null, error);
+            }
+        }
+    }
+
+    private long reservation(long size) {
+        return size < 0 ? maxBytesInFlight : Math.min(size, maxBytesInFlight);
+    }
+
+    private void onFinished(RealTransfer<?> transfer, boolean successful) {
+        synchronized (this) {
+            if (active.remove(transfer)) {
+                bytesInFlight -= transfer.reservation;
+            } else if (!queue.remove(transfer)) {
+                return;
+            }
+            if (successful) {
+                completedTransfers++;
+            } else {
+                failedTransfers++;
+            }
+            notifyAll();
+        }
+        dispatch();
+    }
+
+    private void onTransferred(long byteCount) {
+        transferredBytes.addAndGet(byteCount);
+        throughputMeter.record(byteCount);
+    }
+
+    private static void requireUploadArguments(String filename, DataSource data, Priority priority) {
+        if (filename == null) {
+            throw new IllegalArgumentException("Filename argument cannot be null.");
+        }
+        if (data == null) {
+            throw new IllegalArgumentException("DataSource argument cannot be null.");
+        }
+        requirePriority(priority);
+    }
+
+    private static void requirePriority(Priority priority) {
+        if (priority == null) {
+            throw new IllegalArgumentException("Priority argument cannot be null.");
+        }
+    }
+
+    private static ThreadPoolExecutor newExecutor(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "pCloud TransferManager " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private interface Work<T> {
+        T run(RealTransfer<T> transfer) throws IOException, ApiError;
+    }
+
+    private class RealTransfer<T> implements Transfer<T>, Runnable {
+
+        final Priority priority;
+        final long size;
+        final long sequence;
+        // Bytes reserved against the budget while running, guarded by the manager.
+        long reservation;
+
+        private final Work<T> work;
+        private final AtomicLong transferred = new AtomicLong();
+        // The most bytes ever counted, only bytes beyond it count towards the manager's totals.
+        private long countedBytes;
+        private final List<Listener<T>> listeners = new ArrayList<>();
+        private volatile boolean canceled;
+        private volatile Call<?> call;
+
+        private State state = State.QUEUED;
+        private T result;
+        private Throwable error;
+
+        RealTransfer(Priority priority, long size, long sequence, Work<T> work) {
+            this.priority = priority;
+            this.size = size;
+            this.sequence = sequence;
+            this.work = work;
+        }
+
+        @Override
+        public Priority priority() {
+            return priority;
+        }
+
+        @Override
+        public long size() {
+            return size;
+        }
+
+        @Override
+        public long transferredBytes() {
+            return transferred.get();
+        }
+
+        @Override
+        public synchronized State state() {
+            return state;
+        }
+
+        @Override
+        public T await() throws IOException, ApiError {
+            synchronized (this) {
+                while (!isDone()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for the transfer.");
+                    }
+                }
+            }
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            } else if (error instanceof ApiError) {
+                throw (ApiError) error;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            }
+            return result;
+        }
+
+        @Override
+        public void addListener(Listener<T> listener) {
+            if (listener == null) {
+                throw new IllegalArgumentException("Listener argument cannot be null.");
+            }
+            synchronized (this) {
+                if (!isDone()) {
+                    listeners.add(listener);
+                    return;
+                }
+            }
+            notifyListener(listener);
+        }
+
+        @Override
+        public void cancel() {
+            boolean queued;
+            synchronized (this) {
+                if (isDone() || canceled) {
+                    return;
+                }
+                canceled = true;
+                queued = state == State.QUEUED;
+            }
+            if (queued) {
+                finish(null, new IOException("Canceled"));
+            } else {
+                Call<?> currentCall = call;
+                if (currentCall != null) {
+                    currentCall.cancel();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (state != State.QUEUED) {
+                    return;
+                }
+                state = State.RUNNING;
+            }
+            T result = null;
+            Throwable error = null;
+            try {
+                result = work.run(this);
+            } catch (Throwable e) {
+                error = e;
+            }
+            finish(result, error);
+        }
+
+        <R> R execute(Call<R> call) throws IOException, ApiError {
+            this.call = call;
+            if (canceled) {
+                call.cancel();
+                throw new IOException("Canceled");
+            }
+            return call.execute();
+        }
+
+        DataSource counting(DataSource data) {
+            return new DataSource() {
+                @Override
+                public long contentLength() {
+                    return data.contentLength();
+                }
+
+                @Override
+                public void writeTo(BufferedSink sink) throws IOException {
+                    // The body is written again when a request is retried, start counting over.
+                    transferred.set(0);
+                    BufferedSink countingSink = Okio.buffer(new ForwardingSink(sink) {
+                        @Override
+                        public void write(@NotNull Buffer source, long byteCount) throws IOException {
+                            super.write(source, byteCount);
+                            onBytesTransferred(byteCount);
+                        }
+                    });
+                    data.writeTo(countingSink);
+                    countingSink.emit();
+                }
+
+                @Override
+                public boolean isRepeatable() {
+                    return data.isRepeatable();
+                }
+            };
+        }
+
+        Source counting(Source source) {
+            return new ForwardingSource(source) {
+                @Override
+                public long read(@NotNull Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read > 0) {
+                        onBytesTransferred(read);
+                    }
+                    return read;
+                }
+            };
+        }
+
+        long remainingBytes() {
+            return size >= 0 ? Math.max(0, size - transferred.get()) : 0;
+        }
+
+        void finish(T result, Throwable error) {
+            List<Listener<T>> listenersToNotify;
+            synchronized (this) {
+                if (isDone()) {
+                    return;
+                }
+                if (canceled) {
+                    // The work may have completed after being canceled, the result is dropped all the same.
+                    result = null;
+                    if (error == null) {
+                        error = new IOException("Canceled");
+                    }
+                }
+                this.result = result;
+                this.error = error;
+                if (error == null) {
+                    state = State.SUCCEEDED;
+                } else {
+                    state = canceled ? State.CANCELED : State.FAILED;
+                }
+                listenersToNotify = new ArrayList<>(listeners);
+                listeners.clear();
+                notifyAll();
+            }
+            for (Listener<T> listener : listenersToNotify) {
+                notifyListener(listener);
+            }
+            onFinished(this, error == null);
+        }
+
+        private void onBytesTransferred(long byteCount) {
+            long total = transferred.addAndGet(byteCount);
+            long newBytes;
+            synchronized (this) {
+                newBytes = total - countedBytes;
+                if (newBytes > 0) {
+                    countedBytes = total;
+                }
+            }
+            if (newBytes > 0) {
+                onTransferred(newBytes);
+            }
+        }
+
+        private void notifyListener(Listener<T> listener) {
+            if (error == null) {
+                listener.onSuccess(this, result);
+            } else {
+                listener.onFailure(this, error);
+            }
+        }
+
+        private boolean isDone() {
+            return state == State.SUCCEEDED || state == State.FAILED || state == State.CANCELED;
+        }
+    }
+
+    static class Builder implements TransferManager.Builder {
+
+        private final ApiClient apiClient;
+        private int maxConcurrentTransfers = DEFAULT_MAX_CONCURRENT_TRANSFERS;
+        private long maxBytesInFlight = DEFAULT_MAX_BYTES_IN_FLIGHT;
+        private Executor executor;
+
+        Builder(ApiClient apiClient) {
+            if (apiClient == null) {
+                throw new IllegalArgumentException("ApiClient argument cannot be null.");
+            }
+            this.apiClient = apiClient;
+        }
+
+        @Override
+        public Builder maxConcurrentTransfers(int maxConcurrentTransfers) {
+            if (maxConcurrentTransfers < 1) {
+                throw new IllegalArgumentException("Concurrent transfers must be a positive number.");
+            }
+            this.maxConcurrentTransfers = maxConcurrentTransfers;
+            return this;
+        }
+
+        @Override
+        public Builder maxBytesInFlight(long maxBytesInFlight) {
+            if (maxBytesInFlight < 1) {
+                throw new IllegalArgumentException("Bytes in flight must be a positive number.");
+            }
+            this.maxBytesInFlight = maxBytesInFlight;
+            return this;
+        }
+
+        @Override
+        public Builder executor(Executor executor) {
+            if (executor == null) {
+                throw new IllegalArgumentException("Executor argument cannot be null.");
+            }
+            this.executor = executor;
+            return this;
+        }
+
+        @Override
+        public TransferManager create() {
+            return new RealTransferManager(this);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.TransferStats;
+
+class RealTransferStats implements TransferStats {
+
+    private final int queuedTransfers;
+    private final int activeTransfers;
+    private final long completedTransfers;
+    private final long failedTransfers;
+    private final long bytesInFlight;
+    private final long transferredBytes;
+    private final long remainingBytes;
+    private final long bytesPerSecond;
+    private final long estimatedTimeRemainingMs;
+
+    RealTransferStats(int queuedTransfers,
+                      int activeTransfers,
+                      long completedTransfers,
+                      long failedTransfers,
+                      long bytesInFlight,
+                      long transferredBytes,
+                      long remainingBytes,
+                      long bytesPerSecond,
+                      long estimatedTimeRemainingMs) {
+        this.queuedTransfers = queuedTransfers;
+        this.activeTransfers = activeTransfers;
+        this.completedTransfers = completedTransfers;
+        this.failedTransfers = failedTransfers;
+        this.bytesInFlight = bytesInFlight;
+        this.transferredBytes = transferredBytes;
+        this.remainingBytes = remainingBytes;
+        this.bytesPerSecond = bytesPerSecond;
+        this.estimatedTimeRemainingMs = estimatedTimeRemainingMs;
+    }
+
+    @Override
+    public int queuedTransfers() {
+        return queuedTransfers;
+    }
+
+    @Override
+    public int activeTransfers() {
+        return activeTransfers;
+    }
+
+    @Override
+    public long completedTransfers() {
+        return completedTransfers;
+    }
+
+    @Override
+    public long failedTransfers() {
+        return failedTransfers;
+    }
+
+    @Override
+    public long bytesInFlight() {
+        return bytesInFlight;
+    }
+
+    @Override
+    public long transferredBytes() {
+        return transferredBytes;
+    }
+
+    @Override
+    public long remainingBytes() {
+        return remainingBytes;
+    }
+
+    @Override
+    public long bytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    @Override
+    public long estimatedTimeRemainingMs() {
+        return estimatedTimeRemainingMs;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferStats{" +
+                "queued=" + queuedTransfers +
+                ", active=" + activeTransfers +
+                ", completed=" + completedTransfers +
+                ", failed=" + failedTransfers +
+                ", bytesInFlight=" + bytesInFlight +
+                ", transferredBytes=" + transferredBytes +
+                ", remainingBytes=" + remainingBytes +
+                ", bytesPerSecond=" + bytesPerSecond +
+                ", etaMs=" + estimatedTimeRemainingMs +
+                '}';
+    }
+}
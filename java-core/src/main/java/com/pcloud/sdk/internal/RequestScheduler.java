@@ -0,0 +1,449 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ConcurrencyLimitPolicy;
+import com.pcloud.sdk.ConcurrencyLimiter;
+import com.pcloud.sdk.Priority;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Dispatcher;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import static com.pcloud.sdk.internal.IOUtils.closeQuietly;
+
+/**
+ * Holds asynchronous calls back until a {@link Dispatcher} can run them, releasing them by {@link Priority}.
+ * <p>
+ * OkHttp's dispatcher starts its queued calls strictly in order. Calls enqueued through a scheduler are
+ * handed to the dispatcher only while it has a free request slot, both in total and for the host of the call,
+ * the rest wait here and are released highest priority first, in submission order within a priority.
+ * Clients sharing a dispatcher share its scheduler, see {@link #of(Dispatcher, ConcurrencyLimitPolicy)}.
+ * To avoid starving background work,
+ * a waiting call is promoted by one priority class for every {@link #AGING_INTERVAL_NANOS} it has been
+ * waiting; between calls of the same effective priority, the one waiting longer goes first.
+ * <p>
+ * With an {@link AdaptiveLimit}, the number of slots also follows the limit, which learns from the
+ * latency and failures of the calls, and synchronous calls have to take a slot as well. They wait
+ * blocked and take precedence over the enqueued calls, as they hold a thread of the caller.
+ * A call that would have to wait while {@code maxQueueDepth} calls are already waiting fails instead.
+ * <p>
+ * A call with a response holds its slot until the response body is exhausted or closed.
+ */
+class RequestScheduler implements ConcurrencyLimiter {
+
+    static final long AGING_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final Priority[] PRIORITIES = Priority.values();
+    private static final long CANCEL_CHECK_INTERVAL_MS = 100;
+
+    // Weak values, as each scheduler holds its dispatcher.
+    private static final Map<Dispatcher, WeakReference<RequestScheduler>> SCHEDULERS = new WeakHashMap<>();
+
+    private final Dispatcher dispatcher;
+    private final AdaptiveLimit adaptiveLimit;
+    private final int maxQueueDepth;
+    private final Clock nanoClock;
+    private final List<ArrayDeque<PendingCall>> queues;
+    // The number of enqueued calls running per host, synchronous calls do not take the dispatcher's host slots.
+    private final Map<String, Integer> runningPerHost = new HashMap<>();
+    private int runningCount;
+    private int blockedCount;
+    private long nextSequence;
+
+    RequestScheduler(Dispatcher dispatcher) {
+        this(dispatcher, Clock.NANO_TIME);
+    }
+
+    RequestScheduler(Dispatcher dispatcher, Clock nanoClock) {
+        this(dispatcher, null, Integer.MAX_VALUE, nanoClock);
+    }
+
+    RequestScheduler(Dispatcher dispatcher, AdaptiveLimit adaptiveLimit, int maxQueueDepth) {
+        this(dispatcher, adaptiveLimit, maxQueueDepth, Clock.NANO_TIME);
+    }
+
+    RequestScheduler(Dispatcher dispatcher, AdaptiveLimit adaptiveLimit, int maxQueueDepth, Clock nanoClock) {
+        this.dispatcher = dispatcher;
+        this.adaptiveLimit = adaptiveLimit;
+        this.maxQueueDepth = maxQueueDepth;
+        this.nanoClock = nanoClock;
+        this.queues = new ArrayList<>(PRIORITIES.length);
+        for (int i = 0; i < PRIORITIES.length; i++) {
+            queues.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Get the scheduler of a dispatcher, creating it on first use.
+     * <p>
+     * A dispatcher's slots can only be accounted for by one scheduler, so all clients sharing a dispatcher
+     * share its scheduler. The concurrency limit is created with the policy of the first of them,
+     * a {@code null} policy keeps the limits of the dispatcher.
+     */
+    static RequestScheduler of(Dispatcher dispatcher, ConcurrencyLimitPolicy policy) {
+        synchronized (SCHEDULERS) {
+            WeakReference<RequestScheduler> reference = SCHEDULERS.get(dispatcher);
+            RequestScheduler scheduler = reference != null ? reference.get() : null;
+            if (scheduler == null) {
+                scheduler = policy != null ?
+                        new RequestScheduler(dispatcher, new AdaptiveLimit(policy), policy.maxQueueDepth()) :
+                        new RequestScheduler(dispatcher);
+                SCHEDULERS.put(dispatcher, new WeakReference<>(scheduler));
+            }
+            return scheduler;
+        }
+    }
+
+    /**
+     * Enqueue a call with the dispatcher as soon as there is a free request slot and no more urgent call is waiting.
+     * <p>
+     * The callback is invoked on a dispatcher thread, as with {@link okhttp3.Call#enqueue(okhttp3.Callback)},
+     * except when the queue is full, then it fails on the calling thread.
+     */
+    void enqueue(okhttp3.Call call, Priority priority, okhttp3.Callback callback) {
+        boolean rejected;
+        synchronized (this) {
+            String host = call.request().url().host();
+            rejected = isQueueFull(host);
+            if (!rejected) {
+                queues.get(priority.ordinal()).add(new PendingCall(call, host, callback, priority, nextSequence++, nanoClock.read()));
+            }
+        }
+        if (rejected) {
+            callback.onFailure(call, newQueueFullException());
+            return;
+        }
+        promote();
+    }
+
+    /**
+     * Execute a call on the calling thread, waiting for a free request slot first when the limit is adaptive.
+     */
+    Response execute(okhttp3.Call call) throws IOException {
+        if (adaptiveLimit == null) {
+            return call.execute();
+        }
+
+        acquire(call);
+        long startNanos = nanoClock.read();
+        Response response;
+        try {
+            response = call.execute();
+        } catch (IOException | RuntimeException e) {
+            release(call, null, startNanos, !call.isCanceled());
+            throw e;
+        }
+        return releasingSlotOnClose(call, response, null, startNanos);
+    }
+
+    synchronized int queuedCount() {
+        int count = 0;
+        for (ArrayDeque<PendingCall> queue : queues) {
+            count += queue.size();
+        }
+        return count;
+    }
+
+    synchronized int runningCount() {
+        return runningCount;
+    }
+
+    @Override
+    public synchronized int limit() {
+        int maxRunning = dispatcher.getMaxRequests();
+        return adaptiveLimit != null ? Math.min(maxRunning, adaptiveLimit.limit()) : maxRunning;
+    }
+
+    @Override
+    public int inFlight() {
+        return runningCount();
+    }
+
+    @Override
+    public synchronized int queueDepth() {
+        return queuedCount() + blockedCount;
+    }
+
+    private synchronized void acquire(okhttp3.Call call) throws IOException {
+        if (runningCount < limit()) {
+            runningCount++;
+            return;
+        }
+        if (isQueueFull(null)) {
+            throw newQueueFullException();
+        }
+
+        blockedCount++;
+        try {
+            while (runningCount >= limit()) {
+                if (call.isCanceled()) {
+                    throw new IOException("Canceled");
+                }
+                wait(CANCEL_CHECK_INTERVAL_MS);
+            }
+            runningCount++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a request slot.");
+        } finally {
+            blockedCount--;
+        }
+    }
+
+    private void promote() {
+        List<PendingCall> ready = new ArrayList<>();
+        synchronized (this) {
+            // Slots are left for the blocked callers, which are woken up by finished(String).
+            int maxRunning = limit() - blockedCount;
+            int maxRunningPerHost = dispatcher.getMaxRequestsPerHost();
+            long now = nanoClock.read();
+            PendingCall next;
+            while (runningCount < maxRunning && (next = pollNext(now, maxRunningPerHost)) != null) {
+                runningCount++;
+                runningPerHost.put(next.host, runningCount(next.host) + 1);
+                ready.add(next);
+            }
+        }
+        // Enqueue outside of the lock, the dispatcher may call back synchronously on rejection.
+        for (PendingCall pending : ready) {
+            try {
+                pending.call.enqueue(new FinishingCallback(pending.callback, pending.host, nanoClock.read()));
+            } catch (RuntimeException e) {
+                finished(pending.host);
+                pending.callback.onFailure(pending.call, new IOException("Call could not be enqueued.", e));
+            }
+        }
+    }
+
+    /**
+     * Release the slot of a call, along with its host slot if it was enqueued.
+     */
+    private void finished(String host) {
+        synchronized (this) {
+            runningCount--;
+            if (host != null) {
+                int count = runningCount(host);
+                if (count > 1) {
+                    runningPerHost.put(host, count - 1);
+                } else {
+                    runningPerHost.remove(host);
+                }
+            }
+            if (blockedCount > 0) {
+                notifyAll();
+            }
+        }
+        promote();
+    }
+
+    /**
+     * Sample the latency of a call and release its slot.
+     *
+     * @param host the host of an enqueued call, {@code null} for a synchronous call
+     */
+    private void release(okhttp3.Call call, String host, long startNanos, boolean failed) {
+        if (adaptiveLimit != null) {
+            adaptiveLimit.onSample(call.request().url().encodedPath(), startNanos, nanoClock.read(),
+                    failed, runningCount());
+        }
+        finished(host);
+    }
+
+    /**
+     * Keep the slot of a call until its response body is exhausted or closed, so that the limit
+     * accounts for the calls still streaming their bodies and the latency includes reading them.
+     */
+    private Response releasingSlotOnClose(final okhttp3.Call call, Response response, final String host, final long startNanos) {
+        final boolean overloaded = isOverloaded(response);
+        final ResponseBody body = response.body();
+        if (body == null) {
+            release(call, host, startNanos, overloaded);
+            return response;
+        }
+
+        BufferedSource releasingSource = Okio.buffer(new ForwardingSource(body.source()) {
+            private final AtomicBoolean released = new AtomicBoolean();
+            private boolean failed = overloaded;
+
+            @Override
+            public long read(@NotNull Buffer sink, long byteCount) throws IOException {
+                long read;
+                try {
+                    read = super.read(sink, byteCount);
+                } catch (IOException e) {
+                    failed = !call.isCanceled();
+                    throw e;
+                }
+                if (read == -1) {
+                    release();
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    release();
+                }
+            }
+
+            private void release() {
+                if (released.compareAndSet(false, true)) {
+                    RequestScheduler.this.release(call, host, startNanos, failed);
+                }
+            }
+        });
+        return response.newBuilder()
+                .body(ResponseBody.create(releasingSource, body.contentType(), body.contentLength()))
+                .build();
+    }
+
+    /**
+     * @param host the host of an enqueued call, {@code null} for a synchronous call
+     */
+    private boolean isQueueFull(String host) {
+        boolean mustWait = runningCount >= limit() ||
+                (host != null && runningCount(host) >= dispatcher.getMaxRequestsPerHost());
+        return mustWait && queuedCount() + blockedCount >= maxQueueDepth;
+    }
+
+    private int runningCount(String host) {
+        Integer count = runningPerHost.get(host);
+        return count != null ? count : 0;
+    }
+
+    private static IOException newQueueFullException() {
+        return new IOException("Too many requests are waiting for a request slot.");
+    }
+
+    private static boolean isOverloaded(Response response) {
+        return response.code() == 429 || response.code() >= 500;
+    }
+
+    /**
+     * Take the call with the best effective priority among the first calls of the per-priority queues
+     * whose host has a free slot.
+     * <p>
+     * Each queue is in submission order, so its first startable call is the one that has aged
+     * the most within its class.
+     */
+    private PendingCall pollNext(long now, int maxRunningPerHost) {
+        ArrayDeque<PendingCall> best = null;
+        PendingCall bestCall = null;
+        long bestRank = 0;
+        for (ArrayDeque<PendingCall> queue : queues) {
+            for (PendingCall pending : queue) {
+                if (runningCount(pending.host) >= maxRunningPerHost) {
+                    continue;
+                }
+                long rank = pending.effectiveRank(now);
+                if (bestCall == null || rank < bestRank || (rank == bestRank && pending.sequence < bestCall.sequence)) {
+                    best = queue;
+                    bestCall = pending;
+                    bestRank = rank;
+                }
+                break;
+            }
+        }
+        if (bestCall != null) {
+            best.remove(bestCall);
+        }
+        return bestCall;
+    }
+
+    private static final class PendingCall {
+        final okhttp3.Call call;
+        final String host;
+        final okhttp3.Callback callback;
+        final Priority priority;
+        final long sequence;
+        final long enqueuedAtNanos;
+
+        PendingCall(okhttp3.Call call, String host, okhttp3.Callback callback, Priority priority, long sequence, long enqueuedAtNanos) {
+            this.call = call;
+            this.host = host;
+            this.callback = callback;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+
+        long effectiveRank(long now) {
+            return priority.ordinal() - Math.max(now - enqueuedAtNanos, 0) / AGING_INTERVAL_NANOS;
+        }
+    }
+
+    /**
+     * Releases the slot of a failed call before its callback runs, the slot of a call with a response
+     * when the response body is exhausted or closed.
+     * <p>
+     * A callback executing a call of its own while it keeps its response open waits for a slot while it
+     * holds one. {@link OkHttpCall} adapts the response, reading and closing the body of all but the streamed
+     * downloads, before it invokes the callback of the user.
+     */
+    private class FinishingCallback implements okhttp3.Callback {
+
+        private final okhttp3.Callback delegate;
+        private final String host;
+        private final long startNanos;
+
+        FinishingCallback(okhttp3.Callback delegate, String host, long startNanos) {
+            this.delegate = delegate;
+            this.host = host;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void onFailure(@NotNull okhttp3.Call call, @NotNull IOException e) {
+            release(call, host, startNanos, !call.isCanceled());
+            delegate.onFailure(call, e);
+        }
+
+        @Override
+        public void onResponse(@NotNull okhttp3.Call call, @NotNull Response response) throws IOException {
+            Response releasingResponse = releasingSlotOnClose(call, response, host, startNanos);
+            try {
+                delegate.onResponse(call, releasingResponse);
+            } catch (IOException | RuntimeException e) {
+                // The callback failed, nothing will read the body any more.
+                closeQuietly(releasingResponse);
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ApiError;
+import com.pcloud.sdk.DownloadOptions;
+import com.pcloud.sdk.FileLink;
+import com.pcloud.sdk.ProgressListener;
+import com.pcloud.sdk.RemoteFile;
+import com.pcloud.sdk.internal.networking.APIHttpException;
+import com.pcloud.sdk.internal.networking.ChecksumsResponse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.BufferedSource;
+import okio.ByteString;
+
+import static com.pcloud.sdk.internal.IOUtils.closeQuietly;
+
+/**
+ * Downloads a remote file into a local file, continuing from any data already present in it.
+ * <p>
+ * The current checksums of the remote file are requested first, then the missing tail of the
+ * file is requested with a {@code Range} request. The digest of the existing data is computed
+ * before the download and updated with every received byte, so that the result can be verified
+ * without reading the file a second time.
+ * <p>
+ * Nothing is appended once the remote file is seen to have changed since its checksums were requested,
+ * either by the content hash of the download link or by the length reported in {@code Content-Range}.
+ */
+class ResumableDownloadCall extends CompositeCall<Void> {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int HTTP_PARTIAL_CONTENT = 206;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+    private final RealApiClient apiClient;
+    private final HttpUrl apiHost;
+    private final long fileId;
+    private final File target;
+    private final ProgressListener listener;
+    private final long progressThreshold;
+
+    private long lastReportedBytes = -1;
+
+    ResumableDownloadCall(RealApiClient apiClient,
+                          OkHttpClient httpClient,
+                          HttpUrl apiHost,
+                          long fileId,
+                          File target,
+                          ProgressListener listener,
+                          long progressThreshold) {
+        super(httpClient);
+        this.apiClient = apiClient;
+        this.apiHost = apiHost;
+        this.fileId = fileId;
+        this.target = target;
+        this.listener = listener;
+        this.progressThreshold = progressThreshold;
+    }
+
+    @Override
+    protected Void run() throws IOException, ApiError {
+        ChecksumsResponse checksums = executeRequest(newChecksumsRequest(),
+                response -> apiClient.getAsApiResponse(response, ChecksumsResponse.class));
+        RemoteFile remoteFile = checksums.getFile();
+        long size = remoteFile.size();
+
+        ByteString expectedDigest = checksums.getSha256();
+        String algorithm = "SHA-256";
+        if (expectedDigest == null) {
+            expectedDigest = checksums.getSha1();
+            algorithm = "SHA-1";
+        }
+        MessageDigest digest = expectedDigest != null ? newDigest(algorithm) : null;
+
+        long offset = target.length();
+        if (offset > size) {
+            // Not a prefix of the current remote file.
+            offset = 0;
+        }
+        FileLink link = null;
+        if (offset < size) {
+            link = executeRequest(apiClient.newDownloadLinkRequest(fileId, null, DownloadOptions.DEFAULT),
+                    apiClient::getAsFileLink);
+            if (link.hash() != null && remoteFile.hash() != null && !link.hash().equals(remoteFile.hash())) {
+                throw newContentChangedException();
+            }
+        }
+        offset = hashExistingData(offset, digest);
+
+        if (link != null) {
+            IOException lastError = null;
+            for (URL url : link.urls()) {
+                try {
+                    offset = downloadFrom(url, offset, size, digest);
+                    lastError = null;
+                    break;
+                } catch (IOException e) {
+                    throwIfCanceled();
+                    lastError = e;
+                    // Whatever got written is kept and the next URL continues from there.
+                    offset = target.length();
+                }
+            }
+            if (lastError != null) {
+                throw lastError;
+            }
+        }
+
+        if (offset != size) {
+            throw new ProtocolException("Downloaded " + offset + " bytes, expected " + size + ".");
+        }
+        if (digest != null) {
+            ByteString actualDigest = ByteString.of(digest.digest());
+            if (!actualDigest.equals(expectedDigest)) {
+                //noinspection ResultOfMethodCallIgnored
+                target.delete();
+                throw new IOException("Downloaded file " + algorithm + " digest " + actualDigest.hex() +
+                        " does not match the expected " + expectedDigest.hex() + ".");
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("MethodDoesntCallSuperMethod")
+    @Override
+    public ResumableDownloadCall clone() {
+        return new ResumableDownloadCall(apiClient, httpClient(), apiHost, fileId, target, listener, progressThreshold);
+    }
+
+    private Request newChecksumsRequest() {
+        return new Request.Builder()
+                .url(apiHost.newBuilder()
+                        .addPathSegment("checksumfile")
+                        .addQueryParameter("fileid", String.valueOf(fileId))
+                        .build())
+                .get()
+                .build();
+    }
+
+    /**
+     * Feed the first {@code length} bytes of the target to the digest, truncating anything beyond them.
+     *
+     * @return the number of bytes kept in the target file
+     */
+    private long hashExistingData(long length, MessageDigest digest) throws IOException {
+        if (target.length() != length || !target.exists()) {
+            truncate(length);
+        }
+        if (digest != null && length > 0) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (InputStream input = new FileInputStream(target)) {
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+        return length;
+    }
+
+    private long downloadFrom(URL url, long offset, long size, MessageDigest digest) throws IOException {
+        Request.Builder request = new Request.Builder()
+                .url(url)
+                .tag(ContentHostSelector.Alternatives.class, ContentHostSelector.Alternatives.NONE)
+                .get();
+        if (offset > 0) {
+            request.header("Range", "bytes=" + offset + "-");
+        }
+
+        okhttp3.Call call = newRawCall(request.build());
+        Response response = null;
+        try {
+            response = call.execute();
+            if (offset > 0 && response.code() == HTTP_RANGE_NOT_SATISFIABLE) {
+                // The local data does not fit the remote file, download it from the start.
+                closeQuietly(response);
+                release(call);
+                resetDigest(digest);
+                return downloadFrom(url, 0, size, digest);
+            }
+            if (!response.isSuccessful()) {
+                throw new APIHttpException(response.code(), response.message());
+            }
+            if (offset > 0 && response.code() != HTTP_PARTIAL_CONTENT) {
+                // The range was ignored and the whole file is being sent, start over.
+                offset = 0;
+                resetDigest(digest);
+            }
+
+            if (response.code() == HTTP_PARTIAL_CONTENT) {
+                checkContentRange(response.header("Content-Range"), offset, size);
+            }
+
+            BufferedSource source = response.body().source();
+            try (OutputStream output = openForWriting(offset)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = source.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                    if (digest != null) {
+                        digest.update(buffer, 0, read);
+                    }
+                    offset += read;
+                    reportProgress(offset, size);
+                }
+            }
+            return offset;
+        } finally {
+            closeQuietly(response);
+            release(call);
+        }
+    }
+
+    /**
+     * Check that a {@code Content-Range: bytes start-end/length} header continues the local data of a file of
+     * the expected size, a missing or unparsable header is not checked.
+     */
+    private static void checkContentRange(String contentRange, long offset, long size) throws IOException {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return;
+        }
+        int dash = contentRange.indexOf('-');
+        int slash = contentRange.indexOf('/');
+        if (dash < 0 || slash < dash) {
+            return;
+        }
+        try {
+            long start = Long.parseLong(contentRange.substring("bytes ".length(), dash).trim());
+            String length = contentRange.substring(slash + 1).trim();
+            if (start != offset) {
+                throw new ProtocolException("Received a range starting at " + start + ", expected " + offset + ".");
+            }
+            if (!"*".equals(length) && Long.parseLong(length) != size) {
+                throw newContentChangedException();
+            }
+        } catch (NumberFormatException e) {
+            // Not a byte range the download can check.
+        }
+    }
+
+    private static IOException newContentChangedException() {
+        return new IOException("The remote file changed since its checksums were requested.");
+    }
+
+    private OutputStream openForWriting(long offset) throws IOException {
+        truncate(offset);
+        return new FileOutputStream(target, true);
+    }
+
+    private void truncate(long length) throws IOException {
+        try (java.io.RandomAccessFile file = new RandomAccessFile(target, "rw")) {
+            file.setLength(length);
+        }
+    }
+
+    private void reportProgress(long done, long total) {
+        if (listener != null && (lastReportedBytes < 0 || done - lastReportedBytes >= progressThreshold || done == total)) {
+            lastReportedBytes = done;
+            listener.onProgress(done, total);
+        }
+    }
+
+    private static void resetDigest(MessageDigest digest) {
+        if (digest != null) {
+            digest.reset();
+        }
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
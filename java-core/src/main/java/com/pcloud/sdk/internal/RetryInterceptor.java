@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.MetricsRecorder;
+import com.pcloud.sdk.RetryPolicy;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import static com.pcloud.sdk.internal.IOUtils.closeQuietly;
+
+/**
+ * Repeats requests failing with a network error or a transient HTTP error, as configured by a {@link RetryPolicy}.
+ * <p>
+ * Requests are divided into idempotent ones, which are retried right away, and ones that change data.
+ * The latter are retried only if they failed to connect, or if they carry a {@link Reconciliation} tag
+ * that can tell whether the failed attempt took effect.
+ */
+class RetryInterceptor implements Interceptor {
+
+    /**
+     * API methods that can be repeated without changing the outcome.
+     */
+    static final Set<String> IDEMPOTENT_METHODS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "stat", "listfolder", "getfilelink", "checksumfile", "userinfo",
+            "getthumb", "getthumblink", "getthumbslinks", "upload_info"
+    )));
+
+    private static final long CANCELLATION_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * A request tag that determines the outcome of a failed attempt of a request changing data.
+     */
+    interface Reconciliation {
+
+        /**
+         * Check whether a failed attempt of the request took effect.
+         *
+         * @return a response equivalent to the one of a successful attempt if it did,
+         * {@code null} if it did not and the request can be repeated
+         * @throws IOException if the outcome cannot be determined, or repeating the request is unsafe
+         */
+        Response reconcile(Request request) throws IOException;
+    }
+
+    private final RetryPolicy policy;
+    private final MetricsRecorder metrics;
+    private final TokenBucket.Sleeper sleeper;
+    private final RandomSource random;
+
+    RetryInterceptor(RetryPolicy policy, MetricsRecorder metrics) {
+        this(policy, metrics, TimeUnit.NANOSECONDS::sleep, RandomSource.DEFAULT);
+    }
+
+    RetryInterceptor(RetryPolicy policy, TokenBucket.Sleeper sleeper, RandomSource random) {
+        this(policy, null, sleeper, random);
+    }
+
+    RetryInterceptor(RetryPolicy policy, MetricsRecorder metrics, TokenBucket.Sleeper sleeper, RandomSource random) {
+        this.policy = policy;
+        this.metrics = metrics;
+        this.sleeper = sleeper;
+        this.random = random;
+    }
+
+    RetryPolicy policy() {
+        return policy;
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestBody body = request.body();
+        if (policy.maxRetries() == 0 || (body != null && body.isOneShot())) {
+            return chain.proceed(request);
+        }
+
+        boolean idempotent = isIdempotent(request);
+        Reconciliation reconciliation = policy.reconcile() ? request.tag(Reconciliation.class) : null;
+        for (int retry = 0; ; retry++) {
+            Response response = null;
+            IOException failure = null;
+            try {
+                response = chain.proceed(request);
+                if (!isRetryable(response)) {
+                    return response;
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+
+            boolean unsent = failure != null && isUnsent(failure);
+            if (retry >= policy.maxRetries() || chain.call().isCanceled() ||
+                    (!idempotent && !unsent && reconciliation == null)) {
+                return result(response, failure);
+            }
+
+            long delayNanos = backoffNanos(retry, response);
+            try {
+                sleep(chain, delayNanos);
+            } catch (IOException e) {
+                closeQuietly(response);
+                throw e;
+            }
+
+            if (!idempotent && !unsent) {
+                Response reconciled;
+                try {
+                    reconciled = reconciliation.reconcile(request);
+                } catch (IOException e) {
+                    if (failure != null) {
+                        failure.addSuppressed(e);
+                    }
+                    return result(response, failure);
+                }
+                if (reconciled != null) {
+                    closeQuietly(response);
+                    return reconciled;
+                }
+            }
+            closeQuietly(response);
+            if (metrics != null) {
+                metrics.onRetry(MetricsInterceptor.methodOf(request));
+            }
+        }
+    }
+
+    static boolean isIdempotent(Request request) {
+        if (request.tag(ContentHostSelector.Alternatives.class) != null) {
+            // Content requests only read data.
+            return "GET".equals(request.method());
+        }
+        List<String> segments = request.url().pathSegments();
+        return IDEMPOTENT_METHODS.contains(segments.get(segments.size() - 1));
+    }
+
+    static boolean isRetryable(Response response) {
+        int code = response.code();
+        return code == 408 || code == 429 || code == 500 || code == 502 || code == 503 || code == 504;
+    }
+
+    /**
+     * @return {@code true} if the error means that the request did not reach the server
+     */
+    static boolean isUnsent(IOException error) {
+        return error instanceof ConnectException ||
+                error instanceof NoRouteToHostException ||
+                error instanceof UnknownHostException;
+    }
+
+    long backoffNanos(int retry, Response response) {
+        long backoffMs = policy.backoffMs(retry);
+        backoffMs -= (long) (backoffMs * policy.jitter() * random.nextDouble());
+        long retryAfterMs = response != null ? retryAfterMs(response) : -1;
+        if (retryAfterMs > backoffMs) {
+            backoffMs = Math.min(retryAfterMs, policy.maxBackoffMs());
+        }
+        return TimeUnit.MILLISECONDS.toNanos(backoffMs);
+    }
+
+    private static long retryAfterMs(Response response) {
+        String value = response.header("Retry-After");
+        if (value != null) {
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                // An HTTP date, not worth the parsing.
+            }
+        }
+        return -1;
+    }
+
+    private void sleep(Chain chain, long nanos) throws IOException {
+        try {
+            while (nanos > 0 && !chain.call().isCanceled()) {
+                long slice = Math.min(nanos, CANCELLATION_CHECK_NANOS);
+                sleeper.sleep(slice);
+                nanos -= slice;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry.");
+        }
+        if (chain.call().isCanceled()) {
+            throw new IOException("Canceled");
+        }
+    }
+
+    private static Response result(Response response, IOException failure) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        return response;
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ApiError;
+import com.pcloud.sdk.ContentLink;
+import com.pcloud.sdk.ProgressListener;
+import com.pcloud.sdk.SegmentedDownloadOptions;
+import com.pcloud.sdk.internal.networking.APIHttpException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+import static com.pcloud.sdk.internal.IOUtils.closeQuietly;
+
+/**
+ * Downloads a {@link ContentLink} of known size into a local file using concurrent {@code Range} requests.
+ * <p>
+ * The file is split into segments that a fixed number of workers take from a shared queue. Workers
+ * start on different URLs of the link and move to the next one whenever a request fails, so that
+ * the load is spread over all content hosts and a failing host only costs a retry. Received bytes
+ * are written at their position through a shared {@link FileChannel}, a retried segment
+ * continues from the last byte written.
+ */
+class SegmentedDownloadCall extends CompositeCall<Void> {
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Resolves the link to download from, allowing it to be obtained as part of the call.
+     */
+    interface LinkProvider {
+        ContentLink get(SegmentedDownloadCall call) throws IOException, ApiError;
+    }
+
+    private final LinkProvider linkProvider;
+    private final long contentLength;
+    private final File target;
+    private final ProgressListener listener;
+    private final long progressThreshold;
+    private final SegmentedDownloadOptions options;
+
+    private long transferredBytes;
+    private long lastReportedBytes;
+
+    SegmentedDownloadCall(OkHttpClient httpClient,
+                          LinkProvider linkProvider,
+                          long contentLength,
+                          File target,
+                          ProgressListener listener,
+                          long progressThreshold,
+                          SegmentedDownloadOptions options) {
+        super(httpClient);
+        this.linkProvider = linkProvider;
+        this.contentLength = contentLength;
+        this.target = target;
+        this.listener = listener;
+        this.progressThreshold = progressThreshold;
+        this.options = options;
+    }
+
+    @Override
+    protected Void run() throws IOException, ApiError {
+        ContentLink link = linkProvider.get(this);
+        List<URL> urls = link.urls();
+        if (urls.isEmpty()) {
+            throw new IOException("Content link has no URLs to download from.");
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(target, "rw")) {
+            file.setLength(contentLength);
+            if (contentLength == 0) {
+                return null;
+            }
+
+            Queue<Segment> segments = new ConcurrentLinkedQueue<>();
+            for (long start = 0; start < contentLength; start += options.segmentSize()) {
+                segments.add(new Segment(start, Math.min(start + options.segmentSize(), contentLength)));
+            }
+
+            int workerCount = Math.min(options.parallelism(), segments.size());
+            Workers workers = new Workers(workerCount, segments, urls, file.getChannel());
+            workers.startAndAwait();
+        }
+        return null;
+    }
+
+    @SuppressWarnings("MethodDoesntCallSuperMethod")
+    @Override
+    public SegmentedDownloadCall clone() {
+        return new SegmentedDownloadCall(httpClient(), linkProvider, contentLength, target, listener, progressThreshold, options);
+    }
+
+    private synchronized void onBytesWritten(long byteCount) {
+        transferredBytes += byteCount;
+        if (listener != null && (transferredBytes - lastReportedBytes >= progressThreshold ||
+                transferredBytes == contentLength)) {
+            lastReportedBytes = transferredBytes;
+            listener.onProgress(transferredBytes, contentLength);
+        }
+    }
+
+    private static final class Segment {
+        // Position of the next byte to be written, inclusive.
+        long position;
+        // End of the segment, exclusive.
+        final long end;
+
+        Segment(long start, long end) {
+            this.position = start;
+            this.end = end;
+        }
+    }
+
+    private class Workers {
+
+        private final int count;
+        private final Queue<Segment> segments;
+        private final List<URL> urls;
+        private final FileChannel channel;
+        private final CountDownLatch completion;
+        private volatile Exception failure;
+
+        Workers(int count, Queue<Segment> segments, List<URL> urls, FileChannel channel) {
+            this.count = count;
+            this.segments = segments;
+            this.urls = urls;
+            this.channel = channel;
+            this.completion = new CountDownLatch(count);
+        }
+
+        void startAndAwait() throws IOException {
+            ExecutorService executor = httpClient().dispatcher().executorService();
+            for (int i = 0; i < count; i++) {
+                final int firstUrlIndex = i;
+                try {
+                    executor.execute(() -> {
+                        try {
+                            work(firstUrlIndex);
+                        } catch (IOException | RuntimeException e) {
+                            if (failure == null) {
+                                failure = e;
+                            }
+                        } finally {
+                            completion.countDown();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    InterruptedIOException error = new InterruptedIOException("Executor rejected the segment download.");
+                    error.initCause(e);
+                    failure = error;
+                    for (int j = i; j < count; j++) {
+                        completion.countDown();
+                    }
+                    break;
+                }
+            }
+
+            try {
+                completion.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new InterruptedIOException("Interrupted while waiting for segment downloads.");
+            }
+
+            Exception error = failure;
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            } else if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            throwIfCanceled();
+        }
+
+        private void work(int urlIndex) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+            Segment segment;
+            while (failure == null && (segment = segments.poll()) != null) {
+                for (int attempt = 0; ; attempt++) {
+                    URL url = urls.get(urlIndex % urls.size());
+                    try {
+                        download(url, segment, buffer);
+                        break;
+                    } catch (IOException e) {
+                        if (isCanceled() || failure != null || attempt >= options.maxSegmentRetries()) {
+                            throw e;
+                        }
+                        // Try the next mirror, starting from where the failed attempt stopped.
+                        urlIndex++;
+                    }
+                }
+            }
+        }
+
+        private void download(URL url, Segment segment, ByteBuffer buffer) throws IOException {
+            Request.Builder requestBuilder = new Request.Builder()
+                    .url(url)
+                    .tag(ContentHostSelector.Alternatives.class, ContentHostSelector.Alternatives.NONE)
+                    .get();
+            boolean wholeFile = segment.position == 0 && segment.end == contentLength;
+            if (!wholeFile) {
+                requestBuilder.header("Range", "bytes=" + segment.position + "-" + (segment.end - 1));
+            }
+
+            okhttp3.Call call = newRawCall(requestBuilder.build());
+            Response response = null;
+            try {
+                response = call.execute();
+                if (!response.isSuccessful()) {
+                    throw new APIHttpException(response.code(), response.message());
+                }
+                if (!wholeFile && response.code() != 206) {
+                    throw new ProtocolException("Content host did not honor the requested range.");
+                }
+
+                BufferedSource source = response.body().source();
+                // Called through the base class, as the covariant ByteBuffer overrides do not exist on Java 8 and Android.
+                Buffer bufferState = buffer;
+                while (segment.position < segment.end) {
+                    if (failure != null) {
+                        throw new IOException("Download aborted.");
+                    }
+                    bufferState.clear();
+                    bufferState.limit((int) Math.min(buffer.capacity(), segment.end - segment.position));
+                    int read = source.read(buffer);
+                    if (read == -1) {
+                        throw new ProtocolException("Unexpected end of stream at position " + segment.position + ".");
+                    }
+                    bufferState.flip();
+                    while (buffer.hasRemaining()) {
+                        segment.position += channel.write(buffer, segment.position);
+                    }
+                    onBytesWritten(read);
+                }
+            } finally {
+                closeQuietly(response);
+                release(call);
+            }
+        }
+    }
+}
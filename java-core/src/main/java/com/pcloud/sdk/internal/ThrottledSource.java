@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import org.jetbrains.annotations.NotNull;
+
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Source;
+
+import java.io.IOException;
+
+final class ThrottledSource extends ForwardingSource {
+    private final TokenBucket bucket;
+
+    ThrottledSource(Source delegate, TokenBucket bucket) {
+        super(delegate);
+        this.bucket = bucket;
+    }
+
+    @Override
+    public long read(@NotNull Buffer sink, long byteCount) throws IOException {
+        long bytesRead = super.read(sink, byteCount);
+        if (bytesRead > 0) {
+            bucket.takeAll(bytesRead);
+        }
+        return bytesRead;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a transfer rate over a sliding window of one-second buckets.
+ * <p>
+ * The rate is computed over the completed buckets of the window only, so that it does not drop
+ * at the start of every second.
+ */
+class ThroughputMeter {
+
+    static final int WINDOW_SECONDS = 5;
+
+    private static final long BUCKET_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Clock nanoClock;
+    private final long startSecond;
+    private final long[] bucketBytes = new long[WINDOW_SECONDS + 1];
+    private final long[] bucketSeconds = new long[WINDOW_SECONDS + 1];
+
+    ThroughputMeter() {
+        this(Clock.NANO_TIME);
+    }
+
+    ThroughputMeter(Clock nanoClock) {
+        this.nanoClock = nanoClock;
+        this.startSecond = currentSecond();
+    }
+
+    synchronized void record(long bytes) {
+        long second = currentSecond();
+        int index = bucketIndex(second);
+        if (bucketSeconds[index] != second) {
+            bucketSeconds[index] = second;
+            bucketBytes[index] = 0;
+        }
+        bucketBytes[index] += bytes;
+    }
+
+    /**
+     * @return the average rate in bytes per second over the last completed seconds of the window
+     */
+    synchronized long bytesPerSecond() {
+        long second = currentSecond();
+        long seconds = Math.min(WINDOW_SECONDS, second - startSecond);
+        if (seconds <= 0) {
+            return 0;
+        }
+        long total = 0;
+        for (long s = second - seconds; s < second; s++) {
+            int index = bucketIndex(s);
+            if (bucketSeconds[index] == s) {
+                total += bucketBytes[index];
+            }
+        }
+        return total / seconds;
+    }
+
+    private int bucketIndex(long second) {
+        int index = (int) (second % bucketBytes.length);
+        return index < 0 ? index + bucketBytes.length : index;
+    }
+
+    private long currentSecond() {
+        // System.nanoTime() may be negative, round towards negative infinity as Math.floorDiv() would.
+        long nanos = nanoClock.read();
+        long second = nanos / BUCKET_NANOS;
+        return nanos % BUCKET_NANOS < 0 ? second - 1 : second;
+    }
+}
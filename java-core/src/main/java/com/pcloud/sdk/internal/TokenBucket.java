@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A token bucket handing out permits to transfer bytes at a rate that can be changed at any time.
+ * <p>
+ * Permits are granted in slices of at most a twentieth of a second worth of bytes, to the waiting threads
+ * in the order they asked for them, so that concurrent transfers sharing a bucket get an even share of its
+ * rate. At most a tenth of a second worth of permits is saved up while the bucket is not used, which
+ * bounds the burst after a pause. Waiting threads check the rate at least every {@link #MAX_WAIT_NANOS}.
+ */
+final class TokenBucket {
+
+    static final long UNLIMITED = 0;
+    static final long MAX_SLICE_BYTES = 64 * 1024;
+    static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    interface Sleeper {
+        void sleep(long nanos) throws InterruptedException;
+    }
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Clock nanoClock;
+    private final Sleeper sleeper;
+    private volatile long bytesPerSecond;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    TokenBucket(long bytesPerSecond) {
+        this(bytesPerSecond, Clock.NANO_TIME, TimeUnit.NANOSECONDS::sleep);
+    }
+
+    TokenBucket(long bytesPerSecond, Clock nanoClock, Sleeper sleeper) {
+        this.nanoClock = nanoClock;
+        this.sleeper = sleeper;
+        this.lastRefillNanos = nanoClock.read();
+        setBytesPerSecond(bytesPerSecond);
+    }
+
+    long bytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    void setBytesPerSecond(long bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Bandwidth limit cannot be negative.");
+        }
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Wait for permits to transfer up to {@code byteCount} bytes.
+     *
+     * @return the number of bytes that can be transferred, between 1 and {@code byteCount}
+     */
+    long take(long byteCount) throws InterruptedIOException {
+        if (byteCount <= 0 || bytesPerSecond == UNLIMITED) {
+            return byteCount;
+        }
+
+        try {
+            lock.lockInterruptibly();
+            try {
+                while (true) {
+                    long rate = bytesPerSecond;
+                    if (rate == UNLIMITED) {
+                        return byteCount;
+                    }
+
+                    long slice = Math.max(1, Math.min(MAX_SLICE_BYTES, rate / 20));
+                    long now = nanoClock.read();
+                    double capacity = Math.max(slice, rate / 10d);
+                    tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * rate / (double) TimeUnit.SECONDS.toNanos(1));
+                    lastRefillNanos = now;
+
+                    long granted = Math.min(byteCount, slice);
+                    if (tokens >= granted) {
+                        tokens -= granted;
+                        return granted;
+                    }
+                    long waitNanos = (long) Math.ceil((granted - tokens) * TimeUnit.SECONDS.toNanos(1) / rate);
+                    sleeper.sleep(Math.min(waitNanos, MAX_WAIT_NANOS));
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for bandwidth.");
+        }
+    }
+
+    /**
+     * Wait for permits to transfer all of {@code byteCount} bytes.
+     */
+    void takeAll(long byteCount) throws InterruptedIOException {
+        while (byteCount > 0) {
+            byteCount -= take(byteCount);
+        }
+    }
+}
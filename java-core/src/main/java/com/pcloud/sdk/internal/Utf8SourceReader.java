@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.pcloud.sdk.internal;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import okio.BufferedSource;
+
+/**
+ * A {@link Reader} decoding UTF-8 directly from a {@link BufferedSource}.
+ * <p>
+ * Bytes are copied from the source into a buffer and decoded straight into the array passed
+ * to {@link #read(char[], int, int)}, without the intermediate char buffers of an
+ * {@link java.io.InputStreamReader} and a {@link java.io.BufferedReader}. The byte buffer and
+ * the decoder are reused by subsequent readers on the same thread. Malformed input is
+ * replaced with {@code U+FFFD}.
+ * <p>
+ * Instances are not thread-safe.
+ */
+class Utf8SourceReader extends Reader {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    // Holds the decoding state while no reader on the thread is using it.
+    private static final ThreadLocal<DecodingState> STATES = new ThreadLocal<>();
+
+    private final BufferedSource source;
+    private DecodingState state;
+    private boolean exhausted;
+    // Set once the decoder has been flushed, it cannot decode anything after that.
+    private boolean endOfStream;
+    // The second half of a surrogate pair that did not fit in the last read.
+    private char pendingLowSurrogate;
+
+    Utf8SourceReader(BufferedSource source) {
+        this.source = source;
+        DecodingState state = STATES.get();
+        if (state != null) {
+            STATES.remove();
+            state.reset();
+        } else {
+            state = new DecodingState();
+        }
+        this.state = state;
+    }
+
+    @Override
+    public int read(char[] chars, int offset, int length) throws IOException {
+        if (state == null) {
+            throw new IOException("Reader is closed.");
+        }
+        if (offset < 0 || length < 0 || offset + length > chars.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (length == 0) {
+            return 0;
+        }
+        if (pendingLowSurrogate != 0) {
+            chars[offset] = pendingLowSurrogate;
+            pendingLowSurrogate = 0;
+            return 1;
+        }
+
+        if (length == 1) {
+            // Leave room for both halves of a surrogate pair.
+            CharBuffer pair = CharBuffer.allocate(2);
+            decode(pair);
+            if (pair.position() == 0) {
+                return -1;
+            }
+            chars[offset] = pair.get(0);
+            if (pair.position() > 1) {
+                pendingLowSurrogate = pair.get(1);
+            }
+            return 1;
+        }
+
+        CharBuffer output = CharBuffer.wrap(chars, offset, length);
+        decode(output);
+        int count = output.position() - offset;
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (state != null) {
+            if (STATES.get() == null) {
+                STATES.set(state);
+            }
+            state = null;
+            source.close();
+        }
+    }
+
+    private void decode(CharBuffer output) throws IOException {
+        if (endOfStream) {
+            return;
+        }
+        int start = output.position();
+        ByteBuffer input = state.bytes;
+        while (true) {
+            CoderResult result = state.decoder.decode(input, output, exhausted);
+            if (result.isOverflow() || output.position() > start) {
+                // Return what has been decoded instead of blocking for more input.
+                return;
+            }
+            if (exhausted) {
+                state.decoder.flush(output);
+                endOfStream = true;
+                return;
+            }
+            fill(input);
+        }
+    }
+
+    /**
+     * Move any undecoded bytes to the start of the buffer and append more from the source.
+     */
+    private void fill(ByteBuffer input) throws IOException {
+        input.compact();
+        // Buffer methods are called through the base class, as their covariant
+        // ByteBuffer overrides do not exist on Java 8 and Android.
+        Buffer buffer = input;
+        int read = source.read(input.array(), buffer.position(), buffer.remaining());
+        if (read == -1) {
+            exhausted = true;
+        } else {
+            buffer.position(buffer.position() + read);
+        }
+        buffer.flip();
+    }
+
+    private static final class DecodingState {
+        final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+        DecodingState() {
+            ((Buffer) bytes).limit(0);
+        }
+
+        void reset() {
+            decoder.reset();
+            ((Buffer) bytes).limit(0);
+        }
+    }
+}
@@ -22,13 +22,42 @@ import com.pcloud.sdk.RemoteFile;
 
 import java.util.List;
 
+import okio.ByteString;
+
 public class UploadFilesResponse extends ApiResponse {
 
     @Expose
     @SerializedName("metadata")
     private List<RemoteFile> uploadedFiles;
 
+    @Expose
+    @SerializedName("checksums")
+    private List<FileChecksums> checksums;
+
     public List<RemoteFile> getUploadedFiles() {
         return uploadedFiles;
     }
+
+    public List<FileChecksums> getChecksums() {
+        return checksums;
+    }
+
+    public static class FileChecksums {
+
+        @Expose
+        @SerializedName("sha1")
+        private ByteString sha1;
+
+        @Expose
+        @SerializedName("sha256")
+        private ByteString sha256;
+
+        public ByteString getSha1() {
+            return sha1;
+        }
+
+        public ByteString getSha256() {
+            return sha256;
+        }
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FileChannelDataTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void pathDataSource_WritesWholeFile() throws Exception {
+        byte[] data = randomBytes(3 * 1024 * 1024 + 17);
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, data);
+
+        DataSource dataSource = DataSource.create(file);
+        Buffer sink = new Buffer();
+        dataSource.writeTo(sink);
+
+        assertEquals(data.length, dataSource.contentLength());
+        assertArrayEquals(data, sink.readByteArray());
+    }
+
+    @Test
+    public void pathDataSink_WritesSourceOfKnownLength() throws Exception {
+        byte[] data = randomBytes(2 * 1024 * 1024 + 5);
+        Path file = temporaryFolder.newFile().toPath();
+
+        DataSink.create(file, true).readAll(new Buffer().write(data), data.length);
+
+        assertArrayEquals(data, Files.readAllBytes(file));
+    }
+
+    @Test
+    public void pathDataSink_WritesSourceOfUnknownLength() throws Exception {
+        byte[] data = randomBytes(1000);
+        Path file = temporaryFolder.getRoot().toPath().resolve("missing.bin");
+
+        DataSink.create(file).readAll(new Buffer().write(data));
+
+        assertArrayEquals(data, Files.readAllBytes(file));
+    }
+
+    @Test
+    public void pathDataSink_TruncatesExistingFile() throws Exception {
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, randomBytes(4096));
+
+        DataSink.create(file).readAll(new Buffer().writeUtf8("abc"), 3);
+
+        assertEquals("abc", new String(Files.readAllBytes(file), "UTF-8"));
+    }
+
+    @Test
+    public void pathDataSink_KeepsOnlyWrittenBytesOnFailure() throws Exception {
+        final byte[] data = randomBytes(1000);
+        Path file = temporaryFolder.newFile().toPath();
+        BufferedSource failingSource = Okio.buffer(new ForwardingSource(new Buffer().write(data)) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read == -1) {
+                    throw new IOException("Connection reset.");
+                }
+                return read;
+            }
+        });
+
+        try {
+            DataSink.create(file).readAll(failingSource, 10000);
+            fail();
+        } catch (IOException expected) {
+            // Expected.
+        }
+
+        assertTrue(Files.size(file) <= data.length);
+    }
+
+    @Test
+    public void pathDataSource_WritesSizeAtCreation() throws Exception {
+        byte[] data = randomBytes(100_000);
+        Path file = temporaryFolder.newFile().toPath();
+        Files.write(file, data);
+
+        DataSource dataSource = DataSource.create(file);
+        Files.write(file, randomBytes(1), StandardOpenOption.APPEND);
+        Buffer sink = new Buffer();
+        dataSource.writeTo(sink);
+
+        assertEquals(data.length, dataSource.contentLength());
+        assertArrayEquals(data, sink.readByteArray());
+    }
+
+    @Test(expected = IOException.class)
+    public void pathDataSource_ThrowsOnMissingFile() throws Exception {
+        DataSource.create(temporaryFolder.getRoot().toPath().resolve("missing.bin"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pathDataSource_ThrowsOnNullPath() throws Exception {
+        DataSource.create((Path) null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pathDataSink_ThrowsOnNullPath() throws Exception {
+        DataSink.create((Path) null);
+    }
+
+    private static byte[] randomBytes(int count) {
+        byte[] data = new byte[count];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+}
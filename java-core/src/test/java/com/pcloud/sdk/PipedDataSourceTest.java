@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class PipedDataSourceTest {
+
+    @Test
+    public void writeTo_ReadsUntilSinkIsClosed() throws Exception {
+        PipedDataSource dataSource = new PipedDataSource(16);
+        Thread writer = new Thread(() -> {
+            try (BufferedSink sink = dataSource.sink()) {
+                for (int i = 0; i < 100; i++) {
+                    sink.writeUtf8("line " + i + "\n");
+                }
+            } catch (IOException e) {
+                dataSource.cancel();
+            }
+        });
+        writer.start();
+
+        Buffer target = new Buffer();
+        dataSource.writeTo(target);
+        writer.join();
+
+        assertEquals(-1, dataSource.contentLength());
+        assertTrue(target.readUtf8().endsWith("line 99\n"));
+    }
+
+    @Test(expected = IOException.class)
+    public void writeTo_FailsWhenCanceled() throws Exception {
+        PipedDataSource dataSource = new PipedDataSource();
+        dataSource.sink().writeUtf8("partial").flush();
+        dataSource.cancel();
+
+        dataSource.writeTo(new Buffer());
+    }
+
+    @Test
+    public void writeTo_ReleasesWriterOnFailure() throws Exception {
+        PipedDataSource dataSource = new PipedDataSource(16);
+        AtomicReference<IOException> writerError = new AtomicReference<>();
+        CountDownLatch writerDone = new CountDownLatch(1);
+        new Thread(() -> {
+            try (BufferedSink sink = dataSource.sink()) {
+                while (true) {
+                    sink.writeUtf8("data").flush();
+                }
+            } catch (IOException e) {
+                writerError.set(e);
+            } finally {
+                writerDone.countDown();
+            }
+        }).start();
+
+        BufferedSink failingTarget = Okio.buffer(new ForwardingSink(new Buffer()) {
+            @Override
+            public void write(Buffer source, long byteCount) throws IOException {
+                throw new IOException("Connection reset.");
+            }
+        });
+        try {
+            dataSource.writeTo(failingTarget);
+            fail();
+        } catch (IOException expected) {
+            // Expected.
+        }
+
+        assertTrue(writerDone.await(5, TimeUnit.SECONDS));
+        assertNotNull(writerError.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void writeTo_ThrowsWhenCalledTwice() throws Exception {
+        PipedDataSource dataSource = new PipedDataSource();
+        dataSource.sink().close();
+        dataSource.writeTo(new Buffer());
+
+        dataSource.writeTo(new Buffer());
+    }
+}
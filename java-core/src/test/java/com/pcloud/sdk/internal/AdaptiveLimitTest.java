@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ConcurrencyLimitPolicy;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveLimitTest {
+
+    private static final ConcurrencyLimitPolicy POLICY = ConcurrencyLimitPolicy.create()
+            .initialLimit(10)
+            .minLimit(2)
+            .maxLimit(11)
+            .latencyTolerance(2)
+            .backoffRatio(0.5)
+            .build();
+
+    @Test
+    public void limit_StartsAtInitialLimit() {
+        assertEquals(10, new AdaptiveLimit(POLICY).limit());
+    }
+
+    @Test
+    public void limit_Grows_WhileLatencyIsNormal_AndTheLimitIsUsed() {
+        AdaptiveLimit limit = new AdaptiveLimit(POLICY);
+        for (int i = 0; i < 20; i++) {
+            limit.onSample("/stat", i * 100, i * 100 + 10, false, 10);
+        }
+        assertEquals(11, limit.limit());
+    }
+
+    @Test
+    public void limit_DoesNotGrow_WhenMostlyUnused() {
+        AdaptiveLimit limit = new AdaptiveLimit(POLICY);
+        for (int i = 0; i < 20; i++) {
+            limit.onSample("/stat", i * 100, i * 100 + 10, false, 1);
+        }
+        assertEquals(10, limit.limit());
+    }
+
+    @Test
+    public void limit_Drops_OnLatencyAboveTheBaseline() {
+        AdaptiveLimit limit = new AdaptiveLimit(POLICY);
+        limit.onSample("/stat", 0, 10, false, 1);
+        limit.onSample("/stat", 100, 130, false, 1);
+
+        assertEquals(5, limit.limit());
+    }
+
+    @Test
+    public void baselines_ArePerMethod() {
+        AdaptiveLimit limit = new AdaptiveLimit(POLICY);
+        limit.onSample("/stat", 0, 10, false, 1);
+        limit.onSample("/listfolder", 100, 200, false, 1);
+
+        assertEquals(10, limit.limit());
+    }
+
+    @Test
+    public void limit_DropsOncePerRound() {
+        AdaptiveLimit limit = new AdaptiveLimit(POLICY);
+        limit.onSample("/stat", 0, 100, true, 10);
+        // Started before the decrease, already accounted for.
+        limit.onSample("/stat", 50, 110, true, 10);
+        assertEquals(5, limit.limit());
+
+        limit.onSample("/stat", 120, 200, true, 5);
+        assertEquals(2, limit.limit());
+    }
+
+    @Test
+    public void limit_DoesNotDropBelowMinimum() {
+        AdaptiveLimit limit = new AdaptiveLimit(POLICY);
+        for (int i = 0; i < 10; i++) {
+            limit.onSample("/stat", i * 100, i * 100 + 50, true, 1);
+        }
+        assertEquals(2, limit.limit());
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.BandwidthLimit;
+import com.pcloud.sdk.DataSource;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+public class BandwidthInterceptorTest {
+
+    private static final int CONTENT_SIZE = 64 * 1024;
+    private static final long RATE = 128 * 1024;
+
+    private MockWebServer server;
+    private BandwidthLimit uploadLimit;
+    private BandwidthLimit downloadLimit;
+    private RealApiClient apiClient;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        uploadLimit = new RealBandwidthLimit(RATE);
+        downloadLimit = new RealBandwidthLimit(RATE);
+        apiClient = (RealApiClient) new RealApiServiceBuilder()
+                .apiHost(server.url("/"))
+                .uploadBandwidthLimit(uploadLimit)
+                .downloadBandwidthLimit(downloadLimit)
+                .create();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        apiClient.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    public void uploads_Are_Limited() throws Exception {
+        server.enqueue(uploadResponse());
+
+        long elapsedMillis = timed(() -> apiClient.createFile(1, "file.bin", DataSource.create(new byte[CONTENT_SIZE])).execute());
+
+        RecordedRequest request = server.takeRequest();
+        assertTrue(request.getBodySize() > CONTENT_SIZE);
+        // Everything but the initial burst of a tenth of a second is sent at the limit.
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis >= 350);
+    }
+
+    @Test
+    public void downloads_Are_Limited() throws Exception {
+        server.enqueue(new MockResponse().setBody(new Buffer().write(new byte[CONTENT_SIZE])));
+        RealFileLink link = new RealFileLink(apiClient, new Date(), Collections.singletonList(server.url("/content").url()), "");
+
+        long elapsedMillis = timed(() -> assertEquals(CONTENT_SIZE, apiClient.download(link).execute().readByteArray().length));
+
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis >= 350);
+    }
+
+    @Test
+    public void limits_Can_Be_Lifted_At_Runtime() throws Exception {
+        uploadLimit.setBytesPerSecond(BandwidthLimit.UNLIMITED);
+        server.enqueue(uploadResponse());
+
+        long elapsedMillis = timed(() -> apiClient.createFile(1, "file.bin", DataSource.create(new byte[CONTENT_SIZE])).execute());
+
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis < 350);
+    }
+
+    @Test
+    public void api_Calls_Are_Not_Limited() throws Exception {
+        uploadLimit.setBytesPerSecond(1);
+        downloadLimit.setBytesPerSecond(1);
+        server.enqueue(new MockResponse().setBody("{\"result\": 0, \"metadata\": {\"isfolder\": true, \"id\": \"d1\", " +
+                "\"folderid\": 1, \"name\": \"folder\", \"modified\": 0, \"created\": 0, \"contents\": []}}"));
+
+        long elapsedMillis = timed(() -> apiClient.listFolder(1).execute());
+
+        assertTrue("Took " + elapsedMillis + " ms", elapsedMillis < 1000);
+    }
+
+    @Test
+    public void limited_DataSource_Keeps_Content() throws Exception {
+        byte[] data = new byte[1024];
+        data[512] = 1;
+        Buffer target = new Buffer();
+
+        uploadLimit.limit(DataSource.create(data)).writeTo(target);
+
+        assertArrayEquals(data, target.readByteArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_Rejects_Foreign_Limits() {
+        BandwidthLimit foreignLimit = mock(BandwidthLimit.class);
+
+        new RealApiServiceBuilder().uploadBandwidthLimit(foreignLimit);
+    }
+
+    private static MockResponse uploadResponse() {
+        return new MockResponse().setBody("{\"result\": 0, \"metadata\": [{\"isfolder\": false, \"id\": \"f1\", " +
+                "\"fileid\": 1, \"parentfolderid\": 1, \"name\": \"file.bin\", \"size\": " + CONTENT_SIZE + ", " +
+                "\"modified\": 0, \"created\": 0}]}");
+    }
+
+    private static long timed(ThrowingRunnable action) throws Exception {
+        long start = System.nanoTime();
+        action.run();
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
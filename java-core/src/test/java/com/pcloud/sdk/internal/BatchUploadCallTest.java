@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ApiError;
+import com.pcloud.sdk.BatchUploadException;
+import com.pcloud.sdk.BatchUploadOptions;
+import com.pcloud.sdk.DataSource;
+import com.pcloud.sdk.RemoteFile;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class BatchUploadCallTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private MockWebServer server;
+    private RealApiClient apiClient;
+    private UploadDispatcher dispatcher;
+
+    @Before
+    public void setUp() throws Exception {
+        dispatcher = new UploadDispatcher();
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+        apiClient = new RealApiClient(new RealApiServiceBuilder().apiHost(server.url("/")));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        apiClient.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    public void execute_PacksFilesIntoSingleRequest() throws Exception {
+        Map<String, DataSource> files = files(10, 20, 30);
+
+        List<RemoteFile> created = apiClient.createFiles(1, files, BatchUploadOptions.DEFAULT).execute();
+
+        assertEquals(Collections.singletonList(Arrays.asList("file0", "file1", "file2")), dispatcher.requests);
+        assertEquals(Arrays.asList("file0", "file1", "file2"), names(created));
+        assertEquals(20, created.get(1).size());
+    }
+
+    @Test
+    public void execute_SplitsBatchesByFileCount() throws Exception {
+        BatchUploadOptions options = BatchUploadOptions.create().maxFilesPerRequest(2).build();
+
+        List<RemoteFile> created = apiClient.createFiles(1, files(1, 1, 1, 1, 1), options).execute();
+
+        assertEquals(Arrays.asList(
+                Arrays.asList("file0", "file1"),
+                Arrays.asList("file2", "file3"),
+                Collections.singletonList("file4")), dispatcher.requests);
+        assertEquals(Arrays.asList("file0", "file1", "file2", "file3", "file4"), names(created));
+    }
+
+    @Test
+    public void execute_SplitsBatchesByByteCount() throws Exception {
+        BatchUploadOptions options = BatchUploadOptions.create().maxBytesPerRequest(1000).build();
+
+        List<RemoteFile> created = apiClient.createFiles("/folder", files(400, 400, 400, 1500, 100), options).execute();
+
+        assertEquals(Arrays.asList(
+                Arrays.asList("file0", "file1"),
+                Collections.singletonList("file2"),
+                Collections.singletonList("file3"),
+                Collections.singletonList("file4")), dispatcher.requests);
+        assertEquals(5, created.size());
+    }
+
+    @Test
+    public void execute_FailsWhenFilesAreMissingFromResponse() throws Exception {
+        dispatcher.omitLastFile = true;
+
+        expectedException.expect(IOException.class);
+        apiClient.createFiles(1, files(1, 1), BatchUploadOptions.DEFAULT).execute();
+    }
+
+    @Test
+    public void execute_ReportsCreatedFiles_WhenLaterRequestFails() throws Exception {
+        dispatcher.failingRequest = 1;
+        BatchUploadOptions options = BatchUploadOptions.create().maxFilesPerRequest(2).build();
+
+        try {
+            apiClient.createFiles(1, files(1, 1, 1, 1, 1), options).execute();
+            fail();
+        } catch (BatchUploadException e) {
+            assertEquals(Arrays.asList("file0", "file1"), names(e.uploadedFiles()));
+            assertTrue(e.getCause() instanceof ApiError);
+            assertEquals(2008, ((ApiError) e.getCause()).errorCode());
+        }
+        assertEquals(2, dispatcher.requests.size());
+    }
+
+    @Test
+    public void execute_ThrowsOriginalError_WhenNoFilesWereCreated() throws Exception {
+        dispatcher.failingRequest = 0;
+
+        expectedException.expect(ApiError.class);
+        apiClient.createFiles(1, files(1, 1), BatchUploadOptions.DEFAULT).execute();
+    }
+
+    @Test
+    public void createFiles_ThrowsOnEmptyFiles() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        apiClient.createFiles(1, Collections.emptyMap(), BatchUploadOptions.DEFAULT);
+    }
+
+    @Test
+    public void createFiles_ThrowsOnUnknownContentLength() throws Exception {
+        Map<String, DataSource> files = files(1);
+        files.put("stream", new DataSource() {
+            @Override
+            public long contentLength() {
+                return -1;
+            }
+
+            @Override
+            public void writeTo(okio.BufferedSink sink) {
+            }
+        });
+
+        expectedException.expect(IllegalArgumentException.class);
+        apiClient.createFiles(1, files, BatchUploadOptions.DEFAULT);
+    }
+
+    private static Map<String, DataSource> files(int... sizes) {
+        Map<String, DataSource> files = new LinkedHashMap<>();
+        for (int i = 0; i < sizes.length; i++) {
+            files.put("file" + i, DataSource.create(new byte[sizes[i]]));
+        }
+        return files;
+    }
+
+    private static List<String> names(List<RemoteFile> files) {
+        List<String> names = new ArrayList<>();
+        for (RemoteFile file : files) {
+            names.add(file.name());
+        }
+        return names;
+    }
+
+    private static class UploadDispatcher extends Dispatcher {
+
+        private static final Pattern PART_HEADER = Pattern.compile(
+                "filename=\"([^\"]*)\"\\r\\nContent-Type: [^\\r]*\\r\\nContent-Length: (\\d+)");
+
+        final List<List<String>> requests = Collections.synchronizedList(new ArrayList<>());
+        final AtomicLong nextFileId = new AtomicLong(1);
+        volatile boolean omitLastFile;
+        volatile int failingRequest = -1;
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            if (!"/uploadfile".equals(request.getRequestUrl().encodedPath())) {
+                return new MockResponse().setResponseCode(404);
+            }
+
+            List<String> names = new ArrayList<>();
+            StringBuilder metadata = new StringBuilder();
+            Matcher part = PART_HEADER.matcher(request.getBody().readUtf8());
+            while (part.find()) {
+                names.add(part.group(1));
+                if (metadata.length() > 0) {
+                    metadata.append(", ");
+                }
+                long fileId = nextFileId.getAndIncrement();
+                metadata.append("{\"isfolder\": false, \"id\": \"f").append(fileId).append("\", \"fileid\": ").append(fileId)
+                        .append(", \"parentfolderid\": 1, \"name\": \"").append(part.group(1))
+                        .append("\", \"size\": ").append(part.group(2)).append(", \"modified\": 0, \"created\": 0}");
+            }
+            requests.add(names);
+            if (requests.size() - 1 == failingRequest) {
+                return new MockResponse()
+                        .setHeader("Content-Type", "application/json")
+                        .setBody("{\"result\": 2008, \"error\": \"User is over quota.\"}");
+            }
+            if (omitLastFile) {
+                metadata.setLength(Math.max(0, metadata.lastIndexOf("{") - 2));
+            }
+            return new MockResponse()
+                    .setHeader("Content-Type", "application/json")
+                    .setBody("{\"result\": 0, \"metadata\": [" + metadata + "]}");
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.Call;
+import com.pcloud.sdk.CallTimeline;
+import com.pcloud.sdk.CallTimeline.Phase;
+import com.pcloud.sdk.Callback;
+import com.pcloud.sdk.RemoteFolder;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.BufferedSink;
+import org.jetbrains.annotations.Nullable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CallTimelineRecorderTest {
+
+    private MockWebServer server;
+    private BlockingQueue<CallTimeline> timelines;
+    private RealApiClient apiClient;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        timelines = new LinkedBlockingQueue<>();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (apiClient != null) {
+            apiClient.shutdown();
+        }
+        if (client != null) {
+            client.dispatcher().executorService().shutdown();
+            client.connectionPool().evictAll();
+        }
+        server.shutdown();
+    }
+
+    @Test
+    public void apiCalls_ReportTheirPhases() throws Exception {
+        apiClient = newApiClient(new Dispatcher());
+        server.enqueue(folderResponse().setHeadersDelay(200, TimeUnit.MILLISECONDS));
+
+        apiClient.listFolder(1).execute();
+
+        CallTimeline timeline = timelines.poll(1, TimeUnit.SECONDS);
+        assertNotNull(timeline);
+        assertEquals("listfolder", timeline.method());
+        assertTrue(timeline.isSuccessful());
+        assertTrue(timeline.durationNanos(Phase.QUEUE) >= 0);
+        assertTrue(timeline.durationNanos(Phase.CONNECT) >= 0);
+        assertEquals(-1, timeline.durationNanos(Phase.TLS));
+        assertEquals(-1, timeline.durationNanos(Phase.REQUEST_BODY));
+        assertTrue(timeline.durationNanos(Phase.TIME_TO_FIRST_BYTE) >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertTrue(timeline.durationNanos(Phase.RESPONSE_BODY) >= 0);
+        assertTrue(timeline.durationNanos(Phase.DESERIALIZATION) >= 0);
+        assertTrue(timeline.totalNanos() >= timeline.durationNanos(Phase.TIME_TO_FIRST_BYTE));
+        assertTrue(timelines.isEmpty());
+    }
+
+    @Test
+    public void queueWait_IncludesWaitingForARequestSlot() throws Exception {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(1);
+        apiClient = newApiClient(dispatcher);
+        server.enqueue(folderResponse().setHeadersDelay(300, TimeUnit.MILLISECONDS));
+        server.enqueue(folderResponse());
+
+        BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+        Callback<RemoteFolder> callback = new Callback<RemoteFolder>() {
+            @Override
+            public void onResponse(Call<RemoteFolder> call, RemoteFolder response) {
+                results.add(response);
+            }
+
+            @Override
+            public void onFailure(Call<RemoteFolder> call, Throwable t) {
+                results.add(t);
+            }
+        };
+        apiClient.listFolder(1).enqueue(callback);
+        apiClient.listFolder(1).enqueue(callback);
+
+        CallTimeline first = timelines.poll(2, TimeUnit.SECONDS);
+        CallTimeline second = timelines.poll(2, TimeUnit.SECONDS);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertTrue(second.durationNanos(Phase.QUEUE) >= TimeUnit.MILLISECONDS.toNanos(250));
+        assertTrue(results.poll(1, TimeUnit.SECONDS) instanceof RemoteFolder);
+        assertTrue(results.poll(1, TimeUnit.SECONDS) instanceof RemoteFolder);
+    }
+
+    @Test
+    public void failedCalls_AreReported() throws Exception {
+        apiClient = newApiClient(new Dispatcher());
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+
+        try {
+            apiClient.listFolder(1).execute();
+            fail();
+        } catch (IOException expected) {
+        }
+
+        CallTimeline timeline = timelines.poll(1, TimeUnit.SECONDS);
+        assertNotNull(timeline);
+        assertFalse(timeline.isSuccessful());
+        assertEquals(-1, timeline.durationNanos(Phase.DESERIALIZATION));
+    }
+
+    @Test
+    public void slowRequestBodies_AreTracedToTheirSource() throws Exception {
+        CallTimelineRecorder recorder = new CallTimelineRecorder(timelines::add, 1);
+        client = new OkHttpClient.Builder()
+                .eventListenerFactory(recorder)
+                .addInterceptor(recorder.interceptor())
+                .build();
+        server.enqueue(new MockResponse());
+
+        RequestBody slowBody = new RequestBody() {
+            @Nullable
+            @Override
+            public MediaType contentType() {
+                return null;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                for (int i = 0; i < 4; i++) {
+                    try {
+                        Thread.sleep(50);
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                    sink.writeUtf8("data");
+                }
+            }
+        };
+        client.newCall(new Request.Builder().url(server.url("/uploadfile")).post(slowBody).build()).execute().close();
+
+        CallTimeline timeline = timelines.poll(1, TimeUnit.SECONDS);
+        assertNotNull(timeline);
+        assertEquals("uploadfile", timeline.method());
+        assertTrue(timeline.durationNanos(Phase.REQUEST_BODY_SOURCE) >= TimeUnit.MILLISECONDS.toNanos(180));
+        assertTrue(timeline.durationNanos(Phase.REQUEST_BODY) >= timeline.durationNanos(Phase.REQUEST_BODY_SOURCE));
+    }
+
+    @Test
+    public void callsOutsideTheSample_AreNotRecorded() throws Exception {
+        CallTimelineRecorder recorder = new CallTimelineRecorder(timelines::add, 0.5, () -> 0.9, System::nanoTime);
+        client = new OkHttpClient.Builder()
+                .eventListenerFactory(recorder)
+                .addInterceptor(recorder.interceptor())
+                .build();
+        server.enqueue(new MockResponse());
+
+        client.newCall(new Request.Builder().url(server.url("/stat")).build()).execute().close();
+
+        assertTrue(timelines.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builder_RejectsInvalidSampleRate() {
+        new RealApiServiceBuilder().callTimelineListener(timelines::add, 0);
+    }
+
+    private RealApiClient newApiClient(Dispatcher dispatcher) {
+        return (RealApiClient) new RealApiServiceBuilder()
+                .apiHost(server.url("/"))
+                .dispatcher(dispatcher)
+                .callTimelineListener(timelines::add, 1)
+                .create();
+    }
+
+    private static MockResponse folderResponse() {
+        return new MockResponse().setBody("{\"result\": 0, \"metadata\": {\"isfolder\": true, \"id\": \"d1\", " +
+                "\"folderid\": 1, \"name\": \"folder\", \"modified\": 0, \"created\": 0, \"contents\": []}}");
+    }
+}
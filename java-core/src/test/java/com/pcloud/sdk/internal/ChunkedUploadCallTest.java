@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ApiError;
+import com.pcloud.sdk.ChunkedUploadOptions;
+import com.pcloud.sdk.DataSource;
+import com.pcloud.sdk.PipedDataSource;
+import com.pcloud.sdk.RemoteFile;
+import com.pcloud.sdk.internal.networking.APIHttpException;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.ByteString;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ChunkedUploadCallTest {
+
+    private static final int CHUNK_SIZE = (int) ChunkedUploadOptions.MIN_CHUNK_SIZE;
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private MockWebServer server;
+    private RealApiClient apiClient;
+    private UploadSessionDispatcher dispatcher;
+
+    @Before
+    public void setUp() throws Exception {
+        dispatcher = new UploadSessionDispatcher();
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+        HttpUrl apiHost = server.url("/");
+        apiClient = new RealApiClient(new RealApiServiceBuilder().apiHost(apiHost));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        apiClient.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    public void execute_WritesEachChunkAtItsOffset() throws Exception {
+        byte[] data = randomBytes(CHUNK_SIZE * 3 + CHUNK_SIZE / 2);
+
+        RemoteFile file = apiClient.createFileInChunks(1, "file.bin", DataSource.create(data), null, null, options())
+                .execute();
+
+        assertNotNull(file);
+        assertEquals(4, dispatcher.writeCount.get());
+        assertArrayEquals(data, dispatcher.assembledContent());
+        assertEquals(1, dispatcher.saveCount.get());
+    }
+
+    @Test
+    public void execute_ResendsOnlyFailedChunks() throws Exception {
+        byte[] data = randomBytes(CHUNK_SIZE * 4);
+        dispatcher.dropFirstWriteAt.add((long) CHUNK_SIZE * 2);
+
+        apiClient.createFileInChunks(1, "file.bin", DataSource.create(data), null, null, options())
+                .execute();
+
+        assertEquals(5, dispatcher.writeCount.get());
+        assertArrayEquals(data, dispatcher.assembledContent());
+    }
+
+    @Test
+    public void execute_ReportsAcknowledgedProgress() throws Exception {
+        byte[] data = randomBytes(CHUNK_SIZE * 2 + 1);
+        List<Long> progress = Collections.synchronizedList(new ArrayList<>());
+
+        apiClient.createFileInChunks(1, "file.bin", DataSource.create(data), null,
+                (done, total) -> progress.add(done), options()).execute();
+
+        assertFalse(progress.isEmpty());
+        assertEquals(Long.valueOf(data.length), progress.get(progress.size() - 1));
+    }
+
+    @Test
+    public void createFile_StreamsDataOfUnknownLengthThroughUploadSession() throws Exception {
+        byte[] data = randomBytes(9 * 1024 * 1024 + 3);
+        PipedDataSource dataSource = new PipedDataSource();
+        Thread writer = new Thread(() -> {
+            try (OutputStream output = dataSource.outputStream()) {
+                output.write(data);
+            } catch (IOException e) {
+                dataSource.cancel();
+            }
+        });
+        writer.start();
+
+        RemoteFile file = apiClient.createFile(1, "file.bin", dataSource).execute();
+        writer.join();
+
+        assertNotNull(file);
+        assertEquals(2, dispatcher.writeCount.get());
+        assertArrayEquals(data, dispatcher.assembledContent());
+        assertEquals(1, dispatcher.saveCount.get());
+    }
+
+    @Test
+    public void execute_VerifiesChecksumOfSavedFile() throws Exception {
+        byte[] data = randomBytes(CHUNK_SIZE * 2 + 100);
+
+        RemoteFile file = apiClient.createFileInChunks(1, "file.bin", DataSource.create(data), null, null,
+                options().newBuilder().verifyChecksum(true).build()).execute();
+
+        assertNotNull(file);
+        assertEquals(1, dispatcher.checksumCount.get());
+    }
+
+    @Test
+    public void execute_DoesNotSaveOnApiError() throws Exception {
+        dispatcher.writeErrorCode = 2008;
+
+        expectedException.expect(ApiError.class);
+        try {
+            apiClient.createFileInChunks(1, "file.bin", DataSource.create(randomBytes(CHUNK_SIZE * 2)), null, null, options())
+                    .execute();
+        } finally {
+            assertEquals(0, dispatcher.saveCount.get());
+        }
+    }
+
+    @Test
+    public void execute_FailsAfterRetriesAreExhausted() throws Exception {
+        dispatcher.failAllWrites = true;
+
+        expectedException.expect(IOException.class);
+        try {
+            apiClient.createFileInChunks(1, "file.bin", DataSource.create(randomBytes(CHUNK_SIZE)), null, null,
+                    options().newBuilder().maxChunkRetries(1).build())
+                    .execute();
+        } finally {
+            assertEquals(0, dispatcher.saveCount.get());
+        }
+    }
+
+    @Test
+    public void execute_ResendsChunks_OnTransientHttpErrors() throws Exception {
+        byte[] data = randomBytes(CHUNK_SIZE * 2);
+        dispatcher.firstWriteHttpCodeAt.put((long) CHUNK_SIZE, 503);
+
+        apiClient.createFileInChunks(1, "file.bin", DataSource.create(data), null, null, options()).execute();
+
+        assertEquals(3, dispatcher.writeCount.get());
+        assertArrayEquals(data, dispatcher.assembledContent());
+    }
+
+    @Test
+    public void execute_DoesNotResendChunks_OnClientHttpErrors() throws Exception {
+        dispatcher.firstWriteHttpCodeAt.put(0L, 400);
+
+        try {
+            apiClient.createFileInChunks(1, "file.bin", DataSource.create(randomBytes(CHUNK_SIZE)), null, null,
+                    options()).execute();
+            fail();
+        } catch (APIHttpException e) {
+            assertEquals(400, e.getCode());
+        }
+        assertEquals(1, dispatcher.writeCount.get());
+        assertEquals(0, dispatcher.saveCount.get());
+    }
+
+    @Test
+    public void execute_KeepsWithinTheRequestLimitsOfTheDispatcher() throws Exception {
+        okhttp3.Dispatcher transferDispatcher = new okhttp3.Dispatcher();
+        transferDispatcher.setMaxRequestsPerHost(1);
+        RealApiClient client = (RealApiClient) new RealApiServiceBuilder()
+                .apiHost(server.url("/"))
+                .transferDispatcher(transferDispatcher)
+                .create();
+        byte[] data = randomBytes(CHUNK_SIZE * 4);
+        dispatcher.writeDelayMs = 50;
+        try {
+            client.createFileInChunks(1, "file.bin", DataSource.create(data), null, null, options()).execute();
+        } finally {
+            client.shutdown();
+        }
+
+        assertEquals(1, dispatcher.maxConcurrentWrites.get());
+        assertArrayEquals(data, dispatcher.assembledContent());
+    }
+
+    @Test
+    public void clone_ResumesFailedUpload_FromAcknowledgedChunks() throws Exception {
+        byte[] data = randomBytes(CHUNK_SIZE * 4);
+        dispatcher.failWritesAt.add((long) CHUNK_SIZE * 2);
+        ChunkedUploadOptions options = options().newBuilder().parallelism(1).maxChunkRetries(0).build();
+        com.pcloud.sdk.Call<RemoteFile> call = apiClient.createFileInChunks(1, "file.bin", DataSource.create(data),
+                null, null, options);
+
+        try {
+            call.execute();
+            fail();
+        } catch (IOException expected) {
+        }
+        assertFalse(dispatcher.writtenOffsets.contains((long) CHUNK_SIZE * 3));
+
+        dispatcher.failWritesAt.clear();
+        dispatcher.writtenOffsets.clear();
+        RemoteFile file = call.clone().execute();
+
+        assertNotNull(file);
+        assertEquals(Arrays.asList((long) CHUNK_SIZE * 2, (long) CHUNK_SIZE * 3), dispatcher.writtenOffsets);
+        assertEquals(1, dispatcher.createCount.get());
+        assertEquals(1, dispatcher.infoCount.get());
+        assertArrayEquals(data, dispatcher.assembledContent());
+    }
+
+    @Test
+    public void clone_StartsNewSession_WhenPreviousOneExpired() throws Exception {
+        byte[] data = randomBytes(CHUNK_SIZE * 2);
+        dispatcher.failWritesAt.add((long) CHUNK_SIZE);
+        ChunkedUploadOptions options = options().newBuilder().parallelism(1).maxChunkRetries(0).build();
+        com.pcloud.sdk.Call<RemoteFile> call = apiClient.createFileInChunks(1, "file.bin", DataSource.create(data),
+                null, null, options);
+        try {
+            call.execute();
+            fail();
+        } catch (IOException expected) {
+        }
+
+        dispatcher.failWritesAt.clear();
+        dispatcher.writtenOffsets.clear();
+        dispatcher.sessionsExpired = true;
+        call.clone().execute();
+
+        assertEquals(Arrays.asList(0L, (long) CHUNK_SIZE), dispatcher.writtenOffsets);
+        assertEquals(2, dispatcher.createCount.get());
+        assertArrayEquals(data, dispatcher.assembledContent());
+    }
+
+    @Test
+    public void createFileInChunks_ThrowsOnNullOptions() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        apiClient.createFileInChunks(1, "file.bin", DataSource.EMPTY, null, null, null);
+    }
+
+    private static ChunkedUploadOptions options() {
+        return ChunkedUploadOptions.create()
+                .chunkSize(CHUNK_SIZE)
+                .parallelism(3)
+                .build();
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static class UploadSessionDispatcher extends Dispatcher {
+
+        final Map<Long, byte[]> chunks = new ConcurrentHashMap<>();
+        final Set<Long> dropFirstWriteAt = ConcurrentHashMap.newKeySet();
+        final Set<Long> failWritesAt = ConcurrentHashMap.newKeySet();
+        final List<Long> writtenOffsets = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger createCount = new AtomicInteger();
+        final AtomicInteger infoCount = new AtomicInteger();
+        final AtomicInteger writeCount = new AtomicInteger();
+        final AtomicInteger saveCount = new AtomicInteger();
+        final AtomicInteger checksumCount = new AtomicInteger();
+        final Map<Long, Integer> firstWriteHttpCodeAt = new ConcurrentHashMap<>();
+        final AtomicInteger concurrentWrites = new AtomicInteger();
+        final AtomicInteger maxConcurrentWrites = new AtomicInteger();
+        volatile long writeDelayMs;
+        volatile int writeErrorCode;
+        volatile boolean failAllWrites;
+        volatile boolean sessionsExpired;
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            HttpUrl url = request.getRequestUrl();
+            switch (url.pathSegments().get(0)) {
+                case "upload_create":
+                    createCount.incrementAndGet();
+                    return json("{\"result\": 0, \"uploadid\": 42}");
+                case "upload_info":
+                    infoCount.incrementAndGet();
+                    if (sessionsExpired) {
+                        return json("{\"result\": 1900, \"error\": \"Invalid 'uploadid' provided.\"}");
+                    }
+                    return json("{\"result\": 0, \"size\": 0}");
+                case "upload_write":
+                    writeCount.incrementAndGet();
+                    long offset = Long.parseLong(url.queryParameter("uploadoffset"));
+                    writtenOffsets.add(offset);
+                    Integer httpCode = firstWriteHttpCodeAt.remove(offset);
+                    if (httpCode != null) {
+                        return new MockResponse().setResponseCode(httpCode);
+                    }
+                    if (writeDelayMs > 0) {
+                        int concurrent = concurrentWrites.incrementAndGet();
+                        maxConcurrentWrites.accumulateAndGet(concurrent, Math::max);
+                        try {
+                            Thread.sleep(writeDelayMs);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            concurrentWrites.decrementAndGet();
+                        }
+                    }
+                    if (failAllWrites || failWritesAt.contains(offset) || dropFirstWriteAt.remove(offset)) {
+                        return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+                    }
+                    if (writeErrorCode != 0) {
+                        return json("{\"result\": " + writeErrorCode + ", \"error\": \"Upload failed.\"}");
+                    }
+                    chunks.put(offset, request.getBody().readByteArray());
+                    return json("{\"result\": 0}");
+                case "checksumfile":
+                    checksumCount.incrementAndGet();
+                    ByteString content = ByteString.of(assembledContent());
+                    return json("{\"result\": 0, \"sha1\": \"" + content.sha1().hex() + "\", " +
+                            "\"metadata\": {\"isfolder\": false, \"id\": \"f1\", \"fileid\": 1, " +
+                            "\"parentfolderid\": 1, \"name\": \"file.bin\", \"size\": " + content.size() + ", " +
+                            "\"modified\": 0, \"created\": 0}}");
+                case "upload_save":
+                    saveCount.incrementAndGet();
+                    return json("{\"result\": 0, \"metadata\": {\"isfolder\": false, \"id\": \"f1\", \"fileid\": 1, " +
+                            "\"parentfolderid\": 1, \"name\": \"" + url.queryParameter("name") + "\", " +
+                            "\"size\": " + assembledContent().length + ", \"modified\": 0, \"created\": 0}}");
+                default:
+                    return new MockResponse().setResponseCode(404);
+            }
+        }
+
+        byte[] assembledContent() {
+            int size = chunks.values().stream().mapToInt(b -> b.length).sum();
+            byte[] content = new byte[size];
+            for (Map.Entry<Long, byte[]> chunk : chunks.entrySet()) {
+                System.arraycopy(chunk.getValue(), 0, content, chunk.getKey().intValue(), chunk.getValue().length);
+            }
+            return content;
+        }
+
+        private static MockResponse json(String body) {
+            return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+        }
+    }
+}
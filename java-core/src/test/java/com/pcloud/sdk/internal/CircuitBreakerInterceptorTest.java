@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.CircuitBreakerPolicy;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerInterceptorTest {
+
+    private static final CircuitBreakerPolicy POLICY = CircuitBreakerPolicy.create()
+            .failureRateThreshold(0.5)
+            .windowSize(4)
+            .minimumRequests(4)
+            .openDuration(10, TimeUnit.SECONDS)
+            .build();
+
+    private MockWebServer server;
+    private AtomicLong clock;
+    private CircuitBreakerInterceptor breaker;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        clock = new AtomicLong(1_000_000L);
+        breaker = new CircuitBreakerInterceptor(POLICY, clock::get);
+        client = new OkHttpClient.Builder()
+                .addInterceptor(breaker)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        server.shutdown();
+    }
+
+    @Test
+    public void circuit_StaysClosed_BelowTheFailureRate() throws Exception {
+        respond(200, 500, 200, 200);
+
+        assertEquals(CircuitBreakerInterceptor.State.CLOSED, breaker.state());
+        server.enqueue(new MockResponse().setResponseCode(200));
+        assertEquals(200, execute("stat"));
+    }
+
+    @Test
+    public void circuit_Opens_AtTheFailureRate_AndFailsFast() throws Exception {
+        respond(200, 500, 503, 200);
+
+        assertEquals(CircuitBreakerInterceptor.State.OPEN, breaker.state());
+        try {
+            execute("stat");
+            fail();
+        } catch (CircuitBreakerInterceptor.CircuitOpenException expected) {
+        }
+        assertEquals(4, server.getRequestCount());
+    }
+
+    @Test
+    public void circuit_DoesNotOpen_BeforeMinimumRequests() throws Exception {
+        respond(500, 500, 500);
+
+        assertEquals(CircuitBreakerInterceptor.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void halfOpenCircuit_Closes_AfterSuccessfulProbe() throws Exception {
+        respond(500, 500, 500, 500);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertEquals(CircuitBreakerInterceptor.State.HALF_OPEN, breaker.state());
+
+        respond(200);
+
+        assertEquals(CircuitBreakerInterceptor.State.CLOSED, breaker.state());
+        respond(500, 500, 500);
+        assertEquals(CircuitBreakerInterceptor.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void halfOpenCircuit_Reopens_AfterFailedProbe() throws Exception {
+        respond(500, 500, 500, 500);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        respond(502);
+
+        assertEquals(CircuitBreakerInterceptor.State.OPEN, breaker.state());
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertEquals(CircuitBreakerInterceptor.State.OPEN, breaker.state());
+    }
+
+    @Test
+    public void contentRequests_AreNotGuarded() throws Exception {
+        respond(500, 500, 500, 500);
+        server.enqueue(new MockResponse().setResponseCode(200));
+
+        Request request = new Request.Builder()
+                .url(server.url("/content"))
+                .tag(ContentHostSelector.Alternatives.class, new ContentHostSelector.Alternatives(Collections.emptyList()))
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            assertEquals(200, response.code());
+        }
+    }
+
+    private void respond(int... codes) throws IOException {
+        for (int code : codes) {
+            server.enqueue(new MockResponse().setResponseCode(code));
+            execute("stat");
+        }
+    }
+
+    private int execute(String method) throws IOException {
+        try (Response response = client.newCall(new Request.Builder().url(server.url("/" + method)).build()).execute()) {
+            return response.code();
+        }
+    }
+}
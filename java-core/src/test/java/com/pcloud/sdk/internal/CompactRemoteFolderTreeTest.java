@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ApiError;
+import com.pcloud.sdk.RemoteEntry;
+import com.pcloud.sdk.RemoteFolder;
+import com.pcloud.sdk.RemoteFolderTree;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class CompactRemoteFolderTreeTest {
+
+    private static final String LISTING = "{\"result\":0,\"metadata\":" +
+            folder(5, "Documents", 0, true,
+                    folder(6, "Photos", 5, false,
+                            file(10, "a.jpg", 6, "1234567890123"),
+                            folder(7, "Empty", 6, true)),
+                    file(11, "notes.txt", 5, "18446744073709551615"),
+                    file(12, "a.jpg", 5, "\"not-a-number\"")) +
+            "}";
+
+    private MockWebServer server;
+    private RealApiClient apiClient;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        apiClient = new RealApiClient(new RealApiServiceBuilder().apiHost(server.url("/")));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        apiClient.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    public void loadFolderTree_Matches_Recursive_Listing() throws Exception {
+        server.enqueue(new MockResponse().setBody(LISTING));
+        server.enqueue(new MockResponse().setBody(LISTING));
+
+        RemoteFolderTree tree = apiClient.loadFolderTree(5).execute();
+        RemoteFolder listed = apiClient.listFolder(5, true).execute();
+
+        assertEquals(6, tree.size());
+        assertEquals(listed, tree.root());
+        assertEquals("1", server.takeRequest().getRequestUrl().queryParameter("recursive"));
+    }
+
+    @Test
+    public void root_Exposes_Entry_Metadata() throws Exception {
+        server.enqueue(new MockResponse().setBody(LISTING));
+
+        RemoteFolder root = apiClient.loadFolderTree("/Documents").execute().root();
+
+        assertEquals("d5", root.id());
+        assertEquals(0, root.parentFolderId());
+        assertEquals(3, root.children().size());
+        RemoteFolder photos = root.children().get(0).asFolder();
+        assertEquals("Photos", photos.name());
+        assertEquals(6, photos.folderId());
+        assertEquals(5, photos.parentFolderId());
+        RemoteEntry image = photos.children().get(0);
+        assertEquals("f10", image.id());
+        assertEquals(6, image.parentFolderId());
+        assertEquals(10 * 1024, image.asFile().size());
+        assertEquals("1234567890123", image.asFile().hash());
+        assertTrue(image.asFile().hasThumbnail());
+        assertTrue(photos.children().get(1).asFolder().children().isEmpty());
+        assertEquals("18446744073709551615", root.children().get(1).asFile().hash());
+        assertEquals("not-a-number", root.children().get(2).asFile().hash());
+    }
+
+    @Test
+    public void loadFolderTree_Reports_Api_Errors() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"result\":2005,\"error\":\"Directory does not exist.\"}"));
+
+        try {
+            apiClient.loadFolderTree(5).execute();
+            fail();
+        } catch (ApiError e) {
+            assertEquals(2005, e.errorCode());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void loadFolderTree_Throws_When_Listed_Entry_Is_A_File() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"result\":0,\"metadata\":" + file(10, "a.jpg", 0, "1") + "}"));
+
+        apiClient.loadFolderTree(5).execute();
+    }
+
+    private static String folder(long folderId, String name, long parentId, boolean canCreate, String... children) {
+        return "{" + common("d" + folderId, name, parentId, true) + ",\"folderid\":" + folderId +
+                ",\"cancreate\":" + canCreate + ",\"contents\":[" + String.join(",", children) + "]}";
+    }
+
+    private static String file(long fileId, String name, long parentId, String hash) {
+        return "{" + common("f" + fileId, name, parentId, false) + ",\"fileid\":" + fileId +
+                ",\"size\":" + fileId * 1024 + ",\"hash\":" + hash + ",\"contenttype\":\"image/jpeg\",\"thumb\":true}";
+    }
+
+    private static String common(String id, String name, long parentId, boolean isFolder) {
+        return "\"id\":\"" + id + "\",\"name\":\"" + name + "\",\"parentfolderid\":" + parentId +
+                ",\"isfolder\":" + isFolder + ",\"ismine\":true,\"isshared\":false" +
+                ",\"created\":1500000000,\"modified\":1600000000";
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class ContentHostSelectorTest {
+
+    private AtomicLong clock;
+    private ContentHostSelector selector;
+    private URL first;
+    private URL second;
+    private URL third;
+
+    @Before
+    public void setUp() throws Exception {
+        clock = new AtomicLong();
+        selector = new ContentHostSelector(clock::get);
+        first = new URL("https://c1.pcloud.com/file");
+        second = new URL("https://c2.pcloud.com/file");
+        third = new URL("https://c3.pcloud.com/file");
+    }
+
+    @Test
+    public void rank_KeepsOrderOfUnmeasuredHosts() {
+        assertEquals(Arrays.asList(first, second, third), selector.rank(Arrays.asList(first, second, third)));
+    }
+
+    @Test
+    public void rank_PrefersHostWithShorterEstimatedTransfer() {
+        selector.recordTimeToFirstByte("c1.pcloud.com", 300);
+        selector.recordTimeToFirstByte("c2.pcloud.com", 20);
+        selector.recordTransfer("c1.pcloud.com", 10 * 1024 * 1024, TimeUnit.SECONDS.toNanos(10));
+        selector.recordTransfer("c2.pcloud.com", 10 * 1024 * 1024, TimeUnit.SECONDS.toNanos(1));
+
+        assertEquals(second, selector.best(Arrays.asList(first, second)));
+    }
+
+    @Test
+    public void rank_IgnoresTooSmallThroughputSamples() {
+        selector.recordTimeToFirstByte("c1.pcloud.com", 10);
+        selector.recordTimeToFirstByte("c2.pcloud.com", 10);
+        selector.recordTransfer("c1.pcloud.com", 1024, TimeUnit.SECONDS.toNanos(10));
+        selector.recordTransfer("c2.pcloud.com", 10 * 1024 * 1024, TimeUnit.SECONDS.toNanos(1));
+
+        assertEquals(first, selector.best(Arrays.asList(first, second)));
+    }
+
+    @Test
+    public void rank_MovesFailedHostsLastUntilCoolDownPasses() {
+        selector.recordFailure("c1.pcloud.com");
+
+        assertEquals(Arrays.asList(second, first), selector.rank(Arrays.asList(first, second)));
+
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        assertEquals(Arrays.asList(first, second), selector.rank(Arrays.asList(first, second)));
+    }
+
+    @Test
+    public void rank_ExtendsCoolDownOnConsecutiveFailures() {
+        selector.recordFailure("c1.pcloud.com");
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        selector.recordFailure("c1.pcloud.com");
+        selector.recordFailure("c1.pcloud.com");
+        selector.recordFailure("c1.pcloud.com");
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+        assertEquals(second, selector.best(Arrays.asList(first, second)));
+    }
+
+    @Test
+    public void interceptor_FailsOverToAlternativeUrl() throws Exception {
+        selector = new ContentHostSelector();
+        MockWebServer server = new MockWebServer();
+        server.enqueue(new MockResponse().setBody("content"));
+        server.start();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(selector.interceptor())
+                .build();
+        try {
+            // Nothing listens on the discard port.
+            URL unreachable = new URL("http://localhost:9/file");
+            URL reachable = server.url("/file").url();
+            List<URL> urls = Arrays.asList(unreachable, reachable);
+            Request request = new Request.Builder()
+                    .url(unreachable)
+                    .tag(ContentHostSelector.Alternatives.class, new ContentHostSelector.Alternatives(urls))
+                    .build();
+
+            try (Response response = client.newCall(request).execute()) {
+                assertEquals("content", response.body().string());
+                assertEquals(reachable, response.request().url().url());
+            }
+        } finally {
+            client.dispatcher().executorService().shutdown();
+            server.shutdown();
+        }
+    }
+}
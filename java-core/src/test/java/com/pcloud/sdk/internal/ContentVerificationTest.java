@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.DataSink;
+import com.pcloud.sdk.DataSource;
+import com.pcloud.sdk.RemoteFile;
+import com.pcloud.sdk.UploadOptions;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Random;
+
+import static com.pcloud.sdk.internal.IOUtils.closeQuietly;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+public class ContentVerificationTest {
+
+    private static final UploadOptions VERIFIED_UPLOAD = UploadOptions.create().verifyChecksum(true).build();
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    private MockWebServer server;
+    private RealApiClient apiClient;
+    private ChecksumDispatcher dispatcher;
+    private RemoteFile remoteFile;
+
+    @Before
+    public void setUp() throws Exception {
+        byte[] content = new byte[100 * 1024];
+        new Random(7).nextBytes(content);
+        dispatcher = new ChecksumDispatcher(ByteString.of(content));
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+
+        apiClient = spy(new RealApiClient(new RealApiServiceBuilder().apiHost(server.url("/"))));
+        // Content links are always https, point them to the test server instead.
+        doAnswer(invocation -> {
+            closeQuietly(invocation.<Response>getArgument(0));
+            return new RealFileLink(apiClient, new Date(), Collections.singletonList(server.url("/content").url()), "");
+        }).when(apiClient).getAsFileLink(any());
+
+        remoteFile = apiClient.createFile(1, "file.bin", DataSource.create(content)).execute();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        apiClient.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    public void createFile_AcceptsMatchingChecksum() throws Exception {
+        byte[] data = "verified".getBytes("UTF-8");
+        dispatcher.serverContent = ByteString.of(data);
+
+        RemoteFile file = apiClient.createFile(1, "file.txt", DataSource.create(data), null, null, VERIFIED_UPLOAD).execute();
+
+        assertNotNull(file);
+    }
+
+    @Test
+    public void createFile_FailsOnChecksumMismatch() throws Exception {
+        dispatcher.serverContent = ByteString.encodeUtf8("corrupted");
+
+        expectedException.expect(IOException.class);
+        expectedException.expectMessage("does not match");
+        apiClient.createFile(1, "file.txt", DataSource.create("verified".getBytes("UTF-8")), null, null, VERIFIED_UPLOAD)
+                .execute();
+    }
+
+    @Test
+    public void createFile_FailsWithoutChecksumToVerify() throws Exception {
+        dispatcher.returnChecksums = false;
+
+        expectedException.expect(IOException.class);
+        apiClient.createFile(1, "file.txt", DataSource.create(new byte[10]), null, null, VERIFIED_UPLOAD).execute();
+    }
+
+    @Test
+    public void download_AcceptsMatchingChecksum() throws Exception {
+        Buffer target = new Buffer();
+
+        apiClient.download(remoteFile, sinkOf(target), null, true).execute();
+
+        assertEquals(dispatcher.serverContent, target.readByteString());
+    }
+
+    @Test
+    public void download_FailsOnChecksumMismatch() throws Exception {
+        byte[] corrupted = dispatcher.serverContent.toByteArray();
+        corrupted[corrupted.length / 2] ^= 1;
+        dispatcher.servedContent = ByteString.of(corrupted);
+
+        expectedException.expect(IOException.class);
+        expectedException.expectMessage("SHA-256");
+        apiClient.download(remoteFile, sinkOf(new Buffer()), null, true).execute();
+    }
+
+    @Test
+    public void download_SkipsChecksumWhenNotRequested() throws Exception {
+        dispatcher.servedContent = ByteString.encodeUtf8("anything");
+        Buffer target = new Buffer();
+
+        apiClient.download(remoteFile, sinkOf(target), null, false).execute();
+
+        assertEquals("anything", target.readUtf8());
+        assertEquals(0, dispatcher.checksumRequests);
+    }
+
+    private static DataSink sinkOf(final Buffer target) {
+        return new DataSink() {
+            @Override
+            public void readAll(BufferedSource source) throws IOException {
+                source.readAll(target);
+            }
+        };
+    }
+
+    private static class ChecksumDispatcher extends Dispatcher {
+
+        // The content the server claims to have.
+        volatile ByteString serverContent;
+        // The content sent to downloads, if different.
+        volatile ByteString servedContent;
+        volatile boolean returnChecksums = true;
+        volatile int checksumRequests;
+
+        ChecksumDispatcher(ByteString content) {
+            this.serverContent = content;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            ByteString content = serverContent;
+            String metadata = "{\"isfolder\": false, \"id\": \"f1\", \"fileid\": 1, \"parentfolderid\": 1, " +
+                    "\"name\": \"file.bin\", \"size\": " + content.size() + ", \"modified\": 0, \"created\": 0}";
+            String checksums = "\"sha1\": \"" + content.sha1().hex() + "\", \"sha256\": \"" + content.sha256().hex() + "\"";
+            switch (request.getRequestUrl().pathSegments().get(0)) {
+                case "uploadfile":
+                    return json("{\"result\": 0, \"metadata\": [" + metadata + "]" +
+                            (returnChecksums ? ", \"checksums\": [{" + checksums + "}]" : "") + "}");
+                case "checksumfile":
+                    checksumRequests++;
+                    return json("{\"result\": 0, " + checksums + ", \"metadata\": " + metadata + "}");
+                case "getfilelink":
+                    return json("{\"result\": 0}");
+                case "content":
+                    return new MockResponse().setBody(new Buffer().write(servedContent != null ? servedContent : content));
+                default:
+                    return new MockResponse().setResponseCode(404);
+            }
+        }
+
+        private static MockResponse json(String body) {
+            return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+        }
+    }
+}
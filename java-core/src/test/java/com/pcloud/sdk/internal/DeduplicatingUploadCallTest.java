@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ContentIndex;
+import com.pcloud.sdk.DataSource;
+import com.pcloud.sdk.RemoteFile;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.BufferedSink;
+import okio.ByteString;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DeduplicatingUploadCallTest {
+
+    private static final byte[] CONTENT = "Some content, uploaded once.".getBytes();
+    private static final ByteString CONTENT_SHA256 = ByteString.of(CONTENT).sha256();
+
+    private MockWebServer server;
+    private UploadDispatcher dispatcher;
+    private ContentIndex index;
+    private RealApiClient apiClient;
+
+    @Before
+    public void setUp() throws Exception {
+        dispatcher = new UploadDispatcher();
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+        index = new RealContentIndex(16);
+        apiClient = (RealApiClient) new RealApiServiceBuilder()
+                .apiHost(server.url("/"))
+                .contentIndex(index)
+                .create();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        apiClient.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    public void createFile_Uploads_And_Indexes_New_Content() throws Exception {
+        RemoteFile file = apiClient.createFile(1, "file.bin", DataSource.create(CONTENT)).execute();
+
+        assertEquals(1, dispatcher.uploads);
+        assertEquals(file.fileId(), index.get(CONTENT_SHA256).fileId());
+    }
+
+    @Test
+    public void createFile_Copies_Indexed_Content() throws Exception {
+        RemoteFile original = apiClient.createFile(1, "file.bin", DataSource.create(CONTENT)).execute();
+
+        RemoteFile copy = apiClient.createFile(2, "copy.bin", DataSource.create(CONTENT)).execute();
+
+        assertEquals(1, dispatcher.uploads);
+        assertNotEquals(original.fileId(), copy.fileId());
+        assertEquals(original.hash(), copy.hash());
+        String copyRequest = dispatcher.lastCopyRequest;
+        assertTrue(copyRequest.contains("fileid=" + original.fileId()));
+        assertTrue(copyRequest.contains("tofolderid=2"));
+        assertTrue(copyRequest.contains("toname=copy.bin"));
+        assertTrue(copyRequest.contains("noover=1"));
+    }
+
+    @Test
+    public void createFile_Copies_Indexed_Content_To_Path() throws Exception {
+        RemoteFile original = apiClient.createFile("/", "file.bin", DataSource.create(CONTENT)).execute();
+
+        apiClient.createFile("/docs", "copy.bin", DataSource.create(CONTENT)).execute();
+
+        assertEquals(1, dispatcher.uploads);
+        assertTrue(dispatcher.lastCopyRequest.contains("fileid=" + original.fileId()));
+        assertTrue(dispatcher.lastCopyRequest.contains("topath=%2Fdocs%2Fcopy.bin"));
+    }
+
+    @Test
+    public void createFile_Uploads_Different_Content() throws Exception {
+        apiClient.createFile(1, "file.bin", DataSource.create(CONTENT)).execute();
+
+        apiClient.createFile(1, "other.bin", DataSource.create("Other content, same length.".getBytes())).execute();
+
+        assertEquals(2, dispatcher.uploads);
+        assertEquals(0, dispatcher.copies);
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void createFile_Uploads_When_Indexed_File_Is_Gone() throws Exception {
+        RemoteFile original = apiClient.createFile(1, "file.bin", DataSource.create(CONTENT)).execute();
+        dispatcher.hashes.remove(original.fileId());
+
+        RemoteFile file = apiClient.createFile(2, "file.bin", DataSource.create(CONTENT)).execute();
+
+        assertEquals(1, dispatcher.copies);
+        assertEquals(2, dispatcher.uploads);
+        assertEquals(file.fileId(), index.get(CONTENT_SHA256).fileId());
+    }
+
+    @Test
+    public void createFile_Replaces_Copy_Of_Changed_File() throws Exception {
+        RemoteFile original = apiClient.createFile(1, "file.bin", DataSource.create(CONTENT)).execute();
+        dispatcher.hashes.put(original.fileId(), "changed");
+
+        RemoteFile file = apiClient.createFile(2, "file.bin", DataSource.create(CONTENT)).execute();
+
+        assertEquals(1, dispatcher.copies);
+        assertEquals(1, dispatcher.deletes);
+        assertEquals(2, dispatcher.uploads);
+        assertEquals(file.fileId(), index.get(CONTENT_SHA256).fileId());
+    }
+
+    @Test
+    public void createFile_Reads_NonRepeatable_Data_Once() throws Exception {
+        AtomicInteger writes = new AtomicInteger();
+        DataSource data = new DataSource() {
+            @Override
+            public long contentLength() {
+                return CONTENT.length;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                writes.incrementAndGet();
+                sink.write(CONTENT);
+            }
+        };
+
+        apiClient.createFile(1, "file.bin", data).execute();
+
+        assertEquals(1, writes.get());
+        assertEquals(1, dispatcher.uploads);
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void deleteFile_Removes_File_From_Index() throws Exception {
+        RemoteFile file = apiClient.createFile(1, "file.bin", DataSource.create(CONTENT)).execute();
+
+        apiClient.deleteFile(file.fileId()).execute();
+
+        assertNull(index.get(CONTENT_SHA256));
+    }
+
+    private static class UploadDispatcher extends Dispatcher {
+
+        // The content hash of every file on the server, by file id.
+        final Map<Long, String> hashes = new ConcurrentHashMap<>();
+        volatile long nextFileId = 100;
+        volatile int uploads;
+        volatile int copies;
+        volatile int deletes;
+        volatile String lastCopyRequest;
+
+        @Override
+        public synchronized MockResponse dispatch(RecordedRequest request) {
+            switch (request.getRequestUrl().pathSegments().get(0)) {
+                case "uploadfile": {
+                    uploads++;
+                    long fileId = nextFileId++;
+                    hashes.put(fileId, "hash" + fileId);
+                    return json("{\"result\": 0, \"metadata\": [" + metadata(fileId) + "]}");
+                }
+                case "copyfile": {
+                    copies++;
+                    lastCopyRequest = request.getBody().readUtf8();
+                    long sourceId = Long.parseLong(lastCopyRequest.replaceAll("^fileid=(\\d+).*", "$1"));
+                    String hash = hashes.get(sourceId);
+                    if (hash == null) {
+                        return json("{\"result\": 2009, \"error\": \"File not found.\"}");
+                    }
+                    long fileId = nextFileId++;
+                    hashes.put(fileId, hash);
+                    return json("{\"result\": 0, \"metadata\": " + metadata(fileId) + "}");
+                }
+                case "deletefile": {
+                    deletes++;
+                    long fileId = Long.parseLong(request.getBody().readUtf8().replaceAll("^fileid=(\\d+).*", "$1"));
+                    String body = "{\"result\": 0, \"metadata\": " + metadata(fileId) + "}";
+                    hashes.remove(fileId);
+                    return json(body);
+                }
+                default:
+                    return new MockResponse().setResponseCode(404);
+            }
+        }
+
+        private String metadata(long fileId) {
+            return "{\"isfolder\": false, \"id\": \"f" + fileId + "\", \"fileid\": " + fileId + ", " +
+                    "\"parentfolderid\": 1, \"name\": \"file.bin\", \"size\": " + CONTENT.length + ", " +
+                    "\"hash\": \"" + hashes.get(fileId) + "\", \"modified\": 0, \"created\": 0}";
+        }
+
+        private static MockResponse json(String body) {
+            return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+        }
+    }
+}
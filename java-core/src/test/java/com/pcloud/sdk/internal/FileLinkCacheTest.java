@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.DownloadOptions;
+import com.pcloud.sdk.FileLink;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class FileLinkCacheTest {
+
+    private AtomicLong clock;
+    private FileLinkCache cache;
+
+    @Before
+    public void setUp() {
+        clock = new AtomicLong(1_000_000L);
+        cache = new FileLinkCache(2, clock::get);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_Throws_On_Non_Positive_Size() {
+        new FileLinkCache(0, clock::get);
+    }
+
+    @Test
+    public void get_Returns_Link_Until_Expiration_Margin() throws Exception {
+        FileLink link = newLink(TimeUnit.MINUTES.toMillis(5));
+        cache.put(1, DownloadOptions.DEFAULT, link);
+
+        assertSame(link, cache.get(1, DownloadOptions.DEFAULT));
+
+        clock.addAndGet(TimeUnit.MINUTES.toMillis(4));
+        assertNull(cache.get(1, DownloadOptions.DEFAULT));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void put_Ignores_Links_About_To_Expire() throws Exception {
+        cache.put(1, DownloadOptions.DEFAULT, newLink(FileLinkCache.EXPIRATION_MARGIN_MS / 2));
+
+        assertNull(cache.get(1, DownloadOptions.DEFAULT));
+    }
+
+    @Test
+    public void get_Distinguishes_Download_Options() throws Exception {
+        FileLink link = newLink(TimeUnit.HOURS.toMillis(1));
+        cache.put(1, DownloadOptions.DEFAULT, link);
+
+        DownloadOptions other = DownloadOptions.create().forceDownload(true).build();
+        assertNull(cache.get(1, other));
+    }
+
+    @Test
+    public void put_Evicts_Least_Recently_Used_Link() throws Exception {
+        FileLink first = newLink(TimeUnit.HOURS.toMillis(1));
+        FileLink second = newLink(TimeUnit.HOURS.toMillis(1));
+        FileLink third = newLink(TimeUnit.HOURS.toMillis(1));
+        cache.put(1, DownloadOptions.DEFAULT, first);
+        cache.put(2, DownloadOptions.DEFAULT, second);
+        cache.get(1, DownloadOptions.DEFAULT);
+        cache.put(3, DownloadOptions.DEFAULT, third);
+
+        assertSame(first, cache.get(1, DownloadOptions.DEFAULT));
+        assertNull(cache.get(2, DownloadOptions.DEFAULT));
+        assertSame(third, cache.get(3, DownloadOptions.DEFAULT));
+    }
+
+    @Test
+    public void evict_Removes_All_Links_Of_File() throws Exception {
+        DownloadOptions other = DownloadOptions.create().forceDownload(true).build();
+        cache.put(1, DownloadOptions.DEFAULT, newLink(TimeUnit.HOURS.toMillis(1)));
+        cache.put(1, other, newLink(TimeUnit.HOURS.toMillis(1)));
+
+        cache.evict(1);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void evict_Keeps_Replaced_Link() throws Exception {
+        FileLink stale = newLink(TimeUnit.HOURS.toMillis(1));
+        FileLink fresh = newLink(TimeUnit.HOURS.toMillis(2));
+        cache.put(1, DownloadOptions.DEFAULT, stale);
+        cache.put(1, DownloadOptions.DEFAULT, fresh);
+
+        cache.evict(1, DownloadOptions.DEFAULT, stale);
+
+        assertSame(fresh, cache.get(1, DownloadOptions.DEFAULT));
+    }
+
+    private FileLink newLink(long validForMillis) throws Exception {
+        return new RealFileLink(null, new Date(clock.get() + validForMillis),
+                Collections.singletonList(new URL("https://c1.pcloud.com/file")), "hash");
+    }
+}
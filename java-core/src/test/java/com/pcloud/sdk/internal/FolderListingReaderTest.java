@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ApiError;
+import com.pcloud.sdk.RemoteEntry;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FolderListingReaderTest {
+
+    private MockWebServer server;
+    private RealApiClient apiClient;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        apiClient = new RealApiClient(new RealApiServiceBuilder().apiHost(server.url("/")));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        apiClient.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    public void listFolder_VisitsEntriesDepthFirstWithTheirPaths() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"result\":0,\"metadata\":" +
+                folder(0, "/", 0,
+                        folder(1, "Photos", 0,
+                                file(10, "a.jpg", 1),
+                                folder(2, "2020", 1, file(11, "b.jpg", 2))),
+                        file(12, "notes.txt", 0)) +
+                "}"));
+        List<String> paths = new ArrayList<>();
+        List<RemoteEntry> entries = new ArrayList<>();
+
+        apiClient.listFolder(0, true, (entry, path) -> {
+            paths.add(path);
+            entries.add(entry);
+        }).execute();
+
+        assertEquals(Arrays.asList("/", "/Photos", "/Photos/a.jpg", "/Photos/2020", "/Photos/2020/b.jpg", "/notes.txt"), paths);
+        assertTrue(entries.get(1).isFolder());
+        assertEquals(1, entries.get(1).asFolder().folderId());
+        assertTrue(entries.get(1).asFolder().children().isEmpty());
+        assertEquals(11, entries.get(4).asFile().fileId());
+        assertEquals(2, entries.get(4).parentFolderId());
+        assertEquals("1", server.takeRequest().getRequestUrl().queryParameter("recursive"));
+    }
+
+    @Test
+    public void listFolder_VisitsFoldersWithoutContentsOnce() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"result\":0,\"metadata\":" +
+                folder(0, "/", 0, "{" + common("d1", "Photos", 0, true) + ",\"folderid\":1}") + "}"));
+        List<String> paths = new ArrayList<>();
+
+        apiClient.listFolder(0, false, (entry, path) -> paths.add(path)).execute();
+
+        assertEquals(Arrays.asList("/", "/Photos"), paths);
+    }
+
+    @Test
+    public void listFolder_ReportsApiErrors() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"result\":2005,\"error\":\"Directory does not exist.\"}"));
+
+        try {
+            apiClient.listFolder("/missing", true, (entry, path) -> fail()).execute();
+            fail();
+        } catch (ApiError e) {
+            assertEquals(2005, e.errorCode());
+        }
+    }
+
+    @Test
+    public void listFolder_StopsOnVisitorFailure() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"result\":0,\"metadata\":" +
+                folder(0, "/", 0, file(10, "a.jpg", 0), file(11, "b.jpg", 0)) + "}"));
+        List<String> paths = new ArrayList<>();
+
+        try {
+            apiClient.listFolder(0, false, (entry, path) -> {
+                paths.add(path);
+                if (entry.isFile()) {
+                    throw new IOException("Stop");
+                }
+            }).execute();
+            fail();
+        } catch (IOException e) {
+            assertEquals("Stop", e.getMessage());
+        }
+        assertEquals(Arrays.asList("/", "/a.jpg"), paths);
+    }
+
+    @Test(expected = IOException.class)
+    public void listFolder_ThrowsOnMalformedResponse() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"result\":0,\"metadata\":{\"isfolder\":true,\"contents\":[{]}}"));
+
+        apiClient.listFolder(0, true, (entry, path) -> { }).execute();
+    }
+
+    private static String folder(long folderId, String name, long parentId, String... children) {
+        return "{" + common("d" + folderId, name, parentId, true) + ",\"folderid\":" + folderId +
+                ",\"contents\":[" + String.join(",", children) + "]}";
+    }
+
+    private static String file(long fileId, String name, long parentId) {
+        return "{" + common("f" + fileId, name, parentId, false) + ",\"fileid\":" + fileId +
+                ",\"size\":100,\"hash\":1,\"contenttype\":\"image/jpeg\",\"category\":1}";
+    }
+
+    private static String common(String id, String name, long parentId, boolean isFolder) {
+        return "\"id\":\"" + id + "\",\"name\":\"" + name + "\",\"parentfolderid\":" + parentId +
+                ",\"isfolder\":" + isFolder + ",\"created\":1500000000,\"modified\":1500000000";
+    }
+}
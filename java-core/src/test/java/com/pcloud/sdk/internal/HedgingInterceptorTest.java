@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.HedgingPolicy;
+import com.pcloud.sdk.RemoteFolder;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HedgingInterceptorTest {
+
+    private static final HedgingPolicy EAGER_HEDGING = HedgingPolicy.create()
+            .minDelay(50, TimeUnit.MILLISECONDS)
+            .maxDelay(50, TimeUnit.MILLISECONDS)
+            .budget(1)
+            .build();
+
+    private MockWebServer server;
+    private RealApiClient apiClient;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (apiClient != null) {
+            apiClient.shutdown();
+        }
+        server.shutdown();
+    }
+
+    @Test
+    public void slowRequests_AreHedged_AndTheFirstResponseWins() throws Exception {
+        apiClient = newClient(EAGER_HEDGING);
+        server.enqueue(folderResponse().setHeadersDelay(1500, TimeUnit.MILLISECONDS));
+        server.enqueue(folderResponse());
+
+        long start = System.nanoTime();
+        RemoteFolder folder = apiClient.listFolder(1).execute();
+
+        assertEquals(1, folder.folderId());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void fastRequests_AreNotHedged() throws Exception {
+        apiClient = newClient(EAGER_HEDGING.newBuilder().maxDelay(2, TimeUnit.SECONDS).build());
+        server.enqueue(folderResponse());
+
+        apiClient.listFolder(1).execute();
+
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void hedging_IsCappedByTheBudget() throws Exception {
+        apiClient = newClient(EAGER_HEDGING.newBuilder().budget(0).build());
+        server.enqueue(folderResponse().setHeadersDelay(300, TimeUnit.MILLISECONDS));
+
+        apiClient.listFolder(1).execute();
+
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void hedgedRequests_GoToTheAlternateHost() throws Exception {
+        MockWebServer alternateServer = new MockWebServer();
+        alternateServer.start();
+        try {
+            apiClient = newClient(EAGER_HEDGING.newBuilder()
+                    .alternateApiHost(alternateServer.url("/").toString())
+                    .build());
+            server.enqueue(folderResponse().setHeadersDelay(1500, TimeUnit.MILLISECONDS));
+            alternateServer.enqueue(folderResponse());
+
+            apiClient.listFolder(1).execute();
+
+            assertEquals(1, alternateServer.getRequestCount());
+            assertEquals("/listfolder", alternateServer.takeRequest().getRequestUrl().encodedPath());
+        } finally {
+            alternateServer.shutdown();
+        }
+    }
+
+    @Test
+    public void hedgeDelay_FollowsTheObservedLatencies() throws Exception {
+        HedgingPolicy policy = HedgingPolicy.create()
+                .minDelay(1, TimeUnit.MILLISECONDS)
+                .maxDelay(10, TimeUnit.SECONDS)
+                .budget(0)
+                .build();
+        OkHttpClient baseClient = new OkHttpClient();
+        HedgingInterceptor interceptor = new HedgingInterceptor(policy, baseClient);
+        OkHttpClient client = baseClient.newBuilder().addInterceptor(interceptor).build();
+        try {
+            assertEquals(TimeUnit.SECONDS.toMillis(10), interceptor.hedgeDelayMs("listfolder"));
+
+            for (int i = 0; i < HedgingInterceptor.MIN_SAMPLES; i++) {
+                server.enqueue(folderResponse());
+                client.newCall(new Request.Builder().url(server.url("/listfolder")).build()).execute().close();
+            }
+
+            assertTrue(interceptor.hedgeDelayMs("listfolder") < TimeUnit.SECONDS.toMillis(10));
+        } finally {
+            interceptor.shutdown();
+            client.dispatcher().executorService().shutdown();
+        }
+    }
+
+    @Test
+    public void hedgedWins_AreRecordedFromTheStartOfTheRequest() throws Exception {
+        HedgingPolicy policy = HedgingPolicy.create()
+                .minDelay(1, TimeUnit.MILLISECONDS)
+                .maxDelay(100, TimeUnit.MILLISECONDS)
+                .budget(1)
+                .build();
+        OkHttpClient baseClient = new OkHttpClient();
+        HedgingInterceptor interceptor = new HedgingInterceptor(policy, baseClient);
+        OkHttpClient client = baseClient.newBuilder().addInterceptor(interceptor).build();
+        try {
+            for (int i = 0; i < HedgingInterceptor.MIN_SAMPLES; i++) {
+                server.enqueue(folderResponse().setHeadersDelay(1, TimeUnit.SECONDS));
+                server.enqueue(folderResponse());
+                client.newCall(new Request.Builder().url(server.url("/listfolder")).build()).execute().close();
+            }
+
+            // Each hedge won right after the delay, recording only its own latency would shrink the delay.
+            assertTrue(interceptor.hedgeDelayMs("listfolder") >= 90);
+        } finally {
+            interceptor.shutdown();
+            client.dispatcher().executorService().shutdown();
+        }
+    }
+
+    @Test
+    public void requestsThatAreNotHedged_RunOnTheCallingThread() throws Exception {
+        AtomicInteger forked = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        OkHttpClient baseClient = new OkHttpClient.Builder()
+                .dispatcher(new Dispatcher(new AbstractExecutorService() {
+                    @Override
+                    public void execute(Runnable command) {
+                        forked.incrementAndGet();
+                        executor.execute(command);
+                    }
+
+                    @Override
+                    public void shutdown() {
+                        executor.shutdown();
+                    }
+
+                    @Override
+                    public List<Runnable> shutdownNow() {
+                        return executor.shutdownNow();
+                    }
+
+                    @Override
+                    public boolean isShutdown() {
+                        return executor.isShutdown();
+                    }
+
+                    @Override
+                    public boolean isTerminated() {
+                        return executor.isTerminated();
+                    }
+
+                    @Override
+                    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+                        return executor.awaitTermination(timeout, unit);
+                    }
+                }))
+                .build();
+        HedgingInterceptor interceptor = new HedgingInterceptor(EAGER_HEDGING.newBuilder().maxDelay(2, TimeUnit.SECONDS).build(), baseClient);
+        OkHttpClient client = baseClient.newBuilder().addInterceptor(interceptor).build();
+        try {
+            server.enqueue(folderResponse());
+
+            client.newCall(new Request.Builder().url(server.url("/listfolder")).build()).execute().close();
+
+            assertEquals(0, forked.get());
+        } finally {
+            interceptor.shutdown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void cancelling_TheCall_CancelsTheReadOfTheWinningResponse() throws Exception {
+        OkHttpClient baseClient = new OkHttpClient();
+        HedgingInterceptor interceptor = new HedgingInterceptor(EAGER_HEDGING, baseClient);
+        OkHttpClient client = baseClient.newBuilder().addInterceptor(interceptor).build();
+        try {
+            server.enqueue(folderResponse().throttleBody(1, 1, TimeUnit.SECONDS));
+            okhttp3.Call call = client.newCall(new Request.Builder().url(server.url("/listfolder")).build());
+
+            try (Response response = call.execute()) {
+                call.cancel();
+                long start = System.nanoTime();
+                try {
+                    response.body().string();
+                    fail();
+                } catch (IOException expected) {
+                    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+                }
+            }
+        } finally {
+            interceptor.shutdown();
+            client.dispatcher().executorService().shutdown();
+        }
+    }
+
+    @Test
+    public void onlyMetadataReads_AreHedged() {
+        assertTrue(HedgingInterceptor.isHedgeable(new Request.Builder().url("https://api.pcloud.com/stat").build()));
+        assertTrue(HedgingInterceptor.isHedgeable(new Request.Builder().url("https://api.pcloud.com/listfolder").build()));
+        assertFalse(HedgingInterceptor.isHedgeable(new Request.Builder().url("https://api.pcloud.com/deletefile").build()));
+        assertFalse(HedgingInterceptor.isHedgeable(new Request.Builder().url("https://api.pcloud.com/getthumb").build()));
+        assertFalse(HedgingInterceptor.isHedgeable(new Request.Builder().url("https://c1.pcloud.com/file")
+                .tag(ContentHostSelector.Alternatives.class, ContentHostSelector.Alternatives.NONE)
+                .build()));
+    }
+
+    private RealApiClient newClient(HedgingPolicy policy) {
+        return (RealApiClient) new RealApiServiceBuilder()
+                .apiHost(server.url("/"))
+                .hedgingPolicy(policy)
+                .create();
+    }
+
+    private static MockResponse folderResponse() {
+        return new MockResponse().setBody("{\"result\": 0, \"metadata\": {\"isfolder\": true, \"id\": \"d1\", " +
+                "\"folderid\": 1, \"name\": \"folder\", \"modified\": 0, \"created\": 0, \"contents\": []}}");
+    }
+}
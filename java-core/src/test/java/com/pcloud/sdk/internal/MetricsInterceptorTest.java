@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ApiError;
+import com.pcloud.sdk.DataSource;
+import com.pcloud.sdk.EndpointMetrics;
+import com.pcloud.sdk.InMemoryMetrics;
+import com.pcloud.sdk.RetryPolicy;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MetricsInterceptorTest {
+
+    private MockWebServer server;
+    private InMemoryMetrics metrics;
+    private RealApiClient apiClient;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        metrics = new RealInMemoryMetrics();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (apiClient != null) {
+            apiClient.shutdown();
+        }
+        server.shutdown();
+    }
+
+    @Test
+    public void responses_AreRecordedByMethod() throws Exception {
+        apiClient = newClient(RetryPolicy.NONE);
+        String body = folderBody();
+        server.enqueue(new MockResponse().setBody(body));
+
+        apiClient.listFolder(1).execute();
+
+        EndpointMetrics listFolder = metrics.snapshot().get("listfolder");
+        assertNotNull(listFolder);
+        assertEquals(1, listFolder.requestCount());
+        assertEquals(0, listFolder.failureCount());
+        assertEquals(body.length(), listFolder.responseBytes());
+        assertEquals(Long.valueOf(1), listFolder.statusCodes().get(200));
+        assertTrue(listFolder.latencyMs(50) >= 0);
+    }
+
+    @Test
+    public void requestBodies_AreCounted() throws Exception {
+        apiClient = newClient(RetryPolicy.NONE);
+        server.enqueue(new MockResponse().setBody("{\"result\": 2009, \"error\": \"File not found.\"}"));
+
+        try {
+            apiClient.moveFile(1, 2).execute();
+            fail();
+        } catch (ApiError expected) {
+        }
+        long sent = server.takeRequest().getBodySize();
+
+        assertTrue(sent > 0);
+        assertEquals(sent, metrics.snapshot().get("renamefile").requestBytes());
+    }
+
+    @Test
+    public void apiErrors_AreRecordedByCode() throws Exception {
+        apiClient = newClient(RetryPolicy.NONE);
+        server.enqueue(new MockResponse().setBody("{\"result\": 2005, \"error\": \"Directory does not exist.\"}"));
+
+        try {
+            apiClient.listFolder(1).execute();
+            fail();
+        } catch (ApiError expected) {
+        }
+
+        assertEquals(Long.valueOf(1), metrics.snapshot().get("listfolder").apiErrors().get(2005));
+    }
+
+    @Test
+    public void expectedLookupErrors_OfReconciliations_AreNotRecorded() throws Exception {
+        apiClient = newClient(RetryPolicy.create()
+                .maxRetries(1)
+                .initialBackoff(1, TimeUnit.MILLISECONDS)
+                .reconcile(true)
+                .build());
+        server.enqueue(new MockResponse().setResponseCode(504));
+        server.enqueue(new MockResponse().setBody("{\"result\": 2009, \"error\": \"File not found.\"}"));
+        server.enqueue(new MockResponse().setBody(uploadBody()));
+
+        apiClient.createFile("/folder", "file.txt", DataSource.create(new byte[]{1})).execute();
+
+        Map<String, EndpointMetrics> snapshot = metrics.snapshot();
+        assertTrue(snapshot.get("uploadfile").apiErrors().isEmpty());
+        assertTrue(snapshot.get("checksumfile").apiErrors().isEmpty());
+    }
+
+    @Test
+    public void unexpectedLookupErrors_OfReconciliations_AreRecordedUnderTheLookup() throws Exception {
+        apiClient = newClient(RetryPolicy.create()
+                .maxRetries(1)
+                .initialBackoff(1, TimeUnit.MILLISECONDS)
+                .reconcile(true)
+                .build());
+        server.enqueue(new MockResponse().setResponseCode(504));
+        server.enqueue(new MockResponse().setBody("{\"result\": 2003, \"error\": \"Access denied.\"}"));
+
+        try {
+            apiClient.createFile("/folder", "file.txt", DataSource.create(new byte[]{1})).execute();
+            fail();
+        } catch (IOException expected) {
+        }
+
+        Map<String, EndpointMetrics> snapshot = metrics.snapshot();
+        assertTrue(snapshot.get("uploadfile").apiErrors().isEmpty());
+        assertEquals(Long.valueOf(1), snapshot.get("checksumfile").apiErrors().get(2003));
+    }
+
+    @Test
+    public void retries_AndFailedAttempts_AreRecorded() throws Exception {
+        apiClient = newClient(RetryPolicy.create()
+                .maxRetries(2)
+                .initialBackoff(1, TimeUnit.MILLISECONDS)
+                .build());
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setBody(folderBody()));
+
+        apiClient.listFolder(1).execute();
+
+        EndpointMetrics listFolder = metrics.snapshot().get("listfolder");
+        assertEquals(2, listFolder.retryCount());
+        assertEquals(3, listFolder.requestCount());
+        assertEquals(1, listFolder.failureCount());
+        assertEquals(Long.valueOf(1), listFolder.statusCodes().get(503));
+        assertEquals(Long.valueOf(1), listFolder.statusCodes().get(200));
+    }
+
+    @Test
+    public void failures_AreRecorded() throws Exception {
+        apiClient = newClient(RetryPolicy.NONE);
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+
+        try {
+            apiClient.listFolder(1).execute();
+            fail();
+        } catch (IOException expected) {
+        }
+
+        Map<String, EndpointMetrics> snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.get("listfolder").failureCount());
+        assertTrue(snapshot.get("listfolder").statusCodes().isEmpty());
+    }
+
+    private RealApiClient newClient(RetryPolicy retryPolicy) {
+        return (RealApiClient) new RealApiServiceBuilder()
+                .apiHost(server.url("/"))
+                .retryPolicy(retryPolicy)
+                .metricsRecorder(metrics)
+                .create();
+    }
+
+    private static String uploadBody() {
+        return "{\"result\": 0, \"metadata\": [{\"isfolder\": false, \"id\": \"f1\", \"fileid\": 1, " +
+                "\"parentfolderid\": 1, \"name\": \"file.txt\", \"size\": 1, \"hash\": 42, \"modified\": 0, \"created\": 0}]}";
+    }
+
+    private static String folderBody() {
+        return "{\"result\": 0, \"metadata\": {\"isfolder\": true, \"id\": \"d1\", " +
+                "\"folderid\": 1, \"name\": \"folder\", \"modified\": 0, \"created\": 0, \"contents\": []}}";
+    }
+}
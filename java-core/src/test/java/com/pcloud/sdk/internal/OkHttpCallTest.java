@@ -20,6 +20,7 @@ package com.pcloud.sdk.internal;
 import com.pcloud.sdk.ApiError;
 import com.pcloud.sdk.Call;
 import com.pcloud.sdk.Callback;
+import com.pcloud.sdk.Priority;
 import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -34,6 +35,7 @@ import java.io.IOException;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -209,4 +211,31 @@ public class OkHttpCallTest {
         verify(mockOkHttpCall).clone();
         assertNotEquals(testCall.rawCall(), clonedObject.rawCall());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void enqueue_WithScheduler_PassesCallToScheduler() throws Exception {
+        RequestScheduler scheduler = mock(RequestScheduler.class);
+        OkHttpCall<Object> scheduledCall = new OkHttpCall<>(mockOkHttpCall, responseAdapter, scheduler, Priority.HIGH);
+
+        scheduledCall.enqueue(testCallback);
+
+        verify(scheduler).enqueue(eq(mockOkHttpCall), eq(Priority.HIGH), any(okhttp3.Callback.class));
+        verify(mockOkHttpCall, never()).enqueue(any(okhttp3.Callback.class));
+        assertTrue(scheduledCall.isExecuted());
+    }
+
+    @Test
+    public void enqueue_WithScheduler_ThrowsWhenAlreadyExecuted() throws Exception {
+        OkHttpCall<Object> scheduledCall = new OkHttpCall<>(mockOkHttpCall, responseAdapter, mock(RequestScheduler.class), Priority.LOW);
+        scheduledCall.enqueue(testCallback);
+
+        expectedException.expect(IllegalStateException.class);
+        scheduledCall.enqueue(testCallback);
+    }
+
+    @Test
+    public void clone_ReturnsObjectWithSamePriority() throws Exception {
+        OkHttpCall<Object> scheduledCall = new OkHttpCall<>(mockOkHttpCall, responseAdapter, mock(RequestScheduler.class), Priority.LOW);
+        assertEquals(Priority.LOW, scheduledCall.clone().priority());
+    }
+}
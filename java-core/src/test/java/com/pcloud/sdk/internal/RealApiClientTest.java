@@ -2,11 +2,29 @@ package com.pcloud.sdk.internal;
 
 import com.pcloud.sdk.ApiClient;
 import com.pcloud.sdk.ApiServiceTest;
+import com.pcloud.sdk.Call;
+import com.pcloud.sdk.Callback;
+import com.pcloud.sdk.Priority;
+import com.pcloud.sdk.RemoteFolder;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.BufferedSource;
+import org.jetbrains.annotations.NotNull;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class RealApiClientTest extends ApiServiceTest<RealApiClient> {
 
@@ -36,5 +54,124 @@ public class RealApiClientTest extends ApiServiceTest<RealApiClient> {
         assertEquals(testInstance().writeTimeoutMs(), newService.writeTimeoutMs());
         assertEquals(testInstance().connectTimeoutMs(), newService.connectTimeoutMs());
         assertEquals(testInstance().cache(), newService.cache());
+        assertEquals(testInstance().transferConnectionPool(), newService.transferConnectionPool());
+        assertEquals(testInstance().transferDispatcher(), newService.transferDispatcher());
+        assertEquals(testInstance().transferReadTimeoutMs(), newService.transferReadTimeoutMs());
+        assertEquals(testInstance().transferWriteTimeoutMs(), newService.transferWriteTimeoutMs());
+    }
+
+    @Test
+    public void transfers_UseSeparateDispatcherAndConnectionPool() throws Exception {
+        assertNotSame(testInstance().dispatcher(), testInstance().transferDispatcher());
+        assertNotSame(testInstance().connectionPool(), testInstance().transferConnectionPool());
+    }
+
+    @Test
+    public void fileLinkCache_IsDisabledByDefault() throws Exception {
+        assertEquals(0, testInstance().fileLinkCacheSize());
+    }
+
+    @Test
+    public void transferTimeouts_DefaultToApiTimeouts() throws Exception {
+        ApiClient client = new RealApiServiceBuilder()
+                .readTimeout(10, TimeUnit.SECONDS)
+                .writeTimeout(20, TimeUnit.SECONDS)
+                .transferWriteTimeout(1, TimeUnit.MINUTES)
+                .create();
+        try {
+            assertEquals(10_000, client.transferReadTimeoutMs());
+            assertEquals(60_000, client.transferWriteTimeoutMs());
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    public void apiCalls_AreNotQueuedBehindTransfers() throws Exception {
+        MockWebServer server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @NotNull
+            @Override
+            public MockResponse dispatch(@NotNull RecordedRequest request) {
+                if (request.getRequestUrl().pathSegments().get(0).equals("content")) {
+                    return new MockResponse().setBody("content").setHeadersDelay(2, TimeUnit.SECONDS);
+                }
+                return new MockResponse().setBody("{\"result\": 0, \"metadata\": {\"isfolder\": true, \"id\": \"d1\", " +
+                        "\"folderid\": 1, \"name\": \"folder\", \"modified\": 0, \"created\": 0, \"contents\": []}}");
+            }
+        });
+        server.start();
+        RealApiClient client = (RealApiClient) new RealApiServiceBuilder().apiHost(server.url("/")).create();
+        try {
+            RealFileLink link = new RealFileLink(client, new Date(), Collections.singletonList(server.url("/content").url()), "");
+            // Take all request slots the dispatcher allows for a single host.
+            for (int i = 0; i < client.transferDispatcher().getMaxRequestsPerHost(); i++) {
+                client.download(link).enqueue(new Callback<BufferedSource>() {
+                    @Override
+                    public void onResponse(Call<BufferedSource> call, BufferedSource response) {
+                    }
+
+                    @Override
+                    public void onFailure(Call<BufferedSource> call, Throwable t) {
+                    }
+                });
+            }
+
+            final CountDownLatch listed = new CountDownLatch(1);
+            client.listFolder(1).enqueue(new Callback<RemoteFolder>() {
+                @Override
+                public void onResponse(Call<RemoteFolder> call, RemoteFolder response) {
+                    listed.countDown();
+                }
+
+                @Override
+                public void onFailure(Call<RemoteFolder> call, Throwable t) {
+                }
+            });
+
+            assertTrue(listed.await(1, TimeUnit.SECONDS));
+        } finally {
+            client.shutdown();
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void withPriority_ReturnsClientSharingResources() throws Exception {
+        ApiClient lowPriorityClient = testInstance().withPriority(Priority.LOW);
+
+        assertEquals(Priority.NORMAL, testInstance().priority());
+        assertEquals(Priority.LOW, lowPriorityClient.priority());
+        assertSame(testInstance().dispatcher(), lowPriorityClient.dispatcher());
+        assertSame(testInstance().transferDispatcher(), lowPriorityClient.transferDispatcher());
+        assertSame(testInstance().connectionPool(), lowPriorityClient.connectionPool());
+        assertSame(lowPriorityClient, lowPriorityClient.withPriority(Priority.LOW));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withPriority_ThrowsOnNullArgument() throws Exception {
+        testInstance().withPriority(null);
+    }
+
+    @Test
+    public void apiHost_AcceptsHostWithoutScheme() throws Exception {
+        RealApiServiceBuilder builder = (RealApiServiceBuilder) new RealApiServiceBuilder().apiHost("eapi.pcloud.com");
+
+        assertEquals("https", builder.apiHost().scheme());
+        assertEquals("eapi.pcloud.com", builder.apiHost().host());
+    }
+
+    @Test
+    public void apiHost_AcceptsBaseUrl() throws Exception {
+        RealApiServiceBuilder builder = (RealApiServiceBuilder) new RealApiServiceBuilder().apiHost("http://127.0.0.1:8080");
+
+        assertEquals("http", builder.apiHost().scheme());
+        assertEquals("127.0.0.1", builder.apiHost().host());
+        assertEquals(8080, builder.apiHost().port());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void apiHost_ThrowsOnNullArgument() throws Exception {
+        new RealApiServiceBuilder().apiHost((String) null);
     }
-}
\ No newline at end of file
+}
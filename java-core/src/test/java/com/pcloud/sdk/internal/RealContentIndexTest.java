@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.Checksums;
+import com.pcloud.sdk.RemoteFile;
+import okio.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RealContentIndexTest {
+
+    private RealContentIndex index;
+
+    @Before
+    public void setUp() {
+        index = new RealContentIndex(2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_Throws_On_Non_Positive_Size() {
+        new RealContentIndex(0);
+    }
+
+    @Test
+    public void get_Returns_Last_File_Put_For_Digest() {
+        RemoteFile first = newFile(1);
+        RemoteFile second = newFile(2);
+        index.put(digest("a"), first);
+        index.put(digest("a"), second);
+
+        assertSame(second, index.get(digest("a")));
+        assertNull(index.get(digest("b")));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void put_Evicts_Least_Recently_Used_Digest() {
+        index.put(digest("a"), newFile(1));
+        index.put(digest("b"), newFile(2));
+        index.get(digest("a"));
+        index.put(digest("c"), newFile(3));
+
+        assertNotNull(index.get(digest("a")));
+        assertNull(index.get(digest("b")));
+        assertNotNull(index.get(digest("c")));
+    }
+
+    @Test
+    public void remove_Drops_All_Digests_Of_File() {
+        RemoteFile file = newFile(1);
+        index.put(digest("a"), file);
+        index.put(digest("b"), file);
+
+        index.remove(1);
+
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void put_Checksums_Requires_Sha256() {
+        RemoteFile file = newFile(1);
+        Checksums checksums = mock(Checksums.class);
+        when(checksums.getFile()).thenReturn(file);
+        when(checksums.getSha1()).thenReturn(digest("a"));
+
+        assertFalse(index.put(checksums));
+        assertEquals(0, index.size());
+
+        when(checksums.getSha256()).thenReturn(digest("a"));
+        assertTrue(index.put(checksums));
+        assertSame(file, index.get(digest("a")));
+    }
+
+    private static ByteString digest(String content) {
+        return ByteString.encodeUtf8(content).sha256();
+    }
+
+    private static RemoteFile newFile(long fileId) {
+        RemoteFile file = mock(RemoteFile.class);
+        when(file.fileId()).thenReturn(fileId);
+        return file;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.EndpointMetrics;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RealInMemoryMetricsTest {
+
+    @Test
+    public void measurements_AreAggregatedPerMethod() {
+        RealInMemoryMetrics metrics = new RealInMemoryMetrics();
+        metrics.onResponse("stat", 200, ms(10), 0, 100);
+        metrics.onResponse("stat", 500, ms(30), 0, 20);
+        metrics.onFailure("uploadfile", new IOException(), ms(5), 1000);
+        metrics.onApiError("stat", 2009);
+        metrics.onRetry("stat");
+
+        Map<String, EndpointMetrics> snapshot = metrics.snapshot();
+        assertEquals(Arrays.asList("stat", "uploadfile"), Arrays.asList(snapshot.keySet().toArray()));
+
+        EndpointMetrics stat = snapshot.get("stat");
+        assertEquals(2, stat.requestCount());
+        assertEquals(0, stat.failureCount());
+        assertEquals(1, stat.retryCount());
+        assertEquals(120, stat.responseBytes());
+        assertEquals(Long.valueOf(1), stat.statusCodes().get(200));
+        assertEquals(Long.valueOf(1), stat.statusCodes().get(500));
+        assertEquals(Long.valueOf(1), stat.apiErrors().get(2009));
+        assertEquals(20, stat.meanLatencyMs(), 0.001);
+        assertEquals(30, stat.maxLatencyMs(), 0.001);
+
+        EndpointMetrics upload = snapshot.get("uploadfile");
+        assertEquals(1, upload.requestCount());
+        assertEquals(1, upload.failureCount());
+        assertEquals(1000, upload.requestBytes());
+    }
+
+    @Test
+    public void latencyPercentiles_AreAccurateWithinABucket() {
+        RealInMemoryMetrics metrics = new RealInMemoryMetrics();
+        for (int i = 1; i <= 100; i++) {
+            metrics.onResponse("stat", 200, ms(i), 0, 0);
+        }
+
+        EndpointMetrics stat = metrics.snapshot().get("stat");
+        assertEquals(50, stat.latencyMs(50), 50 * 0.25);
+        assertEquals(99, stat.latencyMs(99), 99 * 0.25);
+        assertEquals(100, stat.latencyMs(100), 100 * 0.25);
+    }
+
+    @Test
+    public void snapshot_IsNotAffectedByLaterRecording() {
+        RealInMemoryMetrics metrics = new RealInMemoryMetrics();
+        metrics.onResponse("stat", 200, ms(1), 0, 0);
+        EndpointMetrics stat = metrics.snapshot().get("stat");
+
+        metrics.onResponse("stat", 200, ms(1), 0, 0);
+
+        assertEquals(1, stat.requestCount());
+        assertEquals(2, metrics.snapshot().get("stat").requestCount());
+    }
+
+    @Test
+    public void reset_DiscardsMeasurements() {
+        RealInMemoryMetrics metrics = new RealInMemoryMetrics();
+        metrics.onResponse("stat", 200, ms(1), 0, 0);
+
+        metrics.reset();
+
+        assertTrue(metrics.snapshot().isEmpty());
+    }
+
+    @Test
+    public void histogramBuckets_CoverTheirValues() {
+        for (long micros = 0; micros < 1_000_000; micros += 7) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            assertTrue(micros <= LatencyHistogram.upperBoundOf(bucket));
+            assertTrue(bucket == 0 || micros > LatencyHistogram.upperBoundOf(bucket - 1));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void latencyMs_RejectsInvalidPercentile() {
+        RealInMemoryMetrics metrics = new RealInMemoryMetrics();
+        metrics.onResponse("stat", 200, ms(1), 0, 0);
+        metrics.snapshot().get("stat").latencyMs(101);
+    }
+
+    private static long ms(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
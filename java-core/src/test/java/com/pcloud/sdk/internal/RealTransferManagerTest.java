@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ApiClient;
+import com.pcloud.sdk.Call;
+import com.pcloud.sdk.Callback;
+import com.pcloud.sdk.DataSource;
+import com.pcloud.sdk.Priority;
+import com.pcloud.sdk.RemoteFile;
+import com.pcloud.sdk.Transfer;
+import com.pcloud.sdk.TransferManager;
+import com.pcloud.sdk.TransferStats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okio.Buffer;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RealTransferManagerTest {
+
+    private ApiClient apiClient;
+    private Map<String, GatedCall> calls;
+    private List<String> startOrder;
+    private AtomicInteger running;
+    private AtomicInteger maxRunning;
+    private TransferManager manager;
+    private volatile int bodyWrites;
+    private volatile boolean callsIgnoreCancel;
+
+    @Before
+    public void setUp() {
+        apiClient = mock(ApiClient.class);
+        calls = new ConcurrentHashMap<>();
+        startOrder = Collections.synchronizedList(new ArrayList<>());
+        running = new AtomicInteger();
+        maxRunning = new AtomicInteger();
+        bodyWrites = 1;
+        when(apiClient.createFile(anyLong(), anyString(), any(DataSource.class), isNull(), isNull()))
+                .thenAnswer(invocation -> {
+                    GatedCall call = new GatedCall(invocation.getArgument(1), invocation.getArgument(2));
+                    calls.put(call.name, call);
+                    return call;
+                });
+    }
+
+    @After
+    public void tearDown() {
+        for (GatedCall call : calls.values()) {
+            call.release.countDown();
+        }
+        if (manager != null) {
+            manager.shutdown();
+        }
+    }
+
+    @Test
+    public void runs_At_Most_Max_Concurrent_Transfers() throws Exception {
+        manager = newManager(2, 1024);
+        List<Transfer<RemoteFile>> transfers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            transfers.add(manager.upload(0, "file" + i, DataSource.create(new byte[10]), Priority.NORMAL));
+        }
+
+        awaitStarted("file0", "file1");
+        assertEquals(3, manager.stats().queuedTransfers());
+        for (int i = 0; i < 5; i++) {
+            awaitStarted("file" + i).release.countDown();
+        }
+        manager.awaitIdle();
+
+        assertEquals(2, maxRunning.get());
+        assertEquals(5, manager.stats().completedTransfers());
+        assertEquals(50, manager.stats().transferredBytes());
+        for (Transfer<RemoteFile> transfer : transfers) {
+            assertEquals(Transfer.State.SUCCEEDED, transfer.state());
+            assertEquals(10, transfer.transferredBytes());
+        }
+    }
+
+    @Test
+    public void starts_Higher_Priority_Transfers_First() throws Exception {
+        manager = newManager(1, 1024);
+        manager.upload(0, "first", DataSource.create(new byte[1]), Priority.NORMAL);
+        awaitStarted("first");
+
+        manager.upload(0, "low", DataSource.create(new byte[1]), Priority.LOW);
+        manager.upload(0, "normal", DataSource.create(new byte[1]), Priority.NORMAL);
+        manager.upload(0, "high", DataSource.create(new byte[1]), Priority.HIGH);
+        manager.upload(0, "high2", DataSource.create(new byte[1]), Priority.HIGH);
+        calls.get("first").release.countDown();
+        for (String name : new String[]{"high", "high2", "normal", "low"}) {
+            awaitStarted(name).release.countDown();
+        }
+        manager.awaitIdle();
+
+        assertEquals(Arrays.asList("first", "high", "high2", "normal", "low"), startOrder);
+    }
+
+    @Test
+    public void byte_Budget_Holds_Back_Transfers() throws Exception {
+        manager = newManager(4, 100);
+        manager.upload(0, "a", DataSource.create(new byte[60]), Priority.NORMAL);
+        manager.upload(0, "b", DataSource.create(new byte[60]), Priority.NORMAL);
+        manager.upload(0, "c", DataSource.create(new byte[30]), Priority.NORMAL);
+        awaitStarted("a");
+
+        TransferStats stats = manager.stats();
+        assertEquals(1, stats.activeTransfers());
+        assertEquals(2, stats.queuedTransfers());
+        assertEquals(60, stats.bytesInFlight());
+
+        calls.get("a").release.countDown();
+        awaitStarted("b");
+        awaitStarted("c");
+        assertEquals(90, manager.stats().bytesInFlight());
+        calls.get("b").release.countDown();
+        calls.get("c").release.countDown();
+        manager.awaitIdle();
+        assertEquals(0, manager.stats().bytesInFlight());
+    }
+
+    @Test
+    public void oversized_Transfer_Runs_Alone() throws Exception {
+        manager = newManager(4, 100);
+        manager.upload(0, "big", DataSource.create(new byte[500]), Priority.NORMAL);
+        manager.upload(0, "small", DataSource.create(new byte[1]), Priority.NORMAL);
+        awaitStarted("big");
+
+        assertEquals(100, manager.stats().bytesInFlight());
+        assertEquals(1, manager.stats().queuedTransfers());
+        calls.get("big").release.countDown();
+        awaitStarted("small").release.countDown();
+        manager.awaitIdle();
+    }
+
+    @Test
+    public void cancel_Removes_Queued_Transfer() throws Exception {
+        manager = newManager(1, 1024);
+        manager.upload(0, "first", DataSource.create(new byte[1]), Priority.NORMAL);
+        Transfer<RemoteFile> queued = manager.upload(0, "second", DataSource.create(new byte[1]), Priority.NORMAL);
+        awaitStarted("first");
+
+        queued.cancel();
+        calls.get("first").release.countDown();
+        manager.awaitIdle();
+
+        assertEquals(Transfer.State.CANCELED, queued.state());
+        assertFalse(calls.containsKey("second"));
+        assertEquals(1, manager.stats().failedTransfers());
+        try {
+            queued.await();
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void listener_Is_Notified_On_Completion() throws Exception {
+        manager = newManager(1, 1024);
+        Transfer<RemoteFile> transfer = manager.upload(0, "file", DataSource.create(new byte[1]), Priority.NORMAL);
+        CountDownLatch notified = new CountDownLatch(1);
+        transfer.addListener(new Transfer.Listener<RemoteFile>() {
+            @Override
+            public void onSuccess(Transfer<RemoteFile> transfer, RemoteFile result) {
+                notified.countDown();
+            }
+
+            @Override
+            public void onFailure(Transfer<RemoteFile> transfer, Throwable error) {
+            }
+        });
+
+        awaitStarted("file").release.countDown();
+
+        assertTrue(notified.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void retried_Bodies_Are_Not_Counted_Twice() throws Exception {
+        manager = newManager(1, 1024);
+        bodyWrites = 3;
+        Transfer<RemoteFile> transfer = manager.upload(0, "file", DataSource.create(new byte[10]), Priority.NORMAL);
+
+        awaitStarted("file").release.countDown();
+        manager.awaitIdle();
+
+        assertEquals(10, transfer.transferredBytes());
+        assertEquals(10, manager.stats().transferredBytes());
+    }
+
+    @Test
+    public void transfer_Canceled_As_Its_Call_Completes_Is_Not_Successful() throws Exception {
+        manager = newManager(1, 1024);
+        callsIgnoreCancel = true;
+        Transfer<RemoteFile> transfer = manager.upload(0, "file", DataSource.create(new byte[1]), Priority.NORMAL);
+        awaitStarted("file");
+
+        transfer.cancel();
+        manager.awaitIdle();
+
+        assertEquals(Transfer.State.CANCELED, transfer.state());
+        assertEquals(0, manager.stats().completedTransfers());
+        try {
+            transfer.await();
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void upload_Throws_After_Shutdown() {
+        manager = newManager(1, 1024);
+        manager.shutdown();
+        manager.upload(0, "file", DataSource.create(new byte[1]), Priority.NORMAL);
+    }
+
+    private TransferManager newManager(int maxConcurrentTransfers, long maxBytesInFlight) {
+        return new RealTransferManager.Builder(apiClient)
+                .maxConcurrentTransfers(maxConcurrentTransfers)
+                .maxBytesInFlight(maxBytesInFlight)
+                .create();
+    }
+
+    private GatedCall awaitStarted(String... names) throws InterruptedException {
+        GatedCall call = null;
+        for (String name : names) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while ((call = calls.get(name)) == null || !call.started.await(10, TimeUnit.MILLISECONDS)) {
+                if (System.nanoTime() > deadline) {
+                    fail("Transfer '" + name + "' has not started.");
+                }
+            }
+        }
+        return call;
+    }
+
+    private class GatedCall implements Call<RemoteFile> {
+        final String name;
+        final DataSource data;
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean canceled;
+
+        GatedCall(String name, DataSource data) {
+            this.name = name;
+            this.data = data;
+        }
+
+        @Override
+        public RemoteFile execute() throws IOException {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            startOrder.add(name);
+            try {
+                for (int i = 0; i < bodyWrites; i++) {
+                    data.writeTo(new Buffer());
+                }
+                started.countDown();
+                if (!release.await(5, TimeUnit.SECONDS) || (canceled && !callsIgnoreCancel)) {
+                    throw new IOException("Canceled");
+                }
+                return null;
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void enqueue(Callback<RemoteFile> callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return started.getCount() == 0;
+        }
+
+        @Override
+        public void cancel() {
+            canceled = true;
+            release.countDown();
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        @Override
+        public Call<RemoteFile> clone() {
+            return new GatedCall(name, data);
+        }
+    }
+}
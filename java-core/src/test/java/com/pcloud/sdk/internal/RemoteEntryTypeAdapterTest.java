@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.pcloud.sdk.ApiClient;
+import com.pcloud.sdk.RemoteEntry;
+import com.pcloud.sdk.RemoteFile;
+import com.pcloud.sdk.RemoteFolder;
+import com.pcloud.sdk.utils.DummyDownloadingApiClient;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class RemoteEntryTypeAdapterTest {
+
+    private static final String FILE_JSON = "{\"id\":\"f10\",\"parentfolderid\":1,\"name\":\"a.jpg\"," +
+            "\"created\":1500000000,\"modified\":1500000060,\"isfolder\":false,\"ismine\":true," +
+            "\"fileid\":10,\"size\":2048,\"hash\":1234567890123,\"contenttype\":\"image/jpeg\"," +
+            "\"thumb\":true,\"category\":1,\"icon\":\"image\",\"exif\":{\"model\":\"x\"}}";
+
+    private static final String FOLDER_JSON = "{\"id\":\"d1\",\"parentfolderid\":0,\"name\":\"Photos\"," +
+            "\"created\":1500000000,\"modified\":1500000000,\"isfolder\":true,\"ismine\":false," +
+            "\"canread\":true,\"canmodify\":false,\"candelete\":false,\"cancreate\":false," +
+            "\"folderid\":1,\"contents\":[" + FILE_JSON + "]}";
+
+    private ApiClient apiClient;
+    private Gson gson;
+
+    @Before
+    public void setUp() {
+        apiClient = DummyDownloadingApiClient.create();
+        gson = new GsonBuilder()
+                .registerTypeAdapterFactory(new RealRemoteEntry.TypeAdapterFactory(apiClient))
+                .create();
+    }
+
+    @Test
+    public void read_File_Fields() {
+        RemoteFile file = gson.fromJson(FILE_JSON, RemoteFile.class);
+
+        assertEquals("f10", file.id());
+        assertEquals(1, file.parentFolderId());
+        assertEquals("a.jpg", file.name());
+        assertEquals(new Date(1500000000000L), file.created());
+        assertEquals(new Date(1500000060000L), file.lastModified());
+        assertTrue(file.isFile());
+        assertTrue(file.isMine());
+        assertEquals(10, file.fileId());
+        assertEquals(2048, file.size());
+        assertEquals("1234567890123", file.hash());
+        assertEquals("image/jpeg", file.contentType());
+        assertTrue(file.hasThumbnail());
+    }
+
+    @Test
+    public void read_Folder_With_Children() {
+        RemoteEntry entry = gson.fromJson(FOLDER_JSON, RemoteEntry.class);
+
+        assertTrue(entry.isFolder());
+        RemoteFolder folder = entry.asFolder();
+        assertEquals(1, folder.folderId());
+        assertFalse(folder.canModify());
+        assertFalse(folder.canDelete());
+        assertFalse(folder.canCreate());
+        assertEquals(1, folder.children().size());
+        assertEquals(gson.fromJson(FILE_JSON, RemoteFile.class), folder.children().get(0));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void read_Returns_Unmodifiable_Children() {
+        RemoteFolder folder = gson.fromJson(FOLDER_JSON, RemoteFolder.class);
+
+        folder.children().clear();
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void read_Throws_On_Unexpected_Entry_Type() {
+        gson.fromJson(FILE_JSON, RemoteFolder.class);
+    }
+
+    @Test
+    public void write_Output_Reads_Back_As_Equal_Entry() {
+        RemoteFolder folder = gson.fromJson(FOLDER_JSON, RemoteFolder.class);
+
+        assertEquals(folder, gson.fromJson(gson.toJson(folder, RemoteFolder.class), RemoteFolder.class));
+    }
+}
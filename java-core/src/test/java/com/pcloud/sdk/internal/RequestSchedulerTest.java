@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ConcurrencyLimitPolicy;
+import com.pcloud.sdk.Priority;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RequestSchedulerTest {
+
+    private AtomicLong clock;
+    private Dispatcher dispatcher;
+    private RequestScheduler scheduler;
+    private List<okhttp3.Call> started;
+    private Map<okhttp3.Call, Callback> callbacks;
+    private Map<okhttp3.Call, Callback> delegates;
+
+    @Before
+    public void setUp() {
+        clock = new AtomicLong(1_000_000L);
+        dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(1);
+        scheduler = new RequestScheduler(dispatcher, clock::get);
+        started = new ArrayList<>();
+        callbacks = new HashMap<>();
+        delegates = new HashMap<>();
+    }
+
+    @Test
+    public void enqueue_StartsCalls_WhileDispatcherHasFreeSlots() {
+        dispatcher.setMaxRequestsPerHost(2);
+        okhttp3.Call first = enqueue(Priority.LOW);
+        okhttp3.Call second = enqueue(Priority.LOW);
+        enqueue(Priority.HIGH);
+
+        assertEquals(Arrays.asList(first, second), started);
+        assertEquals(2, scheduler.runningCount());
+        assertEquals(1, scheduler.queuedCount());
+    }
+
+    @Test
+    public void waitingCalls_StartInPriorityOrder() throws Exception {
+        okhttp3.Call running = enqueue(Priority.NORMAL);
+        okhttp3.Call low = enqueue(Priority.LOW);
+        okhttp3.Call normal = enqueue(Priority.NORMAL);
+        okhttp3.Call high = enqueue(Priority.HIGH);
+
+        finish(running);
+        finish(high);
+        finish(normal);
+
+        assertEquals(Arrays.asList(running, high, normal, low), started);
+    }
+
+    @Test
+    public void waitingCalls_OfSamePriority_StartInSubmissionOrder() throws Exception {
+        okhttp3.Call running = enqueue(Priority.HIGH);
+        okhttp3.Call first = enqueue(Priority.LOW);
+        okhttp3.Call second = enqueue(Priority.LOW);
+
+        finish(running);
+        finish(first);
+
+        assertEquals(Arrays.asList(running, first, second), started);
+    }
+
+    @Test
+    public void waitingCalls_AreAged_AndNotStarved() throws Exception {
+        okhttp3.Call running = enqueue(Priority.NORMAL);
+        okhttp3.Call low = enqueue(Priority.LOW);
+        clock.addAndGet(2 * RequestScheduler.AGING_INTERVAL_NANOS);
+        okhttp3.Call high = enqueue(Priority.HIGH);
+
+        finish(running);
+
+        assertEquals(Arrays.asList(running, low), started);
+        finish(low);
+        assertEquals(Arrays.asList(running, low, high), started);
+    }
+
+    @Test
+    public void callsToOtherHosts_StartWhileTheirHostHasFreeSlots() throws Exception {
+        dispatcher.setMaxRequests(3);
+        okhttp3.Call first = enqueue(Priority.NORMAL, "https://c1.pcloud.com/file");
+        okhttp3.Call sameHost = enqueue(Priority.HIGH, "https://c1.pcloud.com/file");
+        okhttp3.Call second = enqueue(Priority.NORMAL, "https://c2.pcloud.com/file");
+        okhttp3.Call third = enqueue(Priority.NORMAL, "https://c3.pcloud.com/file");
+        okhttp3.Call overLimit = enqueue(Priority.NORMAL, "https://c4.pcloud.com/file");
+
+        assertEquals(Arrays.asList(first, second, third), started);
+        assertEquals(3, scheduler.limit());
+
+        finish(second);
+        assertEquals(Arrays.asList(first, second, third, overLimit), started);
+        finish(first);
+        assertEquals(Arrays.asList(first, second, third, overLimit, sameHost), started);
+    }
+
+    @Test
+    public void schedulers_AreSharedPerDispatcher() {
+        ConcurrencyLimitPolicy policy = ConcurrencyLimitPolicy.create().initialLimit(2).build();
+        RequestScheduler shared = RequestScheduler.of(dispatcher, policy);
+
+        assertTrue(shared == RequestScheduler.of(dispatcher, policy));
+        assertTrue(shared == RequestScheduler.of(dispatcher, null));
+        assertFalse(shared == RequestScheduler.of(new Dispatcher(), policy));
+        assertEquals(2, shared.limit());
+    }
+
+    @Test
+    public void failedCalls_ReleaseTheirSlot() {
+        okhttp3.Call running = enqueue(Priority.NORMAL);
+        okhttp3.Call waiting = enqueue(Priority.NORMAL);
+
+        callbacks.get(running).onFailure(running, new IOException());
+
+        assertEquals(Arrays.asList(running, waiting), started);
+        assertEquals(1, scheduler.runningCount());
+        assertEquals(0, scheduler.queuedCount());
+    }
+
+    @Test
+    public void adaptiveLimit_CapsRunningCalls() {
+        dispatcher.setMaxRequestsPerHost(5);
+        scheduler = newAdaptiveScheduler(2, Integer.MAX_VALUE);
+
+        okhttp3.Call first = enqueue(Priority.NORMAL);
+        okhttp3.Call second = enqueue(Priority.NORMAL);
+        enqueue(Priority.NORMAL);
+
+        assertEquals(Arrays.asList(first, second), started);
+        assertEquals(2, scheduler.limit());
+        assertEquals(2, scheduler.inFlight());
+        assertEquals(1, scheduler.queueDepth());
+    }
+
+    @Test
+    public void failedCalls_LowerTheAdaptiveLimit() {
+        dispatcher.setMaxRequestsPerHost(5);
+        scheduler = newAdaptiveScheduler(4, Integer.MAX_VALUE);
+
+        okhttp3.Call call = enqueue(Priority.NORMAL);
+        callbacks.get(call).onFailure(call, new IOException());
+
+        assertEquals(3, scheduler.limit());
+    }
+
+    @Test
+    public void enqueue_FailsRightAway_WhenQueueIsFull() {
+        scheduler = newAdaptiveScheduler(1, 1);
+        enqueue(Priority.NORMAL);
+        enqueue(Priority.NORMAL);
+
+        okhttp3.Call rejected = newCall();
+        Callback callback = mock(Callback.class);
+        scheduler.enqueue(rejected, Priority.HIGH, callback);
+
+        verify(callback).onFailure(eq(rejected), any(IOException.class));
+        assertEquals(1, scheduler.queueDepth());
+    }
+
+    @Test
+    public void execute_WaitsForFreeSlot_WhenLimitIsAdaptive() throws Exception {
+        scheduler = newAdaptiveScheduler(1, Integer.MAX_VALUE);
+        okhttp3.Call running = enqueue(Priority.NORMAL);
+        okhttp3.Call waiting = enqueue(Priority.HIGH);
+
+        okhttp3.Call sync = newCall();
+        CountDownLatch executed = new CountDownLatch(1);
+        when(sync.execute()).thenAnswer(invocation -> {
+            executed.countDown();
+            return newResponse(sync);
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Response> result = executor.submit(() -> scheduler.execute(sync));
+            assertFalse(executed.await(200, TimeUnit.MILLISECONDS));
+            assertEquals(2, scheduler.queueDepth());
+
+            finish(running);
+
+            assertTrue(executed.await(1, TimeUnit.SECONDS));
+            result.get(1, TimeUnit.SECONDS);
+            assertEquals(Arrays.asList(running, waiting), started);
+            assertEquals(0, scheduler.queueDepth());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void callbacks_CanExecuteCalls_WithoutWaitingForTheirOwnSlot() throws Exception {
+        scheduler = newAdaptiveScheduler(1, Integer.MAX_VALUE);
+        okhttp3.Call sync = newCall();
+        when(sync.execute()).thenAnswer(invocation -> newResponse(sync));
+        okhttp3.Call async = newCall();
+        doAnswer(invocation -> {
+            callbacks.put(async, invocation.getArgument(0));
+            return null;
+        }).when(async).enqueue(any(Callback.class));
+        List<Response> responses = new ArrayList<>();
+        scheduler.enqueue(async, Priority.NORMAL, new Callback() {
+            @Override
+            public void onFailure(okhttp3.Call call, IOException e) {
+            }
+
+            @Override
+            public void onResponse(okhttp3.Call call, Response response) throws IOException {
+                // Released along with the body, as OkHttpCall does by adapting the response before the user callback.
+                response.close();
+                responses.add(scheduler.execute(sync));
+            }
+        });
+
+        callbacks.get(async).onResponse(async, newResponse(async, "{}"));
+
+        assertEquals(1, responses.size());
+        assertEquals(0, scheduler.inFlight());
+    }
+
+    @Test
+    public void slots_AreHeldUntilTheResponseBodyIsClosed() throws Exception {
+        okhttp3.Call running = enqueue(Priority.NORMAL);
+        okhttp3.Call waiting = enqueue(Priority.NORMAL);
+
+        callbacks.get(running).onResponse(running, newResponse(running, "{}"));
+        ArgumentCaptor<Response> response = ArgumentCaptor.forClass(Response.class);
+        verify(delegates.get(running)).onResponse(eq(running), response.capture());
+
+        assertEquals(Collections.singletonList(running), started);
+        response.getValue().close();
+        assertEquals(Arrays.asList(running, waiting), started);
+    }
+
+    @Test
+    public void executedCalls_HoldTheirSlot_UntilTheResponseBodyIsExhausted() throws Exception {
+        scheduler = newAdaptiveScheduler(1, Integer.MAX_VALUE);
+        okhttp3.Call sync = newCall();
+        when(sync.execute()).thenAnswer(invocation -> newResponse(sync, "{}"));
+
+        Response response = scheduler.execute(sync);
+
+        assertEquals(1, scheduler.inFlight());
+        assertEquals("{}", response.body().source().readUtf8());
+        assertEquals(0, scheduler.inFlight());
+        response.close();
+        assertEquals(0, scheduler.inFlight());
+    }
+
+    private RequestScheduler newAdaptiveScheduler(int limit, int maxQueueDepth) {
+        ConcurrencyLimitPolicy policy = ConcurrencyLimitPolicy.create()
+                .initialLimit(limit)
+                .build();
+        return new RequestScheduler(dispatcher, new AdaptiveLimit(policy), maxQueueDepth, clock::get);
+    }
+
+    private okhttp3.Call enqueue(Priority priority) {
+        return enqueue(priority, "https://api.pcloud.com/stat");
+    }
+
+    private okhttp3.Call enqueue(Priority priority, String url) {
+        final okhttp3.Call call = newCall(url);
+        doAnswer(invocation -> {
+            started.add(call);
+            callbacks.put(call, invocation.getArgument(0));
+            return null;
+        }).when(call).enqueue(any(Callback.class));
+        Callback delegate = mock(Callback.class);
+        delegates.put(call, delegate);
+        scheduler.enqueue(call, priority, delegate);
+        return call;
+    }
+
+    private static okhttp3.Call newCall() {
+        return newCall("https://api.pcloud.com/stat");
+    }
+
+    private static okhttp3.Call newCall(String url) {
+        okhttp3.Call call = mock(okhttp3.Call.class);
+        when(call.request()).thenReturn(new Request.Builder().url(url).build());
+        return call;
+    }
+
+    private static Response newResponse(okhttp3.Call call) {
+        return new Response.Builder()
+                .request(call.request())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .build();
+    }
+
+    private static Response newResponse(okhttp3.Call call, String body) {
+        return newResponse(call).newBuilder()
+                .body(ResponseBody.create(body, MediaType.get("application/json")))
+                .build();
+    }
+
+    private void finish(okhttp3.Call call) throws IOException {
+        callbacks.get(call).onResponse(call, newResponse(call));
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.ByteString;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Random;
+
+import static com.pcloud.sdk.internal.IOUtils.closeQuietly;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+public class ResumableDownloadCallTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private RealApiClient apiClient;
+    private ContentDispatcher dispatcher;
+    private File target;
+
+    @Before
+    public void setUp() throws Exception {
+        byte[] content = new byte[200 * 1024];
+        new Random(42).nextBytes(content);
+        dispatcher = new ContentDispatcher(content);
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+
+        apiClient = spy(new RealApiClient(new RealApiServiceBuilder().apiHost(server.url("/"))));
+        // Content links are always https, point them to the test server instead.
+        doAnswer(invocation -> {
+            closeQuietly(invocation.<Response>getArgument(0));
+            return new RealFileLink(apiClient, new Date(), Collections.singletonList(server.url("/content").url()),
+                    dispatcher.linkHash);
+        }).when(apiClient).getAsFileLink(any());
+
+        target = new File(temporaryFolder.getRoot(), "target.bin");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        apiClient.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    public void resumeDownload_DownloadsWholeFileWhenMissing() throws Exception {
+        apiClient.resumeDownload(1, target, null).execute();
+
+        assertArrayEquals(dispatcher.content, Files.readAllBytes(target.toPath()));
+        assertNull(dispatcher.lastRange);
+    }
+
+    @Test
+    public void resumeDownload_ContinuesFromExistingData() throws Exception {
+        Files.write(target.toPath(), Arrays.copyOf(dispatcher.content, 1000));
+
+        apiClient.resumeDownload(1, target, null).execute();
+
+        assertArrayEquals(dispatcher.content, Files.readAllBytes(target.toPath()));
+        assertEquals("bytes=1000-", dispatcher.lastRange);
+    }
+
+    @Test
+    public void resumeDownload_RestartsWhenRangeIsIgnored() throws Exception {
+        Files.write(target.toPath(), Arrays.copyOf(dispatcher.content, 1000));
+        dispatcher.honorRanges = false;
+
+        apiClient.resumeDownload(1, target, null).execute();
+
+        assertArrayEquals(dispatcher.content, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void resumeDownload_SkipsRequestWhenAlreadyComplete() throws Exception {
+        Files.write(target.toPath(), dispatcher.content);
+
+        apiClient.resumeDownload(1, target, null).execute();
+
+        assertEquals(0, dispatcher.contentRequests);
+    }
+
+    @Test
+    public void resumeDownload_DeletesTargetOnChecksumMismatch() throws Exception {
+        byte[] corrupted = Arrays.copyOf(dispatcher.content, 1000);
+        corrupted[0]++;
+        Files.write(target.toPath(), corrupted);
+
+        try {
+            expectedException.expect(IOException.class);
+            apiClient.resumeDownload(1, target, null).execute();
+        } finally {
+            assertFalse(target.exists());
+        }
+    }
+
+    @Test
+    public void resumeDownload_KeepsExistingData_WhenTheLinkIsForChangedContent() throws Exception {
+        byte[] existing = Arrays.copyOf(dispatcher.content, 1000);
+        Files.write(target.toPath(), existing);
+        dispatcher.linkHash = "2";
+
+        try {
+            apiClient.resumeDownload(1, target, null).execute();
+            fail();
+        } catch (IOException expected) {
+        }
+
+        assertEquals(0, dispatcher.contentRequests);
+        assertArrayEquals(existing, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void resumeDownload_DoesNotAppend_WhenTheRangeIsOfAFileOfAnotherSize() throws Exception {
+        byte[] existing = Arrays.copyOf(dispatcher.content, 1000);
+        Files.write(target.toPath(), existing);
+        dispatcher.reportedLength = dispatcher.content.length + 1;
+
+        try {
+            apiClient.resumeDownload(1, target, null).execute();
+            fail();
+        } catch (IOException expected) {
+        }
+
+        assertArrayEquals(existing, Files.readAllBytes(target.toPath()));
+    }
+
+    private static class ContentDispatcher extends Dispatcher {
+
+        final byte[] content;
+        volatile boolean honorRanges = true;
+        volatile String linkHash = "1";
+        volatile long reportedLength;
+        volatile String lastRange;
+        volatile int contentRequests;
+
+        ContentDispatcher(byte[] content) {
+            this.content = content;
+            this.reportedLength = content.length;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            switch (request.getRequestUrl().pathSegments().get(0)) {
+                case "checksumfile":
+                    return new MockResponse().setBody("{\"result\": 0, " +
+                            "\"sha256\": \"" + ByteString.of(content).sha256().hex() + "\", " +
+                            "\"metadata\": {\"isfolder\": false, \"id\": \"f1\", \"fileid\": 1, \"parentfolderid\": 0, " +
+                            "\"name\": \"file.bin\", \"size\": " + content.length + ", \"hash\": 1, " +
+                            "\"modified\": 0, \"created\": 0}}");
+                case "getfilelink":
+                    return new MockResponse().setBody("{\"result\": 0}");
+                case "content":
+                    contentRequests++;
+                    lastRange = request.getHeader("Range");
+                    if (lastRange != null && honorRanges) {
+                        int start = Integer.parseInt(lastRange.substring("bytes=".length(), lastRange.length() - 1));
+                        return new MockResponse().setResponseCode(206)
+                                .setHeader("Content-Range", "bytes " + start + "-" + (content.length - 1) + "/" + reportedLength)
+                                .setBody(new Buffer().write(content, start, content.length - start));
+                    }
+                    return new MockResponse().setBody(new Buffer().write(content));
+                default:
+                    return new MockResponse().setResponseCode(404);
+            }
+        }
+    }
+}
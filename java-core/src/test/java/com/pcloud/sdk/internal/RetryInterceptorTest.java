@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ApiError;
+import com.pcloud.sdk.DataSource;
+import com.pcloud.sdk.RemoteFile;
+import com.pcloud.sdk.RemoteFolder;
+import com.pcloud.sdk.RetryPolicy;
+import com.pcloud.sdk.UploadOptions;
+import com.pcloud.sdk.internal.networking.APIHttpException;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.BufferedSink;
+import okio.ByteString;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RetryInterceptorTest {
+
+    private static final RetryPolicy FAST_RETRIES = RetryPolicy.create()
+            .maxRetries(2)
+            .initialBackoff(1, TimeUnit.MILLISECONDS)
+            .maxBackoff(5, TimeUnit.MILLISECONDS)
+            .reconcile(true)
+            .build();
+    private static final ByteString CONTENT = ByteString.encodeUtf8("Retried content.");
+
+    private MockWebServer server;
+    private ScriptedDispatcher dispatcher;
+    private RealApiClient apiClient;
+
+    @Before
+    public void setUp() throws Exception {
+        dispatcher = new ScriptedDispatcher();
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+        apiClient = (RealApiClient) new RealApiServiceBuilder()
+                .apiHost(server.url("/"))
+                .retryPolicy(FAST_RETRIES)
+                .create();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        apiClient.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    public void idempotentRequests_AreRetried_OnServerErrors() throws Exception {
+        dispatcher.script("listfolder", new MockResponse().setResponseCode(503), folderResponse(""));
+
+        RemoteFolder folder = apiClient.listFolder(1).execute();
+
+        assertEquals(1, folder.folderId());
+        assertEquals(2, dispatcher.count("listfolder"));
+    }
+
+    @Test
+    public void idempotentRequests_FailAfterTheLastRetry() throws Exception {
+        dispatcher.script("listfolder", new MockResponse().setResponseCode(503));
+
+        try {
+            apiClient.listFolder(1).execute();
+            fail();
+        } catch (APIHttpException expected) {
+            assertEquals(3, dispatcher.count("listfolder"));
+        }
+    }
+
+    @Test
+    public void apiErrors_AreNotRetried() throws Exception {
+        dispatcher.script("listfolder", new MockResponse().setBody("{\"result\": 2005, \"error\": \"Directory does not exist.\"}"));
+
+        try {
+            apiClient.listFolder(1).execute();
+            fail();
+        } catch (ApiError expected) {
+            assertEquals(1, dispatcher.count("listfolder"));
+        }
+    }
+
+    @Test
+    public void nonIdempotentRequests_WithoutReconciliation_AreNotRetried() throws Exception {
+        dispatcher.script("deletefile", new MockResponse().setResponseCode(503));
+
+        try {
+            apiClient.deleteFile(1).execute();
+            fail();
+        } catch (APIHttpException expected) {
+            assertEquals(1, dispatcher.count("deletefile"));
+        }
+    }
+
+    @Test
+    public void upload_IsReconciled_WhenTheFileWasStored() throws Exception {
+        dispatcher.script("uploadfile", new MockResponse().setResponseCode(504));
+        dispatcher.script("checksumfile", checksumsResponse(CONTENT));
+
+        RemoteFile file = apiClient.createFile("/folder", "file.txt", DataSource.create(CONTENT)).execute();
+
+        assertEquals(1, file.fileId());
+        assertEquals("/folder/file.txt", dispatcher.lastUrl("checksumfile").queryParameter("path"));
+        assertEquals(1, dispatcher.count("uploadfile"));
+    }
+
+    @Test
+    public void upload_IsRetried_WhenTheFileIsMissing() throws Exception {
+        dispatcher.script("uploadfile", new MockResponse().setResponseCode(504), uploadResponse());
+        dispatcher.script("listfolder", folderResponse(""));
+
+        RemoteFile file = apiClient.createFile(1, "file.txt", DataSource.create(CONTENT)).execute();
+
+        assertEquals(1, file.fileId());
+        assertEquals(2, dispatcher.count("uploadfile"));
+    }
+
+    @Test
+    public void upload_IsNotRetried_WhenItMayHaveBeenRenamed() throws Exception {
+        dispatcher.script("uploadfile", new MockResponse().setResponseCode(504));
+        dispatcher.script("checksumfile", checksumsResponse(ByteString.encodeUtf8("Other content.")));
+
+        try {
+            apiClient.createFile("/folder", "file.txt", DataSource.create(CONTENT), UploadOptions.DEFAULT).execute();
+            fail();
+        } catch (APIHttpException expected) {
+            assertEquals(1, dispatcher.count("uploadfile"));
+        }
+    }
+
+    @Test
+    public void upload_IsRetried_WhenOverwritingADifferentFile() throws Exception {
+        dispatcher.script("uploadfile", new MockResponse().setResponseCode(504), uploadResponse());
+        dispatcher.script("checksumfile", checksumsResponse(ByteString.encodeUtf8("Other content.")));
+
+        UploadOptions overwrite = UploadOptions.create().overrideFile(true).build();
+        apiClient.createFile("/folder", "file.txt", DataSource.create(CONTENT), overwrite).execute();
+
+        assertEquals(2, dispatcher.count("uploadfile"));
+    }
+
+    @Test
+    public void upload_OfNonRepeatableData_IsNotRetried() throws Exception {
+        dispatcher.script("uploadfile", new MockResponse().setResponseCode(504), uploadResponse());
+        dispatcher.script("listfolder", folderResponse(""));
+        AtomicInteger writes = new AtomicInteger();
+        DataSource data = new DataSource() {
+            @Override
+            public long contentLength() {
+                return CONTENT.size();
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                writes.incrementAndGet();
+                sink.write(CONTENT);
+            }
+        };
+
+        try {
+            apiClient.createFile(1, "file.txt", data).execute();
+            fail();
+        } catch (APIHttpException expected) {
+            assertEquals(1, writes.get());
+            assertEquals(1, dispatcher.count("uploadfile"));
+            assertEquals(0, dispatcher.count("listfolder"));
+        }
+    }
+
+    @Test
+    public void upload_IsNotReconciled_ByDefault() throws Exception {
+        apiClient.shutdown();
+        apiClient = (RealApiClient) new RealApiServiceBuilder()
+                .apiHost(server.url("/"))
+                .retryPolicy(FAST_RETRIES.newBuilder().reconcile(RetryPolicy.DEFAULT.reconcile()).build())
+                .create();
+        dispatcher.script("uploadfile", new MockResponse().setResponseCode(504), uploadResponse());
+        dispatcher.script("checksumfile", checksumsResponse(CONTENT));
+
+        try {
+            apiClient.createFile("/folder", "file.txt", DataSource.create(CONTENT)).execute();
+            fail();
+        } catch (APIHttpException expected) {
+            assertEquals(1, dispatcher.count("uploadfile"));
+            assertEquals(0, dispatcher.count("checksumfile"));
+        }
+    }
+
+    @Test
+    public void copy_IsReconciled_WhenTheTargetHoldsTheContent() throws Exception {
+        dispatcher.script("copyfile", new MockResponse().setResponseCode(502));
+        dispatcher.script("stat", statResponse(1, "file.txt"), statResponse(2, "file.txt"));
+        dispatcher.script("listfolder", folderResponse(fileMetadata(2, "file.txt")));
+
+        RemoteFile copy = apiClient.copyFile(1, 5).execute();
+
+        assertEquals(2, copy.fileId());
+        assertEquals(1, dispatcher.count("copyfile"));
+    }
+
+    @Test
+    public void backoff_GrowsExponentially_WithJitter_AndHonorsRetryAfter() {
+        RetryPolicy policy = RetryPolicy.create()
+                .initialBackoff(100, TimeUnit.MILLISECONDS)
+                .maxBackoff(1, TimeUnit.SECONDS)
+                .backoffMultiplier(2)
+                .jitter(0.5)
+                .build();
+        RetryInterceptor interceptor = new RetryInterceptor(policy, nanos -> { }, () -> 1.0);
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(50), interceptor.backoffNanos(0, null));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(200), interceptor.backoffNanos(2, null));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), interceptor.backoffNanos(10, null));
+
+        Response throttled = new Response.Builder()
+                .request(new Request.Builder().url("https://api.pcloud.com/stat").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(429)
+                .message("Too Many Requests")
+                .header("Retry-After", "30")
+                .build();
+        assertEquals(TimeUnit.SECONDS.toNanos(1), interceptor.backoffNanos(0, throttled));
+    }
+
+    @Test
+    public void requests_AreClassifiedByApiMethod() {
+        assertTrue(RetryInterceptor.isIdempotent(new Request.Builder().url("https://api.pcloud.com/stat").build()));
+        assertTrue(RetryInterceptor.isIdempotent(new Request.Builder().url("https://api.pcloud.com/checksumfile").build()));
+        assertFalse(RetryInterceptor.isIdempotent(new Request.Builder().url("https://api.pcloud.com/uploadfile").build()));
+        assertFalse(RetryInterceptor.isIdempotent(new Request.Builder().url("https://api.pcloud.com/copyfile").build()));
+    }
+
+    private static String fileMetadata(long fileId, String name) {
+        return "{\"isfolder\": false, \"id\": \"f" + fileId + "\", \"fileid\": " + fileId + ", \"parentfolderid\": 5, " +
+                "\"name\": \"" + name + "\", \"size\": " + CONTENT.size() + ", \"hash\": 42, \"modified\": 0, \"created\": 0}";
+    }
+
+    private static MockResponse folderResponse(String contents) {
+        return new MockResponse().setBody("{\"result\": 0, \"metadata\": {\"isfolder\": true, \"id\": \"d1\", " +
+                "\"folderid\": 1, \"name\": \"folder\", \"modified\": 0, \"created\": 0, \"contents\": [" + contents + "]}}");
+    }
+
+    private static MockResponse statResponse(long fileId, String name) {
+        return new MockResponse().setBody("{\"result\": 0, \"metadata\": " + fileMetadata(fileId, name) + "}");
+    }
+
+    private static MockResponse uploadResponse() {
+        return new MockResponse().setBody("{\"result\": 0, \"metadata\": [" + fileMetadata(1, "file.txt") + "]}");
+    }
+
+    private static MockResponse checksumsResponse(ByteString content) {
+        return new MockResponse().setBody("{\"result\": 0, \"sha1\": \"" + content.sha1().hex() + "\", " +
+                "\"sha256\": \"" + content.sha256().hex() + "\", \"metadata\": " + fileMetadata(1, "file.txt") + "}");
+    }
+
+    /**
+     * Answers each API method with its scripted responses in order, repeating the last one.
+     */
+    private static class ScriptedDispatcher extends Dispatcher {
+
+        private final Map<String, Queue<MockResponse>> scripts = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+        private final Map<String, HttpUrl> lastUrls = new ConcurrentHashMap<>();
+
+        void script(String method, MockResponse... responses) {
+            Queue<MockResponse> script = new ArrayDeque<>();
+            for (MockResponse response : responses) {
+                script.add(response);
+            }
+            scripts.put(method, script);
+        }
+
+        int count(String method) {
+            AtomicInteger count = counts.get(method);
+            return count != null ? count.get() : 0;
+        }
+
+        HttpUrl lastUrl(String method) {
+            return lastUrls.get(method);
+        }
+
+        @NotNull
+        @Override
+        public synchronized MockResponse dispatch(@NotNull RecordedRequest request) {
+            HttpUrl url = request.getRequestUrl();
+            String method = url.pathSegments().get(0);
+            counts.computeIfAbsent(method, key -> new AtomicInteger()).incrementAndGet();
+            lastUrls.put(method, url);
+            Queue<MockResponse> script = scripts.get(method);
+            if (script == null || script.isEmpty()) {
+                return new MockResponse().setResponseCode(404);
+            }
+            return script.size() > 1 ? script.poll() : script.peek();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import com.pcloud.sdk.ContentLink;
+import com.pcloud.sdk.SegmentedDownloadOptions;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class SegmentedDownloadCallTest {
+
+    private static final int SEGMENT_SIZE = (int) SegmentedDownloadOptions.MIN_SEGMENT_SIZE;
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private RealApiClient apiClient;
+    private RangeDispatcher dispatcher;
+    private File target;
+
+    @Before
+    public void setUp() throws Exception {
+        dispatcher = new RangeDispatcher(randomBytes(SEGMENT_SIZE * 5 + SEGMENT_SIZE / 3));
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+        apiClient = new RealApiClient(new RealApiServiceBuilder().apiHost(server.url("/")));
+        target = new File(temporaryFolder.getRoot(), "target.bin");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        apiClient.shutdown();
+        server.shutdown();
+    }
+
+    @Test
+    public void download_WritesAllSegmentsToTarget() throws Exception {
+        ContentLink link = link("/mirror1/file", "/mirror2/file");
+
+        apiClient.download(link, dispatcher.content.length, target, null, options()).execute();
+
+        assertArrayEquals(dispatcher.content, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void download_SpreadsRequestsOverAllUrls() throws Exception {
+        ContentLink link = link("/mirror1/file", "/mirror2/file");
+
+        apiClient.download(link, dispatcher.content.length, target, null, options()).execute();
+
+        assertTrue(dispatcher.requestCount("mirror1") > 0);
+        assertTrue(dispatcher.requestCount("mirror2") > 0);
+    }
+
+    @Test
+    public void download_FailsOverToNextUrl() throws Exception {
+        ContentLink link = link("/broken/file", "/mirror1/file");
+
+        apiClient.download(link, dispatcher.content.length, target, null, options()).execute();
+
+        assertArrayEquals(dispatcher.content, Files.readAllBytes(target.toPath()));
+        assertTrue(dispatcher.requestCount("broken") > 0);
+    }
+
+    @Test
+    public void download_ReportsProgressUpToContentLength() throws Exception {
+        AtomicLong lastDone = new AtomicLong();
+        ContentLink link = link("/mirror1/file");
+
+        apiClient.download(link, dispatcher.content.length, target,
+                (done, total) -> lastDone.set(done), options()).execute();
+
+        assertEquals(dispatcher.content.length, lastDone.get());
+    }
+
+    @Test
+    public void download_ThrowsWhenRangeIsIgnored() throws Exception {
+        ContentLink link = link("/norange/file");
+
+        expectedException.expect(IOException.class);
+        apiClient.download(link, dispatcher.content.length, target, null, options()).execute();
+    }
+
+    @Test
+    public void download_ThrowsOnNegativeContentLength() throws Exception {
+        expectedException.expect(IllegalArgumentException.class);
+        apiClient.download(link("/mirror1/file"), -1, target, null, options());
+    }
+
+    private ContentLink link(String... paths) throws Exception {
+        URL[] urls = new URL[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            urls[i] = server.url(paths[i]).url();
+        }
+        return new RealContentLink(apiClient, new Date(), Arrays.asList(urls));
+    }
+
+    private static SegmentedDownloadOptions options() {
+        return SegmentedDownloadOptions.create()
+                .segmentSize(SEGMENT_SIZE)
+                .parallelism(3)
+                .maxSegmentRetries(2)
+                .build();
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static class RangeDispatcher extends Dispatcher {
+
+        private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+        final byte[] content;
+        final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+        RangeDispatcher(byte[] content) {
+            this.content = content;
+        }
+
+        int requestCount(String mirror) {
+            AtomicInteger count = requests.get(mirror);
+            return count != null ? count.get() : 0;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            String mirror = request.getRequestUrl().pathSegments().get(0);
+            requests.computeIfAbsent(mirror, key -> new AtomicInteger()).incrementAndGet();
+            if (mirror.equals("broken")) {
+                return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START);
+            }
+
+            String range = request.getHeader("Range");
+            if (range == null || mirror.equals("norange")) {
+                return new MockResponse().setBody(new Buffer().write(content));
+            }
+
+            Matcher matcher = RANGE.matcher(range);
+            if (!matcher.matches()) {
+                return new MockResponse().setResponseCode(416);
+            }
+            int start = Integer.parseInt(matcher.group(1));
+            int end = Integer.parseInt(matcher.group(2));
+            return new MockResponse()
+                    .setResponseCode(206)
+                    .setHeader("Content-Range", "bytes " + start + "-" + end + "/" + content.length)
+                    .setBody(new Buffer().write(content, start, end - start + 1));
+        }
+    }
+}
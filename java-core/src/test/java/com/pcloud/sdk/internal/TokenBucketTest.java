@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+
+    private AtomicLong clock;
+    private AtomicLong sleptNanos;
+
+    @Before
+    public void setUp() {
+        clock = new AtomicLong(1_000_000L);
+        sleptNanos = new AtomicLong();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_Throws_On_Negative_Rate() {
+        newBucket(-1);
+    }
+
+    @Test
+    public void take_Grants_Everything_When_Unlimited() throws Exception {
+        TokenBucket bucket = newBucket(TokenBucket.UNLIMITED);
+
+        assertEquals(10_000_000, bucket.take(10_000_000));
+        assertEquals(0, sleptNanos.get());
+    }
+
+    @Test
+    public void take_Grants_Slices_Of_The_Rate() throws Exception {
+        TokenBucket bucket = newBucket(1000);
+
+        assertEquals(50, bucket.take(1000));
+        assertEquals(10, bucket.take(10));
+    }
+
+    @Test
+    public void takeAll_Waits_For_The_Rate() throws Exception {
+        TokenBucket bucket = newBucket(1000);
+
+        bucket.takeAll(2000);
+
+        assertEquals(TimeUnit.SECONDS.toNanos(2), sleptNanos.get(), TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Test
+    public void take_Saves_Up_A_Limited_Burst() throws Exception {
+        TokenBucket bucket = newBucket(1000);
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+
+        bucket.takeAll(100);
+        assertEquals(0, sleptNanos.get());
+
+        bucket.takeAll(100);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), sleptNanos.get(), TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Test
+    public void take_Picks_Up_Rate_Changes_While_Waiting() throws Exception {
+        final TokenBucket[] bucket = new TokenBucket[1];
+        bucket[0] = new TokenBucket(1, clock::get, nanos -> {
+            assertTrue(nanos <= TokenBucket.MAX_WAIT_NANOS);
+            clock.addAndGet(nanos);
+            bucket[0].setBytesPerSecond(TokenBucket.UNLIMITED);
+        });
+
+        assertEquals(1000, bucket[0].take(1000));
+    }
+
+    @Test
+    public void concurrent_Transfers_Get_An_Even_Share() throws Exception {
+        final TokenBucket bucket = new TokenBucket(400 * 1024);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+        final AtomicLong[] transferred = {new AtomicLong(), new AtomicLong()};
+        Thread[] threads = new Thread[transferred.length];
+        for (int i = 0; i < threads.length; i++) {
+            final AtomicLong counter = transferred[i];
+            threads[i] = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        counter.addAndGet(bucket.take(Long.MAX_VALUE));
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long first = transferred[0].get();
+        long second = transferred[1].get();
+        assertTrue(first + second <= 300 * 1024);
+        assertTrue("Uneven shares: " + first + " and " + second, Math.min(first, second) * 2 >= Math.max(first, second));
+    }
+
+    private TokenBucket newBucket(long bytesPerSecond) {
+        return new TokenBucket(bytesPerSecond, clock::get, nanos -> {
+            sleptNanos.addAndGet(nanos);
+            clock.addAndGet(nanos);
+        });
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2017 pCloud AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.pcloud.sdk.internal;
+
+import okio.Buffer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class Utf8SourceReaderTest {
+
+    @Test
+    public void read_Decodes_Multibyte_Sequences_Across_Buffer_Boundaries() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        Random random = new Random(42);
+        String[] samples = {"a", "\u03A9", "\u20AC", "\u540D", "\uD83D\uDE00", "\"", "\n"};
+        while (builder.length() < 50_000) {
+            builder.append(samples[random.nextInt(samples.length)]);
+        }
+        String text = builder.toString();
+
+        assertEquals(text, readAll(text.getBytes(StandardCharsets.UTF_8), 1024));
+    }
+
+    @Test
+    public void read_Splits_Surrogate_Pair_Between_Calls() throws Exception {
+        String text = "\uD83D\uDE00\uD83D\uDE00x";
+
+        assertEquals(text, readAll(text.getBytes(StandardCharsets.UTF_8), 1));
+    }
+
+    @Test
+    public void read_Replaces_Malformed_Bytes() throws Exception {
+        byte[] bytes = {'a', (byte) 0x80, 'b', (byte) 0xFF, 'c', (byte) 0xC0, (byte) 0x80, 'd', (byte) 0xE2, (byte) 0x82};
+
+        assertEquals("a\uFFFDb\uFFFDc\uFFFD\uFFFDd\uFFFD", readAll(bytes, 16));
+    }
+
+    @Test
+    public void read_Returns_End_Of_Stream_For_Empty_Source() throws Exception {
+        try (Reader reader = new Utf8SourceReader(new Buffer())) {
+            assertEquals(-1, reader.read(new char[8], 0, 8));
+        }
+    }
+
+    @Test
+    public void read_Keeps_Returning_End_Of_Stream_After_Exhaustion() throws Exception {
+        byte[] bytes = {'a', 'b', (byte) 0xE2, (byte) 0x82};
+        try (Reader reader = new Utf8SourceReader(new Buffer().write(bytes))) {
+            assertEquals("ab\uFFFD", readAll(reader, 8));
+            assertEquals(-1, reader.read(new char[8], 0, 8));
+            assertEquals(-1, reader.read(new char[8], 0, 8));
+            assertEquals(-1, reader.read());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void read_Throws_After_Close() throws Exception {
+        Reader reader = new Utf8SourceReader(new Buffer().writeUtf8("abc"));
+        reader.close();
+
+        reader.read(new char[8], 0, 8);
+    }
+
+    @Test
+    public void nested_Readers_On_Same_Thread_Do_Not_Share_Buffers() throws Exception {
+        Reader outer = new Utf8SourceReader(new Buffer().writeUtf8("outer"));
+        Reader inner = new Utf8SourceReader(new Buffer().writeUtf8("inner"));
+        char[] chars = new char[2];
+
+        assertEquals(2, outer.read(chars, 0, 2));
+        assertEquals("inner", readAll(inner, 16));
+        inner.close();
+        assertEquals("ter", readAll(outer, 16));
+        outer.close();
+    }
+
+    private static String readAll(byte[] bytes, int chunkSize) throws IOException {
+        try (Reader reader = new Utf8SourceReader(new Buffer().write(bytes))) {
+            return readAll(reader, chunkSize);
+        }
+    }
+
+    private static String readAll(Reader reader, int chunkSize) throws IOException {
+        StringBuilder result = new StringBuilder();
+        char[] chars = new char[chunkSize];
+        int read;
+        while ((read = reader.read(chars, 0, chunkSize)) != -1) {
+            result.append(chars, 0, read);
+        }
+        return result.toString();
+    }
+}
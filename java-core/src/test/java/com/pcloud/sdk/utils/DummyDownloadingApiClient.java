@@ -20,26 +20,44 @@ package com.pcloud.sdk.utils;
 import com.pcloud.sdk.ApiClient;
 import com.pcloud.sdk.ApiError;
 import com.pcloud.sdk.Authenticator;
+import com.pcloud.sdk.BandwidthLimit;
+import com.pcloud.sdk.BatchUploadOptions;
 import com.pcloud.sdk.Call;
+import com.pcloud.sdk.CallTimelineListener;
 import com.pcloud.sdk.Callback;
 import com.pcloud.sdk.Checksums;
+import com.pcloud.sdk.ChunkedUploadOptions;
+import com.pcloud.sdk.CircuitBreakerPolicy;
+import com.pcloud.sdk.ConcurrencyLimitPolicy;
+import com.pcloud.sdk.ConcurrencyLimiter;
+import com.pcloud.sdk.ContentIndex;
 import com.pcloud.sdk.ContentLink;
 import com.pcloud.sdk.DataSink;
 import com.pcloud.sdk.DataSource;
 import com.pcloud.sdk.DownloadOptions;
 import com.pcloud.sdk.FileLink;
+import com.pcloud.sdk.HedgingPolicy;
+import com.pcloud.sdk.MetricsRecorder;
+import com.pcloud.sdk.Priority;
 import com.pcloud.sdk.ProgressListener;
 import com.pcloud.sdk.RemoteEntry;
+import com.pcloud.sdk.RemoteEntryVisitor;
 import com.pcloud.sdk.RemoteFile;
 import com.pcloud.sdk.RemoteFolder;
+import com.pcloud.sdk.RemoteFolderTree;
+import com.pcloud.sdk.RetryPolicy;
 import com.pcloud.sdk.Resolution;
+import com.pcloud.sdk.SegmentedDownloadOptions;
 import com.pcloud.sdk.UploadOptions;
 import com.pcloud.sdk.UserInfo;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 
 import okhttp3.Cache;
@@ -88,6 +106,26 @@ public class DummyDownloadingApiClient implements ApiClient {
         return null;
     }
 
+    @Override
+    public Call<Void> listFolder(long folderId, boolean recursively, RemoteEntryVisitor visitor) {
+        return null;
+    }
+
+    @Override
+    public Call<Void> listFolder(String path, boolean recursively, RemoteEntryVisitor visitor) {
+        return null;
+    }
+
+    @Override
+    public Call<RemoteFolderTree> loadFolderTree(long folderId) {
+        return null;
+    }
+
+    @Override
+    public Call<RemoteFolderTree> loadFolderTree(String path) {
+        return null;
+    }
+
     @Override
     public Call<RemoteFolder> createFolder(long parentFolderId, String folderName) {
         return null;
@@ -238,6 +276,31 @@ public class DummyDownloadingApiClient implements ApiClient {
         return null;
     }
 
+    @Override
+    public Call<RemoteFile> createFileInChunks(RemoteFolder folder, String filename, DataSource data, Date modifiedDate, ProgressListener listener, ChunkedUploadOptions uploadOptions) {
+        return null;
+    }
+
+    @Override
+    public Call<RemoteFile> createFileInChunks(long folderId, String filename, DataSource data, Date modifiedDate, ProgressListener listener, ChunkedUploadOptions uploadOptions) {
+        return null;
+    }
+
+    @Override
+    public Call<RemoteFile> createFileInChunks(String path, String filename, DataSource data, Date modifiedDate, ProgressListener listener, ChunkedUploadOptions uploadOptions) {
+        return null;
+    }
+
+    @Override
+    public Call<List<RemoteFile>> createFiles(long folderId, Map<String, DataSource> files, BatchUploadOptions uploadOptions) {
+        return null;
+    }
+
+    @Override
+    public Call<List<RemoteFile>> createFiles(String path, Map<String, DataSource> files, BatchUploadOptions uploadOptions) {
+        return null;
+    }
+
     @Override
     public Call<Boolean> deleteFile(RemoteFile file) {
         return null;
@@ -278,6 +341,11 @@ public class DummyDownloadingApiClient implements ApiClient {
         return new DummyDownloadCall(sink, listener);
     }
 
+    @Override
+    public Call<Void> download(RemoteFile file, DataSink sink, ProgressListener listener, boolean verifyChecksum) {
+        return null;
+    }
+
     @Override
     public Call<Void> download(ContentLink fileLink, URL linkVariant, DataSink sink, ProgressListener listener) {
         return new DummyDownloadCall(sink, listener);
@@ -298,6 +366,26 @@ public class DummyDownloadingApiClient implements ApiClient {
         return new DummyCall<>(createSource(data));
     }
 
+    @Override
+    public Call<Void> download(ContentLink fileLink, long contentLength, File target, ProgressListener listener, SegmentedDownloadOptions options) {
+        return null;
+    }
+
+    @Override
+    public Call<Void> download(RemoteFile file, File target, ProgressListener listener, SegmentedDownloadOptions options) {
+        return null;
+    }
+
+    @Override
+    public Call<Void> resumeDownload(RemoteFile file, File target, ProgressListener listener) {
+        return null;
+    }
+
+    @Override
+    public Call<Void> resumeDownload(long fileId, File target, ProgressListener listener) {
+        return null;
+    }
+
     @Override
     public Call<RemoteFile> copyFile(long fileId, long toFolderId) {
         return null;
@@ -478,6 +566,26 @@ public class DummyDownloadingApiClient implements ApiClient {
         return 0;
     }
 
+    @Override
+    public Dispatcher transferDispatcher() {
+        return null;
+    }
+
+    @Override
+    public ConnectionPool transferConnectionPool() {
+        return null;
+    }
+
+    @Override
+    public int transferReadTimeoutMs() {
+        return 0;
+    }
+
+    @Override
+    public int transferWriteTimeoutMs() {
+        return 0;
+    }
+
     @Override
     public long progressCallbackThreshold() {
         return 0;
@@ -493,6 +601,71 @@ public class DummyDownloadingApiClient implements ApiClient {
         return null;
     }
 
+    @Override
+    public int fileLinkCacheSize() {
+        return 0;
+    }
+
+    @Override
+    public ContentIndex contentIndex() {
+        return null;
+    }
+
+    @Override
+    public BandwidthLimit uploadBandwidthLimit() {
+        return null;
+    }
+
+    @Override
+    public BandwidthLimit downloadBandwidthLimit() {
+        return null;
+    }
+
+    @Override
+    public RetryPolicy retryPolicy() {
+        return RetryPolicy.NONE;
+    }
+
+    @Override
+    public HedgingPolicy hedgingPolicy() {
+        return null;
+    }
+
+    @Override
+    public ConcurrencyLimitPolicy concurrencyLimitPolicy() {
+        return null;
+    }
+
+    @Override
+    public ConcurrencyLimiter concurrencyLimiter() {
+        return null;
+    }
+
+    @Override
+    public CircuitBreakerPolicy circuitBreakerPolicy() {
+        return null;
+    }
+
+    @Override
+    public MetricsRecorder metricsRecorder() {
+        return null;
+    }
+
+    @Override
+    public CallTimelineListener callTimelineListener() {
+        return null;
+    }
+
+    @Override
+    public ApiClient withPriority(Priority priority) {
+        return this;
+    }
+
+    @Override
+    public Priority priority() {
+        return Priority.NORMAL;
+    }
+
     @Override
     public void shutdown() {
 